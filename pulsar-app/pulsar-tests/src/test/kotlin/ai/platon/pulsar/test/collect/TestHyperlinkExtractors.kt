@@ -1,10 +1,14 @@
 package ai.platon.pulsar.test.collect
 
+import ai.platon.pulsar.common.collect.ConcurrentBloomFilter
 import ai.platon.pulsar.common.collect.FatLinkExtractor
 import ai.platon.pulsar.common.collect.HyperlinkExtractor
 import ai.platon.pulsar.common.urls.sites.amazon.AmazonUrls
 import ai.platon.pulsar.common.urls.sites.amazon.AsinUrlNormalizer
+import ai.platon.pulsar.dom.Documents
+import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.test.TestBase
+import org.apache.commons.lang3.RandomStringUtils
 import org.junit.Test
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
@@ -31,6 +35,26 @@ class TestHyperlinkExtractors: TestBase() {
         }
     }
 
+    @Test
+    fun testSeenUrlsAreSkipped() {
+        val seenUrls = ConcurrentBloomFilter.create(expectedInsertions = 1000)
+        val extractor = FatLinkExtractor(session, seenUrls = seenUrls)
+        val base = "https://www.example.com/seen-urls/" + RandomStringUtils.randomAlphanumeric(8)
+        val html = (1..3).joinToString("", "<html><body>", "</body></html>") { "<a href='$base/$it'>$it</a>" }
+        val page = WebPage.newWebPage(base, session.sessionConfig.toVolatileConfig())
+        val document = Documents.parse(html, base)
+        val seed = session.normalize(base).apply { options.outLinkSelector = "a" }
+
+        seenUrls.put("$base/1")
+        val (_, fatLink) = assertNotNull(extractor.createFatLink(seed, page, document, listOf()))
+        assertEquals(listOf("$base/2", "$base/3"), fatLink.tailLinks.map { it.url })
+
+        // all the links are seen now
+        val (_, fatLink2) = assertNotNull(extractor.createFatLink(seed, page, document, listOf()))
+        assertTrue { fatLink2.tailLinks.isEmpty() }
+        assertEquals(4, extractor.counters.seenLinks)
+    }
+
     @Test
     fun testFatLinkExtractorWithNormalizer() {
         val extractor = FatLinkExtractor(session).apply { normalizer.addFirst(AsinUrlNormalizer()) }
@@ -0,0 +1,16 @@
+package ai.platon.pulsar.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The common settings of the benchmarks, a benchmark overrides them by its own annotations.
+ *
+ * The benchmarks are run by {@link org.openjdk.jmh.Main}, see the description of pulsar-benchmarks/pom.xml,
+ * the allocation rates are reported only if the GC profiler is enabled by -prof gc.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class AbstractBenchmark {
+}
@@ -0,0 +1,61 @@
+package ai.platon.pulsar.common;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.concurrent.ConcurrentLRUCache;
+import ai.platon.pulsar.common.concurrent.ConcurrentSegmentedCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the single lock {@link ConcurrentLRUCache} with {@link ConcurrentSegmentedCache}
+ * under a read mostly workload, 9 reads out of 10 operations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrentCacheBenchmark extends AbstractBenchmark {
+
+    private static final int CAPACITY = 200;
+    private static final int KEY_SPACE = 400;
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    private ConcurrentLRUCache<String, String> lruCache;
+    private ConcurrentSegmentedCache<String, String> segmentedCache;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        lruCache = new ConcurrentLRUCache<>(TTL, CAPACITY);
+        segmentedCache = new ConcurrentSegmentedCache<>(CAPACITY, TTL);
+        keys = new String[KEY_SPACE];
+        for (int i = 0; i < KEY_SPACE; ++i) {
+            keys[i] = "https://www.amazon.com/dp/B0" + i;
+            lruCache.put(keys[i], keys[i]);
+            segmentedCache.put(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String concurrentLRUCache() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt(KEY_SPACE)];
+        if (random.nextInt(10) == 0) {
+            return lruCache.put(key, key);
+        }
+        return lruCache.get(key);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String concurrentSegmentedCache() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt(KEY_SPACE)];
+        if (random.nextInt(10) == 0) {
+            return segmentedCache.put(key, key);
+        }
+        return segmentedCache.get(key);
+    }
+}
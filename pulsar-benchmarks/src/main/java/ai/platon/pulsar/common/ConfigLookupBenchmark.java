@@ -0,0 +1,75 @@
+package ai.platon.pulsar.common;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.config.ConfigKey;
+import ai.platon.pulsar.common.config.ImmutableConfig;
+import ai.platon.pulsar.common.config.MutableConfig;
+import ai.platon.pulsar.common.config.VolatileConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the cost of looking up a config value by the property name, which resolves and parses the value
+ * every time, with the cost of looking up a typed key, which is parsed once and cached.
+ *
+ * The volatile config falls back to a mutable config which holds the values, just like a session config.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConfigLookupBenchmark extends AbstractBenchmark {
+
+    private static final String INT_NAME = "benchmark.int";
+    private static final String DURATION_NAME = "benchmark.duration";
+    private static final ConfigKey<Integer> INT_KEY = ConfigKey.ofInt(INT_NAME, 2);
+    private static final ConfigKey<Duration> DURATION_KEY = ConfigKey.ofDuration(DURATION_NAME, Duration.ZERO);
+
+    private ImmutableConfig immutableConfig;
+    private VolatileConfig volatileConfig;
+
+    @Setup
+    public void setup() {
+        MutableConfig conf = new MutableConfig();
+        conf.setInt(INT_NAME, 10);
+        conf.set(DURATION_NAME, "30s");
+        immutableConfig = conf;
+        volatileConfig = conf.toVolatileConfig();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int immutableByName() {
+        return immutableConfig.getInt(INT_NAME, 2);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int immutableByKey() {
+        return immutableConfig.get(INT_KEY);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int volatileByName() {
+        return volatileConfig.getInt(INT_NAME, 2);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int volatileByKey() {
+        return volatileConfig.get(INT_KEY);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Duration volatileDurationByName() {
+        return volatileConfig.getDuration(DURATION_NAME, Duration.ZERO);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Duration volatileDurationByKey() {
+        return volatileConfig.get(DURATION_KEY);
+    }
+}
@@ -0,0 +1,80 @@
+package ai.platon.pulsar.common.collect;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.config.ImmutableConfig;
+import ai.platon.pulsar.common.urls.Hyperlink;
+import ai.platon.pulsar.common.urls.UrlAware;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the enqueue/dequeue throughput of the in-memory fetch cache manager with the fetch cache manager
+ * which spills the urls to memory mapped segment files. A batch of urls much larger than the capacity of
+ * the loading queue is added and then polled out, so most of the urls go through the segment files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FetchCacheManagerBenchmark extends AbstractBenchmark {
+
+    private static final int BATCH_SIZE = 100_000;
+    private static final int CAPACITY = 1_000;
+
+    @Param({"memory", "mapped"})
+    public String manager;
+
+    private Path directory;
+    private FetchCacheManager fetchCaches;
+    private Queue<UrlAware> queue;
+    private List<UrlAware> urls;
+
+    @Setup
+    public void setup() throws IOException {
+        ImmutableConfig conf = new ImmutableConfig();
+        if ("mapped".equals(manager)) {
+            directory = Files.createTempDirectory("fetch-cache");
+            MappedSegmentUrlLoader loader = new MappedSegmentUrlLoader(directory,
+                    UrlSegmentLog.DEFAULT_SEGMENT_SIZE, Duration.ofSeconds(5));
+            fetchCaches = new MappedSegmentFetchCacheManager(loader, CAPACITY, conf);
+        } else {
+            fetchCaches = new ConcurrentFetchCacheManager(conf);
+        }
+        fetchCaches.initialize();
+        queue = fetchCaches.getNormalCache().getReentrantQueue();
+
+        urls = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            urls.add(new Hyperlink("https://www.amazon.com/s?k=insomnia&i=aps&page=" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (fetchCaches instanceof MappedSegmentFetchCacheManager) {
+            ((MappedSegmentFetchCacheManager) fetchCaches).close();
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int enqueueDequeue() {
+        for (UrlAware url : urls) {
+            queue.add(url);
+        }
+
+        int n = 0;
+        while (queue.poll() != null) {
+            ++n;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,54 @@
+package ai.platon.pulsar.common.options;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.config.VolatileConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare creating the load options of an url by JCommander parsing with creating them from a compiled template.
+ * The default arguments of a streaming crawler are combined with the arguments of every url, and then the item
+ * options are created, just like what a crawler does for every url.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoadOptionsBenchmark extends AbstractBenchmark {
+
+    private static final String DEFAULT_ARGS = "-label amazon -expires 1d -itemExpires 7d -parse -storeContent false" +
+            " -scrollCount 5 -itemScrollCount 10 -nJitRetry 2 -outLink \"a[href~=/dp/]\"";
+
+    private static final String[] URL_ARGS = {
+            "",
+            "-i 1s -ignoreFailure",
+            "-label best-sellers -requireSize 300000",
+            "-refresh",
+            "-taskTime 2021-03-21T00:00:00Z -deadTime 2021-03-22T00:00:00Z -i 1h",
+            "-tl 40 -itemRequireNotBlank .price"
+    };
+
+    private VolatileConfig conf;
+    private LoadOptionsTemplate defaultTemplate;
+    private int next;
+
+    @Setup
+    public void setup() {
+        conf = new VolatileConfig();
+        defaultTemplate = LoadOptionsTemplate.Companion.compile(DEFAULT_ARGS);
+    }
+
+    @Benchmark
+    public LoadOptions parseEveryTime() {
+        String args = URL_ARGS[next++ % URL_ARGS.length];
+        LoadOptions options = LoadOptions.Companion.parseWithoutCache(DEFAULT_ARGS + " " + args, conf);
+        // clone by a round trip through toString()
+        return LoadOptions.Companion.parseWithoutCache(options.toString(), conf);
+    }
+
+    @Benchmark
+    public LoadOptions compiledTemplate() {
+        String args = URL_ARGS[next++ % URL_ARGS.length];
+        LoadOptions options = defaultTemplate.overlay(args).createOptions(conf);
+        return options.createItemOptions(conf);
+    }
+}
@@ -0,0 +1,96 @@
+package ai.platon.pulsar.common.urls;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the url functions based on {@link UrlView} with the ones based on {@link java.net.URL}, on a corpus of
+ * a million urls. Most of the urls are common web page urls, and one in a hundred is malformed.
+ *
+ * Every invocation walks through the whole corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UrlParserBenchmark extends AbstractBenchmark {
+
+    private static final int CORPUS_SIZE = 1_000_000;
+
+    private static final String[] PATHS = {
+            "", "/", "/dp/B07QL6WXYZ", "/s?k=Baby+Girls%27+One-Piece+Footies&page=2", "/a/b/c/index.html",
+            "/news/2021/03/25/12345.shtml?from=home#comments", "/search?q=pulsar&ie=utf-8", "/?"
+    };
+
+    private String[] urls;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(20210325);
+        urls = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; ++i) {
+            int n = random.nextInt(100);
+            String scheme = n < 60 ? "https://" : "http://";
+            String host = "www" + (i % 10) + ".site" + random.nextInt(100_000) + ".com";
+            String port = n % 20 == 0 ? ":8080" : "";
+            String path = PATHS[random.nextInt(PATHS.length)];
+            // one in a hundred is malformed
+            urls[i] = n == 0 ? "htp:/" + host + path : scheme + host + port + path;
+        }
+    }
+
+    @Benchmark
+    public void reverseUrlByJavaNetUrl(Blackhole blackhole) {
+        for (String url : urls) {
+            try {
+                blackhole.consume(Urls.reverseUrl(new URL(url)));
+            } catch (MalformedURLException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void reverseUrlByUrlView(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(Urls.reverseUrlOrNull(url));
+        }
+    }
+
+    @Benchmark
+    public void hostNameByJavaNetUrl(Blackhole blackhole) {
+        for (String url : urls) {
+            try {
+                blackhole.consume(new URL(url).getHost().toLowerCase());
+            } catch (MalformedURLException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void hostNameByUrlView(Blackhole blackhole) {
+        for (String url : urls) {
+            UrlView view = UrlView.parseOrNull(url);
+            blackhole.consume(view == null ? null : view.getHostName());
+        }
+    }
+
+    @Benchmark
+    public void validateByJavaNetUrl(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(Urls.getURLOrNull(url) != null);
+        }
+    }
+
+    @Benchmark
+    public void validateByUrlView(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(Urls.isValidUrl(url));
+        }
+    }
+}
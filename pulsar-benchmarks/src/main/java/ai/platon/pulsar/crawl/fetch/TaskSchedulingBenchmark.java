@@ -0,0 +1,85 @@
+package ai.platon.pulsar.crawl.fetch;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.crawl.common.URLUtil;
+import ai.platon.pulsar.crawl.fetch.data.PoolId;
+import ai.platon.pulsar.crawl.fetch.data.PoolQueue;
+import ai.platon.pulsar.crawl.fetch.data.ReadyPoolQueue;
+import ai.platon.pulsar.persist.WebPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulate a batch crawl over 100k hosts, compare scheduling by a linear scan over all the task pools, which is
+ * what the task monitor did, with scheduling by the {@link ReadyPoolQueue}.
+ *
+ * Every host allows one pending task and has a crawl delay, every operation schedules a task, finishes it at once
+ * and produces it again, so there are always tasks for every host, but only the hosts out of the crawl delay
+ * can be served. An operation returns null if no host can be served.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TaskSchedulingBenchmark extends AbstractBenchmark {
+
+    @Param({"100000"})
+    public int numHosts;
+
+    @Param({"1000"})
+    public int crawlDelayMillis;
+
+    private PoolQueue poolQueue;
+    private ReadyPoolQueue readyPoolQueue;
+
+    @Setup(Level.Iteration)
+    public void setup() throws MalformedURLException {
+        VolatileConfig conf = new VolatileConfig();
+        Duration crawlDelay = Duration.ofMillis(crawlDelayMillis);
+        poolQueue = new PoolQueue();
+        readyPoolQueue = new ReadyPoolQueue();
+        for (int i = 0; i < numHosts; ++i) {
+            // a few priorities, just like the tasks of a batch crawl
+            int priority = i % 3;
+            String host = "www.host" + i + ".com";
+            String url = "https://" + host + "/";
+            TaskPool pool = new TaskPool(new PoolId(priority, "https", host), URLUtil.GroupMode.BY_HOST,
+                    1, crawlDelay, Duration.ZERO, Duration.ofMinutes(5));
+            pool.produce(new JobFetchTask(0, priority, "https", host, WebPage.newWebPage(url, conf), new URL(url)));
+            poolQueue.add(pool);
+            readyPoolQueue.schedule(pool);
+        }
+    }
+
+    @Benchmark
+    public JobFetchTask linearScan() {
+        for (TaskPool pool : poolQueue) {
+            if (pool.isActive() && pool.hasReadyTasks()) {
+                JobFetchTask task = pool.consume();
+                if (task != null) {
+                    pool.finish(task, false);
+                    pool.produce(task);
+                    return task;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Benchmark
+    public JobFetchTask readyPoolQueue() {
+        JobFetchTask task = readyPoolQueue.poll(pool -> true);
+        if (task != null) {
+            TaskPool pool = poolQueue.find(task.getPoolId());
+            pool.finish(task, false);
+            pool.produce(task);
+            readyPoolQueue.schedule(pool);
+        }
+
+        return task;
+    }
+}
@@ -0,0 +1,82 @@
+package ai.platon.pulsar.crawl.parse;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.EncodingDetector;
+import ai.platon.pulsar.common.config.VolatileConfig;
+import ai.platon.pulsar.persist.ContentBuffer;
+import ai.platon.pulsar.persist.ContentBufferPool;
+import ai.platon.pulsar.persist.WebPage;
+import org.apache.commons.io.output.NullOutputStream;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the allocation rate of the content flow load -> parse -> persist, the page source from the browser is
+ * encoded, the encoding is sniffed, the document is parsed and the content is written out.
+ *
+ * The copying flow encodes the page source by {@link String#getBytes}, sniffs the encoding from a full copy of
+ * the content and writes a full copy again, while the pooled flow encodes the page source in a pooled
+ * {@link ContentBuffer}, sniffs the encoding from the head of the content and writes the content without copying.
+ *
+ * The allocation rate is reported by the GC profiler as gc.alloc.rate.norm, in bytes per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContentFlowBenchmark extends AbstractBenchmark {
+
+    private static final String URL = "http://example.com/";
+
+    @Param({"100", "1000"})
+    public int numItems;
+
+    private final VolatileConfig conf = new VolatileConfig();
+    private final EncodingDetector encodingDetector = new EncodingDetector(conf);
+    private final WritableByteChannel sink = Channels.newChannel(NullOutputStream.NULL_OUTPUT_STREAM);
+    private String pageSource;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("<html><head><meta charset=\"UTF-8\"><title>商品列表</title></head><body>");
+        for (int i = 0; i < numItems; ++i) {
+            sb.append("<div class='item'><a href='/dp/").append(i).append("'>商品 ").append(i)
+                    .append("</a><span class='price'>$").append(i).append(".99</span></div>");
+        }
+        pageSource = sb.append("</body></html>").toString();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Document copying() throws IOException {
+        WebPage page = WebPage.newWebPage(URL, conf);
+        page.setContent(pageSource.getBytes(StandardCharsets.UTF_8));
+
+        String encoding = encodingDetector.sniffCharacterEncoding(page.getContentAsBytes());
+        Document document = Jsoup.parse(page.getContentAsInputStream(), encoding, URL);
+
+        sink.write(ByteBuffer.wrap(page.getContentAsBytes()));
+        return document;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Document pooled() throws IOException {
+        WebPage page = WebPage.newWebPage(URL, conf);
+        try (ContentBuffer content = ContentBufferPool.DEFAULT.encode(pageSource, StandardCharsets.UTF_8)) {
+            page.setContent(content);
+        }
+
+        String encoding = encodingDetector.sniffCharacterEncoding(page.getContent());
+        Document document = Jsoup.parse(page.getContentAsInputStream(), encoding, URL);
+
+        sink.write(page.getContent().duplicate());
+        return document;
+    }
+}
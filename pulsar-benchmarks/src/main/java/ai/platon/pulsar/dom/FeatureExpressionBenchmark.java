@@ -0,0 +1,99 @@
+package ai.platon.pulsar.dom;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.dom.features.FeatureRegistry;
+import ai.platon.pulsar.dom.nodes.node.ext.NodeExtKt;
+import com.udojava.evalex.Expression;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Evaluator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the compiled feature expression with the EvalEx expression which binds every feature for every element,
+ * the query is evaluated over a large document which repeats the body of the test page.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FeatureExpressionBenchmark extends AbstractBenchmark {
+
+    private static final String RESOURCE = "/webpages/mia.com/00f3a63c4898d201df95d6015244dd63.html";
+    private static final String EXPR = "width > 400 && height > 300";
+    private static final String QUERY = "*:expr(" + EXPR + ")";
+    private static final int REPEAT = 10;
+
+    private FeaturedDocument document;
+    private Evaluator evalExEvaluator;
+
+    @Setup
+    public void setup() throws IOException {
+        Document page;
+        try (InputStream in = FeatureExpressionBenchmark.class.getResourceAsStream(RESOURCE)) {
+            page = Jsoup.parse(in, "UTF-8", "https://www.mia.com/");
+        }
+
+        String body = page.body().html();
+        StringBuilder sb = new StringBuilder("<html><body>");
+        for (int i = 0; i < REPEAT; ++i) {
+            sb.append(body);
+        }
+        sb.append("</body></html>");
+
+        document = new FeaturedDocument(Jsoup.parse(sb.toString(), "https://www.mia.com/"));
+        evalExEvaluator = new EvalExEvaluator(EXPR);
+    }
+
+    @Benchmark
+    public int compiledExpression() {
+        return document.select(QUERY).size();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int compiledExpressionConcurrently() {
+        return document.select(QUERY).size();
+    }
+
+    @Benchmark
+    public int evalExExpression() {
+        return Collector.collect(evalExEvaluator, document.unbox()).size();
+    }
+
+    /**
+     * The evaluator before the expressions are compiled, it's not thread safe
+     */
+    private static class EvalExEvaluator extends Evaluator {
+        private final String expr;
+        private final Expression expression;
+
+        EvalExEvaluator(String expr) {
+            this.expr = expr;
+            this.expression = new Expression(expr);
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            for (String name : FeatureRegistry.INSTANCE.getFeatureNames()) {
+                double v = NodeExtKt.getFeature(element, name);
+                if (Double.isNaN(v)) {
+                    return false;
+                }
+                BigDecimal value = new BigDecimal(v);
+                if (expr.contains("_" + name)) {
+                    expression.setVariable("_" + name, value);
+                } else if (expr.contains(name)) {
+                    expression.setVariable(name, value);
+                }
+            }
+
+            return expression.isBoolean() && "1".equals(expression.eval().toString());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ai.platon.pulsar.dom;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.dom.features.FeatureRegistry;
+import ai.platon.pulsar.dom.features.Level1FeatureCalculator;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.NodeFeatureStore;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static ai.platon.pulsar.dom.features.defined.DefinedFeaturesKt.*;
+
+/**
+ * Compare the feature vector per node with the columnar {@link NodeFeatureStore} per document on the test pages,
+ * both the feature calculation and the feature reading are measured.
+ *
+ * The allocation is reported by the GC profiler as gc.alloc.rate.norm, in bytes per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class NodeFeatureStoreBenchmark extends AbstractBenchmark {
+
+    private static final String RESOURCE = "/webpages/mia.com/00f3a63c4898d201df95d6015244dd63.html";
+
+    private Document vectorDocument;
+    private Document columnarDocument;
+    private int dimension;
+
+    @Setup
+    public void setup() throws IOException {
+        // registers the features
+        new Level1FeatureCalculator();
+        dimension = FeatureRegistry.INSTANCE.getDimension();
+
+        vectorDocument = parse();
+        columnarDocument = parse();
+        calculateWithVectors(vectorDocument);
+        calculateWithStore(columnarDocument);
+    }
+
+    @Benchmark
+    public Document calculatePerNodeVectors() {
+        return calculateWithVectors(vectorDocument);
+    }
+
+    @Benchmark
+    public Document calculateColumnarStore() {
+        return calculateWithStore(columnarDocument);
+    }
+
+    @Benchmark
+    public double readPerNodeVectors() {
+        return sum(vectorDocument);
+    }
+
+    @Benchmark
+    public double readColumnarStore() {
+        return sum(columnarDocument);
+    }
+
+    /**
+     * The features are written the same way as the level 1 calculator does, but only the structural
+     * features are calculated, so the difference comes from the storage
+     */
+    private Document calculateWithVectors(Document document) {
+        NodeTraversor.traverse(new StructureVisitor(null), document);
+        return document;
+    }
+
+    private Document calculateWithStore(Document document) {
+        NodeTraversor.traverse(new StructureVisitor(new NodeFeatureStore(dimension)), document);
+        return document;
+    }
+
+    private double sum(Document document) {
+        double[] sum = new double[1];
+        NodeTraversor.traverse((node, depth) -> {
+            sum[0] += node.getFeature(SEQ) + node.getFeature(C) + node.getFeature(SIB);
+        }, document);
+        return sum[0];
+    }
+
+    private Document parse() throws IOException {
+        try (InputStream in = NodeFeatureStoreBenchmark.class.getResourceAsStream(RESOURCE)) {
+            return Jsoup.parse(in, "UTF-8", "https://www.mia.com/");
+        }
+    }
+
+    private class StructureVisitor implements NodeVisitor {
+        private final NodeFeatureStore store;
+        private int sequence = 0;
+
+        StructureVisitor(NodeFeatureStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void head(Node node, int depth) {
+            if (store != null) {
+                node.bindFeatures(store, store.allocate());
+            } else {
+                node.setFeatures(new ArrayRealVector(dimension));
+            }
+
+            node.setFeature(DEP, depth);
+            node.setFeature(SEQ, sequence++);
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            Node parent = node.parent();
+            if (parent != null) {
+                parent.setFeature(C, parent.getFeature(C) + 1);
+            }
+            for (Node child : node.childNodes()) {
+                child.setFeature(SIB, node.getFeature(C));
+            }
+        }
+    }
+}
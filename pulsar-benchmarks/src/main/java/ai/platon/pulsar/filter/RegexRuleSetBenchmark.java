@@ -0,0 +1,74 @@
+package ai.platon.pulsar.filter;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.ResourceLoader;
+import ai.platon.pulsar.filter.common.JavaRegexRule;
+import ai.platon.pulsar.filter.common.RegexRule;
+import ai.platon.pulsar.filter.common.RegexRuleSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare matching the url filter rules one by one, which is what the filters did before {@link RegexRuleSet},
+ * with matching the rules in one pass by a {@link RegexRuleSet}, on the sample rules and urls.
+ *
+ * Every invocation walks through all the sample urls.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RegexRuleSetBenchmark extends AbstractBenchmark {
+
+    @Param({"Benchmarks", "Bigbit", "Ccc", "IntranetCrawling", "Tmail", "WholeWebCrawling"})
+    private String sample;
+
+    private RegexRuleSet ruleSet;
+
+    private String[] urls;
+
+    @Setup
+    public void setup() throws IOException {
+        List<RegexRule> rules = new ArrayList<>();
+        for (String line : readLines(sample + ".rules")) {
+            line = line.trim();
+            if (line.startsWith("+") || line.startsWith("-")) {
+                rules.add(new JavaRegexRule(line.charAt(0) == '+', line.substring(1)));
+            }
+        }
+        ruleSet = new RegexRuleSet(rules);
+
+        urls = readLines(sample + ".urls").stream()
+                .filter(line -> !line.isEmpty())
+                .map(line -> line.substring(1))
+                .toArray(String[]::new);
+    }
+
+    @Benchmark
+    public void matchOneByOne(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(ruleSet.firstMatchOneByOne(url, 0));
+        }
+    }
+
+    @Benchmark
+    public void matchByRuleSet(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(ruleSet.firstMatch(url, 0));
+        }
+    }
+
+    private List<String> readLines(String file) throws IOException {
+        Reader reader = Objects.requireNonNull(ResourceLoader.INSTANCE.getResourceAsReader("sample/" + file));
+        try (BufferedReader bufferedReader = new BufferedReader(reader)) {
+            return bufferedReader.lines().collect(Collectors.toList());
+        }
+    }
+}
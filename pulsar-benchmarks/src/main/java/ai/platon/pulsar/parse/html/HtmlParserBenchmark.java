@@ -0,0 +1,115 @@
+package ai.platon.pulsar.parse.html;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.config.AppConstants;
+import ai.platon.pulsar.common.config.CapabilityTypes;
+import ai.platon.pulsar.common.config.ImmutableConfig;
+import ai.platon.pulsar.common.config.MutableConfig;
+import ai.platon.pulsar.crawl.filter.CrawlFilters;
+import ai.platon.pulsar.crawl.parse.PageParser;
+import ai.platon.pulsar.crawl.parse.ParseFilters;
+import ai.platon.pulsar.crawl.parse.ParseResult;
+import ai.platon.pulsar.crawl.parse.ParserFactory;
+import ai.platon.pulsar.crawl.parse.html.HTMLMetaTags;
+import ai.platon.pulsar.crawl.parse.html.JsoupParser;
+import ai.platon.pulsar.crawl.parse.html.PrimerParser;
+import ai.platon.pulsar.crawl.signature.TextMD5Signature;
+import ai.platon.pulsar.persist.HyperlinkPersistable;
+import ai.platon.pulsar.persist.WebPage;
+import org.jsoup.helper.W3CDom;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the html parse throughput on large pages before and after the W3C DOM conversion is dropped.
+ *
+ * <ul>
+ * <li>{@code w3cConversion}: the old path, the jsoup document is converted into a W3C DOM and the meta tags
+ * are extracted from the W3C DOM</li>
+ * <li>{@code jsoupNative}: the new path, the meta tags and the links are extracted from the jsoup document</li>
+ * <li>{@code pageParser}: the end-to-end {@link PageParser#parse} with the new path, the old end-to-end time is
+ * about this one plus the difference between the two above</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HtmlParserBenchmark extends AbstractBenchmark {
+
+    /**
+     * The number of the content blocks in the page, a block is about 300 bytes
+     */
+    @Param({"1000", "10000"})
+    public int numBlocks;
+
+    private ImmutableConfig conf;
+    private URL baseURL;
+    private WebPage page;
+    private PrimerParser primerParser;
+    private PageParser pageParser;
+
+    @Setup
+    public void setup() throws MalformedURLException {
+        MutableConfig mutableConfig = new ImmutableConfig().toMutableConfig();
+        mutableConfig.setBoolean(CapabilityTypes.PARSE_HTML_COLLECT_LINKS, true);
+        conf = mutableConfig;
+        baseURL = new URL(AppConstants.EXAMPLE_URL);
+
+        page = WebPage.newWebPage(AppConstants.EXAMPLE_URL, conf.toVolatileConfig());
+        page.setLocation(AppConstants.EXAMPLE_URL);
+        page.setContent(generateHtml(numBlocks).getBytes(StandardCharsets.UTF_8));
+        page.setContentType("text/html");
+        page.setEncoding("utf-8");
+
+        primerParser = new PrimerParser(conf);
+        HtmlParser htmlParser = new HtmlParser(new ParseFilters(Collections.emptyList(), conf), conf);
+        ParserFactory parserFactory = new ParserFactory(Collections.singletonMap("text/html",
+                Collections.singletonList(htmlParser)));
+        pageParser = new PageParser(parserFactory, conf, new CrawlFilters(conf), new TextMD5Signature(), null);
+    }
+
+    @Benchmark
+    public HTMLMetaTags w3cConversion() {
+        Document document = new JsoupParser(page, conf).parse().getDocument();
+        org.w3c.dom.Document w3cDocument = new W3CDom().fromJsoup(document);
+        return new HTMLMetaTags(w3cDocument, baseURL);
+    }
+
+    @Benchmark
+    public Set<HyperlinkPersistable> jsoupNative() {
+        Document document = new JsoupParser(page, conf).parse().getDocument();
+        HTMLMetaTags metaTags = new HTMLMetaTags(document, baseURL);
+        return primerParser.collectLinks(baseURL, new HashSet<>(), document, metaTags.getNoFollow() ? 0 : 200);
+    }
+
+    @Benchmark
+    public ParseResult pageParser() {
+        return pageParser.parse(page);
+    }
+
+    private static String generateHtml(int numBlocks) {
+        StringBuilder sb = new StringBuilder(numBlocks * 320);
+        sb.append("<html><head><title>A large page</title>")
+                .append("<meta name=\"keywords\" content=\"large, page, benchmark\">")
+                .append("<meta name=\"description\" content=\"A large page to benchmark the html parser\">")
+                .append("<meta name=\"robots\" content=\"index,follow\">")
+                .append("</head><body>");
+        for (int i = 0; i < numBlocks; ++i) {
+            sb.append("<div class=\"item\" id=\"item-").append(i).append("\">")
+                    .append("<h3><a href=\"/item/").append(i).append("\">Item ").append(i).append("</a></h3>")
+                    .append("<img src=\"/images/").append(i).append(".jpg\" alt=\"item\">")
+                    .append("<p>The description of the item, with <b>some</b> <i>inline</i> elements and a ")
+                    .append("<a href=\"/item/").append(i).append("/reviews\">link to the reviews</a>.</p>")
+                    .append("<ul><li>feature one</li><li>feature two</li></ul></div>");
+        }
+        sb.append("</body></html>");
+        return sb.toString();
+    }
+}
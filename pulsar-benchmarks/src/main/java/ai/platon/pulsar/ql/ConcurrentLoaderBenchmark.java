@@ -0,0 +1,69 @@
+package ai.platon.pulsar.ql;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.common.urls.NormUrl;
+import ai.platon.pulsar.persist.WebPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compare loading an array of urls in an X-SQL query one by one, which is what loadAll and loadAndGetLinks did,
+ * with loading by {@link ConcurrentLoader}. The array has duplicated urls, and the pages are served by a local
+ * {@link MockSite} with a fixed latency, the loads per query are counted by the site and printed after every
+ * iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentLoaderBenchmark extends AbstractBenchmark {
+
+    private static final int NUM_DISTINCT_URLS = 50;
+
+    private MockSite site;
+    private ConcurrentLoader loader;
+    private List<NormUrl> normUrls;
+    private final AtomicLong numQueries = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        site = new MockSite(Duration.ofMillis(10));
+        loader = site.newLoader(ConcurrentLoader.DEFAULT_PARALLELISM);
+
+        List<String> urls = new ArrayList<>(site.urls(NUM_DISTINCT_URLS));
+        // every url appears twice in the query
+        urls.addAll(site.urls(NUM_DISTINCT_URLS));
+        normUrls = site.normalize(urls);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long queries = Math.max(1, numQueries.getAndSet(0));
+        System.out.printf("%nLoads per query: %d%n", site.getNumRequests().getAndSet(0) / queries);
+    }
+
+    @TearDown
+    public void tearDown() {
+        site.close();
+    }
+
+    @Benchmark
+    public List<WebPage> oneByOne() {
+        List<WebPage> pages = new ArrayList<>();
+        for (NormUrl normUrl : normUrls) {
+            pages.add(site.fetch(normUrl));
+        }
+        numQueries.incrementAndGet();
+        return pages;
+    }
+
+    @Benchmark
+    public List<WebPage> concurrent() {
+        List<WebPage> pages = loader.loadAll(normUrls);
+        numQueries.incrementAndGet();
+        return pages;
+    }
+}
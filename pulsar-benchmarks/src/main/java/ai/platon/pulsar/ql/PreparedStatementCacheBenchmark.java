@@ -0,0 +1,69 @@
+package ai.platon.pulsar.ql;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the parse and plan overhead of X-SQL requests which differ only in urls, executed with a new statement
+ * every time, which is what the scrape api did, and with the statements prepared once by
+ * {@link PreparedStatementCache}. The query runs on an in-memory H2 database and returns one row, so the latency is
+ * dominated by the parse and plan of the sql.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreparedStatementCacheBenchmark extends AbstractBenchmark {
+
+    private static final int NUM_URLS = 1000;
+    private static final String SQL_TEMPLATE = "SELECT LENGTH(U) AS LEN, LOWER(U) AS URL, X" +
+            " FROM (SELECT '%s' AS U) JOIN SYSTEM_RANGE(1, 1) ON LENGTH(U) > 0" +
+            " WHERE U LIKE 'https://%%' ORDER BY X";
+
+    private Connection connection;
+    private PreparedStatementCache cache;
+    private String[] sqls;
+    private int next;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:prepared_statement_cache_benchmark");
+        cache = new PreparedStatementCache();
+        sqls = new String[NUM_URLS];
+        for (int i = 0; i < NUM_URLS; ++i) {
+            sqls[i] = String.format(SQL_TEMPLATE, "https://www.example.com/item/" + i + " -i 1d -parse");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf("%nStatement cache | %s%n", cache);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        cache.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public int statement() throws SQLException {
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = statement.executeQuery(nextSql())) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Benchmark
+    public int cachedStatement() throws SQLException {
+        try (ResultSet rs = cache.executeQuery(connection, nextSql())) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private String nextSql() {
+        next = (next + 1) % NUM_URLS;
+        return sqls[next];
+    }
+}
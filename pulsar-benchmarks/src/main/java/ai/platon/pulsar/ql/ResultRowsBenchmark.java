@@ -0,0 +1,75 @@
+package ai.platon.pulsar.ql;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.ql.h2.utils.ResultSetUtils;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the copy path of the scrape api, which copies the result set with
+ * {@link ResultSetUtils#copyResultSet} and then converts the copy to maps, with reading the result set forward only
+ * by {@link ResultRows}. A query returns 10k rows from an in-memory H2 database.
+ *
+ * The latency is the average time of a query, the allocation is reported by the GC profiler as
+ * gc.alloc.rate.norm, in bytes per query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResultRowsBenchmark extends AbstractBenchmark {
+
+    private static final int NUM_ROWS = 10_000;
+    private static final String SQL = "SELECT X AS ID, 'item-' || X AS NAME, X * 1.5 AS PRICE, X % 2 = 0 AS EVEN" +
+            " FROM SYSTEM_RANGE(1, " + NUM_ROWS + ")";
+
+    private Connection connection;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:result_rows_benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> copyToEntities() throws SQLException {
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = statement.executeQuery(SQL)) {
+            return ResultSetUtils.INSTANCE.getEntitiesFromResultSet(ResultSetUtils.INSTANCE.copyResultSet(rs, NUM_ROWS));
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> streamToEntities() throws SQLException {
+        try (ResultSet rs = ResultRows.executeQuery(connection, SQL)) {
+            return ResultRows.toEntities(rs, NUM_ROWS);
+        }
+    }
+
+    @Benchmark
+    public int copyToJson() throws SQLException {
+        List<Map<String, Object>> entities = copyToEntities();
+        String json = new GsonBuilder().serializeNulls().create().toJson(entities);
+        NullWriter.NULL_WRITER.write(json);
+        return json.length();
+    }
+
+    @Benchmark
+    public int streamToJson() throws SQLException {
+        try (ResultSet rs = ResultRows.executeQuery(connection, SQL)) {
+            return ResultRows.writeJson(rs, NullWriter.NULL_WRITER);
+        }
+    }
+}
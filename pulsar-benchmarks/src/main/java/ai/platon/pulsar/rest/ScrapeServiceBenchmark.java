@@ -0,0 +1,94 @@
+package ai.platon.pulsar.rest;
+
+import ai.platon.pulsar.benchmarks.AbstractBenchmark;
+import ai.platon.pulsar.boot.autoconfigure.pulsar.test.PulsarTestContextInitializer;
+import ai.platon.pulsar.rest.api.WebApplication;
+import ai.platon.pulsar.rest.api.entities.ScrapeRequest;
+import ai.platon.pulsar.rest.api.entities.ScrapeResponse;
+import ai.platon.pulsar.rest.api.service.ScrapeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Compare the threads used by 1k concurrent scrape tasks, submitted by {@link ScrapeService#executeQuery}, which
+ * holds a thread until the task is done, just like a servlet thread of the blocking api, and by
+ * {@link ScrapeService#submitAsync}, which completes the tasks in the crawl loop. The peak number of live threads
+ * is printed after every invocation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ScrapeServiceBenchmark extends AbstractBenchmark {
+
+    private static final int NUM_TASKS = 1000;
+    private static final ScrapeRequest REQUEST = new ScrapeRequest("select 1+1 as sum");
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private ConfigurableApplicationContext applicationContext;
+    private ScrapeService service;
+
+    @Setup
+    public void setup() {
+        applicationContext = new SpringApplicationBuilder(WebApplication.class)
+                .initializers(new PulsarTestContextInitializer())
+                .web(WebApplicationType.NONE)
+                .run();
+        service = applicationContext.getBean(ScrapeService.class);
+        service.setMaxPendingJobs(NUM_TASKS);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetPeakThreads() {
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Invocation)
+    public void report() {
+        System.out.printf("%nPeak threads: %d, pending tasks: %d%n", threads.getPeakThreadCount(), service.getPendingJobs());
+    }
+
+    @TearDown
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public List<ScrapeResponse> blocking() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        List<Future<ScrapeResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            futures.add(executor.submit(() -> service.executeQuery(REQUEST)));
+        }
+
+        List<ScrapeResponse> responses = new ArrayList<>();
+        for (Future<ScrapeResponse> future : futures) {
+            responses.add(future.get());
+        }
+        executor.shutdown();
+        return responses;
+    }
+
+    @Benchmark
+    public List<ScrapeResponse> async() throws Exception {
+        List<CompletableFuture<ScrapeResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            futures.add(service.submitAsync(REQUEST, null));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        List<ScrapeResponse> responses = new ArrayList<>();
+        for (CompletableFuture<ScrapeResponse> future : futures) {
+            responses.add(future.get());
+        }
+        return responses;
+    }
+}
@@ -201,6 +201,12 @@ public class PulsarParams extends Params {
 
     public static final String VAR_LOAD_OPTIONS = "LOAD_OPTIONS";
 
+    /**
+     * The document captured by the browser, it's built from a DOM snapshot and is used by the parser
+     * instead of parsing the page content again
+     * */
+    public static final String VAR_CAPTURED_DOCUMENT = "CAPTURED_DOCUMENT";
+
     /**
      * <p>Constructor for PulsarParams.</p>
      */
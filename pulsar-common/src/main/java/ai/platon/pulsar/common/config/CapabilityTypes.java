@@ -180,6 +180,14 @@ public interface CapabilityTypes {
     String STORAGE_DATUM_EXPIRES = "storage.datum.expires";
     /** Constant <code>STORAGE_EMBED_MONGO="storage.embed.mongo"</code> */
     String STORAGE_EMBED_MONGO = "storage.embed.mongo";
+    /** Constant <code>STORAGE_WRITE_BEHIND_ENABLED="storage.write.behind.enabled"</code> */
+    String STORAGE_WRITE_BEHIND_ENABLED = "storage.write.behind.enabled";
+    /** Constant <code>STORAGE_WRITE_BEHIND_CAPACITY="storage.write.behind.capacity"</code> */
+    String STORAGE_WRITE_BEHIND_CAPACITY = "storage.write.behind.capacity";
+    /** Constant <code>STORAGE_WRITE_BEHIND_BATCH_SIZE="storage.write.behind.batch.size"</code> */
+    String STORAGE_WRITE_BEHIND_BATCH_SIZE = "storage.write.behind.batch.size";
+    /** Constant <code>STORAGE_WRITE_BEHIND_INTERVAL="storage.write.behind.interval"</code> */
+    String STORAGE_WRITE_BEHIND_INTERVAL = "storage.write.behind.interval";
 
     /** Constant <code>GORA_MONGODB_SERVERS="gora.mongodb.servers"</code> */
     String GORA_MONGODB_SERVERS = "gora.mongodb.servers";
@@ -246,6 +254,18 @@ public interface CapabilityTypes {
     String FETCH_QUEUE_USE_HOST_SETTINGS = "fetch.queue.use.host.settings";
     /** Constant <code>FETCH_QUEUE_RETUNE_INTERVAL="fetch.pending.queue.check.time"</code> */
     String FETCH_QUEUE_RETUNE_INTERVAL = "fetch.pending.queue.check.time";
+    /** Constant <code>FETCH_CACHE_HISTORY_CAPACITY="fetch.cache.history.capacity"</code> */
+    String FETCH_CACHE_HISTORY_CAPACITY = "fetch.cache.history.capacity";
+    /** Constant <code>FETCH_CACHE_HISTORY_FPP="fetch.cache.history.fpp"</code> */
+    String FETCH_CACHE_HISTORY_FPP = "fetch.cache.history.fpp";
+    /** Constant <code>SEEN_URLS_EXPECTED_INSERTIONS="seen.urls.expected.insertions"</code> */
+    String SEEN_URLS_EXPECTED_INSERTIONS = "seen.urls.expected.insertions";
+    /** Constant <code>SEEN_URLS_FPP="seen.urls.fpp"</code> */
+    String SEEN_URLS_FPP = "seen.urls.fpp";
+    /** Constant <code>SEEN_URLS_PATH="seen.urls.path"</code> */
+    String SEEN_URLS_PATH = "seen.urls.path";
+    /** Constant <code>SEEN_URLS_FILTER_ENABLED="seen.urls.filter.enabled"</code> */
+    String SEEN_URLS_FILTER_ENABLED = "seen.urls.filter.enabled";
     /** Constant <code>FETCH_FEEDER_INIT_BATCH_SIZE="fetch.feeder.init.batch.size"</code> */
     String FETCH_FEEDER_INIT_BATCH_SIZE = "fetch.feeder.init.batch.size";
     /** Constant <code>FETCH_THREADS_PER_POOL="fetch.threads.per.pool"</code> */
@@ -372,6 +392,11 @@ public interface CapabilityTypes {
     String BROWSER_EMULATOR_EVENT_HANDLER = "browser.emulate.event.handler";
     /** Constant <code>BROWSER_ENABLE_URL_BLOCKING="browser.enable.url.blocking"</code> */
     String BROWSER_ENABLE_URL_BLOCKING = "browser.enable.url.blocking";
+    /**
+     * Capture the document by DOMSnapshot.captureSnapshot instead of serializing document.documentElement.outerHTML,
+     * the document and the node rectangles are built from the snapshot directly
+     * */
+    String BROWSER_DOM_SNAPSHOT_ENABLED = "browser.dom.snapshot.enabled";
     /** Constant <code>BROWSER_CHROME_PATH="browser.chrome.path"</code> */
     String BROWSER_CHROME_PATH = "browser.chrome.path";
     /** Constant <code>BROWSER_DATA_DIR="browser.data.dir"</code> */
@@ -476,10 +501,14 @@ public interface CapabilityTypes {
     String PARSE_MAX_LINKS_PER_PAGE = "parse.max.links";
     /** Constant <code>PARSE_IGNORE_EXTERNAL_LINKS="parse.ignore.external.links"</code> */
     String PARSE_IGNORE_EXTERNAL_LINKS = "parse.ignore.external.links";
+    /** Constant <code>PARSE_FILTER_LINKS="parse.filter.links"</code> */
+    String PARSE_FILTER_LINKS = "parse.filter.links";
     /** Constant <code>PARSE_SKIP_TRUNCATED="parser.skip.truncated"</code> */
     String PARSE_SKIP_TRUNCATED = "parser.skip.truncated";
     /** Constant <code>PARSE_HTML_IMPL="parser.html.impl"</code> */
     String PARSE_HTML_IMPL = "parser.html.impl";
+    /** Constant <code>PARSE_HTML_COLLECT_LINKS="parser.html.collect.links"</code> */
+    String PARSE_HTML_COLLECT_LINKS = "parser.html.collect.links";
     /** Constant <code>PARSE_SUPPORT_ALL_CHARSETS="parser.support.all.charsets"</code> */
     String PARSE_SUPPORT_ALL_CHARSETS = "parser.support.all.charsets";
     /** Constant <code>PARSE_SUPPORTED_CHARSETS="parser.supported.charsets"</code> */
@@ -549,12 +578,24 @@ public interface CapabilityTypes {
     String ENABLE_DEFAULT_DATA_COLLECTORS = "crawl.create.default.data.collectors";
     /**
      * The size of global page cache
+     * @deprecated The global page cache is bounded by memory, use GLOBAL_PAGE_CACHE_MEMORY instead
      * */
+    @Deprecated
     String GLOBAL_PAGE_CACHE_SIZE = "global.page.cache.size";
     /**
      * The size of global document cache
+     * @deprecated The global document cache is bounded by memory, use GLOBAL_DOCUMENT_CACHE_MEMORY instead
      * */
+    @Deprecated
     String GLOBAL_DOCUMENT_CACHE_SIZE = "global.document.cache.size";
+    /**
+     * The max estimated memory in bytes held by the global page cache
+     * */
+    String GLOBAL_PAGE_CACHE_MEMORY = "global.page.cache.memory";
+    /**
+     * The max estimated memory in bytes held by the global document cache
+     * */
+    String GLOBAL_DOCUMENT_CACHE_MEMORY = "global.document.cache.memory";
 
     /**
      * Stat
@@ -651,4 +692,26 @@ public interface CapabilityTypes {
     // H2
     /** Constant <code>H2_SESSION_FACTORY_CLASS="h2.sessionFactory"</code> */
     String H2_SESSION_FACTORY_CLASS = "h2.sessionFactory";
+    /** Constant <code>H2_LOAD_PARALLELISM="h2.load.parallelism"</code> */
+    String H2_LOAD_PARALLELISM = "h2.load.parallelism";
+    /** Constant <code>H2_STATEMENT_CACHE_CAPACITY="h2.statement.cache.capacity"</code> */
+    String H2_STATEMENT_CACHE_CAPACITY = "h2.statement.cache.capacity";
+    /** Constant <code>H2_CONNECTION_POOL_MAX_SIZE="h2.connection.pool.max.size"</code> */
+    String H2_CONNECTION_POOL_MAX_SIZE = "h2.connection.pool.max.size";
+    /** Constant <code>H2_CONNECTION_IDLE_TIMEOUT="h2.connection.idle.timeout"</code> */
+    String H2_CONNECTION_IDLE_TIMEOUT = "h2.connection.idle.timeout";
+    /** Constant <code>H2_CONNECTION_ACQUIRE_TIMEOUT="h2.connection.acquire.timeout"</code> */
+    String H2_CONNECTION_ACQUIRE_TIMEOUT = "h2.connection.acquire.timeout";
+
+    // Scrape API
+    /** Constant <code>SCRAPE_API_MAX_PENDING_JOBS="scrape.api.max.pending.jobs"</code> */
+    String SCRAPE_API_MAX_PENDING_JOBS = "scrape.api.max.pending.jobs";
+    /** Constant <code>SCRAPE_API_JOB_TIMEOUT="scrape.api.job.timeout"</code> */
+    String SCRAPE_API_JOB_TIMEOUT = "scrape.api.job.timeout";
+    /** Constant <code>SCRAPE_API_RESPONSE_CAPACITY="scrape.api.response.capacity"</code> */
+    String SCRAPE_API_RESPONSE_CAPACITY = "scrape.api.response.capacity";
+    /** Constant <code>SCRAPE_API_RESPONSE_TTL="scrape.api.response.ttl"</code> */
+    String SCRAPE_API_RESPONSE_TTL = "scrape.api.response.ttl";
+    /** Constant <code>SCRAPE_API_MAX_ROWS="scrape.api.max.rows"</code> */
+    String SCRAPE_API_MAX_ROWS = "scrape.api.max.rows";
 }
@@ -0,0 +1,69 @@
+package ai.platon.pulsar.common
+
+import org.slf4j.LoggerFactory
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryNotificationInfo
+import java.lang.management.MemoryType
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.management.NotificationEmitter
+import javax.management.NotificationListener
+
+/**
+ * Notify listeners when the heap is under pressure.
+ *
+ * A collection usage threshold is set on the tenured heap pools, the JVM notifies us if the memory used
+ * after a garbage collection still exceeds the threshold, which means the live objects are too many,
+ * the listeners should release some memory, for example, shrink caches.
+ * */
+object MemoryPressureMonitor {
+    private val logger = LoggerFactory.getLogger(MemoryPressureMonitor::class.java)
+
+    /**
+     * The ratio of the max pool size after which we think the heap is under pressure
+     * */
+    const val THRESHOLD_RATIO = 0.75
+
+    private val listeners = CopyOnWriteArrayList<() -> Unit>()
+    private val installed = AtomicBoolean()
+
+    fun addListener(listener: () -> Unit) {
+        install()
+        listeners.add(listener)
+    }
+
+    fun removeListener(listener: () -> Unit) {
+        listeners.remove(listener)
+    }
+
+    private fun install() {
+        if (!installed.compareAndSet(false, true)) {
+            return
+        }
+
+        val pools = ManagementFactory.getMemoryPoolMXBeans()
+            .filter { it.type == MemoryType.HEAP && it.isCollectionUsageThresholdSupported }
+            .filter { it.usage.max > 0 }
+        pools.forEach { it.collectionUsageThreshold = (it.usage.max * THRESHOLD_RATIO).toLong() }
+
+        val emitter = ManagementFactory.getMemoryMXBean() as? NotificationEmitter ?: return
+        emitter.addNotificationListener(NotificationListener { notification, _ ->
+            if (notification.type == MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED) {
+                notifyListeners()
+            }
+        }, null, null)
+
+        logger.info("Memory pressure monitor is installed on pools: {}", pools.joinToString { it.name })
+    }
+
+    private fun notifyListeners() {
+        logger.info("Heap is under pressure, notify {} listeners", listeners.size)
+        listeners.forEach {
+            try {
+                it()
+            } catch (e: Exception) {
+                logger.warn("Failed to handle memory pressure", e)
+            }
+        }
+    }
+}
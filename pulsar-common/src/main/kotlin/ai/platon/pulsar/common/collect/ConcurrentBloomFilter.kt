@@ -0,0 +1,283 @@
+package ai.platon.pulsar.common.collect
+
+import ai.platon.pulsar.common.collect.ConcurrentCountingBloomFilter.Companion.hash
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.roundToInt
+
+/**
+ * A concurrent bloom filter over 64-bit fingerprints, it tells if an item, usually an url, is seen before.
+ *
+ * An item which is put into the filter is always reported as seen, an item which is never put is reported as seen
+ * with a probability about [fpp] when no more than [expectedInsertions] items are put. The memory is fixed,
+ * about `-expectedInsertions * ln(fpp) / ln(2)^2 / 8` bytes, for example, 171 MiB for 100 million insertions
+ * with fpp 0.001.
+ *
+ * The bits are split into [numShards] shards, an item is located in a single shard by its fingerprint. A shard
+ * is either in memory and updated lock free, or mapped to a region of a file and updated under the lock of the
+ * shard, so the filter survives a restart, see [open].
+ *
+ * The fingerprint of an item is [ConcurrentCountingBloomFilter.hash].
+ * */
+class ConcurrentBloomFilter private constructor(
+    val expectedInsertions: Long,
+    val fpp: Double,
+    /**
+     * The number of shards, it's a power of 2
+     * */
+    val numShards: Int,
+    /**
+     * The file the filter is mapped to, or null if the filter is in memory
+     * */
+    val path: Path?
+) : AutoCloseable {
+    companion object {
+        const val DEFAULT_EXPECTED_INSERTIONS = 10_000_000L
+        const val DEFAULT_FPP = 0.001
+        const val DEFAULT_NUM_SHARDS = 16
+        /**
+         * The max size of a shard in bytes, a shard is mapped as a single buffer
+         * */
+        const val MAX_SHARD_BYTES = 1 shl 30
+
+        private const val MAGIC = 0x50424631 // "PBF1"
+        private const val HEADER_BYTES = 64
+        private const val COUNT_POSITION = 40
+
+        /**
+         * Create a bloom filter in memory
+         * */
+        @JvmStatic
+        fun create(
+            expectedInsertions: Long = DEFAULT_EXPECTED_INSERTIONS,
+            fpp: Double = DEFAULT_FPP,
+            numShards: Int = DEFAULT_NUM_SHARDS
+        ): ConcurrentBloomFilter {
+            return ConcurrentBloomFilter(expectedInsertions, fpp, numShards, null)
+        }
+
+        /**
+         * Open the bloom filter mapped to the file, the file is created if it does not exist. If the file exists,
+         * the parameters in the file are used and the given ones are ignored.
+         *
+         * @throws IllegalArgumentException if the file exists but it's not a bloom filter file
+         * */
+        @JvmStatic
+        fun open(
+            path: Path,
+            expectedInsertions: Long = DEFAULT_EXPECTED_INSERTIONS,
+            fpp: Double = DEFAULT_FPP,
+            numShards: Int = DEFAULT_NUM_SHARDS
+        ): ConcurrentBloomFilter {
+            if (Files.exists(path) && Files.size(path) > 0) {
+                require(Files.size(path) >= HEADER_BYTES) { "Not a bloom filter file | $path" }
+                FileChannel.open(path, StandardOpenOption.READ).use {
+                    val header = it.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES.toLong())
+                    require(header.getInt(0) == MAGIC) { "Not a bloom filter file | $path" }
+                    return ConcurrentBloomFilter(header.getLong(16), header.getDouble(24), header.getInt(4), path)
+                }
+            }
+
+            Files.createDirectories(path.toAbsolutePath().parent)
+            return ConcurrentBloomFilter(expectedInsertions, fpp, numShards, path)
+        }
+    }
+
+    /**
+     * The number of hash functions
+     * */
+    val numHashFunctions: Int
+    /**
+     * The number of bits in a shard
+     * */
+    val shardBits: Long
+    /**
+     * The number of bits
+     * */
+    val numBits get() = numShards * shardBits
+    /**
+     * The number of the items put into the filter, an item is counted only once, and an item is not counted
+     * if it's a false positive
+     * */
+    val approximateCount get() = count.get()
+
+    private val wordsPerShard: Int
+    private val shardShift: Int
+    private val count = AtomicLong()
+    private val header: MappedByteBuffer?
+    private val shards: Array<Shard>
+
+    init {
+        require(expectedInsertions > 0) { "Expected insertions must be positive" }
+        require(fpp > 0 && fpp < 1) { "False positive probability must be in (0, 1)" }
+        require(numShards > 0 && (numShards and (numShards - 1)) == 0) { "The number of shards must be a power of 2" }
+
+        val ln2 = ln(2.0)
+        val bits = ceil(-expectedInsertions * ln(fpp) / (ln2 * ln2))
+        numHashFunctions = (bits / expectedInsertions * ln2).roundToInt().coerceIn(1, 16)
+        val words = ceil(bits / numShards / Long.SIZE_BITS).toLong().coerceAtLeast(1)
+        require(words * Long.SIZE_BYTES <= MAX_SHARD_BYTES) { "Too many bits in a shard, use more shards" }
+        wordsPerShard = words.toInt()
+        shardBits = words * Long.SIZE_BITS
+        shardShift = Long.SIZE_BITS - Integer.numberOfTrailingZeros(numShards)
+
+        if (path == null) {
+            header = null
+            shards = Array(numShards) { HeapShard(wordsPerShard) }
+        } else {
+            val shardBytes = wordsPerShard.toLong() * Long.SIZE_BYTES
+            val options = arrayOf(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            val buffers = FileChannel.open(path, *options).use { channel ->
+                Array(numShards + 1) { i ->
+                    if (i == 0) channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES.toLong())
+                    else channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + (i - 1) * shardBytes, shardBytes)
+                }
+            }
+
+            header = buffers[0]
+            header.putInt(4, numShards)
+            header.putInt(8, numHashFunctions)
+            header.putLong(16, expectedInsertions)
+            header.putDouble(24, fpp)
+            count.set(header.getLong(COUNT_POSITION))
+            // the magic is written at last, so a file interrupted while it's created is not recognized
+            header.putInt(0, MAGIC)
+            shards = Array(numShards) { MappedShard(buffers[it + 1]) }
+        }
+    }
+
+    /**
+     * Check if the item with the given fingerprint might be put before
+     * */
+    fun mightContain(fingerprint: Long): Boolean {
+        val shard = shards[shardOf(fingerprint)]
+        var combined = fingerprint
+        val step = stepOf(fingerprint)
+        for (i in 0 until numHashFunctions) {
+            val bit = (combined and Long.MAX_VALUE) % shardBits
+            if ((shard.get((bit ushr 6).toInt()) and (1L shl bit.toInt())) == 0L) {
+                return false
+            }
+            combined += step
+        }
+        return true
+    }
+
+    fun mightContain(item: Any) = mightContain(hash(item))
+
+    /**
+     * Put the item with the given fingerprint
+     *
+     * @return true if the item is not seen before, false if it might be seen before
+     * */
+    fun put(fingerprint: Long): Boolean {
+        val shard = shards[shardOf(fingerprint)]
+        var combined = fingerprint
+        val step = stepOf(fingerprint)
+        var changed = false
+        for (i in 0 until numHashFunctions) {
+            val bit = (combined and Long.MAX_VALUE) % shardBits
+            if (shard.setBits((bit ushr 6).toInt(), 1L shl bit.toInt())) {
+                changed = true
+            }
+            combined += step
+        }
+
+        if (changed) {
+            count.incrementAndGet()
+        }
+
+        return changed
+    }
+
+    fun put(item: Any) = put(hash(item))
+
+    /**
+     * Force the changes to the storage device if the filter is mapped to a file
+     * */
+    fun flush() {
+        val h = header ?: return
+        synchronized(h) {
+            h.putLong(COUNT_POSITION, count.get())
+            h.force()
+        }
+        shards.forEach { it.flush() }
+    }
+
+    override fun close() {
+        flush()
+    }
+
+    /**
+     * The shard is chosen by the high bits of the fingerprint mixed by the golden ratio
+     * */
+    private fun shardOf(fingerprint: Long): Int {
+        return if (numShards == 1) 0 else ((fingerprint * -0x61c8864680b583ebL) ushr shardShift).toInt()
+    }
+
+    /**
+     * The step of the double hashing scheme of Kirsch and Mitzenmacher, it's odd so it never be zero
+     * */
+    private fun stepOf(fingerprint: Long) = ((fingerprint ushr 32) or (fingerprint shl 32)) or 1L
+
+    private interface Shard {
+        fun get(wordIndex: Int): Long
+
+        /**
+         * Set the bits of the mask in the word
+         *
+         * @return true if any bit is changed
+         * */
+        fun setBits(wordIndex: Int, mask: Long): Boolean
+
+        fun flush() {}
+    }
+
+    private class HeapShard(numWords: Int) : Shard {
+        private val words = AtomicLongArray(numWords)
+
+        override fun get(wordIndex: Int) = words.get(wordIndex)
+
+        override fun setBits(wordIndex: Int, mask: Long): Boolean {
+            while (true) {
+                val word = words.get(wordIndex)
+                if ((word and mask) == mask) {
+                    return false
+                }
+                if (words.compareAndSet(wordIndex, word, word or mask)) {
+                    return true
+                }
+            }
+        }
+    }
+
+    /**
+     * A shard mapped to a region of a file, bits are only set and never cleared, so a read without
+     * the lock sees at least the bits set before the last write it observes
+     * */
+    private class MappedShard(private val buffer: MappedByteBuffer) : Shard {
+        override fun get(wordIndex: Int) = buffer.getLong(wordIndex shl 3)
+
+        @Synchronized
+        override fun setBits(wordIndex: Int, mask: Long): Boolean {
+            val word = buffer.getLong(wordIndex shl 3)
+            if ((word and mask) == mask) {
+                return false
+            }
+            buffer.putLong(wordIndex shl 3, word or mask)
+            return true
+        }
+
+        @Synchronized
+        override fun flush() {
+            buffer.force()
+        }
+    }
+}
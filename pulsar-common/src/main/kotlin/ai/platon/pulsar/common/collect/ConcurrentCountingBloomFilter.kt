@@ -0,0 +1,212 @@
+package ai.platon.pulsar.common.collect
+
+import ai.platon.pulsar.common.urls.UrlAware
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.roundToInt
+
+/**
+ * A lock free counting bloom filter with 4-bit counters, it estimates how many times an item is added.
+ *
+ * The estimation never underestimates, it overestimates with a probability about [fpp] when no more than
+ * [expectedInsertions] items are added. The memory is fixed, about `-expectedInsertions * ln(fpp) / ln(2)^2` bytes,
+ * for example, 14 MiB for one million insertions with fpp 0.001, and it's allocated on first use.
+ *
+ * To keep the error bounded in a long running process, the filter ages in two generations: the additions go to the
+ * current generation, and every time another [expectedInsertions] items are added, the current generation is merged
+ * into the previous one after the previous one is halved. The count of an item is the sum of both generations,
+ * so an item added once is remembered for at least [expectedInsertions] and at most 2 * [expectedInsertions]
+ * later insertions, and the count of an item added frequently decays slowly.
+ *
+ * The counters are updated conservatively, only the minimal counters of the item are increased,
+ * and a counter saturates at [MAX_COUNT].
+ * */
+class ConcurrentCountingBloomFilter(
+    val expectedInsertions: Int = DEFAULT_EXPECTED_INSERTIONS,
+    val fpp: Double = DEFAULT_FPP
+) {
+    companion object {
+        const val DEFAULT_EXPECTED_INSERTIONS = 1_000_000
+        const val DEFAULT_FPP = 0.001
+        const val MAX_COUNT = 15
+
+        private const val COUNTERS_PER_WORD = 16
+        private const val HALVE_MASK = 0x7777777777777777L
+        private val saltSequencer = AtomicLong()
+
+        /**
+         * A salt to xor with the hashes, so the items of several owners sharing a filter are counted separately
+         * */
+        fun nextSalt() = saltSequencer.incrementAndGet() * -0x61c8864680b583ebL
+
+        /**
+         * A 64-bit hash of the item, a [UrlAware] is identified by it's url
+         * */
+        fun hash(item: Any): Long {
+            return when (item) {
+                is UrlAware -> hash(item.url)
+                is CharSequence -> hash(item)
+                else -> mix(item.hashCode().toLong())
+            }
+        }
+
+        /**
+         * FNV-1a over the chars, then mixed by the finalizer of murmur3
+         * */
+        fun hash(s: CharSequence): Long {
+            var h = -0x340d631b7bdddcdbL
+            for (i in 0 until s.length) {
+                h = (h xor s[i].toLong()) * 0x100000001b3L
+            }
+            return mix(h)
+        }
+
+        private fun mix(x: Long): Long {
+            var h = x
+            h = (h xor (h ushr 33)) * -0xae502812aa7333L
+            h = (h xor (h ushr 33)) * -0x3b314601e57a13adL
+            return h xor (h ushr 33)
+        }
+    }
+
+    /**
+     * The number of hash functions, each function has it's own row of counters
+     * */
+    val numHashFunctions: Int
+    /**
+     * The number of counters in a row
+     * */
+    val rowSize: Int
+    /**
+     * The number of counters of a generation
+     * */
+    val numCounters get() = numHashFunctions.toLong() * rowSize
+
+    private val wordsPerRow: Int
+    private val current by lazy { AtomicLongArray(numHashFunctions * wordsPerRow) }
+    private val previous by lazy { AtomicLongArray(numHashFunctions * wordsPerRow) }
+    private val additions = AtomicLong()
+
+    init {
+        require(expectedInsertions > 0) { "Expected insertions must be positive" }
+        require(fpp > 0 && fpp < 1) { "False positive probability must be in (0, 1)" }
+
+        val ln2 = ln(2.0)
+        val counters = ceil(-expectedInsertions * ln(fpp) / (ln2 * ln2))
+        numHashFunctions = (counters / expectedInsertions * ln2).roundToInt().coerceIn(1, 16)
+        wordsPerRow = ceil(counters / numHashFunctions / COUNTERS_PER_WORD).toInt().coerceAtLeast(1)
+        rowSize = wordsPerRow * COUNTERS_PER_WORD
+    }
+
+    /**
+     * The estimated count of the item with the given hash
+     * */
+    fun count(hash: Long): Int {
+        var min = MAX_COUNT
+        for (i in 0 until numHashFunctions) {
+            val c = counterAt(indexOf(hash, i))
+            if (c < min) {
+                min = c
+            }
+        }
+        return min
+    }
+
+    /**
+     * Add the item with the given hash
+     *
+     * @return The estimated count after the item is added
+     * */
+    fun add(hash: Long): Int {
+        val min = count(hash)
+        if (min < MAX_COUNT) {
+            for (i in 0 until numHashFunctions) {
+                incrementIfEquals(indexOf(hash, i), min)
+            }
+        }
+
+        if (additions.incrementAndGet() % expectedInsertions == 0L) {
+            decay()
+        }
+
+        return (min + 1).coerceAtMost(MAX_COUNT)
+    }
+
+    /**
+     * Halve the previous generation and merge the current generation into it
+     * */
+    fun decay() {
+        for (i in 0 until current.length()) {
+            val word = current.get(i)
+            var prev = previous.get(i)
+            while (!previous.compareAndSet(i, prev, addSaturated((prev ushr 1) and HALVE_MASK, word))) {
+                prev = previous.get(i)
+            }
+            // the counters only increase, so the merged ones can be subtracted without a borrow,
+            // the additions in between are kept
+            if (word != 0L) {
+                current.addAndGet(i, -word)
+            }
+        }
+    }
+
+    fun clear() {
+        for (i in 0 until current.length()) {
+            current.set(i, 0L)
+            previous.set(i, 0L)
+        }
+        additions.set(0)
+    }
+
+    /**
+     * The global index of the i-th counter of the hash, the double hashing scheme of Kirsch and Mitzenmacher is used
+     * */
+    private fun indexOf(hash: Long, i: Int): Int {
+        val h1 = hash.toInt()
+        val h2 = (hash ushr 32).toInt() or 1
+        val combined = h1 + i * h2
+        return i * rowSize + (combined and Int.MAX_VALUE) % rowSize
+    }
+
+    private fun counterAt(index: Int): Int {
+        val wordIndex = index / COUNTERS_PER_WORD
+        val shift = (index % COUNTERS_PER_WORD) shl 2
+        val c = ((previous.get(wordIndex) ushr shift) and 0xF) + ((current.get(wordIndex) ushr shift) and 0xF)
+        return c.toInt().coerceAtMost(MAX_COUNT)
+    }
+
+    private fun incrementIfEquals(index: Int, expected: Int) {
+        val wordIndex = index / COUNTERS_PER_WORD
+        val shift = (index % COUNTERS_PER_WORD) shl 2
+        while (true) {
+            val word = current.get(wordIndex)
+            val c = ((word ushr shift) and 0xF).toInt()
+            val prev = ((previous.get(wordIndex) ushr shift) and 0xF).toInt()
+            if (prev + c != expected || prev + c >= MAX_COUNT) {
+                return
+            }
+            if (current.compareAndSet(wordIndex, word, word + (1L shl shift))) {
+                return
+            }
+        }
+    }
+
+    /**
+     * Add the 4-bit counters of two words, a sum saturates at [MAX_COUNT]
+     * */
+    private fun addSaturated(a: Long, b: Long): Long {
+        if (b == 0L) {
+            return a
+        }
+
+        var sum = 0L
+        for (i in 0 until COUNTERS_PER_WORD) {
+            val shift = i shl 2
+            val c = (((a ushr shift) and 0xF) + ((b ushr shift) and 0xF)).coerceAtMost(MAX_COUNT.toLong())
+            sum = sum or (c shl shift)
+        }
+        return sum
+    }
+}
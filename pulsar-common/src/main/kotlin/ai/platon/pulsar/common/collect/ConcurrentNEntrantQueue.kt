@@ -1,37 +1,109 @@
 package ai.platon.pulsar.common.collect
 
-import com.google.common.collect.ConcurrentHashMultiset
 import java.util.*
-import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicLong
 
+/**
+ * A FIFO queue which accepts an item at most n + 1 times, and an item is not accepted again while it's in the queue.
+ *
+ * The history of the offered items is kept in a [ConcurrentCountingBloomFilter], so the memory is bounded
+ * no matter how many items are offered, the cost is that an item can be rejected with a small probability,
+ * and an item offered long ago is forgotten, see [ConcurrentCountingBloomFilter] for details.
+ *
+ * A history can be shared by several queues, for example, all the queues of a fetch cache manager, the hashes
+ * are salted by the queue, so an item offered to one queue is not counted by the others, and the memory is
+ * allocated only once. The expected insertions of a shared history is the total number of items offered
+ * to all the queues before they are forgotten.
+ *
+ * The items are kept in a lock free queue, and the history is guarded by striped locks.
+ * */
 open class ConcurrentNEntrantQueue<E>(
-        val n: Int
+        val n: Int,
+        private val history: ConcurrentCountingBloomFilter
 ): AbstractQueue<E>() {
-    private val set = ConcurrentSkipListSet<E>()
-    private val historyHash = ConcurrentHashMultiset.create<Int>()
+    companion object {
+        private const val NUM_STRIPES = 64
+    }
+
+    constructor(
+            n: Int,
+            expectedInsertions: Int = ConcurrentCountingBloomFilter.DEFAULT_EXPECTED_INSERTIONS,
+            fpp: Double = ConcurrentCountingBloomFilter.DEFAULT_FPP
+    ): this(n, ConcurrentCountingBloomFilter(expectedInsertions, fpp))
+
+    private val queue = ConcurrentLinkedQueue<E>()
+    /**
+     * The items in the queue
+     * */
+    private val queued = ConcurrentHashMap.newKeySet<E>()
+    private val salt = ConcurrentCountingBloomFilter.nextSalt()
+    private val stripes = Array(NUM_STRIPES) { Any() }
+    private val accepted = AtomicLong()
+    private val rejected = AtomicLong()
+
+    init {
+        require(n in 0 until ConcurrentCountingBloomFilter.MAX_COUNT) {
+            "n must be in [0, ${ConcurrentCountingBloomFilter.MAX_COUNT})"
+        }
+    }
+
+    /**
+     * The number of accepted items
+     * */
+    val numAccepted get() = accepted.get()
+
+    /**
+     * The number of rejected items
+     * */
+    val numRejected get() = rejected.get()
 
-    open fun count(e: E) = historyHash.count(e.hashCode())
+    /**
+     * The estimated times the item is accepted
+     * */
+    open fun count(e: E) = history.count(hashOf(e))
 
     override fun add(e: E) = offer(e)
 
     override fun offer(e: E): Boolean {
-        val hashCode = e.hashCode()
+        val hash = hashOf(e)
 
-        synchronized(this) {
-            if (historyHash.count(hashCode) <= n) {
-                historyHash.add(hashCode)
-                return set.add(e)
+        synchronized(stripes[(hash ushr 58).toInt()]) {
+            if (e in queued || history.count(hash) > n) {
+                rejected.incrementAndGet()
+                return false
             }
+            history.add(hash)
+            queued.add(e)
         }
 
-        return false
+        accepted.incrementAndGet()
+        return queue.add(e)
+    }
+
+    override fun iterator(): MutableIterator<E> {
+        val iterator = queue.iterator()
+        return object : MutableIterator<E> {
+            private var current: E? = null
+
+            override fun hasNext() = iterator.hasNext()
+
+            override fun next() = iterator.next().also { current = it }
+
+            override fun remove() {
+                iterator.remove()
+                current?.let { queued.remove(it) }
+                current = null
+            }
+        }
     }
 
-    override fun iterator(): MutableIterator<E> = set.iterator()
+    override fun peek(): E? = queue.peek()
 
-    override fun peek(): E? = set.firstOrNull()
+    override fun poll(): E? = queue.poll()?.also { queued.remove(it) }
 
-    override fun poll(): E? = set.pollFirst()
+    override val size: Int get() = queue.size
 
-    override val size: Int get() = set.size
+    private fun hashOf(e: E) = ConcurrentCountingBloomFilter.hash(e as Any) xor salt
 }
@@ -1,5 +1,6 @@
 package ai.platon.pulsar.common.collect
 
+import ai.platon.pulsar.common.AppPaths
 import ai.platon.pulsar.common.UrlExtractor
 import ai.platon.pulsar.common.urls.Hyperlink
 import ai.platon.pulsar.common.urls.HyperlinkDatum
@@ -9,6 +10,8 @@ import org.slf4j.LoggerFactory
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.StandardOpenOption
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
 
 open class LocalFileUrlLoader(val path: Path): AbstractExternalUrlLoader() {
     private val log = LoggerFactory.getLogger(LocalFileUrlLoader::class.java)
@@ -66,3 +69,117 @@ open class LocalFileUrlLoader(val path: Path): AbstractExternalUrlLoader() {
 open class TemporaryLocalFileUrlLoader: LocalFileUrlLoader(
         Files.createTempFile("hyperlink", ".txt")
 )
+
+/**
+ * A local url loader which keeps every url group in a [UrlSegmentLog], so the urls are kept out of the heap
+ * until they are loaded page by page.
+ *
+ * A loaded page is committed only after another [UrlGroup.pageSize] urls of the group are loaded, since
+ * a loading queue holds no more than a page of urls and polls them in order, the urls in the queue are always
+ * recovered after a crash, at the cost that some urls can be loaded twice.
+ * */
+open class MappedSegmentUrlLoader(
+    /**
+     * The directory of the url groups
+     * */
+    val directory: Path = AppPaths.LOCAL_STORAGE_DIR.resolve("urls"),
+    /**
+     * The size of a segment file in bytes
+     * */
+    val segmentSize: Int = UrlSegmentLog.DEFAULT_SEGMENT_SIZE,
+    loadDelay: Duration = Duration.ofSeconds(5)
+): AbstractExternalUrlLoader(loadDelay), AutoCloseable {
+
+    private class Page(val offset: Long, val size: Int)
+
+    private class GroupLog(val log: UrlSegmentLog) {
+        val pages = ArrayDeque<Page>()
+        var retained = 0
+    }
+
+    private val logs = ConcurrentHashMap<String, GroupLog>()
+
+    init {
+        Files.createDirectories(directory)
+    }
+
+    /**
+     * Open the log with the given name, the urls of a group are kept in the log named by [nameOf]
+     * */
+    fun openLog(name: String): UrlSegmentLog = groupLog(name).log
+
+    override fun save(url: UrlAware, group: UrlGroup) {
+        groupLog(nameOf(group)).log.append(url)
+    }
+
+    override fun saveAll(urls: Iterable<UrlAware>, group: UrlGroup) {
+        groupLog(nameOf(group)).log.appendAll(urls)
+    }
+
+    override fun countRemaining(): Int {
+        Files.list(directory).use { paths ->
+            paths.filter { Files.isDirectory(it) }.forEach { groupLog(it.fileName.toString()) }
+        }
+        return logs.values.sumOf { it.log.remaining }
+    }
+
+    override fun countRemaining(group: UrlGroup) = groupLog(nameOf(group)).log.remaining
+
+    override fun <T> loadToNow(sink: MutableCollection<T>, size: Int, group: UrlGroup, transformer: (UrlAware) -> T): Collection<T> {
+        val groupLog = groupLog(nameOf(group))
+        val urls = mutableListOf<T>()
+
+        synchronized(groupLog) {
+            var offset = -1L
+            groupLog.log.read(size) {
+                if (offset < 0) offset = it.offset
+                urls.add(transformer(it.url))
+            }
+
+            if (urls.isNotEmpty()) {
+                groupLog.pages.addLast(Page(offset, urls.size))
+                groupLog.retained += urls.size
+                // the urls in the queue are in the last pageSize loaded urls
+                while (groupLog.retained - groupLog.pages.first().size >= group.pageSize) {
+                    groupLog.retained -= groupLog.pages.removeFirst().size
+                }
+                groupLog.log.commit(groupLog.pages.first().offset)
+            }
+        }
+
+        sink.addAll(urls)
+        return urls
+    }
+
+    override fun deleteAll(group: UrlGroup): Long {
+        val groupLog = groupLog(nameOf(group))
+        return synchronized(groupLog) {
+            groupLog.pages.clear()
+            groupLog.retained = 0
+            groupLog.log.clear().toLong()
+        }
+    }
+
+    /**
+     * Force all the urls to the storage device
+     * */
+    fun flush() {
+        logs.values.forEach { it.log.flush() }
+    }
+
+    override fun close() {
+        logs.values.forEach { it.log.close() }
+    }
+
+    /**
+     * The name of the log of the url group
+     * */
+    fun nameOf(group: UrlGroup): String {
+        val jobId = group.jobId.replace("[^a-zA-Z0-9_\\-]".toRegex(), "_")
+        return "$jobId.${group.group}.${group.priority}"
+    }
+
+    private fun groupLog(name: String): GroupLog {
+        return logs.computeIfAbsent(name) { GroupLog(UrlSegmentLog(directory.resolve(it), segmentSize)) }
+    }
+}
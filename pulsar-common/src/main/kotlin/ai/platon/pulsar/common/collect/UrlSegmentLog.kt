@@ -0,0 +1,441 @@
+package ai.platon.pulsar.common.collect
+
+import ai.platon.pulsar.common.urls.Hyperlink
+import ai.platon.pulsar.common.urls.UrlAware
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.lang.reflect.Method
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.*
+
+/**
+ * An append-only log of urls stored in memory mapped segment files.
+ *
+ * The log is a sequence of records addressed by a global offset, a segment file holds the records in
+ * `[index * segmentSize, (index + 1) * segmentSize)` and is named by it's index. A record is
+ * `[int length][long time][int order][int depth][url][text][referer][args][href]`, a string is written as
+ * it's length in bytes followed by the UTF-8 bytes, a null string has the length -1.
+ *
+ * The log has a read offset which is moved forward by [read], and a committed offset which is persisted
+ * by [commit], the segments before the committed offset are deleted. After a restart, the records are read
+ * from the committed offset again, so a record is never lost, but might be read more than once.
+ *
+ * The body of a record is written before it's length, the unused space of a segment is zero,
+ * so a record interrupted by a crash is not visible. The mapped pages are written back by the operating system,
+ * the records survive a crash of the process, and [flush] forces them to the storage device. At most one segment
+ * is mapped for writing and one for reading, a segment is unmapped as soon as the log moves to another one.
+ *
+ * The log is thread safe.
+ * */
+class UrlSegmentLog(
+    /**
+     * The directory of the segment files
+     * */
+    val directory: Path,
+    /**
+     * The size of a segment file in bytes
+     * */
+    val segmentSize: Int = DEFAULT_SEGMENT_SIZE
+) : AutoCloseable {
+    companion object {
+        const val DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024
+
+        private const val SEGMENT_SUFFIX = ".seg"
+        private const val CHECKPOINT_FILE = "checkpoint"
+        private const val LENGTH_BYTES = 4
+
+        private val unsafe: Any? by lazy {
+            kotlin.runCatching {
+                Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe").apply { isAccessible = true }.get(null)
+            }.getOrNull()
+        }
+        private val invokeCleaner: Method? by lazy {
+            unsafe?.let { kotlin.runCatching { it.javaClass.getMethod("invokeCleaner", ByteBuffer::class.java) }.getOrNull() }
+        }
+
+        /**
+         * Release the mapped memory now instead of waiting for the buffer to be garbage collected,
+         * the buffer must not be accessed any more
+         * */
+        private fun unmap(buffer: ByteBuffer?) {
+            if (buffer != null && buffer.isDirect) {
+                kotlin.runCatching { invokeCleaner?.invoke(unsafe, buffer) }
+            }
+        }
+    }
+
+    /**
+     * A record read from the log
+     * */
+    class Record(
+        /**
+         * The offset of the record
+         * */
+        val offset: Long,
+        /**
+         * The time attached to the record, in milliseconds
+         * */
+        val time: Long,
+        /**
+         * The url
+         * */
+        val url: Hyperlink
+    )
+
+    private var writeIndex = -1L
+    private var writeBuffer: MappedByteBuffer? = null
+    private var readIndex = -1L
+    private var readBuffer: ByteBuffer? = null
+
+    /**
+     * The offset where the next record is appended
+     * */
+    @Volatile
+    var writeOffset = 0L
+        private set
+
+    /**
+     * The offset of the next record to read
+     * */
+    @Volatile
+    var readOffset = 0L
+        private set
+
+    /**
+     * The offset before which all the records are consumed, it's persisted
+     * */
+    @Volatile
+    var committedOffset = 0L
+        private set
+
+    /**
+     * The number of the records after the read offset
+     * */
+    @Volatile
+    var remaining = 0
+        private set
+
+    init {
+        require(segmentSize > LENGTH_BYTES) { "Segment size is too small" }
+        Files.createDirectories(directory)
+        recover()
+    }
+
+    /**
+     * Append an url to the log
+     *
+     * @return The offset of the record
+     * */
+    @Synchronized
+    fun append(url: UrlAware, time: Long = 0L): Long {
+        val body = encode(url, time)
+        val size = LENGTH_BYTES + body.size
+        require(size <= segmentSize) { "Record is too large | ${body.size} bytes | ${url.url}" }
+
+        if (position(writeOffset) + size > segmentSize) {
+            writeOffset = (index(writeOffset) + 1) * segmentSize
+        }
+
+        val offset = writeOffset
+        val pos = position(offset)
+        val buffer = mapForWrite(index(offset))
+        buffer.duplicate().apply { position(pos + LENGTH_BYTES) }.put(body)
+        // the length is written last, so an interrupted record is not visible
+        buffer.putInt(pos, body.size)
+
+        writeOffset += size
+        ++remaining
+        return offset
+    }
+
+    /**
+     * Append all the urls to the log
+     * */
+    @Synchronized
+    fun appendAll(urls: Iterable<UrlAware>, time: Long = 0L) {
+        urls.forEach { append(it, time) }
+    }
+
+    /**
+     * Read at most [max] records from the read offset
+     *
+     * @return The number of records read
+     * */
+    @Synchronized
+    fun read(max: Int, action: (Record) -> Unit): Int {
+        var n = 0
+        while (n < max && seekNextRecord()) {
+            val buffer = mapForRead(index(readOffset))
+            val position = position(readOffset)
+            val length = buffer.getInt(position)
+            val record = decode(readOffset, buffer, position + LENGTH_BYTES)
+
+            readOffset += LENGTH_BYTES + length
+            --remaining
+            ++n
+            action(record)
+        }
+        return n
+    }
+
+    /**
+     * Mark the records before the offset as consumed and persist the offset, the records between the read offset
+     * and the given offset are skipped, the segments before the offset are deleted
+     * */
+    @Synchronized
+    fun commit(offset: Long) {
+        val target = offset.coerceAtMost(writeOffset)
+        if (target <= committedOffset) {
+            return
+        }
+
+        while (readOffset < target && seekNextRecord()) {
+            if (readOffset >= target) break
+            val buffer = mapForRead(index(readOffset))
+            readOffset += LENGTH_BYTES + buffer.getInt(position(readOffset))
+            --remaining
+        }
+
+        committedOffset = target
+        writeCheckpoint()
+        deleteSegmentsBefore(index(committedOffset))
+    }
+
+    /**
+     * Delete all the records
+     *
+     * @return The number of deleted records which are not read yet
+     * */
+    @Synchronized
+    fun clear(): Int {
+        val count = remaining
+        // offsets never go backward, the next record starts with a new segment
+        val offset = (index(writeOffset) + 1) * segmentSize
+        writeOffset = offset
+        readOffset = offset
+        remaining = 0
+        commit(offset)
+        return count
+    }
+
+    /**
+     * Force the records to the storage device
+     * */
+    @Synchronized
+    fun flush() {
+        writeBuffer?.force()
+    }
+
+    @Synchronized
+    override fun close() {
+        flush()
+        unmapWriteBuffer()
+        unmapReadBuffer()
+    }
+
+    /**
+     * Move the read offset to the next record
+     *
+     * @return false if there is no more records
+     * */
+    private fun seekNextRecord(): Boolean {
+        while (readOffset < writeOffset) {
+            val position = position(readOffset)
+            if (position + LENGTH_BYTES <= segmentSize && mapForRead(index(readOffset)).getInt(position) > 0) {
+                return true
+            }
+            // the unused tail of a segment
+            readOffset = (index(readOffset) + 1) * segmentSize
+        }
+        return false
+    }
+
+    /**
+     * Find the end of the log and count the records after the committed offset
+     * */
+    private fun recover() {
+        committedOffset = readCheckpoint()
+        val indexes = segmentIndexes()
+        if (indexes.isEmpty()) {
+            writeOffset = committedOffset
+            readOffset = committedOffset
+            return
+        }
+
+        val lastIndex = indexes.last()
+        var offset = committedOffset.coerceAtLeast(indexes.first() * segmentSize)
+        var count = 0
+        while (index(offset) <= lastIndex) {
+            val index = index(offset)
+            val position = position(offset)
+            val length = if (index in indexes && position + LENGTH_BYTES <= segmentSize) {
+                mapForRead(index).getInt(position)
+            } else 0
+
+            if (length > 0 && position + LENGTH_BYTES + length <= segmentSize) {
+                offset += LENGTH_BYTES + length
+                ++count
+            } else if (index < lastIndex) {
+                offset = (index + 1) * segmentSize
+            } else {
+                break
+            }
+        }
+
+        readOffset = committedOffset.coerceAtLeast(indexes.first() * segmentSize)
+        writeOffset = offset
+        remaining = count
+        unmapReadBuffer()
+    }
+
+    private fun index(offset: Long) = offset / segmentSize
+
+    private fun position(offset: Long) = (offset % segmentSize).toInt()
+
+    private fun segmentPath(index: Long) = directory.resolve(String.format("%020d", index) + SEGMENT_SUFFIX)
+
+    private fun segmentIndexes(): TreeSet<Long> {
+        return Files.list(directory).use { paths ->
+            paths.map { it.fileName.toString() }
+                .filter { it.endsWith(SEGMENT_SUFFIX) }
+                .map { it.removeSuffix(SEGMENT_SUFFIX).toLong() }
+                .toList()
+        }.toCollection(TreeSet())
+    }
+
+    private fun mapForWrite(index: Long): MappedByteBuffer {
+        val buffer = writeBuffer
+        if (buffer != null && index == writeIndex) {
+            return buffer
+        }
+
+        writeBuffer?.force()
+        unmapWriteBuffer()
+        val options = arrayOf(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        return FileChannel.open(segmentPath(index), *options).use {
+            it.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize.toLong())
+        }.also {
+            writeBuffer = it
+            writeIndex = index
+        }
+    }
+
+    private fun mapForRead(index: Long): ByteBuffer {
+        if (index == writeIndex) {
+            return writeBuffer!!
+        }
+
+        val buffer = readBuffer
+        if (buffer != null && index == readIndex) {
+            return buffer
+        }
+
+        unmapReadBuffer()
+        return FileChannel.open(segmentPath(index), StandardOpenOption.READ).use {
+            checkSegmentSize(index, it.size())
+            it.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize.toLong())
+        }.also {
+            readBuffer = it
+            readIndex = index
+        }
+    }
+
+    private fun checkSegmentSize(index: Long, size: Long) {
+        if (size != segmentSize.toLong()) {
+            throw IllegalStateException("Segment size mismatch, expected $segmentSize, actual $size | ${segmentPath(index)}")
+        }
+    }
+
+    private fun deleteSegmentsBefore(index: Long) {
+        segmentIndexes().headSet(index).forEach {
+            if (it == readIndex) {
+                unmapReadBuffer()
+            }
+            if (it == writeIndex) {
+                unmapWriteBuffer()
+            }
+            Files.deleteIfExists(segmentPath(it))
+        }
+    }
+
+    private fun unmapWriteBuffer() {
+        unmap(writeBuffer)
+        writeBuffer = null
+        writeIndex = -1
+    }
+
+    private fun unmapReadBuffer() {
+        unmap(readBuffer)
+        readBuffer = null
+        readIndex = -1
+    }
+
+    private fun readCheckpoint(): Long {
+        val path = directory.resolve(CHECKPOINT_FILE)
+        return if (Files.exists(path)) Files.readString(path).trim().toLongOrNull() ?: 0L else 0L
+    }
+
+    private fun writeCheckpoint() {
+        val path = directory.resolve(CHECKPOINT_FILE)
+        val tmp = directory.resolve("$CHECKPOINT_FILE.tmp")
+        Files.writeString(tmp, committedOffset.toString())
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+
+    private fun encode(url: UrlAware, time: Long): ByteArray {
+        val bytes = ByteArrayOutputStream(128 + 2 * url.url.length)
+        DataOutputStream(bytes).use {
+            it.writeLong(time)
+            it.writeInt(if (url is Hyperlink) url.order else 0)
+            it.writeInt(if (url is Hyperlink) url.depth else 0)
+            writeString(it, url.url)
+            writeString(it, if (url is Hyperlink) url.text else "")
+            writeString(it, url.referer)
+            writeString(it, url.args)
+            writeString(it, url.href)
+        }
+        return bytes.toByteArray()
+    }
+
+    private fun writeString(out: DataOutputStream, s: String?) {
+        if (s == null) {
+            out.writeInt(-1)
+        } else {
+            val bytes = s.toByteArray(StandardCharsets.UTF_8)
+            out.writeInt(bytes.size)
+            out.write(bytes)
+        }
+    }
+
+    private fun decode(offset: Long, buffer: ByteBuffer, pos: Int): Record {
+        val b = buffer.duplicate().apply { position(pos) }
+        val time = b.long
+        val order = b.int
+        val depth = b.int
+        val url = readString(b) ?: ""
+        val text = readString(b) ?: ""
+        val referer = readString(b)
+        val args = readString(b)
+        val href = readString(b)
+        val hyperlink = Hyperlink(url, text, order, referer, args, href).also { it.depth = depth }
+        return Record(offset, time, hyperlink)
+    }
+
+    private fun readString(buffer: ByteBuffer): String? {
+        val length = buffer.int
+        if (length < 0) {
+            return null
+        }
+
+        val bytes = ByteArray(length)
+        buffer.get(bytes)
+        return String(bytes, StandardCharsets.UTF_8)
+    }
+}
@@ -18,19 +18,34 @@ class ExpiringItem<T>(
     }
 }
 
+/**
+ * A least recently used cache whose items expire after [ttl].
+ *
+ * @param capacity The max total weight of the items, it's the max number of items if the weigher is not specified
+ * @param ttl The time to live of the items
+ * @param weigher Calculate the weight of an item, for example, the estimated memory size in bytes
+ * */
 class ConcurrentExpiringLRUCache<T>(
-        val capacity: Int,
-        val ttl: Duration = CACHE_TTL
+        val capacity: Long,
+        val ttl: Duration = CACHE_TTL,
+        weigher: (T) -> Long = { 1L }
 ) {
     companion object {
         val CACHE_TTL = Duration.ofMinutes(5)
         const val CACHE_CAPACITY = 200
     }
 
-    val cache = ConcurrentLRUCache<String, ExpiringItem<T>>(ttl.seconds, capacity)
+    constructor(capacity: Int, ttl: Duration = CACHE_TTL): this(capacity.toLong(), ttl)
+
+    val cache = ConcurrentSegmentedCache<String, ExpiringItem<T>>(capacity, ttl) { _, item -> weigher(item.datum) }
 
     val size get() = cache.size
 
+    /**
+     * The total weight of all items
+     * */
+    val weight get() = cache.weight
+
     fun put(key: String, item: ExpiringItem<T>) {
         cache.put(key, item)
     }
@@ -63,5 +78,7 @@ class ConcurrentExpiringLRUCache<T>(
 
     fun removeAll(keys: Iterable<String>) = keys.forEach { cache.remove(it) }
 
+    fun shrink(ratio: Double) = cache.shrink(ratio)
+
     fun clear() = cache.clear()
 }
@@ -5,6 +5,9 @@ import java.util.*
 
 /**
  * A very simple yet fast LRU cache with TTL support
+ *
+ * All operations are serialized by a single lock and the TTL is a bucket rollover rather than a per-item expiry,
+ * use [ConcurrentSegmentedCache] for highly concurrent access.
  */
 class ConcurrentLRUCache<K, V> {
     /**
@@ -0,0 +1,291 @@
+package ai.platon.pulsar.common.concurrent
+
+import java.time.Duration
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * A segmented cache with lock-free reads, per-entry TTL and weight based capacity.
+ *
+ * The key space is split into segments, every segment holds a [ConcurrentHashMap] so a read never takes a lock,
+ * writes lock only the owner segment. Eviction is an approximate LRU (the CLOCK algorithm): a read marks the entry
+ * as recently accessed, and the eviction sweep gives a marked entry a second chance before it's removed.
+ *
+ * @param capacity The max total weight of the cache, if the weigher is not specified, it's the max number of entries
+ * @param ttl The default time to live of an entry, a zero or negative duration means the entries never expire
+ * @param concurrencyLevel The expected number of concurrent writers, rounded up to a power of two as the segment number
+ * @param weigher Calculate the weight of an entry, the weight must not be negative
+ */
+class ConcurrentSegmentedCache<K: Any, V: Any> @JvmOverloads constructor(
+        val capacity: Long,
+        val ttl: Duration = Duration.ZERO,
+        concurrencyLevel: Int = DEFAULT_CONCURRENCY_LEVEL,
+        private val weigher: (K, V) -> Long = { _, _ -> 1L }
+) {
+    companion object {
+        const val DEFAULT_CONCURRENCY_LEVEL = 16
+        private const val MAX_SEGMENTS = 1 shl 16
+        /**
+         * Small caches are split into less segments, or the approximate LRU order is too rough
+         * */
+        private const val MIN_SEGMENT_CAPACITY = 8
+    }
+
+    private class Entry<K, V>(
+            val key: K,
+            val value: V,
+            val weight: Long,
+            val expireAt: Long
+    ) {
+        @Volatile
+        var accessed = false
+        @Volatile
+        var removed = false
+
+        fun isExpired(now: Long) = now - expireAt >= 0
+    }
+
+    private inner class Segment(val maxWeight: Long) {
+        val map = ConcurrentHashMap<K, Entry<K, V>>()
+        val lock = ReentrantLock()
+        /**
+         * The clock queue, guarded by lock
+         * */
+        val clock = ArrayDeque<Entry<K, V>>()
+        @Volatile
+        var weight = 0L
+
+        fun put(entry: Entry<K, V>): Entry<K, V>? {
+            return lock.withLock {
+                if (entry.weight > maxWeight) {
+                    // too heavy to be cached, do not flush the whole segment for it
+                    evictions.increment()
+                    return map.remove(entry.key)?.also { detach(it) }
+                }
+
+                val old = map.put(entry.key, entry)
+                if (old != null) {
+                    detach(old)
+                }
+                clock.addLast(entry)
+                weight += entry.weight
+                evict(maxWeight)
+                old
+            }
+        }
+
+        fun shrink(targetWeight: Long) {
+            lock.withLock { evict(targetWeight) }
+        }
+
+        fun putIfAbsent(key: K, supplier: () -> Entry<K, V>): Entry<K, V> {
+            return lock.withLock {
+                map[key]?.takeUnless { it.isExpired(System.nanoTime()) } ?: supplier().also { put(it) }
+            }
+        }
+
+        fun remove(key: K): Entry<K, V>? {
+            return lock.withLock { map.remove(key)?.also { detach(it) } }
+        }
+
+        /**
+         * Remove the entry only if it's still mapped, a newer entry with the same key is not touched
+         * */
+        fun removeExpired(entry: Entry<K, V>) {
+            lock.withLock {
+                if (map.remove(entry.key, entry)) {
+                    detach(entry)
+                    expirations.increment()
+                }
+            }
+        }
+
+        fun purgeExpired() {
+            val now = System.nanoTime()
+            lock.withLock {
+                val it = map.values.iterator()
+                while (it.hasNext()) {
+                    val entry = it.next()
+                    if (entry.isExpired(now)) {
+                        it.remove()
+                        detach(entry)
+                        expirations.increment()
+                    }
+                }
+                compact()
+            }
+        }
+
+        fun clear() {
+            lock.withLock {
+                map.values.forEach { it.removed = true }
+                map.clear()
+                clock.clear()
+                weight = 0
+            }
+        }
+
+        private fun detach(entry: Entry<K, V>) {
+            entry.removed = true
+            weight -= entry.weight
+        }
+
+        /**
+         * Sweep the clock until the segment fits in the target weight. An accessed entry gets a second chance,
+         * after at most two rounds every entry in the queue is a candidate, so the loop always terminates
+         * */
+        private fun evict(targetWeight: Long) {
+            val now = System.nanoTime()
+            var chances = 2 * clock.size
+            while (weight > targetWeight) {
+                val entry = clock.pollFirst() ?: break
+                when {
+                    entry.removed -> {}
+                    entry.isExpired(now) -> {
+                        map.remove(entry.key, entry)
+                        detach(entry)
+                        expirations.increment()
+                    }
+                    entry.accessed && chances-- > 0 -> {
+                        entry.accessed = false
+                        clock.addLast(entry)
+                    }
+                    else -> {
+                        map.remove(entry.key, entry)
+                        detach(entry)
+                        evictions.increment()
+                    }
+                }
+            }
+
+            if (clock.size > 2 * map.size + 16) {
+                compact()
+            }
+        }
+
+        /**
+         * Drop entries which are removed or replaced but still stay in the clock queue
+         * */
+        private fun compact() {
+            clock.removeIf { it.removed }
+        }
+    }
+
+    private val ttlNanos = ttl.toNanos()
+    private val segments: List<Segment>
+    private val segmentMask: Int
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+    private val evictions = LongAdder()
+    private val expirations = LongAdder()
+
+    init {
+        require(capacity > 0) { "Capacity must be positive" }
+        require(concurrencyLevel > 0) { "Concurrency level must be positive" }
+
+        var numSegments = 1
+        while (numSegments < concurrencyLevel.coerceAtMost(MAX_SEGMENTS) && (numSegments shl 1) <= capacity / MIN_SEGMENT_CAPACITY) {
+            numSegments = numSegments shl 1
+        }
+        segmentMask = numSegments - 1
+        val segmentWeight = (capacity + numSegments - 1) / numSegments
+        segments = List(numSegments) { Segment(segmentWeight) }
+    }
+
+    val size get() = segments.sumOf { it.map.size }
+
+    val weight get() = segments.sumOf { it.weight }
+
+    val hitCount get() = hits.sum()
+
+    val missCount get() = misses.sum()
+
+    val evictionCount get() = evictions.sum()
+
+    val expirationCount get() = expirations.sum()
+
+    val hitRate: Double get() {
+        val h = hitCount
+        val total = h + missCount
+        return if (total == 0L) 1.0 else 1.0 * h / total
+    }
+
+    operator fun get(key: K): V? {
+        val segment = segmentFor(key)
+        val entry = segment.map[key]
+        if (entry == null) {
+            misses.increment()
+            return null
+        }
+
+        if (entry.isExpired(System.nanoTime())) {
+            segment.removeExpired(entry)
+            misses.increment()
+            return null
+        }
+
+        if (!entry.accessed) {
+            entry.accessed = true
+        }
+        hits.increment()
+        return entry.value
+    }
+
+    operator fun contains(key: K): Boolean {
+        val entry = segmentFor(key).map[key]
+        return entry != null && !entry.isExpired(System.nanoTime())
+    }
+
+    fun put(key: K, value: V): V? = put(key, value, ttl)
+
+    /**
+     * Put an entry with it's own time to live
+     * */
+    fun put(key: K, value: V, ttl: Duration): V? {
+        return segmentFor(key).put(newEntry(key, value, ttl.toNanos()))?.value
+    }
+
+    operator fun set(key: K, value: V) {
+        put(key, value)
+    }
+
+    fun computeIfAbsent(key: K, mappingFunction: (K) -> V): V {
+        get(key)?.let { return it }
+        return segmentFor(key).putIfAbsent(key) { newEntry(key, mappingFunction(key), ttlNanos) }.value
+    }
+
+    fun remove(key: K): V? = segmentFor(key).remove(key)?.value
+
+    /**
+     * Remove all expired entries. Expired entries are removed passively when they are read or swept,
+     * call this method to release the memory earlier
+     * */
+    fun purgeExpired() = segments.forEach { it.purgeExpired() }
+
+    /**
+     * Evict entries until the total weight is no more than [ratio] of the capacity,
+     * it's called to release memory under heap pressure
+     * */
+    fun shrink(ratio: Double) {
+        require(ratio in 0.0..1.0) { "Ratio must be in [0, 1]" }
+        segments.forEach { it.shrink((it.maxWeight * ratio).toLong()) }
+    }
+
+    fun clear() = segments.forEach { it.clear() }
+
+    private fun newEntry(key: K, value: V, ttlNanos: Long): Entry<K, V> {
+        val weight = weigher(key, value)
+        require(weight >= 0) { "Weight must not be negative | $key" }
+        val expireAt = if (ttlNanos > 0) System.nanoTime() + ttlNanos else System.nanoTime() + Long.MAX_VALUE / 2
+        return Entry(key, value, weight, expireAt)
+    }
+
+    private fun segmentFor(key: K): Segment {
+        val h = key.hashCode()
+        return segments[(h xor (h ushr 16)) and segmentMask]
+    }
+}
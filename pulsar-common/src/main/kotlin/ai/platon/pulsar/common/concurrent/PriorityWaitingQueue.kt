@@ -0,0 +1,168 @@
+package ai.platon.pulsar.common.concurrent
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.withTimeoutOrNull
+import java.time.Duration
+import java.util.*
+
+class WaitingCanceledException(message: String): Exception(message)
+
+/**
+ * A queue of reusable items, for example, web drivers or proxies, a coroutine waits for an item without blocking
+ * the underlying thread.
+ *
+ * A returned item is handed off to the waiter with the highest priority directly, a smaller value means a higher
+ * priority, just like [ai.platon.pulsar.common.Priority13], and the waiters with the same priority are served
+ * in FIFO order.
+ *
+ * A waiter can choose the item it takes by a selector, the selector is called with the lock of the queue held,
+ * so it should be fast and should never access the queue.
+ * */
+class PriorityWaitingQueue<T: Any> {
+
+    private class Waiter<T>(val priority: Int, val sequence: Long, val tag: Any?, val selector: ((Collection<T>) -> T?)?) {
+        val signal = CompletableDeferred<Unit>()
+        // the fields are guarded by the queue lock
+        var item: T? = null
+        var isDone = false
+        var isCanceled = false
+
+        fun accepts(item: T) = selector == null || selector.invoke(listOf(item)) != null
+    }
+
+    private val lock = Any()
+    private val items = ArrayDeque<T>()
+    private val waiterComparator = compareBy<Waiter<T>> { it.priority }.thenBy { it.sequence }
+    private val waiters = PriorityQueue(waiterComparator)
+    private var sequence = 0L
+
+    /**
+     * The number of free items
+     * */
+    val size get() = synchronized(lock) { items.size }
+
+    /**
+     * The number of suspended waiters
+     * */
+    val numWaiters get() = synchronized(lock) { waiters.size }
+
+    fun isEmpty() = size == 0
+
+    /**
+     * Return an item, the item is handed off to the first waiter accepting it if there is any
+     * */
+    fun offer(item: T) {
+        synchronized(lock) {
+            val waiter = waiters.peek()?.takeIf { it.accepts(item) }
+                ?: waiters.filter { it.accepts(item) }.minWithOrNull(waiterComparator)
+            if (waiter != null) {
+                waiters.remove(waiter)
+                waiter.item = item
+                waiter.isDone = true
+                waiter.signal.complete(Unit)
+            } else {
+                items.addLast(item)
+            }
+        }
+    }
+
+    /**
+     * Retrieve a free item immediately, or null if there is no free item
+     * */
+    fun poll(): T? = synchronized(lock) { items.pollFirst() }
+
+    /**
+     * Retrieve the free item chosen by the selector immediately, or null if no item is chosen
+     * */
+    fun poll(selector: (Collection<T>) -> T?): T? = synchronized(lock) { select(selector) }
+
+    /**
+     * Wait for a free item without blocking the thread
+     *
+     * @param priority The priority of the waiter, a smaller value means a higher priority
+     * @param timeout The max time to wait
+     * @param tag The tag of the waiter, a tagged waiter can be canceled by [cancelWaiters]
+     * @param selector Choose the item to take from the free items, or null to wait for another item,
+     * the first item is taken if it's null
+     * @return The item, or null if timeout
+     * @throws WaitingCanceledException if the waiter is canceled by [cancelWaiters]
+     * */
+    @Throws(WaitingCanceledException::class)
+    suspend fun take(priority: Int, timeout: Duration, tag: Any? = null, selector: ((Collection<T>) -> T?)? = null): T? {
+        val waiter = synchronized(lock) {
+            val item = if (selector == null) items.pollFirst() else select(selector)
+            if (item != null) {
+                return item
+            }
+            Waiter(priority, sequence++, tag, selector).also { waiters.add(it) }
+        }
+
+        try {
+            withTimeoutOrNull(timeout.toMillis()) { waiter.signal.await() }
+        } catch (e: CancellationException) {
+            // the coroutine is canceled, return the item if it's handed off at the same time
+            abandon(waiter)?.let { offer(it) }
+            throw e
+        }
+
+        val item = abandon(waiter)
+        if (waiter.isCanceled) {
+            throw WaitingCanceledException("Waiter is canceled | $tag")
+        }
+        return item
+    }
+
+    /**
+     * Cancel all waiters with the specified tag
+     *
+     * @return The number of canceled waiters
+     * */
+    fun cancelWaiters(tag: Any): Int {
+        synchronized(lock) {
+            val canceled = waiters.filter { it.tag == tag }
+            canceled.forEach {
+                waiters.remove(it)
+                it.isDone = true
+                it.isCanceled = true
+                it.signal.complete(Unit)
+            }
+            return canceled.size
+        }
+    }
+
+    fun remove(item: T): Boolean = synchronized(lock) { items.remove(item) }
+
+    /**
+     * Remove all free items satisfying the predicate
+     * */
+    fun removeIf(predicate: (T) -> Boolean): Boolean = synchronized(lock) { items.removeIf(predicate) }
+
+    operator fun contains(item: T): Boolean = synchronized(lock) { items.contains(item) }
+
+    /**
+     * A snapshot of the free items
+     * */
+    fun toList(): List<T> = synchronized(lock) { items.toList() }
+
+    fun clear() = synchronized(lock) { items.clear() }
+
+    private fun select(selector: (Collection<T>) -> T?): T? {
+        return selector(items)?.also { items.remove(it) }
+    }
+
+    /**
+     * Remove the waiter from the waiting queue
+     *
+     * @return The item handed off to the waiter, or null if the waiter timed out or canceled
+     * */
+    private fun abandon(waiter: Waiter<T>): T? {
+        synchronized(lock) {
+            if (!waiter.isDone) {
+                waiter.isDone = true
+                waiters.remove(waiter)
+            }
+            return waiter.item
+        }
+    }
+}
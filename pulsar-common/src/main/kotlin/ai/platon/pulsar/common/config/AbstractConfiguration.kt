@@ -31,6 +31,9 @@ import java.nio.file.Path
 import java.time.Duration
 import java.time.Instant
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
 import java.util.function.Consumer
 import java.util.stream.Stream
 
@@ -52,10 +55,23 @@ abstract class AbstractConfiguration {
      */
     protected val conf: KConfiguration
 
+    private val modCount = AtomicLong()
+    private val changeListeners = CopyOnWriteArrayList<(String?) -> Unit>()
+    private val typedValues = ConcurrentHashMap<ConfigKey<*>, TypedValue>()
+
     /**
      * Spring core is the first class dependency now, we will remove dependency on [KConfiguration] later
      */
     var environment: Environment? = null
+        set(value) {
+            field = value
+            notifyChanged(null)
+        }
+
+    /**
+     * The version is increased every time the config is changed, it's used to invalidate the cached typed values
+     * */
+    open val version: Long get() = conf.version + modCount.get()
 
     private val fullPathResources = LinkedHashSet<URL>()
 
@@ -82,6 +98,8 @@ abstract class AbstractConfiguration {
         this.conf = KConfiguration(conf)
     }
 
+    private class TypedValue(val version: Long, val systemValue: String?, val value: Any?)
+
     private fun loadConfResources(profile: String, loadDefaults: Boolean, extraResources: Iterable<String>) {
         extraResources.toCollection(resources)
         this.profile = profile
@@ -193,6 +211,71 @@ abstract class AbstractConfiguration {
         return get(name) ?: defaultValue
     }
 
+    /**
+     * Get the value of a typed key.
+     *
+     * The value is parsed only once and is cached until this config, the fallback config or the system property
+     * of the same name is changed, so it's cheap enough to be read on hot paths.
+     *
+     * If a property of the [environment] is changed, call [invalidate] to refresh the cached values.
+     *
+     * @param key the typed key.
+     * @return property value of the key, or the default value of the key.
+     */
+    @Suppress("UNCHECKED_CAST")
+    operator fun <T> get(key: ConfigKey<T>): T {
+        val version = this.version
+        val systemValue = System.getProperty(key.name)
+        val cached = typedValues[key]
+        if (cached != null && cached.version == version && cached.systemValue == systemValue) {
+            return cached.value as T
+        }
+
+        val rawValue = get(key.name)
+        val value = key.parse(rawValue)
+        // variables are substituted by system properties
+        if (isCacheable(key.name) && rawValue?.contains("\${") != true) {
+            typedValues[key] = TypedValue(version, systemValue, value)
+        }
+        return value
+    }
+
+    /**
+     * Add a listener which is notified with the property name after a property is changed,
+     * or with null if all the properties might be changed.
+     *
+     * The listener is notified only by the changes of this config, not by the changes of the fallback config.
+     */
+    fun addChangeListener(listener: (String?) -> Unit) {
+        changeListeners.add(listener)
+    }
+
+    fun removeChangeListener(listener: (String?) -> Unit) {
+        changeListeners.remove(listener)
+    }
+
+    /**
+     * Invalidate the cached typed values and notify the change listeners that all the properties might be changed
+     */
+    fun invalidate() = notifyChanged(null)
+
+    /**
+     * Whether the value of the property can be cached, a property can not be cached if it expires by a rule
+     * outside of the config
+     */
+    internal open fun isCacheable(name: String) = true
+
+    protected fun notifyChanged(name: String?) {
+        modCount.incrementAndGet()
+        changeListeners.forEach {
+            try {
+                it(name)
+            } catch (e: Exception) {
+                LOG.warn("Failed to handle config change | {}", e.message)
+            }
+        }
+    }
+
     /**
      * Get the value of the `name` property as an `int`.
      *
@@ -0,0 +1,65 @@
+package ai.platon.pulsar.common.config
+
+import ai.platon.pulsar.common.SParser
+import java.time.Duration
+
+/**
+ * A typed config key.
+ *
+ * The value of a typed key is parsed only once and then cached by the config, until the config, the fallback
+ * config or the system property of the same name is changed, see [AbstractConfiguration.get].
+ *
+ * Typed keys are supposed to be constants, two keys are equal if they have the same name, type and default value.
+ * */
+class ConfigKey<T> private constructor(
+    val name: String,
+    val type: String,
+    val defaultValue: T,
+    private val parser: (SParser, T) -> T
+) {
+    /**
+     * Parse the property value, the same as the corresponding getter of [AbstractConfiguration] does
+     * */
+    fun parse(value: String?): T = parser(SParser(value), defaultValue)
+
+    override fun equals(other: Any?): Boolean {
+        return other is ConfigKey<*> && name == other.name && type == other.type && defaultValue == other.defaultValue
+    }
+
+    override fun hashCode() = 31 * name.hashCode() + (defaultValue?.hashCode() ?: 0)
+
+    override fun toString() = "$name<$type>"
+
+    companion object {
+        @JvmStatic
+        fun ofString(name: String, defaultValue: String) =
+            ConfigKey(name, "string", defaultValue) { p, d -> p.get() ?: d }
+
+        @JvmStatic
+        fun ofInt(name: String, defaultValue: Int) =
+            ConfigKey(name, "int", defaultValue) { p, d -> p.getInt(d) }
+
+        /**
+         * An unsigned integer, if the configured value is negative, the default value is used
+         * */
+        @JvmStatic
+        fun ofUint(name: String, defaultValue: Int) =
+            ConfigKey(name, "uint", defaultValue) { p, d -> p.getInt(d).takeIf { it >= 0 } ?: d }
+
+        @JvmStatic
+        fun ofLong(name: String, defaultValue: Long) =
+            ConfigKey(name, "long", defaultValue) { p, d -> p.getLong(d) }
+
+        @JvmStatic
+        fun ofDouble(name: String, defaultValue: Double) =
+            ConfigKey(name, "double", defaultValue) { p, d -> p.getDouble(d) }
+
+        @JvmStatic
+        fun ofBoolean(name: String, defaultValue: Boolean) =
+            ConfigKey(name, "boolean", defaultValue) { p, d -> p.getBoolean(d) }
+
+        @JvmStatic
+        fun ofDuration(name: String, defaultValue: Duration) =
+            ConfigKey(name, "duration", defaultValue) { p, d -> p.getDuration(d) }
+    }
+}
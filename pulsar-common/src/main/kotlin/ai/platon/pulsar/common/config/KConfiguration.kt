@@ -19,6 +19,7 @@ import java.nio.file.Files
 import java.nio.file.Path
 import java.util.*
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
 import javax.xml.stream.XMLStreamConstants
 import javax.xml.stream.XMLStreamException
 import javax.xml.stream.XMLStreamReader
@@ -35,6 +36,12 @@ class KConfiguration(
     private var resources = ArrayList<Resource>()
     private var properties: Properties? = null
     private val XML_INPUT_FACTORY = com.ctc.wstx.stax.WstxInputFactory()
+    private val modCount = AtomicLong()
+
+    /**
+     * The version is increased every time the properties are changed
+     * */
+    val version get() = modCount.get()
 
     val loadedResources get() = resources.map { it.name }
 
@@ -60,11 +67,13 @@ class KConfiguration(
             unset(name)
         } else {
             props[name] = value
+            modCount.incrementAndGet()
         }
     }
 
     fun unset(name: String) {
         props.remove(name)
+        modCount.incrementAndGet()
     }
 
     operator fun get(name: String): String? {
@@ -89,12 +98,14 @@ class KConfiguration(
     @Synchronized
     fun reloadConfiguration() {
         properties = null // trigger reload
+        modCount.incrementAndGet()
     }
 
     @Synchronized
     private fun addResourceObject(resource: Resource) {
         resources.add(resource) // add to resources
         loadProps(properties, resources.size - 1, false)
+        modCount.incrementAndGet()
     }
 
     @get:Synchronized
@@ -137,6 +148,7 @@ class KConfiguration(
     fun clear() {
         if (properties != null) {
             props.clear()
+            modCount.incrementAndGet()
         }
     }
 
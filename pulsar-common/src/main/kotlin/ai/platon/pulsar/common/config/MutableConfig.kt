@@ -46,6 +46,7 @@ open class MutableConfig : ImmutableConfig {
      */
     operator fun set(name: String, value: String?) {
         conf[name] = value
+        notifyChanged(name)
     }
 
     /**
@@ -114,6 +115,7 @@ open class MutableConfig : ImmutableConfig {
      */
     fun setStrings(name: String?, vararg values: String) {
         conf.setStrings(name!!, *values)
+        notifyChanged(name)
     }
 
     /**
@@ -174,6 +176,7 @@ open class MutableConfig : ImmutableConfig {
      */
     fun setBooleanIfUnset(name: String, value: Boolean) {
         unbox().setIfUnset(name, toString(value))
+        notifyChanged(name)
     }
 
     /**
@@ -218,6 +221,7 @@ open class MutableConfig : ImmutableConfig {
      */
     fun unset(name: String) {
         conf.unset(name)
+        notifyChanged(name)
     }
 
     /**
@@ -226,6 +230,7 @@ open class MutableConfig : ImmutableConfig {
      */
     fun clear() {
         conf.clear()
+        notifyChanged(null)
     }
 
     /**
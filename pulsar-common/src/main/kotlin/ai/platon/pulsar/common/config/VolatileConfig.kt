@@ -1,6 +1,8 @@
 package ai.platon.pulsar.common.config
 
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
 import kotlin.reflect.KClass
 
 /**
@@ -9,6 +11,10 @@ import kotlin.reflect.KClass
  */
 open class VolatileConfig : MutableConfig {
     var fallbackConfig: ImmutableConfig? = null
+        set(value) {
+            field = value
+            notifyChanged(null)
+        }
 
     private val ttls: MutableMap<String, Int> = ConcurrentHashMap()
     val variables: MutableMap<String, Any> = ConcurrentHashMap()
@@ -34,6 +40,31 @@ open class VolatileConfig : MutableConfig {
         }
     }
 
+    /**
+     * The fallback config and its version when the version of this config is calculated last time
+     * */
+    private class FallbackStamp(val config: ImmutableConfig?, val version: Long)
+
+    private val fallbackStamp = AtomicReference(FallbackStamp(null, 0))
+    private val fallbackChanges = AtomicLong()
+
+    /**
+     * The version is increased if either this config or the fallback config is changed. Both parts never decrease,
+     * a change of the fallback config, or a different fallback config, is counted as a change of this config
+     * */
+    override val version: Long get() {
+        val fallback = fallbackConfig
+        val fallbackVersion = fallback?.version ?: 0
+        val stamp = fallbackStamp.get()
+        if (stamp.config !== fallback || stamp.version != fallbackVersion) {
+            if (fallbackStamp.compareAndSet(stamp, FallbackStamp(fallback, fallbackVersion))) {
+                fallbackChanges.incrementAndGet()
+            }
+        }
+
+        return super.version + fallbackChanges.get()
+    }
+
     fun reset() {
         ttls.clear()
         variables.clear()
@@ -93,6 +124,7 @@ open class VolatileConfig : MutableConfig {
     open fun setTTL(name: String, ttl: Int) {
         if (ttl > 0) {
             ttls[name] = ttl
+            notifyChanged(name)
         } else {
             ttls.remove(name)
             super.unset(name)
@@ -148,6 +180,13 @@ open class VolatileConfig : MutableConfig {
         return false
     }
 
+    /**
+     * A property with a ttl expires by a rule outside of the config, so it can not be cached
+     * */
+    override fun isCacheable(name: String): Boolean {
+        return name !in ttls && fallbackConfig?.isCacheable(name) != false
+    }
+
     companion object {
         val EMPTY = VolatileConfig()
         val UNSAFE = VolatileConfig()
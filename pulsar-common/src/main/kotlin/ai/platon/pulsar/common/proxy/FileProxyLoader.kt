@@ -5,14 +5,20 @@ import ai.platon.pulsar.common.config.ImmutableConfig
 import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.nio.file.Files
+import java.nio.file.Path
 import java.time.Duration
 
 /**
- * Load proxies from proxy vendors
+ * Load proxies from the files in [proxyDir], a line of a file is a proxy which can be parsed by [ProxyEntry.parse]
  */
-open class FileProxyLoader(conf: ImmutableConfig): ProxyLoader(conf) {
+open class FileProxyLoader(
+        conf: ImmutableConfig,
+        val proxyDir: Path
+): ProxyLoader(conf) {
     private val log = LoggerFactory.getLogger(FileProxyLoader::class.java)
 
+    constructor(conf: ImmutableConfig): this(conf, AppPaths.ENABLED_PROXY_DIR)
+
     @Synchronized
     @Throws(IOException::class, NoProxyException::class)
     override fun updateProxies(reloadInterval: Duration): List<ProxyEntry> {
@@ -23,7 +29,7 @@ open class FileProxyLoader(conf: ImmutableConfig): ProxyLoader(conf) {
 
     @Throws(IOException::class, NoProxyException::class)
     private fun updateProxies0(reloadInterval: Duration): List<ProxyEntry> {
-        return Files.list(AppPaths.ENABLED_PROXY_DIR).filter { Files.isRegularFile(it) }
+        return Files.list(proxyDir).filter { Files.isRegularFile(it) }
                 .iterator().asSequence()
                 .map { Files.readAllLines(it) }
                 .flatMap { it.mapNotNull { ProxyEntry.parse(it) } }
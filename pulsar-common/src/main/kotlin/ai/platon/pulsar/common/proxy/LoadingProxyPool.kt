@@ -15,15 +15,15 @@ import java.util.concurrent.TimeUnit
  * Check all unavailable proxies, recover them if possible.
  * This might take a long time, so it should be run in a separate thread
  */
-class LoadingProxyPool(
+open class LoadingProxyPool(
         val proxyLoader: ProxyLoader,
         conf: ImmutableConfig
 ): ProxyPool(conf) {
 
     private val log = LoggerFactory.getLogger(LoadingProxyPool::class.java)
 
-    private val bannedIps get() = proxyLoader.bannedIps
-    private val bannedSegments get() = proxyLoader.bannedSegments
+    protected val bannedIps get() = proxyLoader.bannedIps
+    protected val bannedSegments get() = proxyLoader.bannedSegments
 
     @Throws(ProxyException::class)
     override fun take(): ProxyEntry? {
@@ -62,7 +62,7 @@ class LoadingProxyPool(
         log.info("Banned segments ({}): {}", bannedSegments.size, s)
     }
 
-    private fun ban(proxyEntry: ProxyEntry) {
+    protected fun ban(proxyEntry: ProxyEntry) {
         // local proxy server
         if (proxyEntry.host == "127.0.0.1") {
             return
@@ -115,7 +115,7 @@ class LoadingProxyPool(
         return proxy.takeIf { banState == null }
     }
 
-    private fun handleBanState(proxyEntry: ProxyEntry): ProxyEntry.BanState {
+    protected fun handleBanState(proxyEntry: ProxyEntry): ProxyEntry.BanState {
         val banStrategy = proxyLoader.banStrategy?:""
         return when {
             banStrategy == "" -> ProxyEntry.BanState.OK
@@ -4,6 +4,8 @@ import ai.platon.pulsar.common.*
 import ai.platon.pulsar.common.config.CapabilityTypes.PROXY_POOL_CAPACITY
 import ai.platon.pulsar.common.config.CapabilityTypes.PROXY_POOL_POLLING_TIMEOUT
 import ai.platon.pulsar.common.config.ImmutableConfig
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.nio.file.Files
@@ -37,13 +39,13 @@ open class ProxyPool(conf: ImmutableConfig): AutoCloseable {
     val isActive get() = !closed.get() && AppContext.isActive
     var lastActiveTime = Instant.now()
 
-    operator fun contains(element: ProxyEntry): Boolean = freeProxies.contains(element)
+    open operator fun contains(element: ProxyEntry): Boolean = freeProxies.contains(element)
 
-    operator fun iterator(): MutableIterator<ProxyEntry> = freeProxies.iterator()
+    open operator fun iterator(): MutableIterator<ProxyEntry> = freeProxies.iterator()
 
-    val size get() = freeProxies.size
+    open val size get() = freeProxies.size
 
-    fun clear() = freeProxies.clear()
+    open fun clear() = freeProxies.clear()
 
     open fun offer(proxyEntry: ProxyEntry): Boolean {
         proxyEntries.add(proxyEntry)
@@ -66,6 +68,34 @@ open class ProxyPool(conf: ImmutableConfig): AutoCloseable {
         return null
     }
 
+    /**
+     * Take a proxy in a coroutine, the calling thread is not blocked
+     *
+     * @param domain The domain to visit with the proxy, a pool might prefer proxies serving the domain well
+     * @param priority The priority of the caller, a smaller value means a higher priority
+     * */
+    @Throws(ProxyException::class)
+    open suspend fun takeSuspend(domain: String? = null, priority: Int = Priority13.NORMAL.value): ProxyEntry? {
+        return withContext(Dispatchers.IO) { take() }
+    }
+
+    /**
+     * Give back a proxy which is still usable, the proxy is dropped by default
+     * */
+    open fun release(proxyEntry: ProxyEntry) {
+    }
+
+    /**
+     * Report the result of a task served by the proxy, a pool might select proxies by the results
+     *
+     * @param domain The domain of the task
+     * @param success If the task is success
+     * @param responseTime The time to finish the task
+     * @param banned If the proxy is banned by the domain
+     * */
+    open fun feedback(proxyEntry: ProxyEntry, domain: String, success: Boolean, responseTime: Duration, banned: Boolean = false) {
+    }
+
     /**
      * The proxy may be recovered later
      */
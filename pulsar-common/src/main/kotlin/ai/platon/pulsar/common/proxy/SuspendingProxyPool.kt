@@ -0,0 +1,265 @@
+package ai.platon.pulsar.common.proxy
+
+import ai.platon.pulsar.common.concurrent.ConcurrentPassiveExpiringSet
+import ai.platon.pulsar.common.concurrent.PriorityWaitingQueue
+import ai.platon.pulsar.common.config.ImmutableConfig
+import kotlinx.coroutines.*
+import org.slf4j.LoggerFactory
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.pow
+
+/**
+ * The health of a proxy. Both the success rate and the latency are exponentially weighted moving averages,
+ * and they decay to the initial values with a half life of [halfLife] if the proxy is not used, so a proxy
+ * failed long ago gets another chance.
+ * */
+class ProxyHealth(
+    val initialLatencyMillis: Double = DEFAULT_LATENCY_MILLIS,
+    val halfLife: Duration = DEFAULT_HALF_LIFE
+) {
+    companion object {
+        const val DEFAULT_LATENCY_MILLIS = 1000.0
+        val DEFAULT_HALF_LIFE: Duration = Duration.ofMinutes(5)
+        /**
+         * The weight of a new sample
+         * */
+        const val ALPHA = 0.3
+    }
+
+    private var successRate0 = 1.0
+    private var latencyMillis0 = initialLatencyMillis
+    private var updateTime = System.currentTimeMillis()
+
+    val successRate @Synchronized get() = decay(successRate0, 1.0, System.currentTimeMillis())
+    val latencyMillis @Synchronized get() = decay(latencyMillis0, initialLatencyMillis, System.currentTimeMillis())
+
+    /**
+     * The score of the proxy, a healthy and fast proxy has a higher score
+     * */
+    val score get() = successRate / (1 + latencyMillis / 1000)
+
+    @Synchronized
+    fun update(success: Boolean, responseMillis: Long) {
+        val now = System.currentTimeMillis()
+        successRate0 = ALPHA * (if (success) 1.0 else 0.0) + (1 - ALPHA) * decay(successRate0, 1.0, now)
+        latencyMillis0 = ALPHA * responseMillis + (1 - ALPHA) * decay(latencyMillis0, initialLatencyMillis, now)
+        updateTime = now
+    }
+
+    private fun decay(value: Double, initialValue: Double, now: Long): Double {
+        val weight = 0.5.pow((now - updateTime).toDouble() / halfLife.toMillis())
+        return initialValue + (value - initialValue) * weight
+    }
+
+    override fun toString() = String.format("%.2f %.0fms", successRate, latencyMillis)
+}
+
+/**
+ * A proxy pool for coroutines, [takeSuspend] waits for a proxy without blocking the calling thread.
+ *
+ * 1. proxies are prefetched from the [proxyLoader] in background when the free proxies are running low
+ * 2. the free proxy with the highest score is taken, the score is calculated from the [ProxyHealth],
+ *    and a proxy which served the domain successfully is preferred
+ * 3. a proxy banned by the proxy loader is dropped, and a proxy banned by a domain is not used for that domain
+ *    until the ban expires
+ * 4. a waiter with a higher priority is served first when a proxy is returned or loaded
+ */
+open class SuspendingProxyPool(
+    proxyLoader: ProxyLoader,
+    conf: ImmutableConfig
+): LoadingProxyPool(proxyLoader, conf) {
+    companion object {
+        /**
+         * The score bonus of a proxy which served the domain successfully
+         * */
+        const val AFFINITY_BONUS = 0.5
+        /**
+         * A released proxy with a lower success rate is dropped
+         * */
+        const val MIN_SUCCESS_RATE = 0.5
+    }
+
+    private val log = LoggerFactory.getLogger(SuspendingProxyPool::class.java)
+
+    private val freeProxyQueue = PriorityWaitingQueue<ProxyEntry>()
+    private val healths = ConcurrentHashMap<ProxyEntry, ProxyHealth>()
+    /**
+     * Elements are "host:port domain"
+     * */
+    private val domainBans = ConcurrentPassiveExpiringSet<String>(proxyLoader.ipTimeToBan)
+    private val lowWatermark = (capacity / 5).coerceAtLeast(1)
+    private val loading = AtomicBoolean()
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+
+    val numTakes = AtomicLong()
+    val numTimeouts = AtomicLong()
+    val numAffinityHits = AtomicLong()
+    val numLoads = AtomicLong()
+    val totalWaitMillis = AtomicLong()
+    val maxWaitMillis = AtomicLong()
+    val meanWaitMillis get() = totalWaitMillis.get() / numTakes.get().coerceAtLeast(1)
+
+    override val size get() = freeProxyQueue.size
+
+    /**
+     * The number of proxies with health records, the record of a proxy is removed when it's retired
+     * */
+    val numHealthRecords get() = healths.size
+
+    /**
+     * The number of coroutines waiting for proxies
+     * */
+    val numWaiters get() = freeProxyQueue.numWaiters
+
+    override fun contains(element: ProxyEntry) = element in freeProxyQueue
+
+    override fun iterator() = freeProxyQueue.toList().toMutableList().iterator()
+
+    override fun clear() = freeProxyQueue.clear()
+
+    fun healthOf(proxyEntry: ProxyEntry): ProxyHealth = healths.computeIfAbsent(proxyEntry) { createHealth(it) }
+
+    override fun offer(proxyEntry: ProxyEntry): Boolean {
+        if (!isActive || freeProxyQueue.size >= capacity) {
+            return false
+        }
+
+        synchronized(proxyEntries) { proxyEntries.add(proxyEntry) }
+        proxyEntry.setFree()
+        freeProxyQueue.offer(proxyEntry)
+        return true
+    }
+
+    /**
+     * Block the calling thread until a proxy is available or timeout, call [takeSuspend] in coroutines
+     * */
+    @Throws(ProxyException::class)
+    override fun take(): ProxyEntry? = runBlocking { takeSuspend() }
+
+    @Throws(ProxyException::class)
+    override suspend fun takeSuspend(domain: String?, priority: Int): ProxyEntry? {
+        lastActiveTime = Instant.now()
+        if (!isActive) {
+            return null
+        }
+
+        val startTime = System.currentTimeMillis()
+        // check the ban states without the lock of the queue, the proxies offered later are checked before offered
+        val unusable = freeProxyQueue.toList().filterTo(HashSet()) { it.isRetired || it.isExpired || isBanned(it) }
+        if (unusable.isNotEmpty()) {
+            freeProxyQueue.removeIf { it in unusable }
+        }
+        prefetchIfNecessary()
+
+        val proxy = freeProxyQueue.take(priority, pollingTimeout) { select(it, domain) }
+
+        val waitMillis = System.currentTimeMillis() - startTime
+        numTakes.incrementAndGet()
+        totalWaitMillis.addAndGet(waitMillis)
+        maxWaitMillis.accumulateAndGet(waitMillis) { a, b -> maxOf(a, b) }
+        if (proxy == null) {
+            numTimeouts.incrementAndGet()
+            log.info("No proxy available in {}ms | {}", waitMillis, this)
+        } else if (domain != null && proxy.servedDomains.contains(domain)) {
+            numAffinityHits.incrementAndGet()
+        }
+
+        return proxy?.also { it.lastActiveTime = Instant.now() }
+    }
+
+    /**
+     * Give back the proxy if it's still healthy, so it can be taken again
+     * */
+    override fun release(proxyEntry: ProxyEntry) {
+        val healthy = !proxyEntry.isGone && !proxyEntry.isExpired && healthOf(proxyEntry).successRate >= MIN_SUCCESS_RATE
+        if (healthy && !isBanned(proxyEntry)) {
+            offer(proxyEntry)
+        }
+    }
+
+    override fun feedback(proxyEntry: ProxyEntry, domain: String, success: Boolean, responseTime: Duration, banned: Boolean) {
+        // a retired proxy never comes back, do not create a health record for it again
+        if (!proxyEntry.isRetired) {
+            healthOf(proxyEntry).update(success, responseTime.toMillis())
+        }
+        if (banned) {
+            domainBans.add("${proxyEntry.hostPort} $domain")
+            log.info("Proxy is banned by {} | {}", domain, proxyEntry.display)
+        }
+    }
+
+    override fun retire(proxyEntry: ProxyEntry) {
+        super.retire(proxyEntry)
+        freeProxyQueue.remove(proxyEntry)
+        healths.remove(proxyEntry)
+    }
+
+    override fun close() {
+        super.close()
+        scope.cancel()
+    }
+
+    override fun toString(): String = String.format("total %d, free: %d, waiters: %d, banH: %d banS: %d",
+        proxyEntries.size, freeProxyQueue.size, freeProxyQueue.numWaiters, bannedIps.size, bannedSegments.size)
+
+    /**
+     * Choose the usable proxy with the highest score, it's called with the lock of the queue held,
+     * so only the cheap checks are performed
+     * */
+    private fun select(candidates: Collection<ProxyEntry>, domain: String?): ProxyEntry? {
+        var best: ProxyEntry? = null
+        var bestScore = Double.NEGATIVE_INFINITY
+        for (proxy in candidates) {
+            if (proxy.isRetired || proxy.isExpired || (domain != null && isBannedBy(proxy, domain))) {
+                continue
+            }
+
+            val score = score(proxy, domain)
+            if (score > bestScore) {
+                best = proxy
+                bestScore = score
+            }
+        }
+        return best
+    }
+
+    private fun score(proxyEntry: ProxyEntry, domain: String?): Double {
+        val score = healthOf(proxyEntry).score
+        return if (domain != null && proxyEntry.servedDomains.contains(domain)) score * (1 + AFFINITY_BONUS) else score
+    }
+
+    private fun isBanned(proxyEntry: ProxyEntry) = handleBanState(proxyEntry).isBanned
+
+    private fun isBannedBy(proxyEntry: ProxyEntry, domain: String) = "${proxyEntry.hostPort} $domain" in domainBans
+
+    private fun prefetchIfNecessary() {
+        if (freeProxyQueue.size < lowWatermark && isActive && loading.compareAndSet(false, true)) {
+            scope.launch {
+                try {
+                    load()
+                } catch (e: ProxyException) {
+                    log.warn("Failed to load proxies | {}", e.message)
+                } finally {
+                    loading.set(false)
+                }
+            }
+        }
+    }
+
+    @Throws(ProxyException::class)
+    private fun load() {
+        val proxies = proxyLoader.updateProxies(Duration.ZERO)
+        numLoads.incrementAndGet()
+        val newProxies = synchronized(proxyEntries) { proxies.filterNot { it in proxyEntries } }
+        newProxies.filterNot { isBanned(it) }.forEach { offer(it) }
+    }
+
+    private fun createHealth(proxyEntry: ProxyEntry): ProxyHealth {
+        val latency = if (proxyEntry.numTests.get() > 0) proxyEntry.testSpeed * 1000 else ProxyHealth.DEFAULT_LATENCY_MILLIS
+        return ProxyHealth(latency)
+    }
+}
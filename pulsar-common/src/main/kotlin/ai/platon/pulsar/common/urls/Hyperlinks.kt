@@ -40,6 +40,11 @@ interface UrlAware {
      * */
     val configuredUrl: String
 
+    /**
+     * The reversed url which is used as the key in the storage, null if the url is malformed, see [Urls.reverseUrl]
+     * */
+    val reversedUrl: String? get() = Urls.reverseUrlOrNull(url)
+
     /**
      * If this is a Nil url who's url is AppConstants.NIL_PAGE_URL
      * */
@@ -101,8 +106,24 @@ abstract class AbstractUrl(
     override var href: String? = null
 ) : UrlAware, ComparableUrlAware {
 
+    /**
+     * The url and the reversed url, the reversed url is computed again only if the url is changed
+     * */
+    @Volatile
+    private var reversedUrlCache: Pair<String, String?>? = null
+
     override val configuredUrl get() = if (args != null) "$url $args" else url
 
+    override val reversedUrl: String?
+        get() {
+            val u = url
+            val cache = reversedUrlCache
+            if (cache != null && cache.first == u) {
+                return cache.second
+            }
+            return Urls.reverseUrlOrNull(u).also { reversedUrlCache = u to it }
+        }
+
     override val isNil: Boolean get() = url == AppConstants.NIL_PAGE_URL
 
     /**
@@ -0,0 +1,235 @@
+package ai.platon.pulsar.common.urls
+
+import java.net.MalformedURLException
+import java.net.URL
+
+/**
+ * A read only view of an absolute url, the components are slices of the url string if possible.
+ *
+ * The common urls are parsed without [java.net.URL]: the urls start with "http://" or "https://", and the authority
+ * is a plain host name or IPv4 address with an optional port. All the other urls are parsed by [java.net.URL], so
+ * the components of a view are always the same as the ones of the [java.net.URL] of the same spec, and so is the
+ * reversed url.
+ * */
+class UrlView private constructor(
+    /**
+     * The url string this view is parsed from
+     * */
+    val spec: String,
+    /**
+     * The same as [URL.getProtocol]
+     * */
+    val scheme: CharSequence,
+    /**
+     * The same as [URL.getHost]
+     * */
+    val host: CharSequence,
+    /**
+     * The same as [URL.getPort]
+     * */
+    val port: Int,
+    /**
+     * The same as [URL.getPath]
+     * */
+    val path: CharSequence,
+    /**
+     * The same as [URL.getQuery]
+     * */
+    val query: CharSequence?,
+    /**
+     * The same as [URL.getFile], the path and the query
+     * */
+    val file: CharSequence,
+    /**
+     * The same as [URL.getRef]
+     * */
+    val ref: CharSequence?
+) {
+    /**
+     * The lowercased host name, the same as `URL(spec).host.toLowerCase()`
+     * */
+    val hostName: String get() = host.toString().toLowerCase()
+
+    /**
+     * Reverse the url, the same as [Urls.reverseUrl]
+     * */
+    fun reverse(): String {
+        val buf = StringBuilder(spec.length + 8)
+
+        /* reverse host */
+        Urls.reverseAppendSplits(host, buf)
+
+        /* put protocol */
+        buf.append(':')
+        buf.append(scheme)
+
+        /* put port if necessary */
+        if (port != -1) {
+            buf.append(':')
+            buf.append(port)
+        }
+
+        /* put path */
+        if (file.isNotEmpty() && '/' != file[0]) {
+            buf.append('/')
+        }
+        buf.append(file)
+
+        return buf.toString()
+    }
+
+    override fun equals(other: Any?) = other is UrlView && spec == other.spec
+
+    override fun hashCode() = spec.hashCode()
+
+    override fun toString() = spec
+
+    /**
+     * A slice of a string, the characters are not copied until [toString] is called
+     * */
+    private class Slice(val source: String, val start: Int, val end: Int) : CharSequence {
+        override val length get() = end - start
+
+        override fun get(index: Int) = source[start + index]
+
+        override fun subSequence(startIndex: Int, endIndex: Int): CharSequence {
+            require(startIndex in 0..endIndex && endIndex <= length)
+            return Slice(source, start + startIndex, start + endIndex)
+        }
+
+        override fun equals(other: Any?): Boolean {
+            return other is CharSequence && length == other.length && indices.all { get(it) == other[it] }
+        }
+
+        override fun hashCode() = toString().hashCode()
+
+        override fun toString() = source.substring(start, end)
+    }
+
+    companion object {
+        /**
+         * Parse the url, the same as `URL(spec)` does
+         *
+         * @throws MalformedURLException if the url is malformed
+         * */
+        @Throws(MalformedURLException::class)
+        @JvmStatic
+        fun parse(spec: String): UrlView {
+            return parseFast(spec) ?: of(spec, URL(spec))
+        }
+
+        /**
+         * Parse the url, or return null if the url is malformed, the same as [Urls.getURLOrNull] does
+         * */
+        @JvmStatic
+        fun parseOrNull(spec: String?): UrlView? {
+            if (spec.isNullOrBlank()) return null
+
+            return parseFast(spec) ?: try {
+                of(spec, URL(spec))
+            } catch (e: MalformedURLException) {
+                null
+            }
+        }
+
+        /**
+         * Create a view of a [URL]
+         * */
+        @JvmStatic
+        fun of(url: URL): UrlView = of(url.toString(), url)
+
+        private fun of(spec: String, url: URL): UrlView {
+            return UrlView(spec, url.protocol, url.host, url.port, url.path, url.query, url.file, url.ref)
+        }
+
+        /**
+         * Parse the common urls, the parsing follows exactly the steps of `URL(spec)`, but urls with the
+         * following features are left to [java.net.URL]:
+         * 1. leading or trailing whitespaces, or a "url:" prefix
+         * 2. a scheme which is not "http" or "https" in lower case
+         * 3. user info, IPv6 address, a host name with characters other than letters, digits, '.', '-' and '_'
+         * 4. an empty host, an empty port, or a port with more than 9 digits
+         * */
+        private fun parseFast(spec: String): UrlView? {
+            val schemeEnd = when {
+                spec.startsWith("http://") -> 4
+                spec.startsWith("https://") -> 5
+                else -> return null
+            }
+
+            if (spec[spec.length - 1] <= ' ') {
+                return null
+            }
+
+            var limit = spec.length
+
+            /* the ref starts after the first '#' */
+            var ref: CharSequence? = null
+            val refStart = spec.indexOf('#', schemeEnd + 1)
+            if (refStart != -1) {
+                ref = Slice(spec, refStart + 1, limit)
+                limit = refStart
+            }
+
+            /* the query starts after the first '?' */
+            var query: CharSequence? = null
+            val queryStart = spec.indexOf('?')
+            if (queryStart != -1 && queryStart < limit) {
+                query = Slice(spec, queryStart + 1, limit)
+            }
+            val fileEnd = limit
+            if (query != null) {
+                limit = queryStart
+            }
+
+            /* the authority ends before the first '/' */
+            val authorityStart = schemeEnd + 3
+            var portStart = -1
+            var i = authorityStart
+            while (i < limit) {
+                val c = spec[i]
+                if (c == '/') {
+                    break
+                } else if (c == ':') {
+                    if (portStart != -1) return null
+                    portStart = i + 1
+                } else if (portStart == -1) {
+                    if (!isHostChar(c)) return null
+                } else if (c !in '0'..'9') {
+                    return null
+                }
+                ++i
+            }
+            val authorityEnd = i
+
+            val hostEnd = if (portStart == -1) authorityEnd else portStart - 1
+            if (hostEnd == authorityStart) {
+                return null
+            }
+
+            var port = -1
+            if (portStart != -1) {
+                val n = authorityEnd - portStart
+                if (n == 0 || n > 9) {
+                    return null
+                }
+                port = 0
+                for (j in portStart until authorityEnd) {
+                    port = port * 10 + (spec[j] - '0')
+                }
+            }
+
+            val scheme = if (schemeEnd == 4) "http" else "https"
+            val host = Slice(spec, authorityStart, hostEnd)
+            val path = Slice(spec, authorityEnd, limit)
+            // the path and the query are adjacent in the spec
+            val file = Slice(spec, authorityEnd, fileEnd)
+
+            return UrlView(spec, scheme, host, port, path, query, file, ref)
+        }
+
+        private fun isHostChar(c: Char): Boolean {
+            return c in 'a'..'z' || c in 'A'..'Z' || c in '0'..'9' || c == '.' || c == '-' || c == '_'
+        }
+    }
+}
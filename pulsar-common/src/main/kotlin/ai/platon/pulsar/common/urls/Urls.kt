@@ -2,7 +2,6 @@ package ai.platon.pulsar.common.urls
 
 import ai.platon.pulsar.common.Strings
 import ai.platon.pulsar.common.config.AppConstants.INTERNAL_URL_PREFIX
-import org.apache.commons.lang3.StringUtils
 import org.apache.http.client.utils.URIBuilder
 import java.net.MalformedURLException
 import java.net.URI
@@ -24,7 +23,7 @@ object Urls {
 
     @JvmStatic
     fun isValidUrl(url: String?): Boolean {
-        return getURLOrNull(url) != null
+        return UrlView.parseOrNull(url) != null
     }
 
     /**
@@ -171,24 +170,21 @@ object Urls {
      * @return Reversed url
      * @throws MalformedURLException
      */
+    @Throws(MalformedURLException::class)
     @JvmStatic
     fun reverseUrl(url: String): String {
-        return reverseUrl(URL(url))
+        return UrlView.parse(url).reverse()
     }
 
     @JvmStatic
     fun reverseUrlOrEmpty(url: String): String {
-        return try {
-            reverseUrl(URL(url))
-        } catch (e: MalformedURLException) {
-            ""
-        }
+        return reverseUrlOrNull(url) ?: ""
     }
 
     @JvmStatic
     fun reverseUrlOrNull(url: String): String? {
         return try {
-            reverseUrl(URL(url))
+            UrlView.parse(url).reverse()
         } catch (e: MalformedURLException) {
             null
         }
@@ -207,33 +203,7 @@ object Urls {
      */
     @JvmStatic
     fun reverseUrl(url: URL): String {
-        val host = url.host
-        val file = url.file
-        val protocol = url.protocol
-        val port = url.port
-
-        val buf = StringBuilder()
-
-        /* reverse host */
-        reverseAppendSplits(host, buf)
-
-        /* put protocol */
-        buf.append(':')
-        buf.append(protocol)
-
-        /* put port if necessary */
-        if (port != -1) {
-            buf.append(':')
-            buf.append(port)
-        }
-
-        /* put path */
-        if (file.isNotEmpty() && '/' != file[0]) {
-            buf.append('/')
-        }
-        buf.append(file)
-
-        return buf.toString()
+        return UrlView.of(url).reverse()
     }
 
     /**
@@ -260,20 +230,26 @@ object Urls {
         if (pathBegin == -1) {
             pathBegin = reversedUrl.length
         }
-        val sub = reversedUrl.substring(0, pathBegin)
 
-        val splits = StringUtils.splitPreserveAllTokens(sub, ':') // {<reversed host>, <port>, <protocol>}
+        // <reversed host>:<protocol>[:<port>], the fields are located in place instead of being split
+        val hostEnd = reversedUrl.indexOf(':').takeIf { it in 0 until pathBegin }
+            ?: throw ArrayIndexOutOfBoundsException("No protocol in the reversed url: $reversedUrl")
+        var protocolEnd = reversedUrl.indexOf(':', hostEnd + 1)
+        if (protocolEnd !in 0 until pathBegin) {
+            protocolEnd = pathBegin
+        }
+        // a port is appended only if there are exactly three fields
+        val hasPort = protocolEnd < pathBegin && reversedUrl.indexOf(':', protocolEnd + 1) !in 0 until pathBegin
 
-        buf.append(splits[1]) // put protocol
+        buf.append(reversedUrl, hostEnd + 1, protocolEnd) // put protocol
         buf.append("://")
-        reverseAppendSplits(splits[0], buf) // splits[0] is reversed
-        // host
-        if (splits.size == 3) { // has a port
+        reverseAppendSplits(reversedUrl, buf, 0, hostEnd) // put the unreversed host
+        if (hasPort) {
             buf.append(':')
-            buf.append(splits[2])
+            buf.append(reversedUrl, protocolEnd + 1, pathBegin)
         }
 
-        buf.append(reversedUrl.substring(pathBegin))
+        buf.append(reversedUrl, pathBegin, reversedUrl.length)
 
         return buf.toString()
     }
@@ -433,16 +409,37 @@ object Urls {
         return reversedUrl.substring(0, reversedUrl.indexOf(':'))
     }
 
-    private fun reverseAppendSplits(string: String, buf: StringBuilder) {
-        val splits = StringUtils.split(string, '.')
-        if (splits.isNotEmpty()) {
-            for (i in splits.size - 1 downTo 1) {
-                buf.append(splits[i])
+    /**
+     * Append the dot separated fields in reverse order, empty fields are dropped, the same as joining the reversed
+     * result of `StringUtils.split(string, '.')`, but without splitting
+     * */
+    internal fun reverseAppendSplits(
+        string: CharSequence, buf: StringBuilder, from: Int = 0, to: Int = string.length
+    ) {
+        val start = buf.length
+        var end = to
+        while (end > from) {
+            while (end > from && string[end - 1] == '.') {
+                --end
+            }
+            if (end == from) {
+                break
+            }
+
+            var begin = end - 1
+            while (begin > from && string[begin - 1] != '.') {
+                --begin
+            }
+
+            if (buf.length > start) {
                 buf.append('.')
             }
-            buf.append(splits[0])
-        } else {
-            buf.append(string)
+            buf.append(string, begin, end)
+            end = begin
+        }
+
+        if (buf.length == start) {
+            buf.append(string, from, to)
         }
     }
 
@@ -0,0 +1,74 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.collect.ConcurrentBloomFilter
+import ai.platon.pulsar.common.collect.ConcurrentCountingBloomFilter.Companion.hash
+import org.junit.Test
+import java.nio.file.Files
+import java.util.stream.IntStream
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TestConcurrentBloomFilter {
+
+    @Test
+    fun testPut() {
+        val filter = ConcurrentBloomFilter.create(1000, 0.01)
+        val url = "https://www.amazon.com/dp/B0001"
+        assertFalse(filter.mightContain(url))
+        assertTrue(filter.put(url))
+        assertTrue(filter.mightContain(url))
+        assertTrue(filter.mightContain(hash(url)))
+        assertFalse(filter.put(url))
+        assertEquals(1L, filter.approximateCount)
+    }
+
+    @Test
+    fun testFalsePositiveRate() {
+        val n = 100_000
+        val fpp = 0.01
+        val filter = ConcurrentBloomFilter.create(n.toLong(), fpp)
+        IntStream.range(0, n).parallel().forEach { filter.put("https://www.amazon.com/dp/B0$it") }
+        IntStream.range(0, n).forEach { assertTrue { filter.mightContain("https://www.amazon.com/dp/B0$it") } }
+
+        val falsePositives = (0 until n).count { filter.mightContain("https://www.ebay.com/itm/$it") }
+        assertTrue("False positives: $falsePositives") { falsePositives < 2 * fpp * n }
+    }
+
+    @Test
+    fun testSingleShard() {
+        val filter = ConcurrentBloomFilter.create(1000, 0.01, 1)
+        (0 until 1000).forEach { filter.put("https://www.amazon.com/dp/B0$it") }
+        (0 until 1000).forEach { assertTrue { filter.mightContain("https://www.amazon.com/dp/B0$it") } }
+    }
+
+    @Test
+    fun testIllegalArguments() {
+        assertFailsWith<IllegalArgumentException> { ConcurrentBloomFilter.create(0) }
+        assertFailsWith<IllegalArgumentException> { ConcurrentBloomFilter.create(1000, 1.0) }
+        assertFailsWith<IllegalArgumentException> { ConcurrentBloomFilter.create(1000, 0.01, 3) }
+    }
+
+    @Test
+    fun testReopen() {
+        val path = Files.createTempDirectory("pulsar-test").resolve("seen.bloom")
+        val n = 10_000
+
+        ConcurrentBloomFilter.open(path, n.toLong(), 0.01).use { filter ->
+            IntStream.range(0, n).parallel().forEach { filter.put("https://www.amazon.com/dp/B0$it") }
+            assertTrue(filter.approximateCount > n * 0.98)
+        }
+
+        // the parameters in the file are used
+        ConcurrentBloomFilter.open(path, 10, 0.5).use { filter ->
+            assertEquals(n.toLong(), filter.expectedInsertions)
+            assertTrue(filter.approximateCount > n * 0.98)
+            (0 until n).forEach { assertTrue { filter.mightContain("https://www.amazon.com/dp/B0$it") } }
+            assertFalse(filter.put("https://www.amazon.com/dp/B00"))
+        }
+
+        val notBloomFilter = Files.write(path.resolveSibling("not.bloom"), "hello".toByteArray())
+        assertFailsWith<IllegalArgumentException> { ConcurrentBloomFilter.open(notBloomFilter) }
+    }
+}
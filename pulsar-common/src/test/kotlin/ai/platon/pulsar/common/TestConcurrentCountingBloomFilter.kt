@@ -0,0 +1,67 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.collect.ConcurrentCountingBloomFilter
+import ai.platon.pulsar.common.collect.ConcurrentCountingBloomFilter.Companion.hash
+import org.junit.Test
+import java.util.stream.IntStream
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class TestConcurrentCountingBloomFilter {
+
+    @Test
+    fun testCount() {
+        val filter = ConcurrentCountingBloomFilter(1000, 0.01)
+        val h = hash("https://www.amazon.com/dp/B0001")
+        assertEquals(0, filter.count(h))
+        repeat(3) { filter.add(h) }
+        assertEquals(3, filter.count(h))
+
+        repeat(100) { filter.add(h) }
+        assertEquals(ConcurrentCountingBloomFilter.MAX_COUNT, filter.count(h))
+    }
+
+    @Test
+    fun testFalsePositiveRate() {
+        val n = 100_000
+        val fpp = 0.01
+        val filter = ConcurrentCountingBloomFilter(n, fpp)
+        IntStream.range(0, n - 1).parallel().forEach { filter.add(hash("https://www.amazon.com/dp/B0$it")) }
+        IntStream.range(0, n - 1).forEach { assertTrue { filter.count(hash("https://www.amazon.com/dp/B0$it")) > 0 } }
+
+        val falsePositives = (0 until n).count { filter.count(hash("https://www.ebay.com/itm/$it")) > 0 }
+        assertTrue("False positives: $falsePositives") { falsePositives < 2 * fpp * n }
+    }
+
+    @Test
+    fun testDecay() {
+        val n = 1000
+        val filter = ConcurrentCountingBloomFilter(n, 0.01)
+        val h = hash("https://www.amazon.com/dp/B0001")
+        repeat(4) { filter.add(h) }
+        // the filter ages after every n additions
+        repeat(n - 4) { filter.add(hash("https://www.amazon.com/dp/B1$it")) }
+        assertEquals(4, filter.count(h))
+        repeat(n) { filter.add(hash("https://www.amazon.com/dp/B2$it")) }
+        assertEquals(2, filter.count(h))
+        repeat(n) { filter.add(hash("https://www.amazon.com/dp/B3$it")) }
+        assertEquals(1, filter.count(h))
+        repeat(n) { filter.add(hash("https://www.amazon.com/dp/B4$it")) }
+        assertEquals(0, filter.count(h))
+    }
+
+    @Test
+    fun testItemAddedJustBeforeDecayIsRemembered() {
+        val n = 1000
+        val filter = ConcurrentCountingBloomFilter(n, 0.01)
+        val h = hash("https://www.amazon.com/dp/B0001")
+        repeat(n - 1) { filter.add(hash("https://www.amazon.com/dp/B1$it")) }
+        // the n-th addition triggers the decay
+        filter.add(h)
+        assertEquals(1, filter.count(h))
+        repeat(n - 1) { filter.add(hash("https://www.amazon.com/dp/B2$it")) }
+        assertEquals(1, filter.count(h))
+        filter.add(hash("https://www.amazon.com/dp/B3"))
+        assertEquals(0, filter.count(h))
+    }
+}
@@ -0,0 +1,106 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.concurrent.ConcurrentSegmentedCache
+import org.junit.Test
+import java.time.Duration
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class TestConcurrentSegmentedCache {
+
+    @Test
+    fun testRecentlyUsedItemsSurvive() {
+        val cache = ConcurrentSegmentedCache<Int, String>(10)
+        for (i in 0 until 100) {
+            if (i > 10) {
+                // keep 1 to 4 fresh
+                IntRange(1, 4).forEach { cache[it] }
+            }
+            cache.put(i, "a$i")
+        }
+
+        IntRange(1, 4).forEach { assertNotNull(cache[it]) }
+        assertNull(cache[5])
+        assertNull(cache[6])
+        assertTrue { cache.size <= 10 }
+        assertTrue { cache.evictionCount > 0 }
+    }
+
+    @Test
+    fun testPerEntryTTL() {
+        val cache = ConcurrentSegmentedCache<Int, String>(100, Duration.ofMinutes(10))
+        cache.put(1, "a1")
+        cache.put(2, "a2", Duration.ofMillis(100))
+        Thread.sleep(200)
+
+        assertNotNull(cache[1])
+        assertNull(cache[2])
+        assertEquals(1L, cache.expirationCount)
+        assertEquals(1, cache.size)
+    }
+
+    @Test
+    fun testWeightedCapacity() {
+        val cache = ConcurrentSegmentedCache<Int, String>(10_000, weigher = { _, v -> v.length.toLong() })
+        IntRange(1, 200).forEach { cache.put(it, "a".repeat(100)) }
+
+        assertTrue { cache.weight <= 10_000 }
+        assertTrue { cache.size > 0 }
+        assertEquals(cache.size * 100L, cache.weight)
+    }
+
+    @Test
+    fun testShrink() {
+        val cache = ConcurrentSegmentedCache<Int, String>(10_000, weigher = { _, v -> v.length.toLong() })
+        IntRange(1, 200).forEach { cache.put(it, "a".repeat(100)) }
+        cache.shrink(0.5)
+
+        assertTrue { cache.weight <= 5_000 }
+        cache.shrink(0.0)
+        assertEquals(0, cache.size)
+    }
+
+    @Test
+    fun testHitsAndMisses() {
+        val cache = ConcurrentSegmentedCache<String, String>(100)
+        cache.put("a", "1")
+        cache["a"]
+        cache["a"]
+        cache["b"]
+
+        assertEquals(2L, cache.hitCount)
+        assertEquals(1L, cache.missCount)
+
+        assertEquals("2", cache.computeIfAbsent("c") { "2" })
+        assertEquals("2", cache.computeIfAbsent("c") { "3" })
+
+        cache.remove("a")
+        assertNull(cache["a"])
+        cache.clear()
+        assertEquals(0, cache.size)
+        assertEquals(0L, cache.weight)
+    }
+
+    @Test
+    fun testConcurrentAccess() {
+        val cache = ConcurrentSegmentedCache<Int, Int>(1000)
+        val executor = Executors.newFixedThreadPool(8)
+        repeat(8) { t ->
+            executor.submit {
+                for (i in 0 until 100_000) {
+                    val key = (i * 31 + t) % 5000
+                    cache[key] ?: cache.put(key, i)
+                }
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+
+        assertTrue { cache.size <= 1000 }
+        assertEquals(cache.size.toLong(), cache.weight)
+    }
+}
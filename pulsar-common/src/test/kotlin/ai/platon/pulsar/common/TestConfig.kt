@@ -1,5 +1,6 @@
 package ai.platon.pulsar.common
 
+import ai.platon.pulsar.common.config.ConfigKey
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.config.MutableConfig
 import ai.platon.pulsar.common.config.VolatileConfig
@@ -8,6 +9,7 @@ import org.junit.Test
 import java.time.Duration
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
+import kotlin.test.assertNull
 import kotlin.test.assertTrue
 
 /**
@@ -90,4 +92,94 @@ class TestConfig {
         println(StringUtils.join(conf.getStrings(n1), ", "))
         assertEquals(4, conf.getStrings(n1).size)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testTypedKey() {
+        val conf = MutableConfig()
+        val key = ConfigKey.ofInt("test.typed.int", 2)
+        assertEquals(2, conf[key])
+        conf.setInt(key.name, 3)
+        assertEquals(3, conf[key])
+        conf.unset(key.name)
+        assertEquals(2, conf[key])
+
+        val durationKey = ConfigKey.ofDuration("test.typed.duration", Duration.ZERO)
+        conf[durationKey.name] = "3m"
+        assertEquals(Duration.ofMinutes(3), conf[durationKey])
+        assertEquals(ConfigKey.ofDuration("test.typed.duration", Duration.ZERO), durationKey)
+
+        val uintKey = ConfigKey.ofUint("test.typed.uint", 5)
+        conf.setInt(uintKey.name, -1)
+        assertEquals(5, conf[uintKey])
+    }
+
+    @Test
+    fun testTypedKeyWithSystemProperty() {
+        val conf = ImmutableConfig()
+        val key = ConfigKey.ofBoolean("test.typed.boolean", true)
+        assertTrue(conf[key])
+        try {
+            System.setProperty(key.name, "false")
+            assertFalse(conf[key])
+        } finally {
+            System.clearProperty(key.name)
+        }
+        assertTrue(conf[key])
+    }
+
+    @Test
+    fun testTypedKeyWithFallback() {
+        val mutableConfig = MutableConfig()
+        val key = ConfigKey.ofInt("test.typed.fallback", 1)
+        val conf = VolatileConfig(mutableConfig)
+        assertEquals(1, conf[key])
+        mutableConfig.setInt(key.name, 2)
+        assertEquals(2, conf[key])
+        conf.setInt(key.name, 3)
+        assertEquals(3, conf[key])
+        conf.unset(key.name)
+        assertEquals(2, conf[key])
+    }
+
+    @Test
+    fun testTypedKeyWithReplacedFallback() {
+        val key = ConfigKey.ofInt("test.typed.replaced.fallback", 1)
+        val fallback = MutableConfig().apply { setInt(key.name, 2) }
+        val fallback2 = MutableConfig().apply { setInt(key.name, 3) }
+        // the version of the first fallback is one more than the version of the second one
+        fallback.invalidate()
+        assertEquals(fallback2.version + 1, fallback.version)
+
+        val conf = VolatileConfig(fallback)
+        assertEquals(2, conf[key])
+        val version = conf.version
+        conf.fallbackConfig = fallback2
+        assertTrue { conf.version > version }
+        assertEquals(3, conf[key])
+    }
+
+    @Test
+    fun testTypedKeyWithTTL() {
+        var expired = false
+        val conf = object: VolatileConfig(MutableConfig()) {
+            override fun isExpired(key: String) = expired
+        }
+        val key = ConfigKey.ofInt("test.typed.ttl", 1)
+        conf[key.name, "2"] = 1
+        assertEquals(2, conf[key])
+        expired = true
+        assertEquals(1, conf[key])
+    }
+
+    @Test
+    fun testChangeListener() {
+        val conf = MutableConfig()
+        val changes = mutableListOf<String?>()
+        conf.addChangeListener { changes.add(it) }
+        conf["n1"] = "v1"
+        conf.unset("n1")
+        conf.clear()
+        assertEquals(listOf("n1", "n1", null), changes)
+        assertNull(conf["n1"])
+    }
+}
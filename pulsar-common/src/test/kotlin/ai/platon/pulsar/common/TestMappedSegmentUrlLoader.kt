@@ -0,0 +1,101 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.collect.MappedSegmentUrlLoader
+import ai.platon.pulsar.common.collect.UrlGroup
+import ai.platon.pulsar.common.collect.UrlSegmentLog
+import ai.platon.pulsar.common.urls.Hyperlink
+import ai.platon.pulsar.common.urls.UrlAware
+import org.apache.commons.io.FileUtils
+import org.junit.After
+import org.junit.Test
+import java.nio.file.Files
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class TestMappedSegmentUrlLoader {
+    private val directory = Files.createTempDirectory("segments")
+    private val segmentSize = 4096
+    private val group = UrlGroup("test", 1, 0, 100)
+    private val urls = IntRange(1, 1000)
+        .map { Hyperlink("https://www.amazon.com/s?k=insomnia&i=aps&page=$it", "page $it", it, args = "-i 1s") }
+
+    @After
+    fun tearDown() {
+        FileUtils.deleteDirectory(directory.toFile())
+    }
+
+    @Test
+    fun testSaveAndLoad() {
+        MappedSegmentUrlLoader(directory, segmentSize).use { loader ->
+            loader.saveAll(urls, group)
+            assertEquals(urls.size, loader.countRemaining(group))
+
+            val sink = mutableListOf<UrlAware>()
+            while (loader.countRemaining(group) > 0) {
+                loader.loadToNow(sink, group.pageSize, group)
+            }
+
+            assertEquals(urls.map { it.url }, sink.map { it.url })
+            val first = sink.first() as Hyperlink
+            assertEquals("page 1", first.text)
+            assertEquals(1, first.order)
+            assertEquals("-i 1s", first.args)
+        }
+    }
+
+    @Test
+    fun testRecoverAfterRestart() {
+        MappedSegmentUrlLoader(directory, segmentSize).use { loader ->
+            loader.saveAll(urls, group)
+            repeat(5) { loader.loadToNow(mutableListOf(), group.pageSize, group) }
+        }
+
+        MappedSegmentUrlLoader(directory, segmentSize).use { loader ->
+            // the last page is not committed since it might be still in the queue
+            assertEquals(urls.size - 4 * group.pageSize, loader.countRemaining(group))
+            val sink = mutableListOf<UrlAware>()
+            loader.loadToNow(sink, 1, group)
+            assertEquals(urls[4 * group.pageSize].url, sink.first().url)
+        }
+    }
+
+    @Test
+    fun testConsumedSegmentsAreDeleted() {
+        MappedSegmentUrlLoader(directory, segmentSize).use { loader ->
+            loader.saveAll(urls, group)
+            val log = loader.openLog(loader.nameOf(group))
+            val numSegments = Files.list(log.directory).use { it.count() }
+            assertTrue { numSegments > 10 }
+
+            while (loader.countRemaining(group) > 0) {
+                loader.loadToNow(mutableListOf(), group.pageSize, group)
+            }
+            loader.loadToNow(mutableListOf(), group.pageSize, group)
+            assertTrue { Files.list(log.directory).use { it.count() } < numSegments }
+
+            assertEquals(0L, loader.deleteAll(group))
+            loader.save(urls[0], group)
+            assertEquals(1, loader.countRemaining(group))
+            assertEquals(1L, loader.deleteAll(group))
+            assertEquals(0, loader.countRemaining(group))
+        }
+    }
+
+    @Test
+    fun testCommitSkipsRecords() {
+        UrlSegmentLog(directory, segmentSize).use { log ->
+            val offsets = urls.map { log.append(it, it.order.toLong()) }
+            log.commit(offsets[10])
+            assertEquals(urls.size - 10, log.remaining)
+
+            var record: UrlSegmentLog.Record? = null
+            log.read(1) { record = it }
+            assertEquals(offsets[10], record?.offset)
+            assertEquals(11L, record?.time)
+        }
+
+        UrlSegmentLog(directory, segmentSize).use { log ->
+            assertEquals(urls.size - 10, log.remaining)
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.concurrent.PriorityWaitingQueue
+import ai.platon.pulsar.common.concurrent.WaitingCanceledException
+import kotlinx.coroutines.*
+import org.junit.Test
+import java.time.Duration
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+class TestPriorityWaitingQueue {
+
+    private val timeout = Duration.ofSeconds(10)
+
+    @Test
+    fun testHandOffByPriority() = runBlocking<Unit> {
+        val queue = PriorityWaitingQueue<Int>()
+        val served = ConcurrentLinkedQueue<Int>()
+
+        val jobs = listOf(Priority13.LOWER, Priority13.HIGHEST, Priority13.NORMAL, Priority13.HIGHER).map { p ->
+            launch {
+                queue.take(p.value, timeout)
+                served.add(p.value)
+            }.also { yield() }
+        }
+        while (queue.numWaiters < 4) delay(10)
+
+        repeat(4) { queue.offer(it) }
+        jobs.joinAll()
+
+        val expected = listOf(Priority13.HIGHEST, Priority13.HIGHER, Priority13.NORMAL, Priority13.LOWER).map { it.value }
+        assertEquals(expected, served.toList())
+    }
+
+    @Test
+    fun testTimeout() = runBlocking<Unit> {
+        val queue = PriorityWaitingQueue<Int>()
+        assertNull(queue.take(0, Duration.ofMillis(100)))
+        assertEquals(0, queue.numWaiters)
+
+        queue.offer(1)
+        assertEquals(1, queue.take(0, Duration.ofMillis(100)))
+    }
+
+    @Test
+    fun testCancelWaiters() = runBlocking<Unit> {
+        val queue = PriorityWaitingQueue<Int>()
+        val waiter = async { runCatching { queue.take(0, timeout, "a") } }
+        while (queue.numWaiters < 1) delay(10)
+
+        assertEquals(1, queue.cancelWaiters("a"))
+        assertFailsWith<WaitingCanceledException> { waiter.await().getOrThrow() }
+        assertEquals(0, queue.numWaiters)
+    }
+
+    @Test
+    fun testCoroutineCancellation() = runBlocking<Unit> {
+        val queue = PriorityWaitingQueue<Int>()
+        val job = launch { queue.take(0, timeout) }
+        while (queue.numWaiters < 1) delay(10)
+
+        job.cancelAndJoin()
+        assertEquals(0, queue.numWaiters)
+
+        queue.offer(1)
+        assertEquals(1, queue.size)
+    }
+}
@@ -0,0 +1,128 @@
+package ai.platon.pulsar.common
+
+import ai.platon.pulsar.common.config.CapabilityTypes.PROXY_POOL_POLLING_TIMEOUT
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.common.proxy.FileProxyLoader
+import ai.platon.pulsar.common.proxy.ProxyEntry
+import ai.platon.pulsar.common.proxy.SuspendingProxyPool
+import kotlinx.coroutines.*
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+/**
+ * Test [SuspendingProxyPool] with mock proxies loaded from a local file
+ * */
+class TestSuspendingProxyPool {
+    private val conf = VolatileConfig().apply { set(PROXY_POOL_POLLING_TIMEOUT, "1s") }
+    private lateinit var proxyDir: Path
+    private lateinit var proxyPool: SuspendingProxyPool
+
+    @Before
+    fun setup() {
+        proxyDir = Files.createTempDirectory("pulsar-test")
+        proxyPool = SuspendingProxyPool(FileProxyLoader(conf, proxyDir), conf)
+    }
+
+    @After
+    fun tearDown() {
+        proxyPool.close()
+    }
+
+    @Test
+    fun testPrefetch() = runBlocking<Unit> {
+        writeProxies(10)
+        val proxy = proxyPool.takeSuspend()
+        assertNotNull(proxy)
+        withTimeout(5000) { while (proxyPool.size < 9) delay(10) }
+        assertEquals(9, proxyPool.size)
+        assertEquals(1L, proxyPool.numLoads.get())
+    }
+
+    @Test
+    fun testTimeout() = runBlocking<Unit> {
+        assertNull(proxyPool.takeSuspend())
+        assertEquals(1L, proxyPool.numTimeouts.get())
+        assertEquals(0, proxyPool.numWaiters)
+    }
+
+    @Test
+    fun testHealthScore() = runBlocking<Unit> {
+        val (failing, slow, good) = offerProxies(3)
+        repeat(5) { proxyPool.feedback(failing, "amazon.com", false, Duration.ofMillis(100)) }
+        proxyPool.feedback(slow, "amazon.com", true, Duration.ofSeconds(10))
+        proxyPool.feedback(good, "amazon.com", true, Duration.ofMillis(100))
+
+        assertEquals(good, proxyPool.takeSuspend())
+        assertEquals(slow, proxyPool.takeSuspend())
+        assertEquals(failing, proxyPool.takeSuspend())
+    }
+
+    @Test
+    fun testDomainAffinityAndBan() = runBlocking<Unit> {
+        val (a, b) = offerProxies(2)
+        b.servedDomains.add("amazon.com")
+        assertEquals(b, proxyPool.takeSuspend("amazon.com"))
+        assertEquals(1L, proxyPool.numAffinityHits.get())
+
+        proxyPool.feedback(b, "amazon.com", false, Duration.ofMillis(100), banned = true)
+        proxyPool.release(b)
+        // b is banned by amazon.com, but it's still good for other domains
+        assertEquals(a, proxyPool.takeSuspend("amazon.com"))
+        assertNull(proxyPool.takeSuspend("amazon.com"))
+        assertEquals(b, proxyPool.takeSuspend("ebay.com"))
+    }
+
+    @Test
+    fun testRetiredProxyIsNotReleased() = runBlocking<Unit> {
+        val (a, b) = offerProxies(2)
+        assertEquals(a, proxyPool.takeSuspend())
+        // the proxy of a leaked context is retired instead of released
+        proxyPool.feedback(a, "amazon.com", false, Duration.ofMillis(100))
+        assertEquals(1, proxyPool.numHealthRecords)
+        proxyPool.retire(a)
+        proxyPool.feedback(a, "amazon.com", false, Duration.ofMillis(100))
+        proxyPool.release(a)
+        // the health record of the retired proxy is dropped
+        assertEquals(0, proxyPool.numHealthRecords)
+        assertEquals(b, proxyPool.takeSuspend())
+        assertNull(proxyPool.takeSuspend())
+    }
+
+    @Test
+    fun testHandOff() = runBlocking<Unit> {
+        val (a) = offerProxies(1)
+        assertEquals(a, proxyPool.takeSuspend())
+
+        val waiter = async { proxyPool.takeSuspend() }
+        while (proxyPool.numWaiters < 1) delay(10)
+        proxyPool.release(a)
+        assertEquals(a, waiter.await())
+    }
+
+    @Test
+    fun testConcurrentTakes() = runBlocking<Unit> {
+        val n = 50
+        writeProxies(n)
+        val proxies = withContext(Dispatchers.Default) {
+            (1..n).map { async { proxyPool.takeSuspend() } }.awaitAll()
+        }
+        assertEquals(n, proxies.filterNotNull().distinct().size)
+        assertEquals(n.toLong(), proxyPool.numTakes.get())
+    }
+
+    private fun writeProxies(n: Int) {
+        val lines = (1..n).map { "127.0.0.1:${10000 + it}" }
+        Files.write(proxyDir.resolve("proxies.txt"), lines)
+    }
+
+    private fun offerProxies(n: Int): List<ProxyEntry> {
+        return (1..n).map { ProxyEntry("127.0.0.1", 10000 + it) }.onEach { proxyPool.offer(it) }
+    }
+}
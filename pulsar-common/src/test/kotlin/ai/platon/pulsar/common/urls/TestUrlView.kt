@@ -0,0 +1,201 @@
+package ai.platon.pulsar.common.urls
+
+import org.apache.commons.lang3.StringUtils
+import org.junit.Test
+import java.net.MalformedURLException
+import java.net.URL
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+/**
+ * Check that [UrlView] and the url functions based on it are the same as the ones based on [java.net.URL],
+ * for the urls generated randomly, most of them are common urls and the others have tricky features
+ * */
+class TestUrlView {
+    private val random = Random(20210325)
+
+    private val schemes = listOf("http", "https", "HTTP", "Https", "ftp", "file", "jar", "mailto", "htp", "1http", "")
+    private val separators = listOf("://", ":/", ":", ":///", "://///", "//", "")
+    private val hostChars = "abcxyzABCXYZ0123456789.-_"
+    private val trickyHostChars = "@:[]%!~ 中é"
+    private val pathChars = "abcXYZ019/./..-_~%:@;=&+,"
+    private val trickyChars = "?#/ \t:@[]"
+
+    @Test
+    fun testCommonUrls() {
+        val urls = listOf(
+            "http://bar.foo.com:8983/to/index.html?a=b",
+            "https://www.amazon.com/s?k=Baby+Girls%27+One-Piece+Footies&rh=node%3A2475809011&page=1",
+            "http://foo.com", "http://foo.com/", "http://foo.com?a", "http://foo.com#a?b", "http://foo.com:0080/a",
+            "http://1.2.3.4:8080/a/b/../c?d#e", "http://..a..b../", "http://...", "http://a_b-c.d/?#"
+        )
+
+        urls.forEach { assertSame(it) }
+    }
+
+    @Test
+    fun testTrickyUrls() {
+        val urls = listOf(
+            "", " ", "http", "http:", "http://", "http:///", "http:////a", "http://:80/", "http://a:/", "http://a:-1/",
+            "http://a:+1/", "http://a:99999999999/", "http://u@a/", "http://u@v@a/", "http://[::1]:8080/", "http://[x]/",
+            " http://a/ ", "url:http://a/", "URL:http://a/", "HTTP://A/", "http://a?b/c", "http://a#b/c", "mailto:a@b",
+            "file:/var/www/index.html", "http://中文.com/", "http://a b/", "http://a/b c", "http://a/\u0001"
+        )
+
+        urls.forEach { assertSame(it) }
+    }
+
+    @Test
+    fun testRandomUrls() {
+        repeat(200_000) {
+            assertSame(randomUrl())
+        }
+    }
+
+    @Test
+    fun testRandomReversedUrls() {
+        repeat(200_000) {
+            val reversedUrl = if (random.nextInt(4) == 0) randomString(trickyChars + "a.:", 12) else {
+                legacyReverseUrlOrNull(randomUrl()) ?: return@repeat
+            }
+
+            val expected = kotlin.runCatching { legacyUnreverseUrl(reversedUrl) }.getOrNull()
+            assertEquals(expected, Urls.unreverseUrlOrNull(reversedUrl), reversedUrl)
+        }
+    }
+
+    @Test
+    fun testReverseHost() {
+        repeat(100_000) {
+            val host = randomString(".ab", 8)
+            val expected = legacyReverseHost(host)
+            assertEquals(expected, Urls.reverseHost(host), host)
+            assertEquals(legacyReverseHost(expected), Urls.unreverseHost(expected), host)
+        }
+    }
+
+    @Test
+    fun testCachedReversedUrl() {
+        val url = PlainUrl("http://bar.foo.com:8983/to/index.html?a=b")
+        assertEquals("com.foo.bar:http:8983/to/index.html?a=b", url.reversedUrl)
+        url.url = "https://foo.com/"
+        assertEquals("com.foo:https/", url.reversedUrl)
+        url.url = "not a url"
+        assertNull(url.reversedUrl)
+    }
+
+    private fun assertSame(spec: String) {
+        val url = kotlin.runCatching { URL(spec) }.getOrNull()
+        val view = UrlView.parseOrNull(spec)
+
+        if (url == null || spec.isBlank()) {
+            assertNull(view, spec)
+            assertNull(Urls.reverseUrlOrNull(spec), spec)
+            assertEquals("", Urls.reverseUrlOrEmpty(spec), spec)
+            assertEquals(false, Urls.isValidUrl(spec), spec)
+            return
+        }
+
+        assertNotNull(view, spec)
+        assertEquals(url.protocol, view.scheme.toString(), spec)
+        assertEquals(url.host, view.host.toString(), spec)
+        assertEquals(url.host.toLowerCase(), view.hostName, spec)
+        assertEquals(url.port, view.port, spec)
+        assertEquals(url.path, view.path.toString(), spec)
+        assertEquals(url.query, view.query?.toString(), spec)
+        assertEquals(url.file, view.file.toString(), spec)
+        assertEquals(url.ref, view.ref?.toString(), spec)
+
+        val reversedUrl = legacyReverseUrl(url)
+        assertEquals(reversedUrl, view.reverse(), spec)
+        assertEquals(reversedUrl, Urls.reverseUrl(spec), spec)
+        assertEquals(reversedUrl, Urls.reverseUrlOrNull(spec), spec)
+        assertEquals(reversedUrl, Urls.reverseUrl(url), spec)
+        assertEquals(true, Urls.isValidUrl(spec), spec)
+    }
+
+    private fun randomUrl(): String {
+        // most urls are common urls
+        val common = random.nextInt(10) < 7
+
+        val buf = StringBuilder()
+        if (!common && random.nextInt(10) == 0) {
+            buf.append(randomString(" \t", 2))
+        }
+        buf.append(if (common) listOf("http", "https").random(random) else schemes.random(random))
+        buf.append(if (common) "://" else separators.random(random))
+        if (!common && random.nextInt(5) == 0) {
+            buf.append(randomString(hostChars + "@", 4)).append('@')
+        }
+        buf.append(randomString(if (common) hostChars else hostChars + trickyHostChars, 12))
+        if (random.nextInt(4) == 0) {
+            buf.append(':').append(randomString(if (common) "0123456789" else "0123456789+-", 6))
+        }
+        repeat(random.nextInt(4)) {
+            buf.append('/').append(randomString(if (common) pathChars else pathChars + trickyChars, 8))
+        }
+        if (random.nextInt(3) == 0) {
+            buf.append('?').append(randomString(if (common) "$pathChars?" else pathChars + trickyChars, 10))
+        }
+        if (random.nextInt(5) == 0) {
+            buf.append('#').append(randomString(if (common) "$pathChars?#" else pathChars + trickyChars, 6))
+        }
+        if (!common && random.nextInt(10) == 0) {
+            buf.append(randomString(" \t", 2))
+        }
+
+        return buf.toString()
+    }
+
+    private fun randomString(chars: String, maxLength: Int): String {
+        val length = random.nextInt(maxLength + 1)
+        return String(CharArray(length) { chars[random.nextInt(chars.length)] })
+    }
+
+    /**
+     * The url reversion based on [java.net.URL]
+     * */
+    private fun legacyReverseUrl(url: URL): String {
+        val buf = StringBuilder()
+        buf.append(legacyReverseHost(url.host))
+        buf.append(':').append(url.protocol)
+        if (url.port != -1) {
+            buf.append(':').append(url.port)
+        }
+        if (url.file.isNotEmpty() && '/' != url.file[0]) {
+            buf.append('/')
+        }
+        buf.append(url.file)
+        return buf.toString()
+    }
+
+    private fun legacyReverseUrlOrNull(url: String): String? {
+        return try {
+            legacyReverseUrl(URL(url))
+        } catch (e: MalformedURLException) {
+            null
+        }
+    }
+
+    private fun legacyReverseHost(host: String): String {
+        val splits = StringUtils.split(host, '.')
+        return if (splits.isNotEmpty()) splits.reversed().joinToString(".") else host
+    }
+
+    private fun legacyUnreverseUrl(reversedUrl: String): String {
+        val buf = StringBuilder()
+        var pathBegin = reversedUrl.indexOf('/')
+        if (pathBegin == -1) {
+            pathBegin = reversedUrl.length
+        }
+        val splits = StringUtils.splitPreserveAllTokens(reversedUrl.substring(0, pathBegin), ':')
+        buf.append(splits[1]).append("://").append(legacyReverseHost(splits[0]))
+        if (splits.size == 3) {
+            buf.append(':').append(splits[2])
+        }
+        buf.append(reversedUrl.substring(pathBegin))
+        return buf.toString()
+    }
+}
@@ -1,17 +1,15 @@
 package ai.platon.pulsar.dom.features
 
 import ai.platon.pulsar.common.ResourceLoader
-import ai.platon.pulsar.common.math.vectors.get
-import ai.platon.pulsar.common.math.vectors.set
 import ai.platon.pulsar.dom.features.defined.*
 import ai.platon.pulsar.dom.nodes.DOMRect
 import ai.platon.pulsar.dom.nodes.forEachElement
 import ai.platon.pulsar.dom.nodes.node.ext.*
-import org.apache.commons.math3.linear.ArrayRealVector
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics
 import org.jsoup.nodes.Document
 import org.jsoup.nodes.Element
 import org.jsoup.nodes.Node
+import org.jsoup.nodes.NodeFeatureStore
 import org.jsoup.nodes.TextNode
 import org.jsoup.select.NodeTraversor
 import org.jsoup.select.NodeVisitor
@@ -28,7 +26,9 @@ class Level1FeatureCalculator: AbstractFeatureCalculator() {
     }
 
     override fun calculate(document: Document) {
-        NodeTraversor.traverse(Level1NodeFeatureCalculatorVisitor(), document)
+        // the features of all the nodes are kept in the document scope columns rather than a vector per node
+        val store = NodeFeatureStore(FeatureRegistry.registeredFeatures.size)
+        NodeTraversor.traverse(Level1NodeFeatureCalculatorVisitor(store, document.hasCapturedRects), document)
     }
 }
 
@@ -43,16 +43,19 @@ class ClassFactory : ai.platon.pulsar.common.ResourceLoader.ClassFactory {
     }
 }
 
-private class Level1NodeFeatureCalculatorVisitor: NodeVisitor {
+private class Level1NodeFeatureCalculatorVisitor(
+        val store: NodeFeatureStore,
+        val hasCapturedRects: Boolean = false
+): NodeVisitor {
     var sequence: Int = 0
         private set
 
     // hit when the node is first seen
     override fun head(node: Node, depth: Int) {
-        node.features = ArrayRealVector(FeatureRegistry.registeredFeatures.size)
+        node.bindFeatures(store, store.allocate())
 
-        node.features[DEP] = depth.toDouble()
-        node.features[SEQ] = sequence.toDouble()
+        node.setFeature(DEP, depth.toDouble())
+        node.setFeature(SEQ, sequence.toDouble())
 
         calcSelfIndicator(node)
         ++sequence
@@ -66,10 +69,10 @@ private class Level1NodeFeatureCalculatorVisitor: NodeVisitor {
 
         val rect = getDOMRect(node)
         if (!rect.isEmpty) {
-            node.features[TOP] = rect.top
-            node.features[LEFT] = rect.left
-            node.features[WIDTH] = rect.width
-            node.features[HEIGHT] = rect.height
+            node.setFeature(TOP, rect.top)
+            node.setFeature(LEFT, rect.left)
+            node.setFeature(WIDTH, rect.width)
+            node.setFeature(HEIGHT, rect.height)
         }
 
         if (node is TextNode) {
@@ -133,8 +136,8 @@ private class Level1NodeFeatureCalculatorVisitor: NodeVisitor {
             val parent = node.parent()
 
             // no-blank own text node
-            val otn = if (node.features[CH] == 0.0) 0.0 else 1.0
-            val votn = if (otn > 0 && node.features[WIDTH] > 0 && node.features[HEIGHT] > 0) 1.0 else 0.0
+            val otn = if (node.getFeature(CH) == 0.0) 0.0 else 1.0
+            val votn = if (otn > 0 && node.getFeature(WIDTH) > 0 && node.getFeature(HEIGHT) > 0) 1.0 else 0.0
             accumulateFeatures(parent,
                     FeatureEntry(TN, otn),
                     node.getFeatureEntry(CH)
@@ -159,7 +162,7 @@ private class Level1NodeFeatureCalculatorVisitor: NodeVisitor {
             // count of element siblings
             node.childNodes().forEach {
                 if (it is Element) {
-                    it.features[SIB] = node.features[C]
+                    it.setFeature(SIB, node.getFeature(C))
                 }
             }
         } // if
@@ -179,6 +182,10 @@ private class Level1NodeFeatureCalculatorVisitor: NodeVisitor {
     }
 
     private fun getDOMRect(node: Node): DOMRect {
+        if (hasCapturedRects) {
+            node.capturedRect?.let { return it }
+        }
+
         return if (node is TextNode) getDOMRectInternal("tv", node)
         else DOMRect.parseDOMRect(node.attr("vi"))
     }
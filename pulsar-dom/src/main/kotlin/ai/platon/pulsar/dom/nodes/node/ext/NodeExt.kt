@@ -8,8 +8,6 @@ import ai.platon.pulsar.common.config.AppConstants.PULSAR_ATTR_HIDDEN
 import ai.platon.pulsar.common.config.AppConstants.PULSAR_ATTR_OVERFLOW_HIDDEN
 import ai.platon.pulsar.common.geometric.str
 import ai.platon.pulsar.common.geometric.str2
-import ai.platon.pulsar.common.math.vectors.get
-import ai.platon.pulsar.common.math.vectors.set
 import ai.platon.pulsar.dom.features.FeatureEntry
 import ai.platon.pulsar.dom.features.FeatureFormatter
 import ai.platon.pulsar.dom.features.NodeFeature
@@ -30,18 +28,18 @@ import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.reflect.KProperty
 
 class DoubleFeature(val name: Int) {
-    operator fun getValue(thisRef: Node, property: KProperty<*>): Double = thisRef.features[name]
+    operator fun getValue(thisRef: Node, property: KProperty<*>): Double = thisRef.getFeature(name)
 
     operator fun setValue(thisRef: Node, property: KProperty<*>, value: Double) {
-        thisRef.features[name] = value
+        thisRef.setFeature(name, value)
     }
 }
 
 class IntFeature(val name: Int) {
-    operator fun getValue(thisRef: Node, property: KProperty<*>): Int = thisRef.features[name].toInt()
+    operator fun getValue(thisRef: Node, property: KProperty<*>): Int = thisRef.getFeature(name).toInt()
 
     operator fun setValue(thisRef: Node, property: KProperty<*>, value: Int) {
-        thisRef.features[name] = value.toDouble()
+        thisRef.setFeature(name, value.toDouble())
     }
 }
 
@@ -123,6 +121,11 @@ var Document.exportPaths by field { ExportPaths(it.baseUri()) }
 
 var Document.annotated by field { false }
 
+/**
+ * If the rectangles of the nodes are captured from the browser directly, see [capturedRect]
+ * */
+var Document.hasCapturedRects by field { false }
+
 // TODO: check if this override Node.isNil or not?
 val Element.isNil get() = this === nilElement
 
@@ -236,6 +239,12 @@ val Node.rectangle get() = Rectangle(x, y, width, height)
 
 val Node.area get() = width * height
 
+/**
+ * The layout rectangle captured from the browser directly, for example, by a DOM snapshot,
+ * it takes precedence over the rectangle encoded in the vi attribute
+ * */
+var Node.capturedRect by nullableField<DOMRect>()
+
 /** Hidden flag set by browser */
 val Node.hasHiddenFlag: Boolean get() = hasAttr(PULSAR_ATTR_HIDDEN)
 /** Overflow hidden flag set by browser */
@@ -487,22 +496,16 @@ val Node.caption get() = getCaptionWords().joinToString(";")
 
 fun Node.attrOrNull(attributeKey: String): String? = (this as? Element)?.attr(attributeKey)?.takeIf { it.isNotBlank() }
 
-fun Node.getFeature(key: Int): Double = features[key]
-
-fun Node.getFeature(name: String): Double = features[NodeFeature.getKey(name)]
+fun Node.getFeature(name: String): Double = getFeature(NodeFeature.getKey(name))
 
 fun Node.getFeatureEntry(key: Int): FeatureEntry = FeatureEntry(key, getFeature(key))
 
-fun Node.setFeature(key: Int, value: Double) {
-    features[key] = value
-}
-
 fun Node.setFeature(key: Int, value: Int) {
-    features[key] = value.toDouble()
+    setFeature(key, value.toDouble())
 }
 
 fun Node.removeFeature(key: Int): Node {
-    features[key] = 0.0
+    setFeature(key, 0.0)
     return this
 }
 
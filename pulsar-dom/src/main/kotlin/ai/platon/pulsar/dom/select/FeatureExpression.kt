@@ -0,0 +1,365 @@
+package ai.platon.pulsar.dom.select
+
+import ai.platon.pulsar.dom.FeatureCalculatorFactory
+import ai.platon.pulsar.dom.features.FeatureRegistry
+import org.jsoup.nodes.Node
+import kotlin.math.*
+
+/**
+ * A mathematical and boolean expression over the node features, for example,
+ * `img == 1 && width > 400 && height > 300`.
+ *
+ * The expression is compiled once into a tree of primitive double operations, the feature names are resolved to
+ * feature keys at compile time, so evaluating does not lookup names or allocate. The compiled expression is
+ * immutable and can be shared by threads.
+ *
+ * The syntax is compatible with the subset of [EvalEx](https://github.com/uklimaschewski/EvalEx) used by
+ * the `:expr()` selector: the operators + - * / % ^, the comparisons == = != <> < <= > >=, the logical
+ * operators && || !, the functions NOT, IF, MIN, MAX, ABS, FLOOR, CEILING, SQRT, and the constants
+ * TRUE, FALSE, PI, E. A feature can be referenced with or without the prefix "_". Booleans are 1.0 and 0.0,
+ * and any non-zero value is treated as true.
+ * */
+class FeatureExpression private constructor(
+        val expr: String,
+        private val root: Term,
+        /**
+         * The keys of the referenced features
+         * */
+        val featureKeys: IntArray
+) {
+    /**
+     * If the expression results a boolean value
+     * */
+    val isBoolean get() = root.isBoolean
+
+    /**
+     * Evaluate the expression with the features of the node
+     * */
+    fun evaluate(node: Node): Double = root.eval(node)
+
+    /**
+     * Check if the node satisfies the expression, a node never matches if any referenced feature is NaN
+     * or the expression does not result a boolean value
+     * */
+    fun matches(node: Node): Boolean {
+        if (!root.isBoolean) {
+            return false
+        }
+
+        for (key in featureKeys) {
+            if (node.getFeature(key).isNaN()) {
+                return false
+            }
+        }
+
+        return root.eval(node) != 0.0
+    }
+
+    override fun toString() = expr
+
+    companion object {
+        /**
+         * Compile the expression
+         *
+         * @throws IllegalArgumentException if the expression is malformed or references an unknown feature
+         * */
+        @Throws(IllegalArgumentException::class)
+        fun compile(expr: String): FeatureExpression {
+            if (FeatureRegistry.registeredFeatures.isEmpty()) {
+                // the features are registered by the calculator
+                FeatureCalculatorFactory.calculator
+            }
+
+            val parser = Parser(expr)
+            val root = parser.parse()
+            return FeatureExpression(expr, root, parser.featureKeys.toIntArray())
+        }
+    }
+
+    internal abstract class Term {
+        open val isBoolean: Boolean get() = false
+        abstract fun eval(node: Node): Double
+    }
+
+    private class Constant(val value: Double): Term() {
+        override fun eval(node: Node) = value
+    }
+
+    private class Feature(val key: Int): Term() {
+        override fun eval(node: Node) = node.getFeature(key)
+    }
+
+    private enum class UnaryOp {
+        NEG { override fun apply(x: Double) = -x },
+        NOT { override fun apply(x: Double) = if (x == 0.0) 1.0 else 0.0 },
+        ABS { override fun apply(x: Double) = abs(x) },
+        FLOOR { override fun apply(x: Double) = floor(x) },
+        CEILING { override fun apply(x: Double) = ceil(x) },
+        SQRT { override fun apply(x: Double) = sqrt(x) };
+
+        abstract fun apply(x: Double): Double
+    }
+
+    private enum class BinaryOp(val isBoolean: Boolean = false) {
+        ADD { override fun apply(a: Double, b: Double) = a + b },
+        SUB { override fun apply(a: Double, b: Double) = a - b },
+        MUL { override fun apply(a: Double, b: Double) = a * b },
+        DIV { override fun apply(a: Double, b: Double) = a / b },
+        MOD { override fun apply(a: Double, b: Double) = a % b },
+        POW { override fun apply(a: Double, b: Double) = a.pow(b) },
+        MIN { override fun apply(a: Double, b: Double) = min(a, b) },
+        MAX { override fun apply(a: Double, b: Double) = max(a, b) },
+        EQ(true) { override fun apply(a: Double, b: Double) = bool(a == b) },
+        NE(true) { override fun apply(a: Double, b: Double) = bool(a != b) },
+        LT(true) { override fun apply(a: Double, b: Double) = bool(a < b) },
+        LE(true) { override fun apply(a: Double, b: Double) = bool(a <= b) },
+        GT(true) { override fun apply(a: Double, b: Double) = bool(a > b) },
+        GE(true) { override fun apply(a: Double, b: Double) = bool(a >= b) };
+
+        abstract fun apply(a: Double, b: Double): Double
+    }
+
+    private class Unary(val op: UnaryOp, val operand: Term): Term() {
+        override val isBoolean get() = op == UnaryOp.NOT
+        override fun eval(node: Node) = op.apply(operand.eval(node))
+    }
+
+    private class Binary(val op: BinaryOp, val left: Term, val right: Term): Term() {
+        override val isBoolean get() = op.isBoolean
+        override fun eval(node: Node) = op.apply(left.eval(node), right.eval(node))
+    }
+
+    private class And(val left: Term, val right: Term): Term() {
+        override val isBoolean get() = true
+        override fun eval(node: Node) = bool(left.eval(node) != 0.0 && right.eval(node) != 0.0)
+    }
+
+    private class Or(val left: Term, val right: Term): Term() {
+        override val isBoolean get() = true
+        override fun eval(node: Node) = bool(left.eval(node) != 0.0 || right.eval(node) != 0.0)
+    }
+
+    private class If(val condition: Term, val then: Term, val otherwise: Term): Term() {
+        override val isBoolean get() = then.isBoolean && otherwise.isBoolean
+        override fun eval(node: Node) = if (condition.eval(node) != 0.0) then.eval(node) else otherwise.eval(node)
+    }
+
+    /**
+     * A recursive descent parser, the precedences from low to high are:
+     * ||, &&, equality, relational, additive, multiplicative, unary, ^
+     * */
+    private class Parser(private val expr: String) {
+        val featureKeys = LinkedHashSet<Int>()
+        private var pos = 0
+
+        fun parse(): Term {
+            val term = parseOr()
+            skipWhitespace()
+            if (pos < expr.length) {
+                fail("Unexpected character '${expr[pos]}'")
+            }
+            return term
+        }
+
+        private fun parseOr(): Term {
+            var term = parseAnd()
+            while (match("||")) {
+                term = Or(term, parseAnd())
+            }
+            return term
+        }
+
+        private fun parseAnd(): Term {
+            var term = parseEquality()
+            while (match("&&")) {
+                term = And(term, parseEquality())
+            }
+            return term
+        }
+
+        private fun parseEquality(): Term {
+            var term = parseRelational()
+            while (true) {
+                term = when {
+                    match("==") -> Binary(BinaryOp.EQ, term, parseRelational())
+                    match("!=") || match("<>") -> Binary(BinaryOp.NE, term, parseRelational())
+                    match("=") -> Binary(BinaryOp.EQ, term, parseRelational())
+                    else -> return term
+                }
+            }
+        }
+
+        private fun parseRelational(): Term {
+            var term = parseAdditive()
+            while (true) {
+                term = when {
+                    lookingAt("<>") -> return term
+                    match("<=") -> Binary(BinaryOp.LE, term, parseAdditive())
+                    match(">=") -> Binary(BinaryOp.GE, term, parseAdditive())
+                    match("<") -> Binary(BinaryOp.LT, term, parseAdditive())
+                    match(">") -> Binary(BinaryOp.GT, term, parseAdditive())
+                    else -> return term
+                }
+            }
+        }
+
+        private fun parseAdditive(): Term {
+            var term = parseMultiplicative()
+            while (true) {
+                term = when {
+                    match("+") -> Binary(BinaryOp.ADD, term, parseMultiplicative())
+                    match("-") -> Binary(BinaryOp.SUB, term, parseMultiplicative())
+                    else -> return term
+                }
+            }
+        }
+
+        private fun parseMultiplicative(): Term {
+            var term = parseUnary()
+            while (true) {
+                term = when {
+                    match("*") -> Binary(BinaryOp.MUL, term, parseUnary())
+                    match("/") -> Binary(BinaryOp.DIV, term, parseUnary())
+                    match("%") -> Binary(BinaryOp.MOD, term, parseUnary())
+                    else -> return term
+                }
+            }
+        }
+
+        private fun parseUnary(): Term {
+            return when {
+                match("-") -> Unary(UnaryOp.NEG, parseUnary())
+                match("+") -> parseUnary()
+                lookingAt("!=") -> fail("Unexpected operator '!='")
+                match("!") -> Unary(UnaryOp.NOT, parseUnary())
+                else -> parsePower()
+            }
+        }
+
+        private fun parsePower(): Term {
+            val term = parsePrimary()
+            // right associative
+            return if (match("^")) Binary(BinaryOp.POW, term, parseUnary()) else term
+        }
+
+        private fun parsePrimary(): Term {
+            skipWhitespace()
+            if (pos >= expr.length) {
+                fail("Unexpected end of expression")
+            }
+
+            val c = expr[pos]
+            return when {
+                match("(") -> parseOr().also { expect(")") }
+                c.isDigit() || c == '.' -> Constant(parseNumber())
+                c.isLetter() || c == '_' -> parseIdentifier()
+                else -> fail("Unexpected character '$c'")
+            }
+        }
+
+        private fun parseIdentifier(): Term {
+            val start = pos
+            while (pos < expr.length && (expr[pos].isLetterOrDigit() || expr[pos] == '_')) {
+                ++pos
+            }
+            val name = expr.substring(start, pos).toLowerCase()
+
+            if (match("(")) {
+                return parseFunction(name)
+            }
+
+            return when (name) {
+                "true" -> Constant(1.0)
+                "false" -> Constant(0.0)
+                "pi" -> Constant(PI)
+                "e" -> Constant(E)
+                else -> {
+                    // the prefix "_" is compatible with Web SQL, may remove in later versions
+                    val key = FeatureRegistry.featureNamesToKeys[name]
+                            ?: FeatureRegistry.featureNamesToKeys[name.removePrefix("_")]
+                            ?: fail("Unknown feature '$name'")
+                    featureKeys.add(key)
+                    Feature(key)
+                }
+            }
+        }
+
+        private fun parseFunction(name: String): Term {
+            val args = mutableListOf<Term>()
+            if (!match(")")) {
+                do {
+                    args.add(parseOr())
+                } while (match(","))
+                expect(")")
+            }
+
+            fun arity(n: Int) {
+                if (args.size != n) fail("Function $name expects $n arguments, but got ${args.size}")
+            }
+
+            return when (name) {
+                "not" -> { arity(1); Unary(UnaryOp.NOT, args[0]) }
+                "abs" -> { arity(1); Unary(UnaryOp.ABS, args[0]) }
+                "floor" -> { arity(1); Unary(UnaryOp.FLOOR, args[0]) }
+                "ceiling" -> { arity(1); Unary(UnaryOp.CEILING, args[0]) }
+                "sqrt" -> { arity(1); Unary(UnaryOp.SQRT, args[0]) }
+                "if" -> { arity(3); If(args[0], args[1], args[2]) }
+                "min", "max" -> {
+                    if (args.isEmpty()) fail("Function $name expects at least one argument")
+                    val op = if (name == "min") BinaryOp.MIN else BinaryOp.MAX
+                    args.reduce { a, b -> Binary(op, a, b) }
+                }
+                else -> fail("Unknown function '$name'")
+            }
+        }
+
+        private fun parseNumber(): Double {
+            val start = pos
+            while (pos < expr.length && (expr[pos].isDigit() || expr[pos] == '.')) {
+                ++pos
+            }
+            if (pos < expr.length && (expr[pos] == 'e' || expr[pos] == 'E')) {
+                var p = pos + 1
+                if (p < expr.length && (expr[p] == '+' || expr[p] == '-')) ++p
+                if (p < expr.length && expr[p].isDigit()) {
+                    pos = p
+                    while (pos < expr.length && expr[pos].isDigit()) ++pos
+                }
+            }
+
+            val s = expr.substring(start, pos)
+            return s.toDoubleOrNull() ?: fail("Malformed number '$s'")
+        }
+
+        private fun skipWhitespace() {
+            while (pos < expr.length && expr[pos].isWhitespace()) {
+                ++pos
+            }
+        }
+
+        private fun lookingAt(token: String): Boolean {
+            skipWhitespace()
+            return expr.startsWith(token, pos)
+        }
+
+        private fun match(token: String): Boolean {
+            if (lookingAt(token)) {
+                pos += token.length
+                return true
+            }
+            return false
+        }
+
+        private fun expect(token: String) {
+            if (!match(token)) {
+                fail("'$token' expected")
+            }
+        }
+
+        private fun fail(message: String): Nothing {
+            throw IllegalArgumentException("$message at $pos in expression '$expr'")
+        }
+    }
+}
+
+private fun bool(value: Boolean) = if (value) 1.0 else 0.0
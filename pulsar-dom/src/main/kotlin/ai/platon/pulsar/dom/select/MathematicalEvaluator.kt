@@ -1,16 +1,12 @@
 package ai.platon.pulsar.dom.select
 
-import ai.platon.pulsar.dom.features.FeatureRegistry
 import ai.platon.pulsar.dom.features.defined.HEIGHT
 import ai.platon.pulsar.dom.features.defined.LEFT
 import ai.platon.pulsar.dom.features.defined.TOP
 import ai.platon.pulsar.dom.features.defined.WIDTH
-import ai.platon.pulsar.dom.nodes.node.ext.getFeature
-import com.udojava.evalex.Expression
 import org.jsoup.nodes.Document
 import org.jsoup.nodes.Element
 import org.jsoup.select.Evaluator
-import java.math.BigDecimal
 
 internal abstract class MathematicalEvaluator : Evaluator() {
 
@@ -73,28 +69,15 @@ internal abstract class MathematicalEvaluator : Evaluator() {
     }
 
     /**
-     * Evaluate simple mathematical and boolean expressions.
-     * @see [EvalEx](https://github.com/uklimaschewski/EvalEx)
+     * Evaluate simple mathematical and boolean expressions over the node features.
+     * The expression is compiled once, and the evaluator is thread safe.
+     * @see [FeatureExpression]
      */
     class ByExpression(private val expr: String) : Evaluator() {
-        private val expression = Expression(expr)
+        private val expression = FeatureExpression.compile(expr)
 
         override fun matches(root: Element, element: Element): Boolean {
-            for (name in FeatureRegistry.featureNames) {
-                // the prefix "_" is compatible with Web SQL, may remove in later versions
-                val v = element.getFeature(name)
-                if (v.isNaN()) {
-                    return false
-                }
-                val value = BigDecimal(v)
-                if (expr.contains("_$name")) {
-                    expression.setVariable("_$name", value)
-                } else if (expr.contains(name)) {
-                    expression.setVariable(name, value)
-                }
-            }
-
-            return expression.isBoolean && "1" == expression.eval().toString()
+            return expression.matches(element)
         }
 
         override fun toString(): String {
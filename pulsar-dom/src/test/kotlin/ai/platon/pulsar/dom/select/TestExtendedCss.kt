@@ -4,12 +4,17 @@ import ai.platon.pulsar.dom.Documents
 import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.dom.FeaturedDocument.Companion.SELECTOR_IN_BOX_DEVIATION
 import ai.platon.pulsar.dom.features.defined.HEIGHT
+import ai.platon.pulsar.dom.features.defined.IMG
+import ai.platon.pulsar.dom.features.defined.SIB
 import ai.platon.pulsar.dom.features.defined.WIDTH
 import ai.platon.pulsar.dom.nodes.node.ext.canonicalName
 import ai.platon.pulsar.dom.nodes.node.ext.getFeature
 import org.junit.Before
 import org.junit.Test
+import java.util.stream.Collectors
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
 import kotlin.test.assertTrue
 
 internal data class Box(val width: Int, val height: Int) {
@@ -52,6 +57,31 @@ class TestExtendedCss {
         // elements.forEach { println("\n\n\n${it.uniqueName}\n$it") }
     }
 
+    @Test
+    fun testByExpressionConcurrently() {
+        val expr = "width > 400 && width < 500 && height > 400 && height < 500"
+        val expected = doc.select("*:expr($expr)")
+        val results = (1..20).toList().parallelStream()
+                .map { doc.select("*:expr(_width > 400 && _width < 500 && height > 400 && height < 500)") }
+                .collect(Collectors.toList())
+        results.forEach { assertEquals(expected, it) }
+    }
+
+    @Test
+    fun testFeatureExpression() {
+        val expression = FeatureExpression.compile("img == 1 && (width > 400 || height > 400) && !(_sibling < 0)")
+        assertTrue { expression.isBoolean }
+        assertEquals(listOf(IMG, WIDTH, HEIGHT, SIB), expression.featureKeys.toList())
+
+        assertEquals(7.0, FeatureExpression.compile("1 + 2 * 3").evaluate(doc.body))
+        assertFalse { FeatureExpression.compile("1 + 2 * 3").matches(doc.body) }
+        assertTrue { FeatureExpression.compile("max(1, 2, 3) == 3 && if(1 > 2, 0, 1)").matches(doc.body) }
+
+        assertFailsWith<IllegalArgumentException> { FeatureExpression.compile("no_such_feature > 1") }
+        assertFailsWith<IllegalArgumentException> { FeatureExpression.compile("width > ") }
+        assertTrue { doc.select("*:expr(no_such_feature > 1)").isEmpty() }
+    }
+
     @Test
     fun testByBoxAccurate() {
         val box = "$box   ,$box2"
@@ -0,0 +1,59 @@
+package ai.platon.pulsar.dom.select
+
+import ai.platon.pulsar.common.math.vectors.get
+import ai.platon.pulsar.dom.FeaturedDocument
+import ai.platon.pulsar.dom.features.FeatureRegistry
+import ai.platon.pulsar.dom.features.defined.C
+import ai.platon.pulsar.dom.features.defined.SEQ
+import ai.platon.pulsar.dom.features.defined.WIDTH
+import ai.platon.pulsar.dom.nodes.forEach
+import ai.platon.pulsar.dom.nodes.node.ext.width
+import org.apache.commons.math3.linear.ArrayRealVector
+import org.jsoup.Jsoup
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+class TestNodeFeatureStore {
+
+    private val html = """
+        <div vi='0 0 300 40'><p vi='0 0 200 20'>One</p><p vi='0 20 200 20'>Two</p></div>
+    """.trimIndent()
+
+    @Test
+    fun testFeaturesAreStoredInColumns() {
+        val document = FeaturedDocument(Jsoup.parse(html))
+        val root = document.unbox()
+        val store = assertNotNull(root.featureStore)
+        assertEquals(FeatureRegistry.dimension, store.dimension())
+
+        var sequence = 0
+        root.forEach(includeRoot = true) {
+            assertSame(store, it.featureStore)
+            assertEquals(sequence, it.featureRow)
+            assertEquals(sequence.toDouble(), it.getFeature(SEQ))
+            ++sequence
+        }
+        assertEquals(sequence, store.size())
+
+        val div = document.selectFirst("div")
+        assertEquals(300, div.width)
+        assertEquals(2.0, div.getFeature(C))
+        // the vector is a view of the store
+        assertEquals(300.0, div.features[WIDTH])
+        div.width = 400
+        assertEquals(400.0, div.features[WIDTH])
+        assertEquals(400.0, store.column(WIDTH)[div.featureRow])
+    }
+
+    @Test
+    fun testUnbindFeatures() {
+        val document = FeaturedDocument(Jsoup.parse(html))
+        val div = document.selectFirst("div")
+        div.features = ArrayRealVector(FeatureRegistry.dimension)
+        assertNull(div.featureStore)
+        assertEquals(0.0, div.getFeature(WIDTH))
+    }
+}
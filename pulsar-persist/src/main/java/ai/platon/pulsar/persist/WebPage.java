@@ -1228,7 +1228,13 @@ final public class WebPage implements Comparable<WebPage> {
             return new ByteArrayInputStream(ByteUtils.toBytes('\0'));
         }
 
-        return new ByteArrayInputStream(getContent().array(),
+        if (!contentInOctets.hasArray()) {
+            byte[] bytes = new byte[contentInOctets.remaining()];
+            contentInOctets.duplicate().get(bytes);
+            return new ByteArrayInputStream(bytes);
+        }
+
+        return new ByteArrayInputStream(contentInOctets.array(),
                 contentInOctets.arrayOffset() + contentInOctets.position(),
                 contentInOctets.remaining());
     }
@@ -1268,6 +1274,14 @@ final public class WebPage implements Comparable<WebPage> {
         }
     }
 
+    /**
+     * Set the page content, the content is copied once into an array of the exact length, which is kept by the page
+     * and serialized by the storage, the content buffer is not closed
+     */
+    public void setContent(@NotNull ContentBuffer value) {
+        setContent(value.toByteArray());
+    }
+
     /**
      * Set the page content
      *
@@ -1278,7 +1292,7 @@ final public class WebPage implements Comparable<WebPage> {
             page.setContent(value);
             isContentUpdated = true;
 
-            int length = value.array().length;
+            int length = value.remaining();
             setContentLength(length);
             setPersistContentLength(length);
         } else {
@@ -0,0 +1,207 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.common.MemoryPressureMonitor
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.Charset
+import java.nio.charset.CharsetEncoder
+import java.nio.charset.CodingErrorAction
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A page content in a pooled buffer, the buffer goes back to the pool when the content is closed, and the content
+ * must not be used after it's closed.
+ *
+ * The only copy is [toByteArray], which creates the exact array to keep in a [WebPage] and to serialize
+ * by the storage, the oversized and growing buffers of the encoding are reused.
+ * */
+class ContentBuffer internal constructor(
+    private val pool: ContentBufferPool?,
+    private val buffer: ByteBuffer,
+    /**
+     * The number of bytes of the content
+     * */
+    val length: Int
+) : AutoCloseable {
+    private val closed = AtomicBoolean()
+
+    val isClosed get() = closed.get()
+
+    /**
+     * Copy the content into an array of the exact length
+     * */
+    fun toByteArray(): ByteArray {
+        check(!isClosed) { "Content is closed" }
+        return buffer.array().copyOfRange(buffer.arrayOffset(), buffer.arrayOffset() + length)
+    }
+
+    /**
+     * Return the buffer to the pool, it's safe to close the content more than once
+     * */
+    override fun close() {
+        if (closed.compareAndSet(false, true)) {
+            pool?.recycle(buffer)
+        }
+    }
+}
+
+/**
+ * A pool of heap buffers to encode page contents, the buffers are reused so the encoding does not allocate
+ * a buffer for every page, the content is still copied once by [ContentBuffer.toByteArray] to be kept by a page.
+ *
+ * The buffers are grouped by capacities of powers of 2, at most [maxBuffersPerSize] buffers are kept for a
+ * capacity and at most [maxPooledBytes] bytes are kept in total, a content larger than [maxBufferSize] is held
+ * by a buffer which is not pooled. The [DEFAULT] pool is cleared when the heap is under pressure.
+ * */
+class ContentBufferPool(
+    val maxBuffersPerSize: Int = DEFAULT_MAX_BUFFERS_PER_SIZE,
+    val maxBufferSize: Int = DEFAULT_MAX_BUFFER_SIZE,
+    val maxPooledBytes: Long = DEFAULT_MAX_POOLED_BYTES
+) {
+    companion object {
+        const val MIN_BUFFER_SIZE = 1 shl 12
+        const val DEFAULT_MAX_BUFFER_SIZE = 1 shl 24
+        const val DEFAULT_MAX_BUFFERS_PER_SIZE = 4
+        const val DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024
+
+        val DEFAULT = ContentBufferPool().also { pool -> MemoryPressureMonitor.addListener { pool.clear() } }
+
+        private fun capacityOf(size: Int): Int {
+            val n = size.coerceAtLeast(MIN_BUFFER_SIZE)
+            return Integer.highestOneBit(n - 1) shl 1
+        }
+    }
+
+    private val numBuckets = Integer.numberOfTrailingZeros(capacityOf(maxBufferSize)) + 1
+    private val buckets = Array(numBuckets) { ConcurrentLinkedQueue<ByteBuffer>() }
+    private val bucketSizes = Array(numBuckets) { AtomicInteger() }
+    private val pooledBytes = AtomicLong()
+    private val encoders = ThreadLocal<MutableMap<Charset, CharsetEncoder>>()
+
+    /**
+     * The number of buffers allocated because there was no buffer in the pool
+     * */
+    val numAllocated = AtomicLong()
+    /**
+     * The number of buffers taken from the pool
+     * */
+    val numReused = AtomicLong()
+
+    /**
+     * The number of buffers in the pool
+     * */
+    val size get() = bucketSizes.sumBy { it.get() }
+
+    /**
+     * The number of bytes of the buffers in the pool
+     * */
+    val numPooledBytes get() = pooledBytes.get()
+
+    /**
+     * Copy the bytes into a pooled buffer
+     * */
+    fun wrap(bytes: ByteArray, offset: Int = 0, length: Int = bytes.size - offset): ContentBuffer {
+        val buffer = acquire(length)
+        System.arraycopy(bytes, offset, buffer.array(), buffer.arrayOffset(), length)
+        return ContentBuffer(this, buffer, length)
+    }
+
+    /**
+     * Encode the text into a pooled buffer, the text is not converted to a string first, and malformed chars are
+     * replaced just like [String.toByteArray] does
+     * */
+    fun encode(text: CharSequence, charset: Charset = Charsets.UTF_8): ContentBuffer {
+        val encoder = encoderOf(charset)
+        val chars = CharBuffer.wrap(text)
+        var buffer = acquire((text.length * encoder.averageBytesPerChar()).toInt() + 16)
+        encoder.reset()
+        while (encoder.encode(chars, buffer, true).isOverflow) {
+            buffer = grow(buffer, (chars.remaining() * encoder.maxBytesPerChar()).toInt() + 16)
+        }
+        while (encoder.flush(buffer).isOverflow) {
+            buffer = grow(buffer, 16)
+        }
+
+        val length = buffer.position()
+        buffer.clear()
+        return ContentBuffer(this, buffer, length)
+    }
+
+    internal fun recycle(buffer: ByteBuffer) {
+        val capacity = buffer.capacity()
+        if (capacity > maxBufferSize || Integer.bitCount(capacity) != 1) {
+            return
+        }
+
+        val i = Integer.numberOfTrailingZeros(capacity)
+        if (i >= numBuckets) {
+            return
+        }
+
+        if (bucketSizes[i].incrementAndGet() > maxBuffersPerSize) {
+            bucketSizes[i].decrementAndGet()
+            return
+        }
+
+        if (pooledBytes.addAndGet(capacity.toLong()) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity.toLong())
+            bucketSizes[i].decrementAndGet()
+            return
+        }
+
+        buffer.clear()
+        buckets[i].offer(buffer)
+    }
+
+    /**
+     * Drop all the pooled buffers, the buffers in use are pooled again when they are closed
+     * */
+    fun clear() {
+        buckets.forEachIndexed { i, bucket ->
+            while (bucket.poll() != null) {
+                bucketSizes[i].decrementAndGet()
+                pooledBytes.addAndGet(-(1L shl i))
+            }
+        }
+    }
+
+    private fun acquire(size: Int): ByteBuffer {
+        val capacity = capacityOf(size)
+        if (capacity > maxBufferSize || capacity <= 0) {
+            numAllocated.incrementAndGet()
+            return ByteBuffer.allocate(size)
+        }
+
+        val i = Integer.numberOfTrailingZeros(capacity)
+        val buffer = buckets[i].poll()
+        if (buffer != null) {
+            bucketSizes[i].decrementAndGet()
+            pooledBytes.addAndGet(-capacity.toLong())
+            numReused.incrementAndGet()
+            return buffer
+        }
+
+        numAllocated.incrementAndGet()
+        return ByteBuffer.allocate(capacity)
+    }
+
+    private fun grow(buffer: ByteBuffer, extra: Int): ByteBuffer {
+        val newBuffer = acquire(buffer.capacity() + extra.coerceAtLeast(buffer.capacity()))
+        buffer.flip()
+        newBuffer.put(buffer)
+        recycle(buffer)
+        return newBuffer
+    }
+
+    private fun encoderOf(charset: Charset): CharsetEncoder {
+        val map = encoders.get() ?: mutableMapOf<Charset, CharsetEncoder>().also { encoders.set(it) }
+        return map.getOrPut(charset) {
+            charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+        }
+    }
+}
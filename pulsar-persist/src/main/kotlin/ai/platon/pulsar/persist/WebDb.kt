@@ -2,6 +2,7 @@ package ai.platon.pulsar.persist
 
 import ai.platon.pulsar.common.Strings
 import ai.platon.pulsar.common.config.AppConstants.UNICODE_LAST_CODE_POINT
+import ai.platon.pulsar.common.config.CapabilityTypes.*
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.urls.Urls
 import ai.platon.pulsar.common.urls.Urls.reverseUrlOrNull
@@ -14,6 +15,7 @@ import org.apache.gora.store.DataStore
 import org.slf4j.LoggerFactory
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicLong
 
 class WebDb(val conf: ImmutableConfig): AutoCloseable {
@@ -27,6 +29,15 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
         val accumulatePutNanos = AtomicLong()
         val dbPutAveMillis get() = TimeUnit.MILLISECONDS.convert(
             accumulatePutNanos.get(),  TimeUnit.NANOSECONDS) / dbPutCount.get().coerceAtLeast(1)
+
+        /**
+         * The number of the pages in the write-behind buffers
+         * */
+        val dbWriteQueueDepth = AtomicInteger()
+        val dbFlushCount = AtomicLong()
+        val accumulateFlushNanos = AtomicLong()
+        val dbFlushAveMillis get() = TimeUnit.MILLISECONDS.convert(
+            accumulateFlushNanos.get(),  TimeUnit.NANOSECONDS) / dbFlushCount.get().coerceAtLeast(1)
     }
 
     private val log = LoggerFactory.getLogger(WebDb::class.java)
@@ -39,6 +50,12 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
     }
     val schemaName: String get() = store.schemaName
 
+    private val lazyWriteBuffer = lazy { createWriteBufferIfEnabled() }
+    /**
+     * The write-behind buffer, the pages are put to the buffer and written to the store in batches if it's enabled
+     * */
+    val writeBuffer: WriteBehindBuffer? by lazyWriteBuffer
+
     fun getOrNull(originalUrl: String, field: GWebPage.Field): WebPage? {
         return getOrNull(originalUrl, field.toString())
     }
@@ -64,10 +81,14 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
 
         tracer?.trace("Getting $key")
 
-        val startTime = System.nanoTime()
-        val page = fields?.let { store.get(key, it) } ?: store.get(key)
-        dbGetCount.incrementAndGet()
-        accumulateGetNanos.addAndGet(System.nanoTime() - startTime)
+        // the buffered page is the latest version, a snapshot is returned since the buffered one is being written
+        val page = writeBuffer?.get(key)?.let { snapshot(it) } ?: run {
+            val startTime = System.nanoTime()
+            val p = fields?.let { store.get(key, it) } ?: store.get(key)
+            dbGetCount.incrementAndGet()
+            accumulateGetNanos.addAndGet(System.nanoTime() - startTime)
+            p
+        }
 
         if (page != null) {
             tracer?.trace("Got $key")
@@ -99,9 +120,27 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
         return getOrNull(originalUrl, norm, arrayOf(requiredField)) != null
     }
 
+    /**
+     * Put the page to the store, or to the write-behind buffer if it's enabled, blocks if the buffer is full
+     * */
     @JvmOverloads
     fun put(page: WebPage, replaceIfExists: Boolean = false) = putInternal(page, replaceIfExists)
 
+    /**
+     * Put the page to the store, or to the write-behind buffer if it's enabled, suspends if the buffer is full
+     * */
+    suspend fun putDeferred(page: WebPage, replaceIfExists: Boolean = false): Boolean {
+        val buffer = writeBuffer ?: return putInternal(page, replaceIfExists)
+
+        val key = page.reversedUrl.takeIf { page.isNotNil }
+        if (key.isNullOrEmpty()) {
+            return false
+        }
+
+        buffer.putSuspend(key, snapshot(page.unbox()), replaceIfExists)
+        return true
+    }
+
     /**
      * Notice:
      * There are comments in gora-hbase-0.6.1, HBaseStore.java, line 259:
@@ -118,6 +157,13 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
             return false
         }
 
+        val buffer = writeBuffer
+        if (buffer != null) {
+            // the page can be modified later, the buffer keeps a snapshot
+            buffer.put(key, snapshot(page.unbox()), replaceIfExists)
+            return true
+        }
+
         if (replaceIfExists) {
             store.delete(key)
         }
@@ -139,6 +185,7 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
         val (url, key) = Urls.normalizedUrlAndKey(originalUrl, norm)
 
         return if (key.isNotEmpty()) {
+            writeBuffer?.remove(key)
             store.delete(key)
             return true
         } else false
@@ -146,6 +193,7 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
 
     @JvmOverloads
     fun truncate(force: Boolean = false): Boolean {
+        writeBuffer?.flush()
         val schemaName = store.schemaName
         if (force) {
             store.truncateSchema()
@@ -171,6 +219,7 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
      * @return The iterator to retrieve pages
      */
     fun scan(urlBase: String): Iterator<WebPage> {
+        writeBuffer?.flush()
         val query = store.newQuery()
         query.setKeyRange(reverseUrlOrNull(urlBase), reverseUrlOrNull(urlBase + UNICODE_LAST_CODE_POINT))
 
@@ -195,6 +244,7 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
      * @return The iterator to retrieve pages
      */
     fun scan(originalUrl: String, fields: Array<String>): Iterator<WebPage> {
+        writeBuffer?.flush()
         val query = store.newQuery()
         query.setKeyRange(reverseUrlOrNull(originalUrl), reverseUrlOrNull(originalUrl + UNICODE_LAST_CODE_POINT))
         query.setFields(*fields)
@@ -210,6 +260,7 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
      * @return The iterator to retrieve pages
      */
     fun scan(originalUrl: String, fields: Array<String>, filter: Filter<String, GWebPage>): Iterator<WebPage> {
+        writeBuffer?.flush()
         val query = store.newQuery()
 
         query.filter = filter
@@ -227,6 +278,7 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
      * @return The iterator to retrieve pages
      */
     fun query(query: DbQuery): Iterator<WebPage> {
+        writeBuffer?.flush()
         val goraQuery = store.newQuery()
 
         val startKey = query.startUrl?.let { reverseUrlOrNull(it) }
@@ -250,6 +302,7 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
 
     fun flush() {
         try {
+            writeBuffer?.flush()
             store.flush()
         } catch (e: IllegalStateException) {
             log.warn(e.message)
@@ -262,11 +315,37 @@ class WebDb(val conf: ImmutableConfig): AutoCloseable {
 
     override fun close() {
         if (closed.compareAndSet(false, true)) {
+            if (lazyWriteBuffer.isInitialized()) {
+                writeBuffer?.close()
+            }
             flush()
             store.close()
         }
     }
 
+    private fun createWriteBufferIfEnabled(): WriteBehindBuffer? {
+        if (!conf.getBoolean(STORAGE_WRITE_BEHIND_ENABLED, false)) {
+            return null
+        }
+
+        val capacity = conf.getInt(STORAGE_WRITE_BEHIND_CAPACITY, WriteBehindBuffer.DEFAULT_CAPACITY)
+        val batchSize = conf.getInt(STORAGE_WRITE_BEHIND_BATCH_SIZE, WriteBehindBuffer.DEFAULT_BATCH_SIZE)
+        val interval = conf.getDuration(STORAGE_WRITE_BEHIND_INTERVAL, WriteBehindBuffer.DEFAULT_FLUSH_INTERVAL)
+        log.info("Write-behind buffer is enabled | capacity: {} batch: {} interval: {}", capacity, batchSize, interval)
+        return WriteBehindBuffer(store, capacity, batchSize, interval)
+    }
+
+    /**
+     * A deep copy of the page which keeps the dirty fields, the stores write only the dirty fields
+     * */
+    private fun snapshot(page: GWebPage): GWebPage {
+        val copy = GWebPage.newBuilder(page).build()
+        GWebPage.Field.values().forEach {
+            if (page.isDirty(it.index)) copy.setDirty(it.index) else copy.clearDirty(it.index)
+        }
+        return copy
+    }
+
     private fun prepareFields(fields: MutableSet<String>): Array<String> {
         if (CollectionUtils.isEmpty(fields)) {
             return GWebPage._ALL_FIELDS
@@ -0,0 +1,321 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.persist.gora.generated.GWebPage
+import kotlinx.coroutines.CompletableDeferred
+import org.apache.gora.store.DataStore
+import org.slf4j.LoggerFactory
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * A write-behind buffer in front of the data store.
+ *
+ * The pages are buffered by key, a later put of the same key replaces the buffered page, the dirty fields of the
+ * replaced page which are not dirty in the later page are copied to the later page, since the stores write only
+ * the dirty fields. A background thread writes the buffered pages in batches of [batchSize], or every [flushInterval]
+ * if there are not enough pages. A put blocks if there are [capacity] pages buffered, until a batch is written,
+ * [offer] waits at most a timeout, and [putSuspend] suspends.
+ *
+ * A buffered page is the same object passed to [put], it should not be modified after it's buffered,
+ * [WebDb] buffers snapshots of the pages.
+ * */
+class WriteBehindBuffer(
+    val store: DataStore<String, GWebPage>,
+    /**
+     * The max number of the buffered pages
+     * */
+    val capacity: Int = DEFAULT_CAPACITY,
+    /**
+     * The number of the pages written in a batch
+     * */
+    val batchSize: Int = DEFAULT_BATCH_SIZE,
+    /**
+     * The max time a page is buffered if there are not enough pages for a batch
+     * */
+    val flushInterval: Duration = DEFAULT_FLUSH_INTERVAL
+): AutoCloseable {
+    companion object {
+        const val DEFAULT_CAPACITY = 2000
+        const val DEFAULT_BATCH_SIZE = 200
+        val DEFAULT_FLUSH_INTERVAL: Duration = Duration.ofSeconds(1)
+    }
+
+    private class Entry(val page: GWebPage, val replaceIfExists: Boolean)
+
+    private val log = LoggerFactory.getLogger(WriteBehindBuffer::class.java)
+    private val lock = ReentrantLock()
+    private val notFull = lock.newCondition()
+    private val notEmpty = lock.newCondition()
+    private val written = lock.newCondition()
+
+    private val pending = LinkedHashMap<String, Entry>()
+    private var writing: Map<String, Entry> = mapOf()
+    private var flushRequests = 0L
+    private var completedFlushRequests = 0L
+    /**
+     * Completed and renewed when a batch is written, so the suspended puts can retry
+     * */
+    private var notFullSignal = CompletableDeferred<Unit>()
+    @Volatile
+    private var closed = false
+
+    init {
+        require(capacity >= batchSize) { "The capacity should not be less than the batch size" }
+        require(batchSize > 0) { "The batch size should be positive" }
+    }
+
+    private val flusher = Thread(this::runFlushLoop, "write-behind").apply {
+        isDaemon = true
+        start()
+    }
+
+    /**
+     * The number of puts replaced by a later put of the same key before written
+     * */
+    val numCoalesced = AtomicLong()
+
+    /**
+     * The number of the pages buffered or being written
+     * */
+    val size get() = lock.withLock { pending.size + writing.size }
+
+    /**
+     * Buffer the page, blocks if the buffer is full
+     * */
+    @Throws(InterruptedException::class)
+    fun put(key: String, page: GWebPage, replaceIfExists: Boolean = false) {
+        put0(key, page, replaceIfExists, -1)
+    }
+
+    /**
+     * Buffer the page, waits at most [timeout] if the buffer is full
+     *
+     * @return true if the page is buffered, false if the buffer is still full after the timeout
+     * */
+    @Throws(InterruptedException::class)
+    fun offer(key: String, page: GWebPage, replaceIfExists: Boolean = false, timeout: Duration = Duration.ZERO): Boolean {
+        return put0(key, page, replaceIfExists, timeout.toNanos())
+    }
+
+    /**
+     * Buffer the page, suspends if the buffer is full
+     * */
+    suspend fun putSuspend(key: String, page: GWebPage, replaceIfExists: Boolean = false) {
+        while (true) {
+            val signal = lock.withLock {
+                if (put0(key, page, replaceIfExists, 0)) {
+                    return
+                }
+                notFullSignal
+            }
+            signal.await()
+        }
+    }
+
+    /**
+     * Get the latest buffered version of the page, or null if the page is not buffered
+     * */
+    fun get(key: String): GWebPage? {
+        return lock.withLock { pending[key] ?: writing[key] }?.page
+    }
+
+    /**
+     * Remove the page from the buffer, if the page is being written, wait until it's written,
+     * so the page can be deleted from the store safely
+     * */
+    fun remove(key: String): Boolean {
+        lock.withLock {
+            val removed = pending.remove(key) != null
+            if (removed) {
+                WebDb.dbWriteQueueDepth.decrementAndGet()
+            }
+
+            while (writing.containsKey(key)) {
+                written.await()
+            }
+
+            return removed
+        }
+    }
+
+    /**
+     * Write all the buffered pages and wait until they are written
+     * */
+    fun flush() {
+        lock.withLock {
+            if (pending.isEmpty() && writing.isEmpty()) {
+                return
+            }
+
+            val request = ++flushRequests
+            notEmpty.signal()
+            while ((completedFlushRequests < request || writing.isNotEmpty()) && flusher.isAlive) {
+                written.await()
+            }
+        }
+    }
+
+    /**
+     * Write all the buffered pages and stop the background thread
+     * */
+    override fun close() {
+        if (closed) {
+            return
+        }
+
+        lock.withLock {
+            closed = true
+            notEmpty.signal()
+            notFullSignal.complete(Unit)
+        }
+        flusher.join()
+    }
+
+    /**
+     * Buffer the page, waits forever if [timeoutNanos] is negative
+     * */
+    private fun put0(key: String, page: GWebPage, replaceIfExists: Boolean, timeoutNanos: Long): Boolean {
+        lock.withLock {
+            var nanos = timeoutNanos
+            while (true) {
+                check(!closed) { "Write-behind buffer is closed" }
+
+                val existing = pending[key]
+                if (existing != null) {
+                    mergeDirtyFields(existing.page, page)
+                    pending[key] = Entry(page, replaceIfExists || existing.replaceIfExists)
+                    numCoalesced.incrementAndGet()
+                    return true
+                }
+
+                if (pending.size < capacity) {
+                    break
+                }
+
+                notEmpty.signal()
+                if (timeoutNanos < 0) {
+                    notFull.await()
+                } else if (nanos > 0) {
+                    nanos = notFull.awaitNanos(nanos)
+                } else {
+                    return false
+                }
+            }
+
+            pending[key] = Entry(page, replaceIfExists)
+            WebDb.dbWriteQueueDepth.incrementAndGet()
+            if (pending.size >= batchSize) {
+                notEmpty.signal()
+            }
+
+            return true
+        }
+    }
+
+    private fun runFlushLoop() {
+        while (true) {
+            val batch = nextBatch() ?: break
+
+            try {
+                write(batch)
+            } catch (t: Throwable) {
+                log.warn("Unexpected exception when writing pages", t)
+            }
+
+            lock.withLock {
+                writing = mapOf()
+                notFull.signalAll()
+                written.signalAll()
+                notFullSignal.complete(Unit)
+                notFullSignal = CompletableDeferred()
+            }
+        }
+    }
+
+    /**
+     * Copy the dirty fields of the earlier page which are not dirty in the later page to the later page
+     * */
+    private fun mergeDirtyFields(earlier: GWebPage, later: GWebPage) {
+        GWebPage.Field.values().forEach {
+            val i = it.index
+            if (earlier.isDirty(i) && !later.isDirty(i)) {
+                later.put(i, earlier.get(i))
+                later.setDirty(i)
+            }
+        }
+    }
+
+    /**
+     * Wait for the next batch, returns null if the buffer is closed and all the pages are written
+     * */
+    private fun nextBatch(): Map<String, Entry>? {
+        lock.withLock {
+            var nanos = flushInterval.toNanos()
+            while (!closed && pending.size < batchSize && flushRequests == completedFlushRequests && nanos > 0) {
+                nanos = notEmpty.awaitNanos(nanos)
+            }
+
+            if (pending.isEmpty()) {
+                completedFlushRequests = flushRequests
+                written.signalAll()
+                return if (closed) null else mapOf()
+            }
+
+            val batch = LinkedHashMap<String, Entry>()
+            val it = pending.entries.iterator()
+            while (batch.size < batchSize && it.hasNext()) {
+                val (key, entry) = it.next()
+                batch[key] = entry
+                it.remove()
+            }
+            writing = batch
+
+            if (pending.isEmpty()) {
+                // the flush requests are done after this batch is written
+                completedFlushRequests = flushRequests
+            }
+
+            return batch
+        }
+    }
+
+    private fun write(batch: Map<String, Entry>) {
+        if (batch.isEmpty()) {
+            return
+        }
+
+        val startTime = System.nanoTime()
+        var n = 0
+        batch.forEach { (key, entry) ->
+            try {
+                if (entry.replaceIfExists) {
+                    store.delete(key)
+                }
+                store.put(key, entry.page)
+                ++n
+            } catch (e: Exception) {
+                log.warn("Failed to write page $key | {}", e.message)
+            }
+        }
+
+        try {
+            store.flush()
+        } catch (e: Exception) {
+            log.warn("Failed to flush the store | {}", e.message)
+        }
+
+        val elapsed = System.nanoTime() - startTime
+        WebDb.dbWriteQueueDepth.addAndGet(-batch.size)
+        WebDb.dbPutCount.addAndGet(n.toLong())
+        WebDb.accumulatePutNanos.addAndGet(elapsed)
+        WebDb.dbFlushCount.incrementAndGet()
+        WebDb.accumulateFlushNanos.addAndGet(elapsed)
+
+        if (log.isTraceEnabled) {
+            log.trace("Written {}/{} pages in {} ms", n, batch.size, TimeUnit.NANOSECONDS.toMillis(elapsed))
+        }
+    }
+}
@@ -10,8 +10,10 @@ import ai.platon.pulsar.persist.gora.generated.GWebPage
 import org.apache.gora.memory.store.MemStore
 import org.slf4j.LoggerFactory
 import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.file.Files
 import java.nio.file.Path
+import java.nio.file.StandardOpenOption
 import java.time.Duration
 import java.time.Instant
 import java.time.temporal.ChronoUnit
@@ -67,9 +69,17 @@ class FileBackendPageStore(
         val filename = AppPaths.fromUri(page.url, "", ".htm")
         val path = persistDirectory.resolve(filename)
 
-        log.takeIf { it.isTraceEnabled }?.trace("Putting $filename ${page.content?.array()?.size}")
+        log.takeIf { it.isTraceEnabled }?.trace("Putting $filename ${page.content?.remaining()}")
 
-        page.content?.let { Files.write(path, it.array()) }
+        // Write the bytes between position and limit, the content is not copied
+        page.content?.let { content ->
+            FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING).use {
+                val buffer = content.duplicate()
+                while (buffer.hasRemaining()) {
+                    it.write(buffer)
+                }
+            }
+        }
     }
 
     private fun newSuccessPage(url: String, lastModified: Instant, content: ByteArray): WebPage {
@@ -0,0 +1,97 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import org.junit.Test
+import java.nio.ByteBuffer
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class TestContentBuffer {
+    private val pool = ContentBufferPool(maxBuffersPerSize = 2, maxBufferSize = 1 shl 16)
+
+    @Test
+    fun testEncode() {
+        val texts = listOf(
+            "",
+            "<html><body><a href='/'>home</a></body></html>",
+            "<p>中文内容，日本語のテキスト</p>".repeat(1000),
+            "emoji 😀 and a lone surrogate \uD800 end"
+        )
+        texts.forEach { text ->
+            pool.encode(text).use {
+                assertTrue(text.toByteArray().contentEquals(it.toByteArray()))
+                assertEquals(text.toByteArray().size, it.length)
+            }
+        }
+    }
+
+    @Test
+    fun testEncodeStringBuilder() {
+        val text = StringBuilder().apply { repeat(10000) { append("<div>内容$it</div>") } }
+        pool.encode(text).use {
+            assertTrue(text.toString().toByteArray().contentEquals(it.toByteArray()))
+        }
+    }
+
+    @Test
+    fun testClose() {
+        val content = pool.wrap(ByteArray(100))
+        content.close()
+        assertTrue(content.isClosed)
+        // the buffer is pooled only once
+        content.close()
+        assertEquals(1, pool.size)
+
+        assertFailsWith<IllegalStateException> { content.toByteArray() }
+    }
+
+    @Test
+    fun testReuse() {
+        pool.wrap(ByteArray(100)).close()
+        pool.wrap(ByteArray(200)).use {
+            assertEquals(200, it.length)
+        }
+        assertEquals(1L, pool.numAllocated.get())
+        assertEquals(1L, pool.numReused.get())
+    }
+
+    @Test
+    fun testLargeContentNotPooled() {
+        pool.wrap(ByteArray(1 shl 17)).close()
+        assertEquals(0, pool.size)
+        pool.encode("a".repeat(1 shl 17)).use {
+            assertEquals(1 shl 17, it.length)
+        }
+        assertEquals(0, pool.size)
+    }
+
+    @Test
+    fun testPoolSizeIsBounded() {
+        val contents = (1..5).map { pool.wrap(ByteArray(100)) }
+        contents.forEach { it.close() }
+        assertEquals(2, pool.size)
+    }
+
+    @Test
+    fun testPooledBytesAreBounded() {
+        val pool = ContentBufferPool(maxBuffersPerSize = 4, maxBufferSize = 1 shl 16, maxPooledBytes = 3L * (1 shl 12))
+        val contents = (1..4).map { pool.wrap(ByteArray(100)) } + pool.wrap(ByteArray(1 shl 15))
+        contents.forEach { it.close() }
+        assertEquals(3, pool.size)
+        assertEquals(3L * (1 shl 12), pool.numPooledBytes)
+
+        pool.clear()
+        assertEquals(0, pool.size)
+        assertEquals(0L, pool.numPooledBytes)
+    }
+
+    @Test
+    fun testWebPageContentLength() {
+        val page = WebPage.newWebPage("http://example.com/", VolatileConfig.UNSAFE)
+        val buffer = ByteBuffer.wrap(ByteArray(100), 10, 50)
+        page.setContent(buffer.slice())
+        assertEquals(50L, page.contentLength)
+        assertEquals(50, page.contentAsInputStream.readBytes().size)
+    }
+}
@@ -0,0 +1,127 @@
+package ai.platon.pulsar.persist
+
+import ai.platon.pulsar.common.config.AppConstants
+import ai.platon.pulsar.common.config.AppConstants.MEM_STORE_CLASS
+import ai.platon.pulsar.common.config.CapabilityTypes
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.persist.gora.generated.GWebPage
+import kotlinx.coroutines.runBlocking
+import org.apache.commons.lang3.RandomStringUtils
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class TestWriteBehindBuffer {
+    private val conf = VolatileConfig().apply {
+        set(CapabilityTypes.STORAGE_CRAWL_ID, "test_" + RandomStringUtils.randomAlphabetic(4))
+        set(CapabilityTypes.STORAGE_DATA_STORE_CLASS, MEM_STORE_CLASS)
+        set(CapabilityTypes.STORAGE_WRITE_BEHIND_ENABLED, "true")
+        set(CapabilityTypes.STORAGE_WRITE_BEHIND_BATCH_SIZE, "10")
+        set(CapabilityTypes.STORAGE_WRITE_BEHIND_INTERVAL, "PT1H")
+    }
+    private val urls = IntRange(1, 25).map { AppConstants.EXAMPLE_URL + "/write-behind/$it" }
+
+    private lateinit var webDb: WebDb
+
+    @Before
+    fun setup() {
+        webDb = WebDb(conf)
+        webDb.truncate(force = true)
+    }
+
+    @After
+    fun teardown() {
+        webDb.close()
+    }
+
+    @Test
+    fun testReadBufferedPages() {
+        val buffer = assertNotNull(webDb.writeBuffer)
+        val page = WebPage.newWebPage(urls[0], conf.toVolatileConfig())
+        webDb.put(page)
+        val page2 = WebPage.newWebPage(urls[0], conf.toVolatileConfig())
+        webDb.put(page2)
+
+        assertEquals(1L, buffer.numCoalesced.get())
+        assertNull(webDb.store.get(page.reversedUrl))
+        // the latest version is read from the buffer
+        assertEquals(page2.unbox().batchId?.toString(), webDb.get(urls[0]).unbox().batchId?.toString())
+
+        webDb.flush()
+        assertEquals(0, buffer.size)
+        assertNotNull(webDb.store.get(page.reversedUrl))
+    }
+
+    @Test
+    fun testMergeDirtyFields() {
+        val buffer = assertNotNull(webDb.writeBuffer)
+        val page = WebPage.newWebPage(urls[0], conf.toVolatileConfig())
+        webDb.put(page)
+        webDb.flush()
+
+        // two versions of the page, each modifies a different field
+        val page1 = GWebPage.newBuilder(page.unbox()).build().also { it.clearDirty() }
+        page1.batchId = "first"
+        val page2 = GWebPage.newBuilder(page.unbox()).build().also { it.clearDirty() }
+        page2.options = "second"
+        buffer.put(page.reversedUrl, page1)
+        buffer.put(page.reversedUrl, page2)
+        webDb.flush()
+
+        val stored = assertNotNull(webDb.store.get(page.reversedUrl))
+        assertEquals("first", stored.batchId?.toString())
+        assertEquals("second", stored.options?.toString())
+    }
+
+    @Test
+    fun testBufferSnapshot() {
+        val page = WebPage.newWebPage(urls[0], conf.toVolatileConfig())
+        page.unbox().batchId = "before"
+        webDb.put(page)
+        // the page is modified after it's put, the modification is not buffered
+        page.unbox().batchId = "after"
+        assertEquals("before", webDb.get(urls[0]).unbox().batchId?.toString())
+
+        webDb.flush()
+        assertEquals("before", webDb.store.get(page.reversedUrl).batchId?.toString())
+    }
+
+    @Test
+    fun testDeferredPutWhenBufferIsFull() = runBlocking<Unit> {
+        val buffer = WriteBehindBuffer(webDb.store, capacity = 1, batchSize = 1, flushInterval = Duration.ofHours(1))
+        val pages = urls.take(2).map { WebPage.newWebPage(it, conf.toVolatileConfig()) }
+        assertTrue { buffer.offer(pages[0].reversedUrl, pages[0].unbox()) }
+        // a full buffer does not accept the page until a batch is written
+        buffer.putSuspend(pages[1].reversedUrl, pages[1].unbox())
+
+        webDb.putDeferred(WebPage.newWebPage(urls[2], conf.toVolatileConfig()))
+        webDb.flush()
+        buffer.close()
+        assertTrue { urls.take(3).all { webDb.store.get(WebPage.newWebPage(it, conf.toVolatileConfig()).reversedUrl) != null } }
+    }
+
+    @Test
+    fun testWriteInBatches() {
+        val buffer = assertNotNull(webDb.writeBuffer)
+        val queueDepth = WebDb.dbWriteQueueDepth.get()
+        webDb.putAll(urls.map { WebPage.newWebPage(it, conf.toVolatileConfig()) })
+
+        // two full batches are written without waiting for the interval
+        var i = 0
+        while (buffer.size > urls.size % 10 && i++ < 100) {
+            Thread.sleep(50)
+        }
+        assertEquals(urls.size % 10, buffer.size)
+
+        webDb.delete(urls.last())
+        // the remaining pages are written when the buffer is closed
+        buffer.close()
+        assertTrue { urls.dropLast(1).all { webDb.store.get(WebPage.newWebPage(it, conf.toVolatileConfig()).reversedUrl) != null } }
+        assertEquals(queueDepth, WebDb.dbWriteQueueDepth.get())
+    }
+}
@@ -5,6 +5,7 @@ import ai.platon.pulsar.common.config.CapabilityTypes
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.filter.common.RegexRule
 import ai.platon.pulsar.filter.common.AbstractRegexUrlFilter
+import dk.brics.automaton.Automaton
 import dk.brics.automaton.RegExp
 import dk.brics.automaton.RunAutomaton
 import java.io.IOException
@@ -58,9 +59,10 @@ class AutomatonUrlFilter(reader: Reader?, conf: ImmutableConfig) : AbstractRegex
     }
 
     private inner class Rule internal constructor(sign: Boolean, regex: String) : RegexRule(sign, regex) {
-        private val automaton = RunAutomaton(RegExp(regex, RegExp.ALL).toAutomaton())
+        override val automaton: Automaton = RegExp(regex, RegExp.ALL).toAutomaton()
+        private val runAutomaton = RunAutomaton(automaton)
         override fun match(url: String): Boolean {
-            return automaton.run(url)
+            return runAutomaton.run(url)
         }
 
     }
@@ -24,9 +24,9 @@ import ai.platon.pulsar.common.config.CapabilityTypes
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.filter.common.RegexRule
 import ai.platon.pulsar.filter.common.AbstractRegexUrlFilter
+import ai.platon.pulsar.filter.common.JavaRegexRule
 import java.io.FileNotFoundException
 import java.io.Reader
-import java.util.regex.Pattern
 
 /**
  * Filters URLs based on a file of regular expressions using the
@@ -53,14 +53,7 @@ class RegexUrlFilter(
     }
 
     override fun createRule(sign: Boolean, regex: String): RegexRule {
-        return RegexRuleImpl(sign, regex)
-    }
-
-    private inner class RegexRuleImpl(sign: Boolean, regex: String) : RegexRule(sign, regex) {
-        private val pattern = Pattern.compile(regex)
-        override fun match(url: String): Boolean {
-            return pattern.matcher(url).find()
-        }
+        return JavaRegexRule(sign, regex)
     }
 
     companion object {
@@ -50,6 +50,16 @@ abstract class AbstractRegexUrlFilter(
      * Applicable rules
      */
     protected var rules: List<RegexRule> = listOf()
+        set(value) {
+            field = value
+            ruleSet = null
+        }
+
+    /**
+     * The rules compiled into one matcher, it's compiled at the first time it's used
+     */
+    @Volatile
+    private var ruleSet: RegexRuleSet? = null
 
     /**
      * Constructs a new RegexUrlFilter and init it with a Reader of rules.
@@ -95,12 +105,9 @@ abstract class AbstractRegexUrlFilter(
     protected abstract fun getRulesReader(conf: ImmutableConfig): Reader
 
     override fun filter(url: String): String? {
-        for (rule in rules) {
-            if (rule.match(url)) {
-                return if (rule.accept()) url else null
-            }
-        }
-        return null
+        val compiledRules = ruleSet ?: RegexRuleSet(rules).also { ruleSet = it }
+        val i = compiledRules.firstMatch(url)
+        return if (i >= 0 && compiledRules.rules[i].accept()) url else null
     }
 
     /**
@@ -0,0 +1,20 @@
+package ai.platon.pulsar.filter.common
+
+import dk.brics.automaton.Automaton
+import java.util.regex.Pattern
+
+/**
+ * A rule based on the [Java Regex implementation][java.util.regex], an url matches the rule if the pattern is found
+ * in the url.
+ */
+open class JavaRegexRule(sign: Boolean, regex: String) : RegexRule(sign, regex) {
+    val pattern: Pattern = Pattern.compile(regex)
+
+    override val automaton: Automaton? by lazy { JavaRegexTranslator.translate(regex) }
+
+    override val isAutomatonForPlainText get() = true
+
+    override fun match(url: String): Boolean {
+        return pattern.matcher(url).find()
+    }
+}
@@ -0,0 +1,265 @@
+package ai.platon.pulsar.filter.common
+
+import dk.brics.automaton.Automaton
+
+/**
+ * Translate a [java.util.regex.Pattern] into a [dk.brics.automaton.Automaton], the automaton accepts a string if and
+ * only if `pattern.matcher(string).find()` returns true.
+ *
+ * Only a conservative subset of the java regex syntax is supported: literals, escaped characters, `.`, character
+ * classes, groups, alternations and the greedy or reluctant quantifiers, `^` at the beginning and `$` at the end of a
+ * top level branch. A regex with any other construct, for example, flags, back references, look arounds, word
+ * boundaries, or possessive quantifiers, is not translated.
+ *
+ * The translation is exact only for *plain text*, that is, strings without line terminators and surrogates, because
+ * java regex matches code points and treats line terminators specially, see [isPlainText].
+ * */
+internal object JavaRegexTranslator {
+    /**
+     * The max repetition bound, a bigger bound makes the automaton too large
+     * */
+    const val MAX_REPETITION = 32
+
+    /**
+     * Line terminators, which are never matched by `.`
+     * */
+    private const val LINE_TERMINATORS = "\n\r\u0085\u2028\u2029"
+
+    private val ANY_CHAR_EXCEPT_LINE_TERMINATORS by lazy {
+        Automaton.makeAnyChar().minus(Automaton.makeCharSet(LINE_TERMINATORS))
+    }
+
+    /**
+     * Translate the regex into an automaton with the find semantics, or null if the regex is not supported
+     * */
+    fun translate(regex: String): Automaton? {
+        if (regex.any { it.isSurrogate() }) {
+            return null
+        }
+
+        return try {
+            Parser(regex).parse()
+        } catch (e: UnsupportedRegexException) {
+            null
+        }
+    }
+
+    /**
+     * Check if the text has neither line terminators nor surrogates
+     * */
+    fun isPlainText(text: String): Boolean {
+        for (c in text) {
+            if (c < '\u0080') {
+                if (c == '\n' || c == '\r') return false
+            } else if (c == '\u0085' || c == '\u2028' || c == '\u2029' || c.isSurrogate()) {
+                return false
+            }
+        }
+        return true
+    }
+
+    private class UnsupportedRegexException : RuntimeException()
+
+    private class Parser(val regex: String) {
+        private var pos = 0
+
+        fun parse(): Automaton {
+            val branches = mutableListOf<Automaton>()
+            do {
+                branches.add(parseTopLevelBranch())
+            } while (tryConsume('|'))
+
+            if (pos != regex.length) unsupported()
+
+            return Automaton.union(branches)
+        }
+
+        /**
+         * A top level branch can be anchored by `^` and `$`, the other branches are surrounded by any strings
+         * */
+        private fun parseTopLevelBranch(): Automaton {
+            val anchoredStart = tryConsume('^')
+            val body = parseSequence()
+            val anchoredEnd = tryConsume('$')
+            if (pos < regex.length && regex[pos] != '|') unsupported()
+
+            var automaton = body
+            if (!anchoredStart) {
+                automaton = Automaton.makeAnyString().concatenate(automaton)
+            }
+            if (!anchoredEnd) {
+                automaton = automaton.concatenate(Automaton.makeAnyString())
+            }
+            return automaton
+        }
+
+        private fun parseAlternation(): Automaton {
+            val branches = mutableListOf<Automaton>()
+            do {
+                branches.add(parseSequence())
+            } while (tryConsume('|'))
+            return Automaton.union(branches)
+        }
+
+        private fun parseSequence(): Automaton {
+            val items = mutableListOf<Automaton>()
+            while (pos < regex.length) {
+                val c = regex[pos]
+                if (c == '|' || c == ')' || c == '$') break
+                items.add(parseQuantified(parseAtom()))
+            }
+            return if (items.isEmpty()) Automaton.makeEmptyString() else Automaton.concatenate(items)
+        }
+
+        private fun parseAtom(): Automaton {
+            val c = next()
+            return when (c) {
+                '(' -> {
+                    if (tryConsume('?')) {
+                        // only the non-capturing group is supported
+                        if (!tryConsume(':')) unsupported()
+                    }
+                    val group = parseAlternation()
+                    if (!tryConsume(')')) unsupported()
+                    group
+                }
+                '[' -> parseClass()
+                '.' -> ANY_CHAR_EXCEPT_LINE_TERMINATORS
+                '\\' -> parseEscape()
+                '^', '$', '*', '+', '?', '{', ')' -> unsupported()
+                else -> Automaton.makeChar(c)
+            }
+        }
+
+        private fun parseQuantified(atom: Automaton): Automaton {
+            if (pos >= regex.length) return atom
+
+            val quantified = when (regex[pos]) {
+                '*' -> { ++pos; atom.repeat() }
+                '+' -> { ++pos; atom.repeat(1) }
+                '?' -> { ++pos; atom.optional() }
+                '{' -> { ++pos; parseRepetition(atom) }
+                else -> return atom
+            }
+
+            // a reluctant quantifier matches the same strings, a possessive one does not
+            tryConsume('?')
+            when (peek()) {
+                '+', '*', '?', '{' -> unsupported()
+            }
+
+            return quantified
+        }
+
+        private fun parseRepetition(atom: Automaton): Automaton {
+            val min = parseNumber()
+            val max = if (tryConsume(',')) {
+                if (peek() == '}') -1 else parseNumber()
+            } else min
+            if (!tryConsume('}')) unsupported()
+
+            if (min > MAX_REPETITION || max > MAX_REPETITION || (max != -1 && max < min)) unsupported()
+            return if (max == -1) atom.repeat(min) else atom.repeat(min, max)
+        }
+
+        private fun parseNumber(): Int {
+            val start = pos
+            while (pos < regex.length && regex[pos] in '0'..'9' && pos - start < 6) {
+                ++pos
+            }
+            if (start == pos) unsupported()
+            return regex.substring(start, pos).toInt()
+        }
+
+        private fun parseClass(): Automaton {
+            val negated = tryConsume('^')
+            // leave the corner cases like "[]a]" to java regex
+            if (peek() == ']') unsupported()
+
+            val items = mutableListOf<Automaton>()
+            var first = true
+            while (true) {
+                val c = next()
+                when {
+                    c == ']' -> break
+                    c == '[' || (c == '&' && peek() == '&') -> unsupported()
+                    c == '-' && (first || peek() == ']') -> items.add(Automaton.makeChar(c))
+                    c == '-' -> unsupported()
+                    c == '\\' && peek().let { it == 'd' || it == 'w' || it == 's' } -> items.add(predefinedClass(next()))
+                    else -> {
+                        val from = if (c == '\\') escapedChar(next()) else c
+                        if (peek() == '-' && peekAt(1) != ']' && peekAt(1) != null) {
+                            ++pos
+                            val e = next()
+                            if (e == '[' || (e == '\\' && peek().let { it == 'd' || it == 'w' || it == 's' })) unsupported()
+                            val to = if (e == '\\') escapedChar(next()) else e
+                            if (to < from) unsupported()
+                            items.add(Automaton.makeCharRange(from, to))
+                        } else {
+                            items.add(Automaton.makeChar(from))
+                        }
+                    }
+                }
+                first = false
+            }
+
+            if (items.isEmpty()) unsupported()
+            val union = Automaton.union(items)
+            return if (negated) Automaton.makeAnyChar().minus(union) else union
+        }
+
+        private fun parseEscape(): Automaton {
+            val c = next()
+            return when (c) {
+                'd', 'w', 's' -> predefinedClass(c)
+                'D' -> Automaton.makeAnyChar().minus(predefinedClass('d'))
+                'W' -> Automaton.makeAnyChar().minus(predefinedClass('w'))
+                'S' -> Automaton.makeAnyChar().minus(predefinedClass('s'))
+                else -> Automaton.makeChar(escapedChar(c))
+            }
+        }
+
+        private fun predefinedClass(c: Char): Automaton {
+            return when (c) {
+                'd' -> Automaton.makeCharRange('0', '9')
+                'w' -> Automaton.makeCharRange('a', 'z').union(Automaton.makeCharRange('A', 'Z'))
+                    .union(Automaton.makeCharRange('0', '9')).union(Automaton.makeChar('_'))
+                's' -> Automaton.makeCharSet(" \t\n\u000B\u000C\r")
+                else -> unsupported()
+            }
+        }
+
+        private fun escapedChar(c: Char): Char {
+            return when {
+                c == 't' -> '\t'
+                c == 'n' -> '\n'
+                c == 'r' -> '\r'
+                c == 'f' -> '\u000C'
+                c == 'a' -> '\u0007'
+                c == 'e' -> '\u001B'
+                // a backslash before a non-alphabetic character escapes the character
+                c in 'a'..'z' || c in 'A'..'Z' || c in '0'..'9' || c > '\u007F' -> unsupported()
+                else -> c
+            }
+        }
+
+        private fun peek(): Char? = regex.getOrNull(pos)
+
+        private fun peekAt(offset: Int): Char? = regex.getOrNull(pos + offset)
+
+        private fun next(): Char {
+            if (pos >= regex.length) unsupported()
+            return regex[pos++]
+        }
+
+        private fun tryConsume(c: Char): Boolean {
+            if (pos < regex.length && regex[pos] == c) {
+                ++pos
+                return true
+            }
+            return false
+        }
+
+        private fun unsupported(): Nothing = throw UnsupportedRegexException()
+    }
+}
@@ -18,6 +18,8 @@
  */
 package ai.platon.pulsar.filter.common
 
+import dk.brics.automaton.Automaton
+
 /**
  * A generic regular expression rule.
  *
@@ -36,7 +38,19 @@ package ai.platon.pulsar.filter.common
  * is the regular expression used for matching (see
  * [.match] method).
  */
-abstract class RegexRule(private val sign: Boolean, regex: String) {
+abstract class RegexRule(private val sign: Boolean, val regex: String) {
+    /**
+     * An automaton which accepts exactly the urls matching this rule, or null if there is no such automaton.
+     * The automata of the rules are combined to match all the rules in one pass, see [RegexRuleSet]
+     */
+    open val automaton: Automaton? get() = null
+
+    /**
+     * If true, [automaton] is the same as [match] only for the plain text urls, which have neither line terminators
+     * nor surrogates
+     */
+    open val isAutomatonForPlainText: Boolean get() = false
+
     /**
      * Return if this rule is used for filtering-in or out.
      *
@@ -0,0 +1,340 @@
+package ai.platon.pulsar.filter.common
+
+import ai.platon.pulsar.common.PrefixStringMatcher
+import ai.platon.pulsar.common.SuffixStringMatcher
+import dk.brics.automaton.Automaton
+import dk.brics.automaton.RunAutomaton
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A list of rules compiled into one matcher, which finds the first matching rule of an url in one pass.
+ *
+ * 1. The leading rules which match only literal prefixes or literal suffixes, for example, `-^(file|ftp|mailto):` and
+ *    `-\.(gif|jpg|png)$`, are put into a [PrefixStringMatcher] and a [SuffixStringMatcher], if none of the tries
+ *    matches an url, none of the leading rules matches the url
+ * 2. The automata of the other rules are run together by a product DFA, a state of the DFA holds the states of all
+ *    the alive automata, and it's created only when it's visited for the first time, so the DFA never blows up.
+ *    The DFA states and the transitions are cached, so an url is usually matched by a single table lookup per char
+ * 3. The rules without an automaton are matched one by one, but only the rules before the first matching automaton
+ *
+ * The result is always the same as matching the rules one by one.
+ */
+class RegexRuleSet(val rules: List<RegexRule>) {
+
+    companion object {
+        /**
+         * The max number of the cached DFA states
+         * */
+        const val MAX_CACHED_STATES = 10_000
+        /**
+         * The max number of the automaton states kept by all the cached DFA states
+         * */
+        const val MAX_CACHED_COMPONENTS = 1 shl 20
+        /**
+         * The max number of the literals of a leading rule
+         * */
+        const val MAX_LITERALS = 64
+
+        private val ANY_STRING = Automaton.makeAnyString()
+        private val NON_EMPTY_STRING = Automaton.makeAnyChar().repeat(1)
+
+        /**
+         * Return the literals if the automaton accepts exactly the strings starting with one of them
+         * */
+        internal fun findLiteralPrefixes(automaton: Automaton): Set<String>? {
+            val shortest = automaton.minus(automaton.concatenate(NON_EMPTY_STRING))
+            return getLiterals(shortest)?.takeIf { automaton == shortest.concatenate(ANY_STRING) }
+        }
+
+        /**
+         * Return the literals if the automaton accepts exactly the strings ending with one of them
+         * */
+        internal fun findLiteralSuffixes(automaton: Automaton): Set<String>? {
+            val shortest = automaton.minus(NON_EMPTY_STRING.concatenate(automaton))
+            return getLiterals(shortest)?.takeIf { automaton == ANY_STRING.concatenate(shortest) }
+        }
+
+        private fun getLiterals(automaton: Automaton): Set<String>? {
+            if (!automaton.isFinite) {
+                return null
+            }
+
+            val literals = automaton.getFiniteStrings(MAX_LITERALS) ?: return null
+            return literals.takeIf { it.isNotEmpty() && "" !in it }
+        }
+    }
+
+    /**
+     * The number of the leading rules which are matched by the tries
+     * */
+    val numLiteralRules: Int
+    /**
+     * The number of the rules which are matched by the product DFA
+     * */
+    val numAutomatonRules: Int get() = runAutomata.size
+    /**
+     * The number of the rules which are matched one by one
+     * */
+    val numOpaqueRules: Int get() = opaqueRules.size
+
+    private val prefixMatcher: PrefixStringMatcher
+    private val suffixMatcher: SuffixStringMatcher
+    /**
+     * If true, an url with line terminators or surrogates is matched one by one, see [JavaRegexTranslator]
+     * */
+    private val requiresPlainText: Boolean
+    private val opaqueRules: IntArray
+    private val runAutomata: Array<RunAutomaton>
+    /**
+     * The rule index of every automaton in [runAutomata]
+     * */
+    private val ruleIndexes: IntArray
+    /**
+     * Accepting states which lead to themselves by any char, an url matches the rule once it reaches such a state
+     * */
+    private val acceptingSinks: Array<BooleanArray>
+
+    private val cachedStates = ConcurrentHashMap<DState, DState>()
+    private val numCachedComponents = AtomicInteger()
+    private val initialState: DState
+
+    init {
+        val prefixes = mutableListOf<String>()
+        val suffixes = mutableListOf<String>()
+        var plainText = false
+
+        var head = 0
+        while (head < rules.size) {
+            val rule = rules[head]
+            val automaton = rule.automaton ?: break
+            val literals = findLiteralPrefixes(automaton)?.also { prefixes.addAll(it) }
+                ?: findLiteralSuffixes(automaton)?.also { suffixes.addAll(it) }
+            if (literals == null) {
+                break
+            }
+            plainText = plainText || rule.isAutomatonForPlainText
+            ++head
+        }
+        numLiteralRules = head
+        prefixMatcher = PrefixStringMatcher(prefixes)
+        suffixMatcher = SuffixStringMatcher(suffixes)
+
+        val opaque = mutableListOf<Int>()
+        val automata = mutableListOf<RunAutomaton>()
+        val indexes = mutableListOf<Int>()
+        for (i in head until rules.size) {
+            val rule = rules[i]
+            val automaton = rule.automaton
+            if (automaton == null) {
+                opaque.add(i)
+            } else {
+                automata.add(RunAutomaton(automaton))
+                indexes.add(i)
+                plainText = plainText || rule.isAutomatonForPlainText
+            }
+        }
+        opaqueRules = opaque.toIntArray()
+        runAutomata = automata.toTypedArray()
+        ruleIndexes = indexes.toIntArray()
+        acceptingSinks = Array(runAutomata.size) { findAcceptingSinks(runAutomata[it]) }
+        requiresPlainText = plainText
+
+        val members = IntArray(runAutomata.size) { it }
+        initialState = cache(DState(members, IntArray(runAutomata.size) { runAutomata[it].initialState }))
+    }
+
+    /**
+     * Find the first rule which matches the url, start from [fromIndex]
+     *
+     * @return the index of the first matching rule, or -1 if no rule matches the url
+     * */
+    fun firstMatch(url: String, fromIndex: Int = 0): Int {
+        if (requiresPlainText && !JavaRegexTranslator.isPlainText(url)) {
+            return firstMatchOneByOne(url, fromIndex)
+        }
+
+        if (fromIndex < numLiteralRules && (prefixMatcher.matches(url) || suffixMatcher.matches(url))) {
+            for (i in fromIndex until numLiteralRules) {
+                if (rules[i].match(url)) {
+                    return i
+                }
+            }
+        }
+
+        val startIndex = maxOf(fromIndex, numLiteralRules)
+        val first = firstAutomatonMatch(url, startIndex)
+        for (i in opaqueRules) {
+            if (i >= first) {
+                break
+            }
+            if (i >= startIndex && rules[i].match(url)) {
+                return i
+            }
+        }
+
+        return if (first == Int.MAX_VALUE) -1 else first
+    }
+
+    /**
+     * Find the first rule which matches the url by matching the rules one by one
+     * */
+    fun firstMatchOneByOne(url: String, fromIndex: Int = 0): Int {
+        for (i in fromIndex until rules.size) {
+            if (rules[i].match(url)) {
+                return i
+            }
+        }
+        return -1
+    }
+
+    /**
+     * Run the product DFA, return the index of the first matching rule with an automaton, or Int.MAX_VALUE if
+     * no such rule matches
+     * */
+    private fun firstAutomatonMatch(url: String, fromIndex: Int): Int {
+        var state = initialState
+        for (i in url.indices) {
+            if (state.members.isEmpty()) {
+                return Int.MAX_VALUE
+            }
+            if (state.leadingSink >= fromIndex) {
+                return state.leadingSink
+            }
+            if (state.members.size == 1) {
+                val ruleIndex = ruleIndexes[state.members[0]]
+                return if (ruleIndex >= fromIndex) runSingleAutomaton(url, i, state) else Int.MAX_VALUE
+            }
+
+            state = next(state, url[i])
+        }
+
+        val members = state.members
+        for (j in members.indices) {
+            val k = members[j]
+            if (ruleIndexes[k] >= fromIndex && runAutomata[k].isAccept(state.states[j])) {
+                return ruleIndexes[k]
+            }
+        }
+
+        return Int.MAX_VALUE
+    }
+
+    /**
+     * Only one automaton is alive, run it directly from the [start]th char
+     * */
+    private fun runSingleAutomaton(url: String, start: Int, state: DState): Int {
+        val k = state.members[0]
+        val automaton = runAutomata[k]
+        val sinks = acceptingSinks[k]
+        var s = state.states[0]
+        for (i in start until url.length) {
+            if (sinks[s]) {
+                break
+            }
+            s = automaton.step(s, url[i])
+            if (s == -1) {
+                return Int.MAX_VALUE
+            }
+        }
+
+        return if (automaton.isAccept(s)) ruleIndexes[k] else Int.MAX_VALUE
+    }
+
+    private fun next(state: DState, c: Char): DState {
+        val cached = if (c < '\u0080') state.asciiTransitions[c.toInt()] else state.otherTransitions[c]
+        if (cached != null) {
+            return cached
+        }
+
+        val members = state.members
+        val nextMembers = IntArray(members.size)
+        val nextStates = IntArray(members.size)
+        var n = 0
+        for (j in members.indices) {
+            val k = members[j]
+            val s = runAutomata[k].step(state.states[j], c)
+            if (s != -1) {
+                nextMembers[n] = k
+                nextStates[n] = s
+                ++n
+            }
+        }
+
+        val nextState = cache(DState(nextMembers.copyOf(n), nextStates.copyOf(n)))
+        if (state.isCached && nextState.isCached) {
+            if (c < '\u0080') {
+                state.asciiTransitions[c.toInt()] = nextState
+            } else {
+                state.otherTransitions[c] = nextState
+            }
+        }
+
+        return nextState
+    }
+
+    /**
+     * Return the cached state which is the same as the given one, or cache the given state if there is room
+     * */
+    private fun cache(state: DState): DState {
+        cachedStates[state]?.let { return it }
+
+        if (cachedStates.size >= MAX_CACHED_STATES || numCachedComponents.get() >= MAX_CACHED_COMPONENTS) {
+            return state
+        }
+
+        val cached = cachedStates.putIfAbsent(state, state)
+        if (cached != null) {
+            return cached
+        }
+
+        numCachedComponents.addAndGet(state.members.size)
+        state.isCached = true
+        return state
+    }
+
+    private fun findAcceptingSinks(automaton: RunAutomaton): BooleanArray {
+        val points = automaton.charIntervals
+        return BooleanArray(automaton.size) { s ->
+            automaton.isAccept(s) && points.all { automaton.step(s, it) == s }
+        }
+    }
+
+    /**
+     * A state of the product DFA
+     * */
+    private inner class DState(
+        /**
+         * The alive automata, in the order of the rules
+         * */
+        val members: IntArray,
+        /**
+         * The state of every alive automaton
+         * */
+        val states: IntArray
+    ) {
+        @Volatile
+        var isCached = false
+
+        /**
+         * The index of the first alive rule if it's already matched, or -1
+         * */
+        val leadingSink = if (members.isNotEmpty() && acceptingSinks[members[0]][states[0]]) ruleIndexes[members[0]] else -1
+
+        /**
+         * The transitions by the ascii chars, a transition might be computed more than once by different threads,
+         * but the result is always the same
+         * */
+        val asciiTransitions = arrayOfNulls<DState>(128)
+
+        val otherTransitions by lazy { ConcurrentHashMap<Char, DState>() }
+
+        private val hash = 31 * members.contentHashCode() + states.contentHashCode()
+
+        override fun equals(other: Any?): Boolean {
+            return other is DState && members.contentEquals(other.members) && states.contentEquals(other.states)
+        }
+
+        override fun hashCode() = hash
+    }
+}
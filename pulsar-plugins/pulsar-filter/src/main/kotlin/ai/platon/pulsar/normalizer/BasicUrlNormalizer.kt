@@ -22,10 +22,10 @@ import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.config.KConfigurable
 import ai.platon.pulsar.common.urls.Urls.getURLOrNull
 import ai.platon.pulsar.crawl.filter.CrawlUrlNormalizer
-import org.apache.oro.text.regex.*
 import org.slf4j.LoggerFactory
 import java.net.MalformedURLException
 import java.net.URL
+import java.util.regex.Pattern
 
 /**
  * Converts URLs to a normal form:
@@ -37,42 +37,19 @@ import java.net.URL
 class BasicUrlNormalizer(override var conf: ImmutableConfig) : KConfigurable, CrawlUrlNormalizer {
     val LOG = LoggerFactory.getLogger(BasicUrlNormalizer::class.java)
 
-    private val relativePathRule: Rule = Rule()
-    private val leadingRelativePathRule: Rule = Rule()
-    private val currentPathRule: Rule = Rule()
-    private val adjacentSlashRule: Rule = Rule()
-    private val compiler = Perl5Compiler()
-    private val matchers: ThreadLocal<Perl5Matcher> = object : ThreadLocal<Perl5Matcher>() {
-        override fun initialValue(): Perl5Matcher {
-            return Perl5Matcher()
-        }
-    }
-
-    init {
-        try {
-            // this pattern tries to find spots like "/xx/../" in the url, which
-            // could be replaced by "/" xx consists of chars, different then "/"
-            // (slash) and needs to have at least one char different from "."
-            relativePathRule.pattern = compiler.compile(
-                    "(/[^/]*[^/.]{1}[^/]*/\\.\\./)", Perl5Compiler.READ_ONLY_MASK) as Perl5Pattern
-            relativePathRule.substitution = Perl5Substitution("/")
-            // this pattern tries to find spots like leading "/../" in the url,
-            // which could be replaced by "/"
-            leadingRelativePathRule.pattern = compiler.compile(
-                    "^(/\\.\\./)+", Perl5Compiler.READ_ONLY_MASK) as Perl5Pattern
-            leadingRelativePathRule.substitution = Perl5Substitution("/")
-            // this pattern tries to find spots like "/./" in the url,
-            // which could be replaced by "/"
-            currentPathRule.pattern = compiler.compile("(/\\./)", Perl5Compiler.READ_ONLY_MASK) as Perl5Pattern
-            currentPathRule.substitution = Perl5Substitution("/")
-            // this pattern tries to find spots like "xx//yy" in the url,
-            // which could be replaced by a "/"
-            adjacentSlashRule.pattern = compiler.compile("/{2,}", Perl5Compiler.READ_ONLY_MASK) as Perl5Pattern
-            adjacentSlashRule.substitution = Perl5Substitution("/")
-        } catch (e: MalformedPatternException) {
-            throw RuntimeException(e)
-        }
-    }
+    // this pattern tries to find spots like "/xx/../" in the url, which
+    // could be replaced by "/" xx consists of chars, different then "/"
+    // (slash) and needs to have at least one char different from "."
+    private val relativePathRule = Pattern.compile("(/[^/]*[^/.]{1}[^/]*/\\.\\./)")
+    // this pattern tries to find spots like leading "/../" in the url,
+    // which could be replaced by "/"
+    private val leadingRelativePathRule = Pattern.compile("^(/\\.\\./)+")
+    // this pattern tries to find spots like "/./" in the url,
+    // which could be replaced by "/"
+    private val currentPathRule = Pattern.compile("(/\\./)")
+    // this pattern tries to find spots like "xx//yy" in the url,
+    // which could be replaced by a "/"
+    private val adjacentSlashRule = Pattern.compile("/{2,}")
 
     override fun normalize(url: String, scope: String): String? {
         var urlString: String = url
@@ -143,28 +120,23 @@ class BasicUrlNormalizer(override var conf: ImmutableConfig) : KConfigurable, Cr
         // "http://www.foo.com/../" should return a http 404 error instead of
         // redirecting to "http://www.foo.com".
         //
-        val matcher = matchers.get()
+        // all the rules match either "/." or "//"
+        if (!file.contains("/.") && !file.contains("//")) {
+            return file
+        }
+
         while (oldLen != newLen) {
             // substitue first occurence of "/xx/../" by "/"
             oldLen = fileWorkCopy.length
-            fileWorkCopy = Util.substitute(matcher, relativePathRule.pattern, relativePathRule.substitution, fileWorkCopy, 1)
+            fileWorkCopy = relativePathRule.matcher(fileWorkCopy).replaceFirst("/")
             // remove leading "/../"
-            fileWorkCopy = Util.substitute(matcher, leadingRelativePathRule.pattern, leadingRelativePathRule.substitution, fileWorkCopy, 1)
+            fileWorkCopy = leadingRelativePathRule.matcher(fileWorkCopy).replaceFirst("/")
             // remove unnecessary "/./"
-            fileWorkCopy = Util.substitute(matcher, currentPathRule.pattern, currentPathRule.substitution, fileWorkCopy, 1)
+            fileWorkCopy = currentPathRule.matcher(fileWorkCopy).replaceFirst("/")
             // collapse adjacent slashes with "/"
-            fileWorkCopy = Util.substitute(matcher, adjacentSlashRule.pattern, adjacentSlashRule.substitution, fileWorkCopy, 1)
+            fileWorkCopy = adjacentSlashRule.matcher(fileWorkCopy).replaceFirst("/")
             newLen = fileWorkCopy.length
         }
         return fileWorkCopy
     }
-
-    /**
-     * Class which holds a compiled pattern and its corresponding substition
-     * string.
-     */
-    private class Rule {
-        var pattern: Perl5Pattern? = null
-        var substitution: Perl5Substitution? = null
-    }
 }
\ No newline at end of file
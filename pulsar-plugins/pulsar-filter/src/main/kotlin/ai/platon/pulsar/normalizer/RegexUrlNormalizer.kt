@@ -23,6 +23,8 @@ import ai.platon.pulsar.common.Strings
 import ai.platon.pulsar.common.config.CapabilityTypes
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.crawl.filter.CrawlUrlNormalizer
+import ai.platon.pulsar.filter.common.JavaRegexRule
+import ai.platon.pulsar.filter.common.RegexRuleSet
 import org.slf4j.LoggerFactory
 import org.w3c.dom.Element
 import org.w3c.dom.Text
@@ -62,6 +64,15 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
         }
     }
 
+    /**
+     * The rule lists compiled into rule sets, a rule list is compiled at the first time it's used
+     * */
+    private val ruleSetsThreadLocal = object : ThreadLocal<IdentityHashMap<List<Rule>, RegexRuleSet>>() {
+        override fun initialValue(): IdentityHashMap<List<Rule>, RegexRuleSet> {
+            return IdentityHashMap()
+        }
+    }
+
     private val defaultRules: List<Rule>
     val scopedRules: HashMap<String, List<Rule>> get() = scopedRulesThreadLocal.get()
 
@@ -108,9 +119,15 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
             curRules = defaultRules
         }
 
-        for (r in curRules!!) {
+        // a rule which does not match the url leaves the url unchanged, so only the matching rules are applied
+        val rules = curRules!!
+        val ruleSet = ruleSetsThreadLocal.get().computeIfAbsent(rules) { compile(it) }
+        var i = ruleSet.firstMatch(urlString)
+        while (i >= 0) {
+            val r = rules[i]
             val matcher = r.pattern!!.matcher(urlString)
             urlString = matcher.replaceAll(r.substitution)
+            i = ruleSet.firstMatch(urlString, i + 1)
         }
 
         return urlString
@@ -120,6 +137,10 @@ class RegexUrlNormalizer(private val conf: ImmutableConfig) : CrawlUrlNormalizer
         return regexNormalize(url, scope)
     }
 
+    private fun compile(rules: List<Rule>): RegexRuleSet {
+        return RegexRuleSet(rules.map { JavaRegexRule(true, it.pattern!!.pattern()) })
+    }
+
     private fun readConfiguration(reader: Reader): List<Rule> {
         val rules: MutableList<Rule> = ArrayList()
         try {
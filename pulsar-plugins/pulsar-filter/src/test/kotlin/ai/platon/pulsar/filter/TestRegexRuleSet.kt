@@ -0,0 +1,166 @@
+package ai.platon.pulsar.filter
+
+import ai.platon.pulsar.common.ResourceLoader
+import ai.platon.pulsar.filter.common.JavaRegexRule
+import ai.platon.pulsar.filter.common.JavaRegexTranslator
+import ai.platon.pulsar.filter.common.RegexRule
+import ai.platon.pulsar.filter.common.RegexRuleSet
+import dk.brics.automaton.Automaton
+import dk.brics.automaton.RegExp
+import dk.brics.automaton.RunAutomaton
+import org.junit.Test
+import java.util.regex.Pattern
+import java.util.regex.PatternSyntaxException
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+/**
+ * Check that [RegexRuleSet] always finds the same rule as matching the rules one by one,
+ * and that [JavaRegexTranslator] translates a regex into an automaton of the same find semantics
+ * */
+class TestRegexRuleSet {
+    private val random = Random(20210401)
+
+    private val sampleFiles = listOf("Benchmarks", "Bigbit", "Ccc", "IntranetCrawling", "Tmail", "WholeWebCrawling")
+    private val urlChars = "abcxyz019./:?&=-_#%!*@~ABC"
+    private val trickyChars = "\n\r\u0085 é😀"
+
+    @Test
+    fun testTranslatedRegexes() {
+        val regexes = listOf(
+            "^(file|ftp|mailto):", "\\.(gif|GIF|jpg|JPG)$", "[?*!@=]", "^.*//.*\\.fr/", ".", "^$", "a|^b|c$",
+            "(?:ab)+c?", "a{2}", "a{1,3}b", "a{2,}", "a*?b", "[^a-c]x", "[-a]", "[a-]", "\\d\\w\\s", "\\D\\W\\S",
+            "[\\d.]+", "\\t\\.\\$", "(a|)b", "()", "^https?://([a-z0-9]*\\.)*example\\.com/", "x.y"
+        )
+
+        regexes.forEach { regex ->
+            val automaton = assertNotNull(JavaRegexTranslator.translate(regex), regex)
+            val pattern = Pattern.compile(regex)
+            repeat(2_000) {
+                val text = randomString(urlChars + "\t ", 10)
+                assertEquals(pattern.matcher(text).find(), automaton.run(text), "$regex ~ $text")
+            }
+        }
+    }
+
+    @Test
+    fun testUntranslatedRegexes() {
+        val regexes = listOf(
+            "(?i)abc", "(a)\\1", "a(?=b)", "a(?!b)", "\\bword", "a*+", "a++b", "[[a]b]", "[a&&b]", "[]a]",
+            "\\p{Alpha}", "\\Qa\\E", "a{1000}", "\\x41", "a^b", "a\$b"
+        )
+
+        regexes.forEach { assertNull(JavaRegexTranslator.translate(it), it) }
+    }
+
+    @Test
+    fun testRandomRegexes() {
+        var numTranslated = 0
+        repeat(5_000) {
+            val regex = randomString("ab.|()[]^-$*+?{}1,\\d", 8)
+            val pattern = try {
+                Pattern.compile(regex)
+            } catch (e: PatternSyntaxException) {
+                return@repeat
+            }
+
+            val automaton = JavaRegexTranslator.translate(regex) ?: return@repeat
+            ++numTranslated
+            repeat(200) {
+                val text = randomString("ab1-^$ ", 8)
+                assertEquals(pattern.matcher(text).find(), automaton.run(text), "$regex ~ $text")
+            }
+        }
+        assertTrue(numTranslated > 100)
+    }
+
+    @Test
+    fun testLiteralRules() {
+        val ruleSet = RegexRuleSet(readRules("Benchmarks") { sign, regex -> JavaRegexRule(sign, regex) })
+        assertEquals(2, ruleSet.numLiteralRules)
+        assertEquals(0, ruleSet.numOpaqueRules)
+    }
+
+    @Test
+    fun testJavaRegexRules() {
+        sampleFiles.forEach { file ->
+            assertSameMatch(file, RegexRuleSet(readRules(file) { sign, regex -> JavaRegexRule(sign, regex) }))
+        }
+    }
+
+    @Test
+    fun testAutomatonRules() {
+        sampleFiles.forEach { file ->
+            val rules = try {
+                readRules(file) { sign, regex -> AutomatonRule(sign, regex) }
+            } catch (e: IllegalArgumentException) {
+                // not every java regex is a valid brics regex
+                return@forEach
+            }
+            assertSameMatch(file, RegexRuleSet(rules))
+        }
+    }
+
+    @Test
+    fun testMixedRules() {
+        val rules = listOf(
+            JavaRegexRule(false, "^(file|ftp|mailto):"),
+            JavaRegexRule(false, "\\.(gif|jpg)$"),
+            JavaRegexRule(false, "(a)\\1"),
+            JavaRegexRule(true, "^https?://[a-z.]*x"),
+            JavaRegexRule(false, "(?i)ABC"),
+            AutomatonRule(false, ".*[0-9]{3}.*"),
+            JavaRegexRule(true, ".")
+        )
+        assertSameMatch("mixed", RegexRuleSet(rules))
+    }
+
+    private fun assertSameMatch(name: String, ruleSet: RegexRuleSet) {
+        val urls = readUrls(name) + List(20_000) { randomUrl() }
+        urls.forEach { url ->
+            for (fromIndex in 0..ruleSet.rules.size) {
+                val expected = ruleSet.firstMatchOneByOne(url, fromIndex)
+                assertEquals(expected, ruleSet.firstMatch(url, fromIndex), "$name #$fromIndex $url")
+            }
+        }
+    }
+
+    private fun readRules(file: String, createRule: (Boolean, String) -> RegexRule): List<RegexRule> {
+        val reader = ResourceLoader.getResourceAsReader("sample/$file.rules")!!
+        return reader.readLines().map { it.trim() }
+            .filter { it.startsWith("+") || it.startsWith("-") }
+            .map { createRule(it[0] == '+', it.substring(1)) }
+    }
+
+    private fun readUrls(file: String): List<String> {
+        val reader = ResourceLoader.getResourceAsReader("sample/$file.urls") ?: return listOf()
+        return reader.readLines().filter { it.isNotEmpty() }.map { it.substring(1) }
+    }
+
+    private fun randomUrl(): String {
+        val buf = StringBuilder()
+        buf.append(listOf("http://", "https://", "file:/", "ftp://", "mailto:", "").random(random))
+        buf.append(randomString(urlChars, 12))
+        buf.append(listOf("", ".com/", ".fr/", ".org/a", ".gif", ".jpg", "/123/", "aa").random(random))
+        if (random.nextInt(10) == 0) {
+            buf.append(randomString(trickyChars, 2))
+        }
+        buf.append(randomString(urlChars, 6))
+        return buf.toString()
+    }
+
+    private fun randomString(chars: String, maxLength: Int): String {
+        val length = random.nextInt(maxLength + 1)
+        return String(CharArray(length) { chars[random.nextInt(chars.length)] })
+    }
+
+    private class AutomatonRule(sign: Boolean, regex: String) : RegexRule(sign, regex) {
+        override val automaton: Automaton = RegExp(regex, RegExp.ALL).toAutomaton()
+        private val runAutomaton = RunAutomaton(automaton)
+
+        override fun match(url: String) = runAutomaton.run(url)
+    }
+}
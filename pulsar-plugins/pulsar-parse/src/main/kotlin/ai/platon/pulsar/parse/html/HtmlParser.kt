@@ -36,9 +36,7 @@ import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.persist.ParseStatus
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.persist.metadata.ParseStatusCodes
-import org.jsoup.helper.W3CDom
 import org.slf4j.LoggerFactory
-import org.w3c.dom.DocumentFragment
 import java.net.MalformedURLException
 import java.net.URL
 import java.util.concurrent.atomic.AtomicInteger
@@ -60,6 +58,8 @@ class HtmlParser(
     private val defaultCharEncoding = conf.get(CapabilityTypes.PARSE_DEFAULT_ENCODING, "utf-8")
     private val cachingPolicy =
         conf.get(CapabilityTypes.PARSE_CACHING_FORBIDDEN_POLICY, AppConstants.CACHING_FORBIDDEN_CONTENT)
+    private val collectLinks = conf.getBoolean(CapabilityTypes.PARSE_HTML_COLLECT_LINKS, false)
+    private val maxLinks = conf.getUint(CapabilityTypes.PARSE_MAX_LINKS_PER_PAGE, 200)
     private val volatileConfig = conf.toVolatileConfig()
     private val primerParser = PrimerParser(conf)
 
@@ -72,6 +72,7 @@ class HtmlParser(
             "className", this.javaClass.simpleName,
             "defaultCharEncoding", defaultCharEncoding,
             "cachingPolicy", cachingPolicy,
+            "collectLinks", collectLinks,
             "parseFilters", parseFilters
         )
     }
@@ -143,16 +144,20 @@ class HtmlParser(
         val jsoupParser = JsoupParser(page, conf)
         jsoupParser.parse()
         val document = jsoupParser.document
-        val fragment = W3CDom().fromJsoup(document.document).createDocumentFragment()
 
-        val metaTags = parseMetaTags(baseURL, fragment, page)
+        // the meta tags and the links are extracted from the jsoup tree directly, no W3C DOM is built
+        val metaTags = parseMetaTags(baseURL, document.document, page)
         val parseResult = initParseResult(metaTags)
         parseResult.document = document
+        if (collectLinks && !metaTags.noFollow) {
+            val base = metaTags.baseHref ?: baseURL
+            primerParser.collectLinks(base, parseResult.hypeLinks, document.document, maxLinks)
+        }
 
         return ParseContext(page, parseResult, document)
     }
 
-    private fun parseMetaTags(baseURL: URL, docRoot: DocumentFragment, page: WebPage): HTMLMetaTags {
+    private fun parseMetaTags(baseURL: URL, docRoot: org.jsoup.nodes.Document, page: WebPage): HTMLMetaTags {
         val metaTags = HTMLMetaTags(docRoot, baseURL)
         val tags = metaTags.generalTags
         val metadata = page.metadata
@@ -22,8 +22,10 @@ import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.config.MutableConfig
 import ai.platon.pulsar.crawl.parse.html.PrimerParser
 import ai.platon.pulsar.persist.HyperlinkPersistable
+import com.google.common.collect.Lists
 import org.apache.html.dom.HTMLDocumentImpl
 import org.cyberneko.html.parsers.DOMFragmentParser
+import org.jsoup.Jsoup
 import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
@@ -262,4 +264,34 @@ class TestPrimerParser {
             // compareLinks(Lists.newArrayList(*answerHypeLinks[i]), hypeLinks, i)
         }
     }
+
+    @Test
+    fun testGetTextFromJsoup() {
+        for (i in testPages.indices) {
+            val text = primerParser.getPageText(Jsoup.parse(testPages[i]))
+            Assert.assertEquals(answerText[i], text)
+        }
+    }
+
+    @Test
+    fun testGetTitleFromJsoup() {
+        for (i in testPages.indices) {
+            val title = primerParser.getPageTitle(Jsoup.parse(testPages[i]))
+            Assert.assertEquals(answerTitle[i], title)
+        }
+    }
+
+    @Test
+    fun testGetLinksFromJsoup() {
+        // the other pages rely on the neko fixup behavior, jsoup fixes them the way the browsers do
+        for (i in intArrayOf(0, 1, 2, 6, 7, 8)) {
+            val document = Jsoup.parse(testPages[i])
+            val hypeLinks = primerParser.collectLinks(URL(testBaseHrefs[i]), mutableSetOf(), document)
+            compareLinks(Lists.newArrayList(*ANSWER_HYPERLINKS[i]), ArrayList(hypeLinks), i)
+        }
+
+        val document = Jsoup.parse(testPages[11])
+        val hypeLinks = primerParser.collectLinks(URL(testBaseHrefs[11]), mutableSetOf(), document, 2)
+        Assert.assertEquals(2, hypeLinks.size)
+    }
 }
@@ -1,9 +1,12 @@
 package ai.platon.pulsar.protocol.browser.driver
 
 import ai.platon.pulsar.common.AppContext
+import ai.platon.pulsar.common.concurrent.PriorityWaitingQueue
+import ai.platon.pulsar.common.concurrent.WaitingCanceledException
 import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.config.AppConstants.BROWSER_DRIVER_INSTANCE_REQUIRED_MEMORY
 import ai.platon.pulsar.common.config.CapabilityTypes.*
+import ai.platon.pulsar.common.config.ConfigKey
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.config.Parameterized
 import ai.platon.pulsar.common.config.VolatileConfig
@@ -12,11 +15,12 @@ import ai.platon.pulsar.crawl.fetch.driver.WebDriver
 import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
 import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolException
 import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolExhaustedException
+import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolWaitCanceledException
+import kotlinx.coroutines.runBlocking
 import org.slf4j.LoggerFactory
 import oshi.SystemInfo
 import java.time.Duration
 import java.time.Instant
-import java.util.concurrent.ArrayBlockingQueue
 import java.util.concurrent.ConcurrentSkipListSet
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
@@ -39,19 +43,24 @@ class LoadingWebDriverPool(
         val CLOSE_ALL_TIMEOUT = Duration.ofSeconds(60)
         val POLLING_TIMEOUT = Duration.ofSeconds(60)
         val instanceSequencer = AtomicInteger()
+
+        private val BROWSER_MAX_ACTIVE_TABS_KEY = ConfigKey.ofInt(BROWSER_MAX_ACTIVE_TABS, AppContext.NCPU)
+        private val BROWSER_DRIVER_HEADLESS_KEY = ConfigKey.ofBoolean(BROWSER_DRIVER_HEADLESS, true)
     }
 
     private val log = LoggerFactory.getLogger(LoadingWebDriverPool::class.java)
     val id = instanceSequencer.incrementAndGet()
-    val capacity get() = conf.getInt(BROWSER_MAX_ACTIVE_TABS, AppContext.NCPU)
+    val capacity get() = conf[BROWSER_MAX_ACTIVE_TABS_KEY]
     val onlineDrivers = ConcurrentSkipListSet<WebDriver>()
-    val freeDrivers = ArrayBlockingQueue<WebDriver>(2 * capacity)
+    /**
+     * The free drivers, a returned driver is handed off to the waiter with the highest priority
+     * */
+    val freeDrivers = PriorityWaitingQueue<WebDriver>()
 
     private val lock = ReentrantLock()
     private val notBusy = lock.newCondition()
-    private val notEmpty = lock.newCondition()
 
-    private val isHeadless get() = conf.getBoolean(BROWSER_DRIVER_HEADLESS, true)
+    private val isHeadless get() = conf[BROWSER_DRIVER_HEADLESS_KEY]
     private val closed = AtomicBoolean()
     private val systemInfo = SystemInfo()
     // OSHI cached the value, so it's fast and safe to be called frequently
@@ -60,8 +69,14 @@ class LoadingWebDriverPool(
     private val registry = AppMetrics.defaultMetricRegistry
     val counterRetired = registry.counter(this, "retired")
     val counterQuit = registry.counter(this, "quit")
+    val histogramWaitMillis = registry.histogram(this, "waitMillis")
+    val meterWaitTimeout = registry.meter(this, "waitTimeout")
+    val meterWaitCanceled = registry.meter(this, "waitCanceled")
 
     val isActive get() = !closed.get()
+    /**
+     * The number of waiters for free drivers
+     * */
     val numWaiting = AtomicInteger()
     val numWorking = AtomicInteger()
     val numTasks = AtomicInteger()
@@ -104,17 +119,39 @@ class LoadingWebDriverPool(
 
     @Throws(WebDriverPoolExhaustedException::class)
     fun poll(priority: Int, conf: VolatileConfig, timeout: Duration): WebDriver {
-        return poll(0, conf, timeout.seconds, TimeUnit.SECONDS)
+        return poll(priority, conf, timeout.seconds, TimeUnit.SECONDS)
     }
 
-    @Throws(WebDriverPoolExhaustedException::class)
+    /**
+     * Retrieve a free driver, block the current thread if there is no one.
+     * Use the suspending version [take] in coroutines.
+     * */
+    @Throws(WebDriverPoolException::class)
     fun poll(priority: Int, conf: VolatileConfig, timeout: Long, unit: TimeUnit): WebDriver {
-        return poll0(priority, conf, timeout, unit).also {
+        return runBlocking { take(priority, conf, Duration.ofMillis(unit.toMillis(timeout))) }
+    }
+
+    /**
+     * Retrieve a free driver, suspend the caller if there is no one, the thread is not blocked.
+     *
+     * @param priority The priority of the caller, a smaller value means a higher priority
+     * @param conf The volatile config to create new drivers
+     * @param timeout The max time to wait
+     * @param tag The tag of the waiter, a tagged waiter can be canceled by [cancelWaiters]
+     * */
+    @Throws(WebDriverPoolException::class)
+    suspend fun take(priority: Int, conf: VolatileConfig, timeout: Duration, tag: Any? = null): WebDriver {
+        return take0(priority, conf, timeout, tag).also {
             numWorking.incrementAndGet()
             lastActiveTime = Instant.now()
         }
     }
 
+    /**
+     * Cancel the waiters with the specified tag, for example, the url of a canceled fetch task
+     * */
+    fun cancelWaiters(tag: Any) = freeDrivers.cancelWaiters(tag)
+
     fun put(driver: WebDriver) {
         if (numWorking.decrementAndGet() == 0) {
             lock.withLock { notBusy.signalAll() }
@@ -175,7 +212,6 @@ class LoadingWebDriverPool(
     @Synchronized
     private fun offer(driver: WebDriver) {
         freeDrivers.offer(driver.apply { free() })
-        lock.withLock { notEmpty.signalAll() }
     }
 
     @Synchronized
@@ -193,22 +229,27 @@ class LoadingWebDriverPool(
     }
 
     @Throws(WebDriverPoolException::class)
-    private fun poll0(priority: Int, conf: VolatileConfig? = null, timeout: Long, unit: TimeUnit): WebDriver {
-        if (conf != null) {
-            createDriverIfNecessary(priority, conf)
-        }
+    private suspend fun take0(priority: Int, conf: VolatileConfig, timeout: Duration, tag: Any?): WebDriver {
+        createDriverIfNecessary(priority, conf)
 
         numWaiting.incrementAndGet()
+        val startTime = System.currentTimeMillis()
         val driver = try {
-            freeDrivers.poll(timeout, unit)
-        } catch (e: InterruptedException) {
-            Thread.currentThread().interrupt()
-            throw WebDriverPoolException(e)
+            freeDrivers.take(priority, timeout, tag)
+        } catch (e: WaitingCanceledException) {
+            meterWaitCanceled.mark()
+            throw WebDriverPoolWaitCanceledException("Waiting for driver is canceled | $tag")
         } finally {
             numWaiting.decrementAndGet()
+            histogramWaitMillis.update(System.currentTimeMillis() - startTime)
+        }
+
+        if (driver == null) {
+            meterWaitTimeout.mark()
+            throw WebDriverPoolExhaustedException("Driver pool is exhausted (" + formatStatus() + ")")
         }
 
-        return driver?:throw WebDriverPoolExhaustedException("Driver pool is exhausted (" + formatStatus() + ")")
+        return driver
     }
 
     private fun createDriverIfNecessary(priority: Int, conf: VolatileConfig) {
@@ -217,11 +258,8 @@ class LoadingWebDriverPool(
                 if (shouldCreateDriver()) {
                     // log.info("Creating the {}/{}th web driver for context {}", numCreate, capacity, browserInstanceId)
                     val driver = driverFactory.create(browserInstanceId, priority, conf)
-                    lock.withLock {
-                        freeDrivers.add(driver)
-                        notEmpty.signalAll()
-                        onlineDrivers.add(driver)
-                    }
+                    onlineDrivers.add(driver)
+                    freeDrivers.offer(driver)
                     logDriverOnline(driver)
                 }
             }
@@ -8,6 +8,7 @@ import ai.platon.pulsar.persist.metadata.BrowserType
 import ai.platon.pulsar.protocol.browser.driver.chrome.ChromeDevtoolsDriver
 import ai.platon.pulsar.protocol.browser.driver.test.MockWebDriver
 import org.apache.commons.lang3.StringUtils
+import org.jsoup.nodes.Document
 import org.openqa.selenium.NoSuchSessionException
 import org.openqa.selenium.chrome.ChromeDriver
 import org.slf4j.LoggerFactory
@@ -112,6 +113,24 @@ class ManagedWebDriver(
         }
     }
 
+    @Throws(NoSuchSessionException::class)
+    override suspend fun evaluateDeferred(expression: String): Any? {
+        return when {
+            isNotWorking -> null
+            driver is ChromeDevtoolsDriver -> driver.evaluateDeferred(expression)
+            else -> evaluate(expression)
+        }
+    }
+
+    @Throws(NoSuchSessionException::class)
+    override suspend fun captureDocument(): Document? {
+        return when {
+            isNotWorking -> null
+            driver is ChromeDevtoolsDriver -> driver.captureDocument()
+            else -> null
+        }
+    }
+
     override fun bringToFront() {
         when (driver) {
             is MockWebDriver -> {
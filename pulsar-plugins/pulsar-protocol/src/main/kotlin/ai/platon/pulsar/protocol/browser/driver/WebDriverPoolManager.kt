@@ -22,6 +22,10 @@ class WebDriverTask<R> (
         val browserId: BrowserInstanceId,
         val priority: Int,
         val volatileConfig: VolatileConfig,
+        /**
+         * The url to fetch, the task is removed from the waiting queue if the url is canceled
+         * */
+        val url: String? = null,
         val action: suspend (driver: WebDriver) -> R
 )
 
@@ -89,8 +93,8 @@ open class WebDriverPoolManager(
      * */
     @Throws(IllegalApplicationContextStateException::class)
     suspend fun <R> run(browserId: BrowserInstanceId, priority: Int, volatileConfig: VolatileConfig,
-                        action: suspend (driver: WebDriver) -> R?
-    ) = run(WebDriverTask(browserId, priority, volatileConfig, action))
+                        url: String? = null, action: suspend (driver: WebDriver) -> R?
+    ) = run(WebDriverTask(browserId, priority, volatileConfig, url, action))
 
     @Throws(IllegalApplicationContextStateException::class)
     suspend fun <R> run(task: WebDriverTask<R>): R? {
@@ -118,6 +122,7 @@ open class WebDriverPoolManager(
         checkState()
         var driver: WebDriver? = null
         driverPools.values.forEach { driverPool ->
+            driverPool.cancelWaiters(url)
             driver = driverPool.firstOrNull { it.url == url }?.also {
                 it.cancel()
             }
@@ -132,6 +137,7 @@ open class WebDriverPoolManager(
     fun cancel(browserId: BrowserInstanceId, url: String): WebDriver? {
         checkState()
         val driverPool = driverPools[browserId] ?: return null
+        driverPool.cancelWaiters(url)
         return driverPool.firstOrNull { it.url == url }?.also { it.cancel() }
     }
 
@@ -199,7 +205,8 @@ open class WebDriverPoolManager(
             var driver: WebDriver? = null
             try {
                 checkState()
-                driver = driverPool.poll(task.priority, task.volatileConfig, pollingDriverTimeout).apply { startWork() }
+                driver = driverPool.take(task.priority, task.volatileConfig, pollingDriverTimeout, task.url)
+                    .apply { startWork() }
                 driverPool.numTasks.incrementAndGet()
                 result = withTimeoutOrNull(taskTimeout.toMillis()) {
                     checkState()
@@ -16,11 +16,13 @@ import ai.platon.pulsar.protocol.browser.driver.BrowserInstance
 import ai.platon.pulsar.protocol.browser.driver.BrowserInstanceManager
 import ai.platon.pulsar.protocol.browser.driver.WebDriverControl
 import com.github.kklisura.cdt.protocol.types.page.Viewport
+import com.github.kklisura.cdt.protocol.types.runtime.Evaluate
 import com.google.gson.GsonBuilder
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.withTimeoutOrNull
+import org.jsoup.nodes.Document
 import org.openqa.selenium.NoSuchSessionException
 import org.openqa.selenium.OutputType
 import org.openqa.selenium.remote.RemoteWebDriver
@@ -139,6 +141,42 @@ class ChromeDevtoolsDriver(
         }
     }
 
+    /**
+     * Evaluate the expression without blocking the calling thread, the driver can serve several evaluations
+     * at the same time
+     * */
+    @Throws(NoSuchSessionException::class)
+    suspend fun evaluateDeferred(expression: String): Any? {
+        if (!isActive) return null
+
+        try {
+            val params = mapOf<String, Any>("expression" to expression)
+            val evaluate = devTools.invokeDeferred("Runtime.evaluate", params, Evaluate::class.java)
+            return evaluate?.result?.value
+        } catch (e: ChromeDevToolsInvocationException) {
+            numSessionLost.incrementAndGet()
+            throw NoSuchSessionException(e.message)
+        }
+    }
+
+    /**
+     * Capture the document by DOMSnapshot.captureSnapshot, the response is not built into a json tree,
+     * the document and the node rectangles are built from the snapshot by a streaming reader
+     * */
+    @Throws(NoSuchSessionException::class)
+    suspend fun captureDocument(): Document? {
+        if (!isActive) return null
+
+        try {
+            val params = mapOf<String, Any>("computedStyles" to listOf<String>())
+            val message = devTools.invokeRawDeferred("DOMSnapshot.captureSnapshot", params) ?: return null
+            return DOMSnapshotReader(navigateUrl).read(message)
+        } catch (e: ChromeDevToolsInvocationException) {
+            numSessionLost.incrementAndGet()
+            throw NoSuchSessionException(e.message)
+        }
+    }
+
     @Throws(NoSuchSessionException::class)
     override fun executeScript(script: String, vararg args: Any): Any? {
         TODO("Use evaluate instead")
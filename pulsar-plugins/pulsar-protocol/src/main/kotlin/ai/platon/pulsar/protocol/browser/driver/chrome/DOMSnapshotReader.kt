@@ -0,0 +1,274 @@
+package ai.platon.pulsar.protocol.browser.driver.chrome
+
+import ai.platon.pulsar.browser.driver.chrome.util.ChromeDevToolsInvocationException
+import ai.platon.pulsar.dom.nodes.DOMRect
+import ai.platon.pulsar.dom.nodes.node.ext.capturedRect
+import ai.platon.pulsar.dom.nodes.node.ext.hasCapturedRects
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import org.jsoup.nodes.*
+import org.jsoup.parser.Tag
+
+/**
+ * Build a jsoup document from the raw response of DOMSnapshot.captureSnapshot.
+ *
+ * The response is parsed by a streaming parser, the large message is never built into a json tree, the node
+ * tree and the layout tree are kept in int arrays until the string table is read, since chrome writes the
+ * string table after the documents. The layout rectangles are attached to the nodes as [capturedRect],
+ * so they need not to be encoded into the vi attributes and parsed again.
+ *
+ * Only the main frame document is read, the documents of the frames are ignored.
+ * */
+class DOMSnapshotReader(private val baseUri: String) {
+    companion object {
+        private val JSON_FACTORY = JsonFactory()
+
+        private const val ELEMENT_NODE = 1
+        private const val TEXT_NODE = 3
+        private const val COMMENT_NODE = 8
+        private const val DOCUMENT_NODE = 9
+        private const val DOCUMENT_TYPE_NODE = 10
+
+        private val DATA_TAGS = setOf("script", "style")
+    }
+
+    private class IntBuffer(capacity: Int = 1024) {
+        var values = IntArray(capacity)
+        var size = 0
+
+        fun add(value: Int) {
+            if (size == values.size) {
+                values = values.copyOf(2 * size)
+            }
+            values[size++] = value
+        }
+
+        operator fun get(i: Int) = if (i < size) values[i] else -1
+    }
+
+    private class DoubleBuffer(capacity: Int = 1024) {
+        var values = DoubleArray(capacity)
+        var size = 0
+
+        fun add(value: Double) {
+            if (size == values.size) {
+                values = values.copyOf(2 * size)
+            }
+            values[size++] = value
+        }
+    }
+
+    // the node tree
+    private val parentIndex = IntBuffer()
+    private val nodeType = IntBuffer()
+    private val nodeName = IntBuffer()
+    private val nodeValue = IntBuffer()
+    // the attributes of node i are attributes[attributeOffsets[i] until attributeOffsets[i + 1]]
+    private val attributeOffsets = IntBuffer()
+    private val attributes = IntBuffer()
+    // the layout tree, the bounds of layout node i are bounds[4 * i until 4 * i + 4]
+    private val layoutNodeIndex = IntBuffer()
+    private val bounds = DoubleBuffer()
+
+    private var strings: Array<String> = arrayOf()
+    private var numDocuments = 0
+
+    /**
+     * Read the raw response message and build the document
+     *
+     * @param message The raw response message of DOMSnapshot.captureSnapshot, the message must be
+     *  a complete response object, or it's result object
+     * */
+    @Throws(ChromeDevToolsInvocationException::class)
+    fun read(message: String): Document {
+        JSON_FACTORY.createParser(message).use { parser ->
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw ChromeDevToolsInvocationException("Malformed snapshot, object expected")
+            }
+            readObject(parser)
+        }
+
+        return buildDocument()
+    }
+
+    private fun readObject(parser: JsonParser) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName
+            parser.nextToken()
+            when (name) {
+                "result" -> readObject(parser)
+                "error" -> throw readError(parser)
+                "documents" -> readDocuments(parser)
+                "strings" -> readStrings(parser)
+                else -> parser.skipChildren()
+            }
+        }
+    }
+
+    private fun readError(parser: JsonParser): ChromeDevToolsInvocationException {
+        var code = -1L
+        var message = ""
+        var data: String? = null
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName
+            parser.nextToken()
+            when (name) {
+                "code" -> code = parser.longValue
+                "message" -> message = parser.valueAsString ?: ""
+                "data" -> data = parser.valueAsString
+                else -> parser.skipChildren()
+            }
+        }
+
+        val detail = if (data != null) "$message: $data" else message
+        return ChromeDevToolsInvocationException(code, "Failed to capture snapshot ($code) $detail")
+    }
+
+    private fun readDocuments(parser: JsonParser) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (numDocuments++ > 0) {
+                parser.skipChildren()
+                continue
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                val name = parser.currentName
+                parser.nextToken()
+                when (name) {
+                    "nodes" -> readNodeTree(parser)
+                    "layout" -> readLayoutTree(parser)
+                    else -> parser.skipChildren()
+                }
+            }
+        }
+    }
+
+    private fun readNodeTree(parser: JsonParser) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName
+            parser.nextToken()
+            when (name) {
+                "parentIndex" -> readInts(parser, parentIndex)
+                "nodeType" -> readInts(parser, nodeType)
+                "nodeName" -> readInts(parser, nodeName)
+                "nodeValue" -> readInts(parser, nodeValue)
+                "attributes" -> {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        attributeOffsets.add(attributes.size)
+                        readInts(parser, attributes)
+                    }
+                    attributeOffsets.add(attributes.size)
+                }
+                else -> parser.skipChildren()
+            }
+        }
+    }
+
+    private fun readLayoutTree(parser: JsonParser) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName
+            parser.nextToken()
+            when (name) {
+                "nodeIndex" -> readInts(parser, layoutNodeIndex)
+                "bounds" -> {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        var n = 0
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            if (n++ < 4) bounds.add(parser.doubleValue)
+                        }
+                        while (n++ < 4) bounds.add(0.0)
+                    }
+                }
+                else -> parser.skipChildren()
+            }
+        }
+    }
+
+    private fun readStrings(parser: JsonParser) {
+        val list = ArrayList<String>(4096)
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            list.add(parser.text)
+        }
+        strings = list.toTypedArray()
+    }
+
+    /**
+     * Read an int array, the parser is at the start of the array
+     * */
+    private fun readInts(parser: JsonParser, buffer: IntBuffer) {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            buffer.add(parser.intValue)
+        }
+    }
+
+    private fun string(index: Int) = if (index in strings.indices) strings[index] else ""
+
+    private fun buildDocument(): Document {
+        val document = Document(baseUri)
+        val numNodes = nodeType.size
+        val nodes = arrayOfNulls<Node>(numNodes)
+
+        for (i in 0 until numNodes) {
+            val parent = parentIndex[i].takeIf { it >= 0 }?.let { nodes[it] }
+            if (parent == null && parentIndex[i] >= 0) {
+                // the ancestor is ignored
+                continue
+            }
+
+            val node = when (nodeType[i]) {
+                DOCUMENT_NODE -> if (parent == null) document else null
+                DOCUMENT_TYPE_NODE -> DocumentType(string(nodeName[i]).toLowerCase(), "", "")
+                ELEMENT_NODE -> createElement(i)
+                TEXT_NODE -> createTextNode(i, parent)
+                COMMENT_NODE -> Comment(string(nodeValue[i]))
+                // shadow roots, pseudo elements and the other nodes are ignored, so do their descendants
+                else -> null
+            }
+
+            nodes[i] = node
+            if (node != null && node !== document) {
+                (parent as? Element)?.appendChild(node)
+            }
+        }
+
+        // a node can have several layout objects, the first one is the principal
+        val hasRect = BooleanArray(numNodes)
+        val b = bounds.values
+        for (i in 0 until layoutNodeIndex.size) {
+            val k = layoutNodeIndex[i]
+            val node = nodes.getOrNull(k) ?: continue
+            if (!hasRect[k] && 4 * i + 3 < bounds.size) {
+                node.capturedRect = DOMRect(b[4 * i], b[4 * i + 1], b[4 * i + 2], b[4 * i + 3])
+                hasRect[k] = true
+            }
+        }
+        document.hasCapturedRects = true
+
+        return document
+    }
+
+    private fun createElement(i: Int): Element? {
+        val name = string(nodeName[i])
+        if (name.isEmpty() || name.startsWith(":")) {
+            // pseudo elements, for example, ::before and ::after
+            return null
+        }
+
+        val attrs = Attributes()
+        val from = attributeOffsets[i]
+        val to = attributeOffsets[i + 1]
+        if (from >= 0 && to > from) {
+            for (j in from until to - 1 step 2) {
+                attrs.put(string(attributes[j]), string(attributes[j + 1]))
+            }
+        }
+
+        return Element(Tag.valueOf(name.toLowerCase()), baseUri, attrs)
+    }
+
+    private fun createTextNode(i: Int, parent: Node?): Node {
+        val text = string(nodeValue[i])
+        return if (parent is Element && parent.tagName() in DATA_TAGS) DataNode(text) else TextNode(text)
+    }
+}
@@ -4,6 +4,7 @@ import ai.platon.pulsar.browser.driver.BrowserControl
 import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.FlowState
 import ai.platon.pulsar.common.IllegalApplicationContextStateException
+import ai.platon.pulsar.common.PulsarParams
 import ai.platon.pulsar.common.Strings
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.persist.ext.options
@@ -129,7 +130,7 @@ open class BrowserEmulator(
                 activeDomMultiStatus = interactResult.activeDomMessage?.multiStatus
                 activeDomUrls = interactResult.activeDomMessage?.urls
             }
-            navigateTask.pageSource = driver.pageSource
+            capturePageSource(navigateTask)
         } catch (e: org.openqa.selenium.NoSuchElementException) {
             // TODO: when this exception is thrown?
             logger.warn(e.message)
@@ -167,6 +168,21 @@ open class BrowserEmulator(
         }
     }
 
+    /**
+     * Retrieve the page source, if DOM snapshot is enabled, the document is built from the snapshot and is passed
+     * to the parser, so the page source need not to be parsed again
+     * */
+    protected open suspend fun capturePageSource(navigateTask: NavigateTask) {
+        val driver = navigateTask.driver
+        val document = takeIf { navigateTask.driverConfig.domSnapshotEnabled }?.let { driver.captureDocument() }
+        if (document != null) {
+            navigateTask.pageSource = document.outerHtml()
+            navigateTask.page.setVar(PulsarParams.VAR_CAPTURED_DOCUMENT, document)
+        } else {
+            navigateTask.pageSource = driver.pageSource
+        }
+    }
+
     @Throws(NavigateTaskCancellationException::class, IllegalApplicationContextStateException::class)
     protected open suspend fun interactNoJsInvaded(interactTask: InteractTask): InteractResult {
         var pageSource = ""
@@ -315,7 +331,7 @@ open class BrowserEmulator(
         counterRequests.inc()
         checkState(interactTask.driver)
         checkState(interactTask.fetchTask)
-        val result = interactTask.driver.evaluate(expression)
+        val result = interactTask.driver.evaluateDeferred(expression)
         if (delayMillis > 0) {
             delay(delayMillis)
         }
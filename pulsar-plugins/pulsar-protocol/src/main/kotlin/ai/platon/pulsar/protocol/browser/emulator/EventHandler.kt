@@ -13,6 +13,7 @@ import ai.platon.pulsar.crawl.fetch.FetchTask
 import ai.platon.pulsar.crawl.protocol.ForwardingResponse
 import ai.platon.pulsar.crawl.protocol.Response
 import ai.platon.pulsar.dom.nodes.node.ext.ExportPaths
+import ai.platon.pulsar.persist.ContentBufferPool
 import ai.platon.pulsar.persist.PageDatum
 import ai.platon.pulsar.persist.ProtocolStatus
 import ai.platon.pulsar.persist.RetryScope
@@ -110,7 +111,8 @@ open class EventHandler(
         pageDatum.apply {
             lastBrowser = task.driver.browserType
             htmlIntegrity = integrity
-            content = task.pageSource.toByteArray(StandardCharsets.UTF_8)
+            // Encode in a pooled buffer, only the exact sized array kept by the page is allocated
+            content = ContentBufferPool.DEFAULT.encode(task.pageSource, StandardCharsets.UTF_8).use { it.toByteArray() }
         }
 
         // Update headers, metadata, do the logging stuff
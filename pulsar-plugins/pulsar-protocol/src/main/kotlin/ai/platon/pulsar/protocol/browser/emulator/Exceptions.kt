@@ -59,3 +59,5 @@ class WebDriverPoolExhaustedException(message: String) : WebDriverPoolException(
 class WebDriverPoolRetiredException(message: String) : WebDriverPoolException(message)
 
 class WebDriverPoolClosedException(message: String) : WebDriverPoolException(message)
+
+class WebDriverPoolWaitCanceledException(message: String) : WebDriverPoolException(message)
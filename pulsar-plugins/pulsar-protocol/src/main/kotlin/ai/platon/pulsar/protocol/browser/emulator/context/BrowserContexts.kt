@@ -13,6 +13,7 @@ import ai.platon.pulsar.protocol.browser.driver.WebDriverPoolManager
 import ai.platon.pulsar.protocol.browser.driver.WebDriverPoolManager.Companion.DRIVER_CLOSE_TIME_OUT
 import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolException
 import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolExhaustedException
+import ai.platon.pulsar.protocol.browser.emulator.WebDriverPoolWaitCanceledException
 import com.codahale.metrics.Gauge
 import org.slf4j.LoggerFactory
 import java.time.Duration
@@ -55,9 +56,12 @@ class WebDriverContext(
         return checkAbnormalResult(task) ?: try {
             runningTasks.add(task)
             numGlobalRunningTasks.incrementAndGet()
-            driverPoolManager.run(browserId, task.priority, task.volatileConfig) {
+            driverPoolManager.run(browserId, task.priority, task.volatileConfig, task.url) {
                 browseFun(task, it)
             }?:FetchResult.crawlRetry(task)
+        } catch (e: WebDriverPoolWaitCanceledException) {
+            log.info("{}. Task {} is canceled before it gets a driver", task.page.id, task.id)
+            FetchResult.canceled(task)
         } catch (e: WebDriverPoolExhaustedException) {
             log.warn("{}. Retry task {} in crawl scope | cause by: {}", task.page.id, task.id, e.message)
             FetchResult.crawlRetry(task)
@@ -155,6 +159,7 @@ class ProxyContext(
         var proxyAbsenceCountTime = Instant.now()
         val numRunningTasks = AtomicInteger()
         var maxAllowedProxyAbsence = 200
+        private val proxyPoolMetricsRegistered = AtomicBoolean()
 
         init {
             mapOf(
@@ -163,19 +168,29 @@ class ProxyContext(
             ).forEach { AppMetrics.reg.register(this, it.key, it.value) }
         }
 
+        /**
+         * Take a proxy without blocking the calling thread and create a proxy context
+         *
+         * @param task The first task to run in the context
+         * */
         @Throws(ProxyException::class)
-        fun create(
+        suspend fun create(
                 id: PrivacyContextId,
+                task: FetchTask,
                 driverContext: WebDriverContext,
                 proxyPoolManager: ProxyPoolManager,
                 conf: ImmutableConfig
         ): ProxyContext {
             val proxyPool = proxyPoolManager.proxyPool
-            val proxy = proxyPool.take()
+            registerMetrics(proxyPool)
+            val proxy = proxyPool.takeSuspend(task.domain, task.priority)
 
             if (proxy != null) {
                 numProxyAbsence.takeIf { it.get() > 0 }?.decrementAndGet()
                 val proxyEntry0 = proxyPoolManager.activeProxyEntries.computeIfAbsent(id.dataDir) { proxy }
+                if (proxyEntry0 != proxy) {
+                    proxyPool.release(proxy)
+                }
                 proxyEntry0.startWork()
                 return ProxyContext(proxyEntry0, proxyPoolManager, driverContext, conf)
             } else {
@@ -185,6 +200,21 @@ class ProxyContext(
             }
         }
 
+        private fun registerMetrics(proxyPool: ProxyPool) {
+            if (proxyPool is SuspendingProxyPool && proxyPoolMetricsRegistered.compareAndSet(false, true)) {
+                mapOf(
+                        "proxyTakes" to Gauge { proxyPool.numTakes.get() },
+                        "proxyTimeouts" to Gauge { proxyPool.numTimeouts.get() },
+                        "proxyAffinityHits" to Gauge { proxyPool.numAffinityHits.get() },
+                        "proxyLoads" to Gauge { proxyPool.numLoads.get() },
+                        "proxyMeanWaitMillis" to Gauge { proxyPool.meanWaitMillis },
+                        "proxyMaxWaitMillis" to Gauge { proxyPool.maxWaitMillis.get() },
+                        "proxyWaiters" to Gauge { proxyPool.numWaiters },
+                        "freeProxies" to Gauge { proxyPool.size }
+                ).let { AppMetrics.reg.registerAll(this, it) }
+            }
+        }
+
         fun checkProxyAbsence() {
             if (numProxyAbsence.get() > maxAllowedProxyAbsence) {
                 // clear the proxy absence counter every day
@@ -224,17 +254,20 @@ class ProxyContext(
     private suspend fun run0(
             task: FetchTask, browseFun: suspend (FetchTask, WebDriver) -> FetchResult): FetchResult {
         var success = false
+        var banned = false
+        val startTime = Instant.now()
         return try {
             beforeTaskStart(task)
             proxyPoolManager.runWith(proxyEntry) { driverContext.run(task, browseFun) }.also {
                 success = it.response.status.isSuccess
+                banned = it.isPrivacyRetry
                 it.response.pageDatum.proxyEntry = proxyEntry
                 numProxyAbsence.takeIf { it.get() > 0 }?.decrementAndGet()
             }
         } catch (e: ProxyException) {
             handleProxyException(task, e)
         } finally {
-            afterTaskFinished(task, success)
+            afterTaskFinished(task, success, banned, Duration.between(startTime, Instant.now()))
         }
     }
 
@@ -300,7 +333,7 @@ class ProxyContext(
         }
     }
 
-    private fun afterTaskFinished(task: FetchTask, success: Boolean) {
+    private fun afterTaskFinished(task: FetchTask, success: Boolean, banned: Boolean, responseTime: Duration) {
         numRunningTasks.decrementAndGet()
         proxyEntry?.apply {
             if (success) {
@@ -311,15 +344,33 @@ class ProxyContext(
             } else {
                 numFailedPages.incrementAndGet()
             }
+            proxyPoolManager.proxyPool.feedback(this, task.domain, success, responseTime, banned)
         }
     }
 
     /**
      * Block until the proxy is offline
      * */
-    override fun close() {
+    override fun close() = close(leaked = false)
+
+    /**
+     * Block until the proxy is offline, the proxy is given back to the pool only if the context is closed cleanly,
+     * the proxy of a leaked or retired context is retired, so it's not served to another context
+     *
+     * @param leaked If the privacy of the context is leaked
+     * */
+    fun close(leaked: Boolean) {
         if (closed.compareAndSet(false, true)) {
             proxyPoolManager.activeProxyEntries.remove(driverContext.browserId.dataDir)
+            val proxyPool = proxyPoolManager.proxyPool
+            proxyEntry?.let {
+                if (leaked || closing.get()) {
+                    proxyPool.retire(it)
+                } else {
+                    // a still healthy proxy can serve another context
+                    proxyPool.release(it)
+                }
+            }
         }
     }
 }
@@ -13,6 +13,8 @@ import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
 import ai.platon.pulsar.crawl.fetch.privacy.PrivacyContext
 import ai.platon.pulsar.crawl.fetch.privacy.PrivacyContextId
 import ai.platon.pulsar.protocol.browser.driver.WebDriverPoolManager
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import org.slf4j.LoggerFactory
 
 /**
@@ -29,6 +31,8 @@ open class BrowserPrivacyContext(
     private val browserInstanceId = BrowserInstanceId.resolve(id.dataDir)
     private val driverContext = WebDriverContext(browserInstanceId, driverPoolManager, conf)
     private var proxyContext: ProxyContext? = null
+    private val initMutex = Mutex()
+    @Volatile
     var proxyEntry: ProxyEntry? = null
     val numFreeDrivers get() = driverPoolManager.numFreeDrivers
     val numWorkingDrivers get() = driverPoolManager.numWorkingDrivers
@@ -75,7 +79,7 @@ open class BrowserPrivacyContext(
         if (closed.compareAndSet(false, true)) {
             report()
             driverContext.shutdown()
-            proxyContext?.close()
+            proxyContext?.close(leaked = isLeaked)
         }
     }
 
@@ -86,14 +90,20 @@ open class BrowserPrivacyContext(
         }
     }
 
+    /**
+     * Take a proxy for the context if proxy is enabled, the coroutine suspends until a proxy is available
+     * */
     @Throws(ProxyException::class)
-    @Synchronized
-    private fun initialize(task: FetchTask) {
+    private suspend fun initialize(task: FetchTask) {
         if (proxyEntry == null && proxyPoolManager != null && proxyPoolManager.isEnabled) {
-            val pc = ProxyContext.create(id, driverContext, proxyPoolManager, conf)
-            proxyEntry = pc.proxyEntry
-            browserInstanceId.proxyServer = proxyEntry?.hostPort
-            proxyContext = pc
+            initMutex.withLock {
+                if (proxyEntry == null) {
+                    val pc = ProxyContext.create(id, task, driverContext, proxyPoolManager, conf)
+                    proxyEntry = pc.proxyEntry
+                    browserInstanceId.proxyServer = proxyEntry?.hostPort
+                    proxyContext = pc
+                }
+            }
         }
         task.page.variables[VAR_PRIVACY_CONTEXT_NAME] = display
     }
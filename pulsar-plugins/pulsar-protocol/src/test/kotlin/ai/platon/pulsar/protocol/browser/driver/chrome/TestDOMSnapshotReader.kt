@@ -0,0 +1,85 @@
+package ai.platon.pulsar.protocol.browser.driver.chrome
+
+import ai.platon.pulsar.browser.driver.chrome.util.ChromeDevToolsInvocationException
+import ai.platon.pulsar.dom.FeaturedDocument
+import ai.platon.pulsar.dom.nodes.DOMRect
+import ai.platon.pulsar.dom.nodes.node.ext.*
+import org.jsoup.nodes.DataNode
+import org.jsoup.nodes.DocumentType
+import org.jsoup.nodes.TextNode
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class TestDOMSnapshotReader {
+
+    private val strings = listOf("#document", "HTML", "HEAD", "TITLE", "#text", "Hello", "BODY", "DIV",
+            "class", "box", "World", "SCRIPT", "var a = 1;", "::before", "html")
+
+    /**
+     * <!DOCTYPE html><html><head><title>Hello</title></head>
+     * <body><div class="box">::before World</div><script>var a = 1;</script></body></html>
+     * */
+    private val message = """
+        {"id":1,"result":{"documents":[{"documentURL":-1,"nodes":{
+        "parentIndex":[-1,0,0,2,3,4,2,6,7,8,7,6,11],
+        "nodeType":[9,10,1,1,1,3,1,1,1,3,3,1,3],
+        "nodeName":[0,14,1,2,3,4,6,7,13,4,4,11,4],
+        "nodeValue":[-1,-1,-1,-1,-1,5,-1,-1,-1,10,10,-1,12],
+        "attributes":[[],[],[],[],[],[],[],[8,9],[],[],[],[],[]]},
+        "layout":{"nodeIndex":[2,7,7,10],"bounds":[[0,0,1000,800],[10,20,300,40],[99,99,99,99],[10,20,50,16]],
+        "text":[-1,-1,-1,10],"styles":[[],[],[],[]]},
+        "textBoxes":{"layoutIndex":[],"bounds":[],"start":[],"length":[]}},
+        {"nodes":{"parentIndex":[-1],"nodeType":[9],"nodeName":[0]}}],
+        "strings":${strings.joinToString(",", "[", "]") { "\"$it\"" }}}}
+    """.trimIndent()
+
+    @Test
+    fun testBuildDocument() {
+        val document = DOMSnapshotReader("http://example.com/").read(message)
+
+        assertEquals("Hello", document.title())
+        val documentType = document.childNode(0)
+        assertTrue(documentType is DocumentType)
+        assertEquals("html", documentType.attr("name"))
+
+        val div = assertNotNull(document.selectFirst("div.box"))
+        // the text of the pseudo element is not a part of the document
+        assertEquals("World", div.text())
+        val script = assertNotNull(document.selectFirst("script"))
+        assertTrue(script.childNode(0) is DataNode)
+        assertEquals("var a = 1;", script.data())
+    }
+
+    @Test
+    fun testCapturedRects() {
+        val document = DOMSnapshotReader("http://example.com/").read(message)
+        assertTrue(document.hasCapturedRects)
+
+        val div = assertNotNull(document.selectFirst("div.box"))
+        // the first layout object is the principal one
+        assertEquals(DOMRect(10.0, 20.0, 300.0, 40.0), div.capturedRect)
+        assertEquals(DOMRect(10.0, 20.0, 50.0, 16.0), (div.childNode(0) as TextNode).capturedRect)
+        assertNull(document.selectFirst("head")?.capturedRect)
+
+        // the features are calculated from the captured rectangles
+        FeaturedDocument(document)
+        assertEquals(10, div.left)
+        assertEquals(20, div.top)
+        assertEquals(300, div.width)
+        assertEquals(40, div.height)
+    }
+
+    @Test
+    fun testError() {
+        val message = """{"id":2,"error":{"code":-32000,"message":"Document is not available"}}"""
+        val e = assertFailsWith<ChromeDevToolsInvocationException> {
+            DOMSnapshotReader("http://example.com/").read(message)
+        }
+        assertEquals(-32000L, e.code)
+        assertTrue(e.message!!.contains("Document is not available"), e.message)
+    }
+}
@@ -1,6 +1,6 @@
 package ai.platon.pulsar.ql.io;
 
-import ai.platon.pulsar.common.concurrent.ConcurrentLRUCache;
+import ai.platon.pulsar.common.concurrent.ConcurrentSegmentedCache;
 import ai.platon.pulsar.dom.Documents;
 import ai.platon.pulsar.dom.FeaturedDocument;
 import ai.platon.pulsar.ql.types.ValueDom;
@@ -26,7 +26,7 @@ public class ValueDomWritable implements Writable {
 
     // server side
     // TODO: check if this is client side or server side, ensure items in client side lives longer than that in server side
-    private static ConcurrentLRUCache<String, String> pageCache = new ConcurrentLRUCache<>(CACHE_EXPIRES, CACHE_SIZE);
+    private static ConcurrentSegmentedCache<String, String> pageCache = new ConcurrentSegmentedCache<>(CACHE_SIZE, CACHE_EXPIRES);
 
     // client side
     private static Map<String, FeaturedDocument> documentCache = new ConcurrentHashMap<>();
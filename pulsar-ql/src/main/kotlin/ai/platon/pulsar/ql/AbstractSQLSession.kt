@@ -1,6 +1,7 @@
 package ai.platon.pulsar.ql
 
 import ai.platon.pulsar.AbstractPulsarSession
+import ai.platon.pulsar.common.config.CapabilityTypes.H2_LOAD_PARALLELISM
 import ai.platon.pulsar.context.support.AbstractPulsarContext
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.ql.types.ValueDom
@@ -16,6 +17,11 @@ abstract class AbstractSQLSession(
 
     override val registeredAllUdfClasses: MutableList<Class<out Any>> = mutableListOf()
 
+    override val loader by lazy {
+        val parallelism = sessionConfig.getInt(H2_LOAD_PARALLELISM, ConcurrentLoader.DEFAULT_PARALLELISM)
+        ConcurrentLoader(parallelism) { loadDeferred(it) }
+    }
+
     override fun parseValueDom(page: WebPage) = ValueDom.get(parse(page))
 
     override fun execute(sql: String) = sqlContext.execute(sql)
@@ -0,0 +1,74 @@
+package ai.platon.pulsar.ql
+
+import ai.platon.pulsar.common.urls.NormUrl
+import ai.platon.pulsar.persist.WebPage
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import org.slf4j.LoggerFactory
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Load pages for X-SQL functions in coroutines.
+ *
+ * A batch of urls is deduplicated, every distinct url is loaded only once and the loads run concurrently, at most
+ * [parallelism] loads of the loader run at the same time, the pages are returned in the order of the urls.
+ * A page failed to load is returned as [WebPage.NIL].
+ * */
+class ConcurrentLoader(
+    val parallelism: Int = DEFAULT_PARALLELISM,
+    private val loader: suspend (NormUrl) -> WebPage
+) {
+    companion object {
+        const val DEFAULT_PARALLELISM = 20
+    }
+
+    private val log = LoggerFactory.getLogger(ConcurrentLoader::class.java)
+    private val semaphore = Semaphore(parallelism)
+
+    /**
+     * The number of loads
+     * */
+    val numLoads = AtomicLong()
+    /**
+     * The number of urls which are not loaded since they are duplicated in the batch
+     * */
+    val numDuplicates = AtomicLong()
+    val numFailures = AtomicLong()
+
+    /**
+     * Load all pages, block the calling thread until all pages are loaded
+     * */
+    fun loadAll(normUrls: List<NormUrl>): List<WebPage> = runBlocking { loadAllDeferred(normUrls) }
+
+    /**
+     * Load all pages
+     * */
+    suspend fun loadAllDeferred(normUrls: List<NormUrl>): List<WebPage> = coroutineScope {
+        val pages = mutableMapOf<NormUrl, Deferred<WebPage>>()
+        normUrls.forEach { normUrl ->
+            if (normUrl in pages) {
+                numDuplicates.incrementAndGet()
+            } else {
+                pages[normUrl] = async(Dispatchers.IO) { semaphore.withPermit { load(normUrl) } }
+            }
+        }
+        normUrls.map { pages.getValue(it).await() }
+    }
+
+    private suspend fun load(normUrl: NormUrl): WebPage {
+        numLoads.incrementAndGet()
+        return try {
+            loader(normUrl)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            numFailures.incrementAndGet()
+            log.warn("Failed to load page | {} | {}", normUrl.spec, e.message)
+            WebPage.NIL
+        }
+    }
+
+    override fun toString() = String.format("loads: %d, duplicates: %d, failures: %d",
+        numLoads.get(), numDuplicates.get(), numFailures.get())
+}
@@ -0,0 +1,251 @@
+package ai.platon.pulsar.ql
+
+import ai.platon.pulsar.common.metrics.AppMetrics
+import com.codahale.metrics.Gauge
+import org.slf4j.LoggerFactory
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * An X-SQL statement whose url literals are replaced by bind parameters, so X-SQLs which differ only in urls
+ * share the same template.
+ *
+ * A url literal is a string literal which starts with http:// or https://, the load arguments in the literal are part
+ * of the parameter, for example, the template of
+ *
+ * > select dom_base_uri(dom) from load_and_select('https://www.amazon.com/ -i 1d', ':root')
+ *
+ * is `select dom_base_uri(dom) from load_and_select(?, ':root')` with the parameter `https://www.amazon.com/ -i 1d`.
+ * */
+class XSQLTemplate private constructor(
+    /**
+     * The sql with url literals replaced by `?`
+     * */
+    val sql: String,
+    /**
+     * The url literals in order
+     * */
+    val parameters: List<String>
+) {
+    val isParameterized get() = parameters.isNotEmpty()
+
+    override fun toString() = sql
+
+    companion object {
+        /**
+         * Extract the url literals, string literals, quoted identifiers and comments are recognized
+         * so a quote in them is not mistaken as the start of a literal
+         * */
+        @JvmStatic
+        fun parse(xsql: String): XSQLTemplate {
+            val sql = xsql.trim()
+            val parameters = mutableListOf<String>()
+            val sb = StringBuilder(sql.length)
+            val n = sql.length
+            var i = 0
+            while (i < n) {
+                val c = sql[i]
+                when {
+                    c == '\'' -> {
+                        val literal = StringBuilder()
+                        var j = i + 1
+                        while (j < n) {
+                            if (sql[j] == '\'') {
+                                if (j + 1 < n && sql[j + 1] == '\'') {
+                                    literal.append('\'')
+                                    j += 2
+                                    continue
+                                }
+                                break
+                            }
+                            literal.append(sql[j++])
+                        }
+                        val end = (j + 1).coerceAtMost(n)
+                        if (j < n && isUrl(literal)) {
+                            sb.append('?')
+                            parameters.add(literal.toString())
+                        } else {
+                            sb.append(sql, i, end)
+                        }
+                        i = end
+                    }
+                    c == '"' -> i = copyUntil(sql, i, sb, "\"")
+                    c == '-' && sql.startsWith("--", i) -> i = copyUntil(sql, i, sb, "\n")
+                    c == '/' && sql.startsWith("/*", i) -> i = copyUntil(sql, i, sb, "*/")
+                    else -> {
+                        sb.append(c)
+                        ++i
+                    }
+                }
+            }
+
+            return XSQLTemplate(sb.toString(), parameters)
+        }
+
+        private fun isUrl(literal: CharSequence): Boolean {
+            return literal.startsWith("http://", ignoreCase = true) || literal.startsWith("https://", ignoreCase = true)
+        }
+
+        /**
+         * Copy the text from [start] to the end of the [terminator], the terminator is searched after the
+         * first char
+         * */
+        private fun copyUntil(sql: String, start: Int, sb: StringBuilder, terminator: String): Int {
+            val p = sql.indexOf(terminator, start + 1)
+            val end = if (p < 0) sql.length else p + terminator.length
+            sb.append(sql, start, end)
+            return end
+        }
+    }
+}
+
+/**
+ * Prepared statements of X-SQL templates, the statements are pinned to connections.
+ *
+ * An X-SQL is parsed into a [XSQLTemplate], the template is prepared once for a connection and the urls are
+ * bound as parameters, so the database does not parse and plan the statement again for every request.
+ *
+ * At most [capacity] statements are kept for a connection, the least recently used one is closed if there are more.
+ * A template which can not be prepared is remembered, at most [capacity] of them, the queries of the template are
+ * executed directly without trying to prepare it again.
+ * A connection can not be used by other threads before the result set is consumed, since the statement is shared
+ * by all queries of the same template on the connection, a connection taken from a pool fits the requirement.
+ * */
+class PreparedStatementCache(
+    val capacity: Int = DEFAULT_CAPACITY,
+    val resultSetType: Int = ResultSet.TYPE_FORWARD_ONLY,
+    val resultSetConcurrency: Int = ResultSet.CONCUR_READ_ONLY
+) : AutoCloseable {
+    companion object {
+        const val DEFAULT_CAPACITY = 200
+    }
+
+    private val log = LoggerFactory.getLogger(PreparedStatementCache::class.java)
+
+    private val statements = WeakHashMap<Connection, MutableMap<String, PreparedStatement>>()
+    /**
+     * The templates failed to prepare
+     * */
+    private val unpreparableTemplates = Collections.newSetFromMap(object : LinkedHashMap<String, Boolean>() {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Boolean>) = size > capacity
+    })
+
+    val numHits = AtomicLong()
+    val numMisses = AtomicLong()
+    val numEvictions = AtomicLong()
+    /**
+     * The number of queries executed without a prepared statement since the template can not be prepared
+     * */
+    val numFallbacks = AtomicLong()
+
+    val hitRate get() = numHits.get().toDouble() / (numHits.get() + numMisses.get()).coerceAtLeast(1)
+
+    /**
+     * The number of statements of all connections
+     * */
+    val size get() = synchronized(statements) { statements.values.sumBy { it.size } }
+
+    init {
+        AppMetrics.reg.registerAll(this, mapOf(
+            "hits" to Gauge { numHits.get() },
+            "misses" to Gauge { numMisses.get() },
+            "evictions" to Gauge { numEvictions.get() },
+            "fallbacks" to Gauge { numFallbacks.get() },
+            "hitRate" to Gauge { hitRate },
+            "size" to Gauge { size }
+        ))
+    }
+
+    /**
+     * Execute the query with the prepared statement of the template of the sql
+     * */
+    @Throws(SQLException::class)
+    fun executeQuery(conn: Connection, sql: String): ResultSet {
+        val template = XSQLTemplate.parse(sql)
+        if (template.isParameterized && synchronized(unpreparableTemplates) { template.sql in unpreparableTemplates }) {
+            return executeDirectly(conn, sql)
+        }
+
+        val statement = try {
+            prepare(conn, template.sql)
+        } catch (e: SQLException) {
+            if (!template.isParameterized) {
+                throw e
+            }
+
+            // some functions do not accept a parameter, execute the sql as it is
+            synchronized(unpreparableTemplates) { unpreparableTemplates.add(template.sql) }
+            log.debug("Failed to prepare statement, fallback to execute sql directly | {}", e.message)
+            return executeDirectly(conn, sql)
+        }
+
+        template.parameters.forEachIndexed { i, parameter -> statement.setString(i + 1, parameter) }
+        return statement.executeQuery()
+    }
+
+    /**
+     * Close and remove the statements of the connection, it should be called before the connection is closed
+     * */
+    fun invalidate(conn: Connection) {
+        val removed = synchronized(statements) { statements.remove(conn) }
+        removed?.values?.forEach { closeQuietly(it) }
+    }
+
+    override fun close() {
+        val removed = synchronized(statements) {
+            statements.values.flatMap { it.values }.also { statements.clear() }
+        }
+        removed.forEach { closeQuietly(it) }
+    }
+
+    override fun toString() = String.format("hits: %d, misses: %d, evictions: %d, fallbacks: %d, hit rate: %.2f",
+        numHits.get(), numMisses.get(), numEvictions.get(), numFallbacks.get(), hitRate)
+
+    private fun executeDirectly(conn: Connection, sql: String): ResultSet {
+        numFallbacks.incrementAndGet()
+        val statement = conn.createStatement(resultSetType, resultSetConcurrency)
+        statement.closeOnCompletion()
+        return statement.executeQuery(sql)
+    }
+
+    private fun prepare(conn: Connection, sql: String): PreparedStatement {
+        val cached = synchronized(statements) { statementsOf(conn)[sql] }
+        if (cached != null && !cached.isClosed) {
+            numHits.incrementAndGet()
+            return cached
+        }
+
+        numMisses.incrementAndGet()
+        val statement = conn.prepareStatement(sql, resultSetType, resultSetConcurrency)
+        val replaced = synchronized(statements) { statementsOf(conn).put(sql, statement) }
+        replaced?.takeIf { it !== statement }?.let { closeQuietly(it) }
+        return statement
+    }
+
+    private fun statementsOf(conn: Connection): MutableMap<String, PreparedStatement> {
+        return statements.getOrPut(conn) {
+            object : LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, PreparedStatement>): Boolean {
+                    if (size > capacity) {
+                        numEvictions.incrementAndGet()
+                        closeQuietly(eldest.value)
+                        return true
+                    }
+                    return false
+                }
+            }
+        }
+    }
+
+    private fun closeQuietly(statement: PreparedStatement) {
+        try {
+            statement.close()
+        } catch (e: SQLException) {
+            log.warn("Failed to close statement | {}", e.message)
+        }
+    }
+}
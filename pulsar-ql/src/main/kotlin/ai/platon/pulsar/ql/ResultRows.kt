@@ -0,0 +1,204 @@
+package ai.platon.pulsar.ql
+
+import com.google.gson.stream.JsonWriter
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import org.h2.tools.SimpleResultSet
+import java.io.Writer
+import java.sql.Connection
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.sql.Types
+
+/**
+ * A typed view of the current row of a result set.
+ *
+ * The view reads the values from the result set directly, it's shared by all rows of the result set and is valid
+ * only until the cursor moves, call [toMap] or [toArray] to keep the values of a row.
+ *
+ * The column index starts from 1, just like JDBC.
+ * */
+class ResultRow internal constructor(private val resultSet: ResultSet) {
+    /**
+     * The column names in lower case
+     * */
+    val columnNames: List<String>
+    private val columnTypes: IntArray
+
+    init {
+        val metaData = resultSet.metaData
+        columnNames = (1..metaData.columnCount).map { metaData.getColumnName(it).toLowerCase() }
+        columnTypes = IntArray(metaData.columnCount) { metaData.getColumnType(it + 1) }
+    }
+
+    val columnCount get() = columnNames.size
+
+    fun getObject(columnIndex: Int): Any? = resultSet.getObject(columnIndex)
+
+    fun getString(columnIndex: Int): String? = resultSet.getString(columnIndex)
+
+    fun getInt(columnIndex: Int) = resultSet.getInt(columnIndex)
+
+    fun getLong(columnIndex: Int) = resultSet.getLong(columnIndex)
+
+    fun getDouble(columnIndex: Int) = resultSet.getDouble(columnIndex)
+
+    fun getBoolean(columnIndex: Int) = resultSet.getBoolean(columnIndex)
+
+    operator fun get(columnIndex: Int) = getObject(columnIndex)
+
+    operator fun get(columnName: String) = getObject(resultSet.findColumn(columnName))
+
+    /**
+     * The value to return to the clients, booleans, floats and integers are kept as they are, all the other values,
+     * including the custom types like DOM, are converted to strings
+     * */
+    fun getEntityValue(columnIndex: Int): Any? {
+        val value: Any? = when (columnTypes[columnIndex - 1]) {
+            Types.BOOLEAN -> resultSet.getBoolean(columnIndex)
+            Types.FLOAT -> resultSet.getFloat(columnIndex)
+            Types.INTEGER -> resultSet.getInt(columnIndex)
+            else -> return resultSet.getString(columnIndex)
+        }
+        return value.takeUnless { resultSet.wasNull() }
+    }
+
+    /**
+     * Copy the values of the current row, the keys are the column names in lower case, see [getEntityValue]
+     * for the types of the values
+     * */
+    fun toMap(): Map<String, Any?> {
+        val record = LinkedHashMap<String, Any?>(columnCount * 2)
+        columnNames.forEachIndexed { i, name -> record[name] = getEntityValue(i + 1) }
+        return record
+    }
+
+    /**
+     * Copy the values of the current row
+     * */
+    fun toArray(): Array<Any?> = Array(columnCount) { resultSet.getObject(it + 1) }
+}
+
+/**
+ * Read result sets forward only, row by row, without copying the result set.
+ *
+ * A query executed by [executeQuery] has a forward only cursor, the rows of an embedded database are read from
+ * the result of the database engine directly, nothing is copied until a row is converted to a map or written out.
+ * */
+object ResultRows {
+    /**
+     * The default max number of rows to keep in memory
+     * */
+    const val DEFAULT_MAX_ROWS = 10_000
+
+    /**
+     * Execute the query with a forward only and read only cursor, the statement is closed when the result set
+     * is closed
+     * */
+    @Throws(SQLException::class)
+    @JvmStatic
+    fun executeQuery(conn: Connection, sql: String): ResultSet {
+        val statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)
+        return try {
+            statement.closeOnCompletion()
+            statement.executeQuery(sql)
+        } catch (e: SQLException) {
+            statement.close()
+            throw e
+        }
+    }
+
+    /**
+     * The rows after the current position of the result set, the rows are read lazily and can be iterated only
+     * once. Every element is the same [ResultRow] view pointing to the current row.
+     * */
+    @JvmStatic
+    fun rows(resultSet: ResultSet): Sequence<ResultRow> {
+        val row = ResultRow(resultSet)
+        return generateSequence { row.takeIf { resultSet.next() } }
+    }
+
+    /**
+     * The rows as a flow, see [rows]. A row must be consumed before the next one is emitted, so the flow must not
+     * be buffered.
+     * */
+    @JvmStatic
+    fun rowFlow(resultSet: ResultSet): Flow<ResultRow> = flow {
+        for (row in rows(resultSet)) {
+            emit(row)
+        }
+    }
+
+    /**
+     * Convert at most [maxRows] rows to maps, the keys are the column names in lower case,
+     * see [ResultRow.getEntityValue] for the types of the values
+     * */
+    @Throws(SQLException::class)
+    @JvmStatic
+    @JvmOverloads
+    fun toEntities(resultSet: ResultSet, maxRows: Int = DEFAULT_MAX_ROWS): List<Map<String, Any?>> {
+        return rows(resultSet).take(maxRows).mapTo(ArrayList()) { it.toMap() }
+    }
+
+    /**
+     * Copy at most [maxRows] rows to a scrollable result set which does not depend on the connection,
+     * the values and the column types are kept as they are
+     * */
+    @Throws(SQLException::class)
+    @JvmStatic
+    @JvmOverloads
+    fun copy(resultSet: ResultSet, maxRows: Int = DEFAULT_MAX_ROWS): ResultSet {
+        val sink = SimpleResultSet().apply { autoClose = false }
+        val metaData = resultSet.metaData
+        for (i in 1..metaData.columnCount) {
+            sink.addColumn(metaData.getColumnName(i), metaData.getColumnType(i),
+                metaData.getPrecision(i), metaData.getScale(i))
+        }
+        rows(resultSet).take(maxRows).forEach { sink.addRow(*it.toArray()) }
+        return sink
+    }
+
+    /**
+     * Write at most [maxRows] rows as a json array of objects, the keys are the column names in lower case,
+     * no row is kept in memory
+     *
+     * @return The number of rows written
+     * */
+    @Throws(SQLException::class)
+    @JvmStatic
+    @JvmOverloads
+    fun writeJson(resultSet: ResultSet, writer: Writer, maxRows: Int = Int.MAX_VALUE): Int {
+        var numRows = 0
+        val jsonWriter = JsonWriter(writer).apply { serializeNulls = true }
+        jsonWriter.beginArray()
+        for (row in rows(resultSet).take(maxRows)) {
+            jsonWriter.beginObject()
+            row.columnNames.forEachIndexed { i, name ->
+                jsonWriter.name(name)
+                writeJsonValue(jsonWriter, row.getObject(i + 1))
+            }
+            jsonWriter.endObject()
+            ++numRows
+        }
+        jsonWriter.endArray()
+        jsonWriter.flush()
+        return numRows
+    }
+
+    private fun writeJsonValue(writer: JsonWriter, value: Any?) {
+        when (value) {
+            null -> writer.nullValue()
+            is Boolean -> writer.value(value)
+            is Double -> if (value.isFinite()) writer.value(value) else writer.value(value.toString())
+            is Float -> if (value.isFinite()) writer.value(value) else writer.value(value.toString())
+            is Number -> writer.value(value)
+            is Array<*> -> {
+                writer.beginArray()
+                value.forEach { writeJsonValue(writer, it) }
+                writer.endArray()
+            }
+            is java.sql.Array -> writeJsonValue(writer, value.array)
+            else -> writer.value(value.toString())
+        }
+    }
+}
@@ -15,6 +15,11 @@ interface SQLSession : PulsarSession {
 
     val sessionDelegate: SessionDelegate
 
+    /**
+     * Load pages concurrently for X-SQL functions
+     * */
+    val loader: ConcurrentLoader
+
     val udfClassSamples: List<KClass<out Any>>
 
     val registeredAllUdfClasses: List<Class<out Any>>
@@ -9,17 +9,19 @@ import ai.platon.pulsar.common.stringify
 import ai.platon.pulsar.common.urls.NormUrl
 import ai.platon.pulsar.context.support.AbstractPulsarContext
 import ai.platon.pulsar.ql.AbstractSQLSession
+import ai.platon.pulsar.ql.PreparedStatementCache
+import ai.platon.pulsar.ql.ResultRows
 import ai.platon.pulsar.ql.SessionDelegate
 import org.h2.api.ErrorCode
 import org.h2.engine.Session
 import org.h2.engine.SessionInterface
+import org.h2.jdbc.JdbcConnection
 import org.h2.message.DbException
 import org.slf4j.LoggerFactory
 import org.springframework.context.support.AbstractApplicationContext
 import java.sql.Connection
 import java.sql.ResultSet
 import java.text.MessageFormat
-import java.util.concurrent.ArrayBlockingQueue
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicBoolean
 
@@ -43,10 +45,34 @@ abstract class AbstractSQLContext constructor(
         .onFailure { log.warn(it.stringify()) }
         .getOrNull()
 
-    val connectionPool = ArrayBlockingQueue<Connection>(1000)
+    private val connectionPool0 = lazy {
+        val conf = unmodifiedConfig
+        SQLConnectionPool(
+            conf.getInt(CapabilityTypes.H2_CONNECTION_POOL_MAX_SIZE, SQLConnectionPool.DEFAULT_MAX_SIZE),
+            conf.getDuration(CapabilityTypes.H2_CONNECTION_IDLE_TIMEOUT, SQLConnectionPool.DEFAULT_IDLE_TIMEOUT),
+            conf.getDuration(CapabilityTypes.H2_CONNECTION_ACQUIRE_TIMEOUT, SQLConnectionPool.DEFAULT_ACQUIRE_TIMEOUT),
+            onDiscard = { if (statementCache0.isInitialized()) statementCache.invalidate(it) }
+        ) { randomConnection }
+    }
+
+    /**
+     * The connection pool, the number of connections and thus the number of sql sessions is bounded
+     * */
+    val connectionPool by connectionPool0
     private val resultSetType = ResultSet.TYPE_SCROLL_SENSITIVE
     private val resultSetConcurrency = ResultSet.CONCUR_READ_ONLY
 
+    private val statementCache0 = lazy {
+        val capacity = unmodifiedConfig.getInt(CapabilityTypes.H2_STATEMENT_CACHE_CAPACITY,
+            PreparedStatementCache.DEFAULT_CAPACITY)
+        PreparedStatementCache(capacity)
+    }
+
+    /**
+     * The prepared statements of X-SQL templates, pinned to the pooled connections
+     * */
+    val statementCache by statementCache0
+
     /**
      * The sessions container
      * A session will be closed if it's expired or the pool is full
@@ -71,47 +97,73 @@ abstract class AbstractSQLContext constructor(
     }
 
     override fun execute(sql: String) {
-        val conn = connectionPool.poll() ?: randomConnection
-
-        conn.createStatement(resultSetType, resultSetConcurrency).runCatching {
-            execute(sql)
-        }.getOrElse { t ->
-            conn.takeUnless { it.isClosed }?.let { connectionPool.add(conn) }
-            throw t
+        connectionPool.withConnection { conn ->
+            conn.createStatement(resultSetType, resultSetConcurrency).use { it.execute(sql) }
         }
     }
 
+    /**
+     * Execute the query and copy all the rows, the connection is returned to the pool before the result set is
+     * returned, so the result set is not backed by the connection. Call [executeQuery] with a block to read
+     * a large result set without copying it.
+     * */
     @Throws(Exception::class)
     override fun executeQuery(sql: String): ResultSet {
-        val conn = connectionPool.poll() ?: randomConnection
+        return executeQuery(sql, Int.MAX_VALUE)
+    }
 
-        return conn.createStatement(resultSetType, resultSetConcurrency).runCatching {
-            executeQuery(sql)
-        }.getOrElse { t ->
-            conn.takeUnless { it.isClosed }?.let { connectionPool.add(conn) }
-            throw t
-        }
+    /**
+     * Execute the query and copy at most [maxRows] rows, the rows after are dropped
+     * */
+    @Throws(Exception::class)
+    fun executeQuery(sql: String, maxRows: Int): ResultSet {
+        return executeQuery(sql) { ResultRows.copy(it, maxRows) }
+    }
+
+    /**
+     * Execute the query with a cached prepared statement, the urls in the query are bound as parameters.
+     * The result set is valid only inside the block, the connection is returned to the pool after the block.
+     * */
+    @Throws(Exception::class)
+    fun <T> executeQuery(sql: String, block: (ResultSet) -> T): T {
+        return connectionPool.withConnection { conn -> statementCache.executeQuery(conn, sql).use(block) }
+    }
+
+    /**
+     * Execute the query like [executeQuery], but suspends instead of blocking the calling thread
+     * if no connection is available
+     * */
+    @Throws(Exception::class)
+    suspend fun <T> executeQueryDeferred(sql: String, block: (ResultSet) -> T): T {
+        return connectionPool.withConnectionSuspend { conn -> statementCache.executeQuery(conn, sql).use(block) }
+    }
+
+    /**
+     * Run the block with the sql session of a pooled connection, the session is reused by all the borrowers
+     * of the connection
+     * */
+    fun <T> withSession(block: (AbstractSQLSession) -> T): T {
+        return connectionPool.withConnection { conn -> block(getSession(conn)) }
+    }
+
+    /**
+     * The sql session of the connection
+     * */
+    fun getSession(connection: Connection): AbstractSQLSession {
+        return getSession((connection as JdbcConnection).session)
     }
 
     override fun run(block: (Connection) -> Unit) {
-        val conn = connectionPool.poll() ?: randomConnection
         try {
-            block(conn)
+            connectionPool.withConnection(block)
         } catch (t: Throwable) {
             log.warn(t.stringify())
-        } finally {
-            conn.takeUnless { it.isClosed }?.let { connectionPool.add(conn) }
         }
     }
 
     @Throws(Exception::class)
     override fun runQuery(block: (Connection) -> ResultSet): ResultSet {
-        val conn = connectionPool.poll() ?: randomConnection
-        try {
-            return block(conn)
-        } finally {
-            conn.takeUnless { it.isClosed }?.let { connectionPool.add(conn) }
-        }
+        return connectionPool.withConnection(block)
     }
 
     abstract override fun createSession(sessionDelegate: SessionDelegate): AbstractSQLSession
@@ -152,9 +204,11 @@ abstract class AbstractSQLContext constructor(
         if (closed.compareAndSet(false, true)) {
             status = Status.CLOSING
 
+            if (connectionPool0.isInitialized()) connectionPool.close()
             // database engine will close the sessions
             sqlSessions.values.forEach { it.close() }
             sqlSessions.clear()
+            if (statementCache0.isInitialized()) statementCache.close()
 
             status = Status.CLOSED
         }
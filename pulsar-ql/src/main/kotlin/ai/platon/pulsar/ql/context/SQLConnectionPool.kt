@@ -0,0 +1,265 @@
+package ai.platon.pulsar.ql.context
+
+import ai.platon.pulsar.common.metrics.AppMetrics
+import com.codahale.metrics.Gauge
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.withTimeout
+import org.slf4j.LoggerFactory
+import java.sql.Connection
+import java.sql.SQLException
+import java.sql.SQLTransientConnectionException
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedDeque
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A bounded pool of database connections.
+ *
+ * 1. at most [maxSize] connections are borrowed at the same time, the callers wait in FIFO order for a free one,
+ *    [acquireSuspend] waits without blocking the calling thread
+ * 2. a connection is validated before it's lent out, a closed or invalid connection is discarded
+ * 3. the most recently returned connection is lent out first, so the rarely used ones become idle and are
+ *    closed after [idleTimeout], the idle connections are checked when a connection is acquired or released
+ *
+ * Every connection of an H2 database has an H2 session and an associated SQL session, a pooled connection keeps
+ * its sessions, so the sessions are reused and the number of sessions is bounded too.
+ * */
+class SQLConnectionPool(
+    val maxSize: Int = DEFAULT_MAX_SIZE,
+    val idleTimeout: Duration = DEFAULT_IDLE_TIMEOUT,
+    val acquireTimeout: Duration = DEFAULT_ACQUIRE_TIMEOUT,
+    /**
+     * Called after a connection is closed by the pool
+     * */
+    private val onDiscard: (Connection) -> Unit = {},
+    private val connectionFactory: () -> Connection
+) : AutoCloseable {
+    companion object {
+        const val DEFAULT_MAX_SIZE = 50
+        val DEFAULT_IDLE_TIMEOUT: Duration = Duration.ofMinutes(10)
+        val DEFAULT_ACQUIRE_TIMEOUT: Duration = Duration.ofMinutes(1)
+        /**
+         * The timeout to validate a connection, in seconds
+         * */
+        const val VALIDATION_TIMEOUT = 2
+    }
+
+    private class IdleConnection(val connection: Connection, val idleSince: Long = System.currentTimeMillis())
+
+    private val log = LoggerFactory.getLogger(SQLConnectionPool::class.java)
+
+    private val permits = Semaphore(maxSize)
+    private val idleConnections = ConcurrentLinkedDeque<IdleConnection>()
+    private val borrowedConnections = ConcurrentHashMap.newKeySet<Connection>()
+    private val lastEvictionTime = AtomicLong(System.currentTimeMillis())
+    private val closed = AtomicBoolean()
+
+    private val waiters = AtomicInteger()
+    val numCreated = AtomicLong()
+    val numDiscarded = AtomicLong()
+    val numEvicted = AtomicLong()
+    val numTimeouts = AtomicLong()
+
+    /**
+     * The number of borrowed connections
+     * */
+    val numActive get() = borrowedConnections.size
+    val numIdle get() = idleConnections.size
+    val numWaiting get() = waiters.get()
+
+    val isActive get() = !closed.get()
+
+    init {
+        AppMetrics.reg.registerAll(this, mapOf(
+            "active" to Gauge { numActive },
+            "idle" to Gauge { numIdle },
+            "waiting" to Gauge { numWaiting },
+            "created" to Gauge { numCreated.get() },
+            "discarded" to Gauge { numDiscarded.get() },
+            "evicted" to Gauge { numEvicted.get() },
+            "timeouts" to Gauge { numTimeouts.get() }
+        ))
+    }
+
+    /**
+     * Block the calling thread until a connection is available or timeout, call [acquireSuspend] in coroutines
+     * */
+    @Throws(SQLException::class)
+    fun acquire(): Connection {
+        ensureActive()
+        // a free permit is taken without an event loop, the thread blocks only if it has to wait
+        return if (permits.tryAcquire()) lend() else runBlocking { acquireSuspend() }
+    }
+
+    @Throws(SQLException::class)
+    suspend fun acquireSuspend(): Connection {
+        ensureActive()
+
+        waiters.incrementAndGet()
+        try {
+            withTimeout(acquireTimeout.toMillis()) { permits.acquire() }
+        } catch (e: TimeoutCancellationException) {
+            numTimeouts.incrementAndGet()
+            throw SQLTransientConnectionException("Timeout to acquire a connection in $acquireTimeout | $this")
+        } finally {
+            waiters.decrementAndGet()
+        }
+
+        return lend()
+    }
+
+    /**
+     * Return a connection to the pool, a closed connection is discarded
+     * */
+    fun release(connection: Connection) {
+        if (!borrowedConnections.remove(connection)) {
+            log.warn("Connection is not borrowed from the pool | {}", connection)
+            return
+        }
+
+        try {
+            if (isActive && !isClosedQuietly(connection)) {
+                idleConnections.addFirst(IdleConnection(connection))
+            } else {
+                discard(connection)
+            }
+        } finally {
+            permits.release()
+        }
+
+        evictIdleConnectionsIfNecessary()
+    }
+
+    /**
+     * Run the block with a pooled connection, blocks the calling thread if no connection is available,
+     * call [withConnectionSuspend] in coroutines
+     * */
+    fun <T> withConnection(block: (Connection) -> T): T {
+        val connection = acquire()
+        try {
+            return block(connection)
+        } finally {
+            release(connection)
+        }
+    }
+
+    /**
+     * Run the block with a pooled connection, suspends without blocking the calling thread
+     * if no connection is available
+     * */
+    suspend fun <T> withConnectionSuspend(block: (Connection) -> T): T {
+        val connection = acquireSuspend()
+        try {
+            return block(connection)
+        } finally {
+            release(connection)
+        }
+    }
+
+    /**
+     * Close the connections which are idle longer than [idleTimeout]
+     *
+     * @return The number of closed connections
+     * */
+    fun evictIdleConnections(): Int {
+        lastEvictionTime.set(System.currentTimeMillis())
+        val deadline = System.currentTimeMillis() - idleTimeout.toMillis()
+        var n = 0
+        // the eldest idle connections are at the tail
+        while (true) {
+            val idle = idleConnections.peekLast() ?: break
+            if (idle.idleSince > deadline || !idleConnections.removeLastOccurrence(idle)) {
+                break
+            }
+
+            discard(idle.connection)
+            numEvicted.incrementAndGet()
+            ++n
+        }
+
+        return n
+    }
+
+    /**
+     * Close the idle connections, the borrowed connections are closed when they are returned
+     * */
+    override fun close() {
+        if (closed.compareAndSet(false, true)) {
+            generateSequence { idleConnections.pollFirst() }.forEach { discard(it.connection) }
+            log.info("Connection pool is closed | {}", this)
+        }
+    }
+
+    override fun toString() = "active: $numActive, idle: $numIdle, waiting: $numWaiting, max: $maxSize," +
+            " created: ${numCreated.get()}, discarded: ${numDiscarded.get()}, evicted: ${numEvicted.get()}"
+
+    /**
+     * Lend an idle connection or a new one, a permit is already taken
+     * */
+    private fun lend(): Connection {
+        try {
+            val connection = pollValidConnection() ?: connectionFactory().also { numCreated.incrementAndGet() }
+            borrowedConnections.add(connection)
+            return connection
+        } catch (t: Throwable) {
+            permits.release()
+            throw t
+        }
+    }
+
+    private fun pollValidConnection(): Connection? {
+        while (true) {
+            val idle = idleConnections.pollFirst() ?: return null
+            if (isValid(idle.connection)) {
+                return idle.connection
+            }
+
+            discard(idle.connection)
+        }
+    }
+
+    private fun isValid(connection: Connection): Boolean {
+        return try {
+            !connection.isClosed && connection.isValid(VALIDATION_TIMEOUT)
+        } catch (e: SQLException) {
+            false
+        }
+    }
+
+    private fun isClosedQuietly(connection: Connection): Boolean {
+        return try {
+            connection.isClosed
+        } catch (e: SQLException) {
+            true
+        }
+    }
+
+    private fun evictIdleConnectionsIfNecessary() {
+        val interval = idleTimeout.toMillis() / 10
+        val last = lastEvictionTime.get()
+        if (System.currentTimeMillis() - last > interval && lastEvictionTime.compareAndSet(last, System.currentTimeMillis())) {
+            evictIdleConnections()
+        }
+    }
+
+    private fun discard(connection: Connection) {
+        numDiscarded.incrementAndGet()
+        try {
+            onDiscard(connection)
+            connection.close()
+        } catch (t: Throwable) {
+            log.warn("Failed to close connection | {}", t.message)
+        }
+    }
+
+    private fun ensureActive() {
+        if (!isActive) {
+            throw SQLTransientConnectionException("Connection pool is closed")
+        }
+    }
+}
@@ -70,7 +70,7 @@ class StaticH2SQLContext(
     /**
      * The global cache
      * */
-    override val globalCache = getBeanOrNull() ?: GlobalCache(unmodifiedConfig)
+    override val globalCache = getBeanOrNull() ?: GlobalCache(unmodifiedConfig).also { registerClosable(it) }
     /**
      * The inject component
      * */
@@ -1,8 +1,8 @@
 package ai.platon.pulsar.ql.h2
 
 import ai.platon.pulsar.PulsarSession
-import ai.platon.pulsar.common.math.vectors.get
 import ai.platon.pulsar.common.math.vectors.isEmpty
+import ai.platon.pulsar.common.urls.NormUrl
 import ai.platon.pulsar.common.urls.Urls
 import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.dom.features.FeatureRegistry.registeredFeatures
@@ -14,6 +14,8 @@ import ai.platon.pulsar.dom.select.selectFirstOrNull
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.persist.model.WebPageFormatter
 import ai.platon.pulsar.ql.ResultSets
+import ai.platon.pulsar.ql.ConcurrentLoader
+import ai.platon.pulsar.ql.SQLSession
 import ai.platon.pulsar.ql.types.ValueDom
 import org.apache.commons.math3.linear.RealVector
 import org.h2.api.ErrorCode
@@ -35,14 +37,14 @@ import kotlin.reflect.full.primaryConstructor
 object Queries {
 
     /**
-     * Load all Web pages
+     * Load all Web pages, an array of urls is deduplicated and loaded concurrently by [SQLSession.loader]
      *
      * @param session        The session
      * @param configuredUrls The configured urls, can be a single string represented by a [ValueString],
      * or an array of strings represented by a [ValueArray]
-     * @return A collection of [WebPage]s
+     * @return A collection of [WebPage]s in the order of the urls, the pages failed to load are dropped
      */
-    fun loadAll(session: PulsarSession, portal: Value): Collection<WebPage> {
+    fun loadAll(session: SQLSession, portal: Value): Collection<WebPage> {
         var pages: Collection<WebPage> = listOf()
 
         when (portal) {
@@ -55,9 +57,8 @@ object Queries {
                 if (portal.list.isNotEmpty()) {
                     val normUrl = session.normalize(portal.list[0].string)
                     val itemOptions = normUrl.options.createItemOptions()
-                    for (configuredUrl in portal.list) {
-                        pages = session.loadAll(portal.list.map { configuredUrl.string }, itemOptions)
-                    }
+                    val normUrls = session.normalize(portal.list.map { it.string }, itemOptions)
+                    pages = loadAll(session.loader, normUrls)
                 }
             else -> throw DbException.get(ErrorCode.METHOD_NOT_FOUND_1, "Unsupported type ${Value::class}")
         }
@@ -66,7 +67,8 @@ object Queries {
     }
 
     /**
-     * Load all Web pages, and translate Web pages to targets using the given transformer
+     * Load all Web pages, and translate Web pages to targets using the given transformer, an array of urls is
+     * deduplicated and loaded concurrently by [SQLSession.loader]
      *
      * @param session        The session
      * @param configuredUrls The configured urls, can be a single string represented by a {@link ValueString},
@@ -78,7 +80,7 @@ object Queries {
      * @return A collection of O
      */
     fun <O> loadAll(
-        session: PulsarSession,
+        session: SQLSession,
         configuredUrls: Value, restrictCss: String, offset: Int, limit: Int,
         transformer: (Element, String, Int, Int) -> Collection<O>
     ): Collection<O> {
@@ -91,8 +93,9 @@ object Queries {
             }
             is ValueArray -> {
                 collection = ArrayList()
-                for (configuredUrl in configuredUrls.list) {
-                    val doc = session.loadDocument(configuredUrl.string)
+                val normUrls = session.normalize(configuredUrls.list.map { it.string })
+                for (page in loadAll(session.loader, normUrls)) {
+                    val doc = session.parse(page)
                     collection.addAll(transformer(doc.document, restrictCss, offset, limit))
                 }
             }
@@ -102,6 +105,17 @@ object Queries {
         return collection
     }
 
+    /**
+     * Load all Web pages with the loader, the pages failed to load and the internal pages are dropped
+     *
+     * @param loader   The loader
+     * @param normUrls The normalized urls
+     * @return A list of [WebPage]s in the order of the urls
+     */
+    fun loadAll(loader: ConcurrentLoader, normUrls: List<NormUrl>): List<WebPage> {
+        return loader.loadAll(normUrls).filter { it.isNotNil && it.isNotInternal }
+    }
+
     fun loadOutPages(
         session: PulsarSession,
         portalUrl: String, restrictCss: String,
@@ -266,7 +280,9 @@ object Queries {
         val columnCount = 1 + registeredFeatures.size + 1
         val values = arrayOfNulls<Any>(columnCount)
         values[0] = ValueDom.get(ele)
-        val features = if (!ele.features.isEmpty) ele.features else return values
+        if (ele.featureStore == null && ele.features.isEmpty) {
+            return values
+        }
 
         // TODO: configurable
         val base = 10f
@@ -274,7 +290,7 @@ object Queries {
         val factor = base.pow(fractionDigits)
         for (j in 1..registeredFeatures.size) {
             val key = j - 1
-            val v = features[key]
+            val v = ele.getFeature(key)
 
             if (isFloating(key)) {
                 values[j] = 1.0 * (factor * v).roundToInt() / factor
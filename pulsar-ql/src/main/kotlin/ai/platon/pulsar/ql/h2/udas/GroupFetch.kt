@@ -48,7 +48,8 @@ class GroupFetch : Aggregate {
     override fun getResult(): Any {
         val session = H2SessionFactory.getSession(conn)
         val h2session = session.sessionDelegate.implementation as org.h2.engine.Session
-        session.loadAll(urls)
+        // duplicated urls in the group are loaded only once, and the distinct urls are loaded concurrently
+        session.loader.loadAll(session.normalize(urls))
         val values = urls.map { url -> DataType.convertToValue(h2session, url, Value.STRING) }.toTypedArray()
         return ValueArray.get(values)
     }
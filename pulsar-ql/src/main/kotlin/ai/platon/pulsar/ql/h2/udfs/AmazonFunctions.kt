@@ -34,15 +34,18 @@ object AmazonFunctions {
      */
     @UDFunction
     @JvmStatic
-    fun suggestions(@H2Context conn: Connection, url: String, keyword: String): ResultSet {
-        val session = H2SessionFactory.getSession(conn)
+    fun suggestions(@H2Context conn: Connection, url: String?, keyword: String): ResultSet {
+        val rs = ResultSets.newSimpleResultSet("alias", "keyword", "isfb", "crid")
+        if (url == null) {
+            return rs
+        }
 
+        val session = H2SessionFactory.getSession(conn)
         val amazonSearcher = AmazonSearcherJsEventHandler(keyword)
         val options = session.options("-i 0s")
         options.conf.putBean(amazonSearcher)
         session.load(url, options)
 
-        val rs = ResultSets.newSimpleResultSet("alias", "keyword", "isfb", "crid")
         amazonSearcher.suggestions.forEach {
             rs.addRow(it.alias, it.keyword, it.isfb, it.crid)
         }
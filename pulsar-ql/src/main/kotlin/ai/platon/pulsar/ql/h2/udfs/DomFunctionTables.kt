@@ -56,9 +56,10 @@ object DomFunctionTables {
     @JvmOverloads
     fun loadAndSelect(
             @H2Context conn: JdbcConnection,
-            url: String, cssQuery: String, offset: Int = 1, limit: Int = Integer.MAX_VALUE): ResultSet {
+            url: String?, cssQuery: String, offset: Int = 1, limit: Int = Integer.MAX_VALUE): ResultSet {
         val session = H2SessionFactory.getSession(conn)
-        if (session.isColumnRetrieval(conn)) {
+        // the url is null if it's a parameter which is not bound yet, when the statement is prepared
+        if (url == null || session.isColumnRetrieval(conn)) {
             return toDOMResultSet(FeaturedDocument.NIL, listOf())
         }
 
@@ -113,9 +114,9 @@ object DomFunctionTables {
     @UDFunction(hasShortcut = true, description = "Load a page and find all anchors specified by cssQuery")
     fun loadAndGetAnchors(
             @H2Context conn: JdbcConnection,
-            portalUrl: String, restrictCss: String = ":root", offset: Int = 1, limit: Int = Integer.MAX_VALUE): ResultSet {
+            portalUrl: String?, restrictCss: String = ":root", offset: Int = 1, limit: Int = Integer.MAX_VALUE): ResultSet {
         val session = H2SessionFactory.getSession(conn)
-        if (session.isColumnRetrieval(conn)) {
+        if (portalUrl == null || session.isColumnRetrieval(conn)) {
             return toResultSet(listOf())
         }
 
@@ -139,7 +140,7 @@ object DomFunctionTables {
     @JvmStatic
     @UDFunction(hasShortcut = true, description = "Load out pages from a portal url")
     fun loadOutPages(@H2Context conn: JdbcConnection,
-                     portalUrl: String,
+                     portalUrl: String?,
                      restrictCss: String = ":root",
                      offset: Int = 1,
                      limit: Int = Integer.MAX_VALUE,
@@ -151,7 +152,7 @@ object DomFunctionTables {
     @JvmOverloads
     @JvmStatic
     fun loadOutPagesIgnoreUrlQuery(@H2Context conn: JdbcConnection,
-                                   portalUrl: String,
+                                   portalUrl: String?,
                                    restrictCss: String = ":root",
                                    offset: Int = 1,
                                    limit: Int = Int.MAX_VALUE,
@@ -175,7 +176,7 @@ object DomFunctionTables {
     @JvmStatic
     fun loadOutPagesAndSelect(
             @H2Context conn: JdbcConnection,
-            portal: String,
+            portal: String?,
             restrictCss: String = ":root",
             offset: Int = 1,
             limit: Int = Integer.MAX_VALUE,
@@ -183,7 +184,7 @@ object DomFunctionTables {
             normalize: Boolean = false,
             ignoreQuery: Boolean = false): ResultSet {
         val session = H2SessionFactory.getSession(conn)
-        if (session.isColumnRetrieval(conn)) {
+        if (portal == null || session.isColumnRetrieval(conn)) {
             return toResultSet("DOM", listOf<ValueDom>())
         }
 
@@ -214,7 +215,7 @@ object DomFunctionTables {
     @JvmStatic
     fun loadOutPagesAndSelectFirst(
             @H2Context conn: JdbcConnection,
-            portalUrl: String,
+            portalUrl: String?,
             restrictCss: String = ":root",
             offset: Int = 1,
             limit: Int = Integer.MAX_VALUE,
@@ -227,7 +228,7 @@ object DomFunctionTables {
 
     private fun loadOutPagesAsRsInternal(
             @H2Context conn: JdbcConnection,
-            portalUrl: String,
+            portalUrl: String?,
             restrictCss: String = ":root",
             offset: Int = 1,
             limit: Int = Int.MAX_VALUE,
@@ -235,7 +236,7 @@ object DomFunctionTables {
             normalize: Boolean = false,
             ignoreQuery: Boolean = false): ResultSet {
         val session = H2SessionFactory.getSession(conn)
-        if (session.isColumnRetrieval(conn)) {
+        if (portalUrl == null || session.isColumnRetrieval(conn)) {
             return toResultSet("DOM", listOf<ValueDom>())
         }
 
@@ -263,11 +264,15 @@ object DomFunctionTables {
     @JvmOverloads
     fun loadAndGetFeatures(
             @H2Context conn: JdbcConnection,
-            portalUrl: String,
+            portalUrl: String?,
             cssQuery: String = "DIV,P,UL,OL,LI,DL,DT,DD,TABLE,TR,TD,H1,H2,H3",
             offset: Int = 1,
             limit: Int = 100): ResultSet {
         val session = H2SessionFactory.getSession(conn)
+        if (portalUrl == null || session.isColumnRetrieval(conn)) {
+            return createFeatureResultSet()
+        }
+
         val page = session.load(portalUrl)
         val dom = if (page.isNil) ValueDom.NIL else session.parseValueDom(page)
         return features(conn, dom, cssQuery, offset, limit)
@@ -319,11 +324,15 @@ object DomFunctionTables {
     @JvmStatic
     fun loadAndGetElementsWithMostSibling(
             @H2Context conn: JdbcConnection,
-            portalUrl: String,
+            portalUrl: String?,
             restrictCss: String = "DIV,P,UL,OL,LI,DL,DT,DD,TABLE,TR,TD",
             offset: Int = 1,
             limit: Int = Integer.MAX_VALUE): ResultSet {
         val session = H2SessionFactory.getSession(conn)
+        if (portalUrl == null || session.isColumnRetrieval(conn)) {
+            return createFeatureResultSet()
+        }
+
         val page = session.load(portalUrl)
         val dom = if (page.isNil) ValueDom.NIL else session.parseValueDom(page)
         return getElementsWithMostSibling(conn, dom, restrictCss, offset, limit)
@@ -3,6 +3,7 @@ package ai.platon.pulsar.ql.h2.udfs
 import ai.platon.pulsar.common.config.VolatileConfig
 import ai.platon.pulsar.common.urls.Urls
 import ai.platon.pulsar.common.options.LoadOptions
+import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.ql.annotation.UDFGroup
 import ai.platon.pulsar.ql.annotation.UDFunction
 import ai.platon.pulsar.ql.h2.H2SessionFactory
@@ -19,7 +20,11 @@ object MetadataFunctionTables {
     @UDFunction(description = "Load a page specified by url from the database, " +
             "return the fields of the page as key-value pairs")
     @JvmStatic
-    fun load(@H2Context conn: Connection, configuredUrl: String): ResultSet {
+    fun load(@H2Context conn: Connection, configuredUrl: String?): ResultSet {
+        if (configuredUrl == null) {
+            return Queries.toResultSet(WebPage.NIL)
+        }
+
         val page = H2SessionFactory.getSession(conn).load(configuredUrl)
         return Queries.toResultSet(page)
     }
@@ -28,7 +33,11 @@ object MetadataFunctionTables {
             "fetch it from the internet if absent or expired" +
             "return the fields of the page as key-value pairs")
     @JvmStatic
-    fun fetch(@H2Context conn: Connection, configuredUrl: String): ResultSet {
+    fun fetch(@H2Context conn: Connection, configuredUrl: String?): ResultSet {
+        if (configuredUrl == null) {
+            return Queries.toResultSet(WebPage.NIL)
+        }
+
         val (url, args) = Urls.splitUrlArgs(configuredUrl)
         val loadOptions = LoadOptions.parse(args, volatileConfig)
         loadOptions.expires = Duration.ZERO
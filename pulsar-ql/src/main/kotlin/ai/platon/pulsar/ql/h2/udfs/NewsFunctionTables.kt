@@ -40,9 +40,9 @@ object NewsFunctionTables {
     @JvmStatic
     fun loadAndExtract(
         @H2Context conn: JdbcConnection,
-        url: String,
+        url: String?,
     ): ResultSet {
-        if (H2SessionFactory.isColumnRetrieval(conn)) {
+        if (url == null || H2SessionFactory.isColumnRetrieval(conn)) {
             return createResultSet()
         }
 
@@ -66,7 +66,7 @@ object NewsFunctionTables {
     @JvmStatic
     fun loadOutPagesAndHarvestArticles(
         @H2Context conn: JdbcConnection,
-        portalUrl: String,
+        portalUrl: String?,
         restrictCss: String = ":root",
         offset: Int = 1,
         limit: Int = Integer.MAX_VALUE,
@@ -90,14 +90,14 @@ object NewsFunctionTables {
     @JvmStatic
     fun loadOutPagesAndExtractArticles(
         @H2Context conn: JdbcConnection,
-        portalUrl: String,
+        portalUrl: String?,
         restrictCss: String = ":root",
         offset: Int = 1,
         limit: Int = Integer.MAX_VALUE,
         normalize: Boolean = false,
         ignoreQuery: Boolean = false
     ): ResultSet {
-        if (H2SessionFactory.isColumnRetrieval(conn)) {
+        if (portalUrl == null || H2SessionFactory.isColumnRetrieval(conn)) {
             return createResultSet()
         }
 
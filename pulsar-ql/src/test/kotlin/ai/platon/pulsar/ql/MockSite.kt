@@ -0,0 +1,64 @@
+package ai.platon.pulsar.ql
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.common.options.LoadOptions
+import ai.platon.pulsar.common.urls.NormUrl
+import ai.platon.pulsar.persist.WebPage
+import com.sun.net.httpserver.HttpServer
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.net.InetSocketAddress
+import java.net.URL
+import java.time.Duration
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A local site serving generated pages, and a mock driver which loads pages from the site, every load is counted
+ * by the site
+ * */
+class MockSite(val latency: Duration = Duration.ofMillis(10)) : AutoCloseable {
+    private val conf = VolatileConfig()
+    private val executor = Executors.newCachedThreadPool()
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0)
+
+    /**
+     * The number of requests the site served
+     * */
+    val numRequests = AtomicInteger()
+
+    val baseUrl get() = "http://127.0.0.1:${server.address.port}"
+
+    init {
+        server.executor = executor
+        server.createContext("/") { exchange ->
+            numRequests.incrementAndGet()
+            Thread.sleep(latency.toMillis())
+            val html = "<html><body><a href='/'>${exchange.requestURI.path}</a></body></html>".toByteArray()
+            exchange.sendResponseHeaders(200, html.size.toLong())
+            exchange.responseBody.use { it.write(html) }
+        }
+        server.start()
+    }
+
+    fun urls(n: Int) = (1..n).map { "$baseUrl/item/$it" }
+
+    fun normalize(urls: List<String>) = urls.map { NormUrl(it, LoadOptions.create(conf)) }
+
+    /**
+     * Load the page, block the calling thread
+     * */
+    fun fetch(normUrl: NormUrl): WebPage {
+        val content = URL(normUrl.spec).openStream().use { it.readBytes() }
+        return WebPage.newWebPage(normUrl.spec, conf).also { it.setContent(content) }
+    }
+
+    suspend fun load(normUrl: NormUrl): WebPage = withContext(Dispatchers.IO) { fetch(normUrl) }
+
+    fun newLoader(parallelism: Int) = ConcurrentLoader(parallelism) { load(it) }
+
+    override fun close() {
+        server.stop(0)
+        executor.shutdownNow()
+    }
+}
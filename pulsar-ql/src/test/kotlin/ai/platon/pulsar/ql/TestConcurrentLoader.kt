@@ -0,0 +1,76 @@
+package ai.platon.pulsar.ql
+
+import ai.platon.pulsar.persist.WebPage
+import ai.platon.pulsar.ql.h2.Queries
+import kotlinx.coroutines.delay
+import org.junit.After
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class TestConcurrentLoader {
+    private val site = MockSite()
+
+    @After
+    fun tearDown() {
+        site.close()
+    }
+
+    @Test
+    fun testDeduplicateAndKeepOrder() {
+        val distinctUrls = site.urls(10)
+        val urls = distinctUrls + distinctUrls.reversed() + distinctUrls.take(3)
+        val loader = site.newLoader(4)
+
+        val pages = loader.loadAll(site.normalize(urls))
+
+        assertEquals(urls, pages.map { it.url })
+        assertEquals(distinctUrls.size, site.numRequests.get())
+        assertEquals(distinctUrls.size.toLong(), loader.numLoads.get())
+        assertEquals((urls.size - distinctUrls.size).toLong(), loader.numDuplicates.get())
+    }
+
+    @Test
+    fun testBoundedParallelism() {
+        val parallelism = 3
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        val loader = ConcurrentLoader(parallelism) {
+            maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+            delay(20)
+            running.decrementAndGet()
+            WebPage.newWebPage(it.spec, it.options.conf)
+        }
+
+        loader.loadAll(site.normalize(site.urls(20)))
+
+        assertEquals(20L, loader.numLoads.get())
+        assertTrue(maxRunning.get() <= parallelism)
+    }
+
+    @Test
+    fun testFailedLoadIsNil() {
+        val urls = site.urls(3)
+        val loader = ConcurrentLoader {
+            if (it.spec == urls[1]) throw IllegalStateException("Mock failure") else site.load(it)
+        }
+
+        val pages = loader.loadAll(site.normalize(urls))
+
+        assertEquals(listOf(false, true, false), pages.map { it.isNil })
+        assertEquals(1L, loader.numFailures.get())
+    }
+
+    @Test
+    fun testFailedPageIsDropped() {
+        val urls = site.urls(3)
+        val loader = ConcurrentLoader {
+            if (it.spec == urls[1]) throw IllegalStateException("Mock failure") else site.load(it)
+        }
+
+        val pages = Queries.loadAll(loader, site.normalize(urls))
+
+        assertEquals(listOf(urls[0], urls[2]), pages.map { it.url })
+    }
+}
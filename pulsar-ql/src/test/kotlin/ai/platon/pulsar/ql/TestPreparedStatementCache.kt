@@ -0,0 +1,100 @@
+package ai.platon.pulsar.ql
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.sql.Connection
+import java.sql.DriverManager
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+
+class TestPreparedStatementCache {
+
+    private lateinit var conn: Connection
+
+    @Before
+    fun setup() {
+        conn = DriverManager.getConnection("jdbc:h2:mem:test_prepared_statement_cache")
+    }
+
+    @After
+    fun tearDown() {
+        conn.close()
+    }
+
+    @Test
+    fun testParseTemplate() {
+        val sql = "select dom_base_uri(dom) from load_and_select('https://www.amazon.com/ -i 1d', ':root')"
+        val template = XSQLTemplate.parse(sql)
+        assertEquals("select dom_base_uri(dom) from load_and_select(?, ':root')", template.sql)
+        assertEquals(listOf("https://www.amazon.com/ -i 1d"), template.parameters)
+
+        val other = XSQLTemplate.parse(sql.replace("amazon", "jd"))
+        assertEquals(template.sql, other.sql)
+    }
+
+    @Test
+    fun testParseQuotesAndComments() {
+        val sql = """select 'it''s http://a.com', "http://b.com" /* 'http://c.com' */ -- 'http://d.com'
+            |from t where u = 'http://e.com/?q=''x'''""".trimMargin()
+        val template = XSQLTemplate.parse(sql)
+        assertEquals(listOf("http://e.com/?q='x'"), template.parameters)
+        assertEquals(sql.substringBefore("'http://e.com") + "?", template.sql)
+        assertFalse(XSQLTemplate.parse("select 'a', 'b'").isParameterized)
+    }
+
+    @Test
+    fun testStatementsAreReused() {
+        val cache = PreparedStatementCache()
+        val urls = listOf("https://a.com/", "https://b.com/", "https://a.com/")
+        val values = urls.map { url ->
+            cache.executeQuery(conn, "select '$url' as url").use { it.next(); it.getString(1) }
+        }
+
+        assertEquals(urls, values)
+        assertEquals(1L, cache.numMisses.get())
+        assertEquals(2L, cache.numHits.get())
+        assertEquals(1, cache.size)
+        cache.close()
+        assertEquals(0, cache.size)
+    }
+
+    @Test
+    fun testLeastRecentlyUsedStatementIsEvicted() {
+        val cache = PreparedStatementCache(capacity = 2)
+        listOf("a", "b", "a", "c", "a").forEach { column ->
+            cache.executeQuery(conn, "select 'http://a.com/' as $column").close()
+        }
+
+        assertEquals(1L, cache.numEvictions.get())
+        assertEquals(2L, cache.numHits.get())
+        assertEquals(2, cache.size)
+    }
+
+    @Test
+    fun testUnpreparableTemplateIsRemembered() {
+        // a table function which fails if the parameter is not bound, just like a function with a non-null parameter
+        val source = """
+            java.sql.ResultSet urlTable(String url) throws java.sql.SQLException {
+                if (url == null) throw new java.sql.SQLException("The url is not bound");
+                org.h2.tools.SimpleResultSet rs = new org.h2.tools.SimpleResultSet();
+                rs.addColumn("URL", java.sql.Types.VARCHAR, 255, 0);
+                rs.addRow(url);
+                return rs;
+            }
+        """.trimIndent()
+        conn.createStatement().use { it.execute("CREATE ALIAS URL_TABLE AS \$\$ $source \$\$") }
+
+        val cache = PreparedStatementCache()
+        val urls = listOf("https://a.com/", "https://b.com/", "https://c.com/")
+        val values = urls.map { url ->
+            cache.executeQuery(conn, "select url from url_table('$url')").use { it.next(); it.getString(1) }
+        }
+
+        assertEquals(urls, values)
+        // the template is tried to prepare only once
+        assertEquals(1L, cache.numMisses.get())
+        assertEquals(3L, cache.numFallbacks.get())
+        cache.close()
+    }
+}
@@ -0,0 +1,67 @@
+package ai.platon.pulsar.ql
+
+import org.h2.tools.SimpleResultSet
+import org.junit.Test
+import java.io.StringWriter
+import java.sql.Types
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class TestResultRows {
+
+    @Test
+    fun testTypedRows() {
+        val rows = ResultRows.rows(newResultSet(3)).map { Triple(it.getInt(1), it.getDouble(2), it["NAME"]) }.toList()
+        assertEquals(listOf(Triple(1, 0.5, "item-1"), Triple(2, 1.0, "item-2"), Triple(3, 1.5, "item-3")), rows)
+    }
+
+    @Test
+    fun testRowsAreIteratedOnlyOnce() {
+        val rows = ResultRows.rows(newResultSet(3))
+        assertEquals(3, rows.count())
+        assertFailsWith<IllegalStateException> { rows.count() }
+    }
+
+    @Test
+    fun testToEntities() {
+        val entities = ResultRows.toEntities(newResultSet(10), maxRows = 5)
+        assertEquals(5, entities.size)
+        assertEquals(mapOf("id" to 1, "price" to "0.5", "name" to "item-1"), entities[0])
+    }
+
+    @Test
+    fun testEntityValueTypes() {
+        val rs = ResultSets.newSimpleResultSet()
+        rs.addColumn("FLAG", Types.BOOLEAN, 1, 0)
+        rs.addColumn("COUNT", Types.INTEGER, 10, 0)
+        rs.addColumn("AMOUNT", Types.DECIMAL, 10, 2)
+        rs.addColumn("OBJECT", Types.JAVA_OBJECT, 0, 0)
+        rs.addRow(true, null, java.math.BigDecimal("1.50"), listOf(1, 2))
+
+        val entity = ResultRows.toEntities(rs).single()
+        assertEquals(mapOf("flag" to true, "count" to null, "amount" to "1.50", "object" to "[1, 2]"), entity)
+    }
+
+    @Test
+    fun testWriteJson() {
+        val rs = newResultSet(2).apply { addRow(3, Double.NaN, null) }
+        val writer = StringWriter()
+        val numRows = ResultRows.writeJson(rs, writer)
+
+        assertEquals(3, numRows)
+        val expected = """[{"id":1,"price":0.5,"name":"item-1"},{"id":2,"price":1.0,"name":"item-2"},""" +
+                """{"id":3,"price":"NaN","name":null}]"""
+        assertEquals(expected, writer.toString())
+    }
+
+    private fun newResultSet(numRows: Int): SimpleResultSet {
+        val rs = ResultSets.newSimpleResultSet()
+        rs.addColumn("ID", Types.INTEGER, 10, 0)
+        rs.addColumn("PRICE", Types.DOUBLE, 17, 0)
+        rs.addColumn("NAME", Types.VARCHAR, 100, 0)
+        for (i in 1..numRows) {
+            rs.addRow(i, 0.5 * i, "item-$i")
+        }
+        return rs
+    }
+}
@@ -0,0 +1,138 @@
+package ai.platon.pulsar.ql
+
+import ai.platon.pulsar.ql.context.AbstractSQLContext
+import ai.platon.pulsar.ql.context.SQLConnectionPool
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import java.sql.SQLTransientConnectionException
+import java.time.Duration
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class TestSQLConnectionPool : TestBase() {
+
+    private val sqlContext = context as AbstractSQLContext
+
+    @Test
+    fun testSessionsAreBoundedUnderConcurrentQueries() {
+        val pool = sqlContext.connectionPool
+        val numSessions0 = sqlContext.sqlSessions.size - pool.numIdle - pool.numActive
+        val maxSessions = AtomicInteger()
+        val numRows = AtomicInteger()
+        val numTasks = 20 * pool.maxSize
+
+        val executor = Executors.newFixedThreadPool(4 * pool.maxSize)
+        repeat(numTasks) { i ->
+            executor.submit {
+                sqlContext.executeQuery("SELECT $i AS N FROM SYSTEM_RANGE(1, 10)") { rs ->
+                    maxSessions.accumulateAndGet(sqlContext.sqlSessions.size) { a, b -> maxOf(a, b) }
+                    numRows.addAndGet(ResultRows.rows(rs).count())
+                }
+            }
+        }
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES))
+
+        assertEquals(10 * numTasks, numRows.get())
+        assertEquals(0, pool.numActive)
+        assertTrue(pool.numCreated.get() <= pool.maxSize, "$pool")
+        assertTrue(maxSessions.get() <= numSessions0 + pool.maxSize, "${maxSessions.get()} sessions | $pool")
+    }
+
+    @Test
+    fun testCopyAllRows() {
+        val numRows = ResultRows.DEFAULT_MAX_ROWS + 1
+        val rs = sqlContext.executeQuery("SELECT X FROM SYSTEM_RANGE(1, $numRows)")
+        assertEquals(numRows, ResultRows.rows(rs).count())
+        val rs2 = sqlContext.executeQuery("SELECT X FROM SYSTEM_RANGE(1, $numRows)", maxRows = 10)
+        assertEquals(10, ResultRows.rows(rs2).count())
+    }
+
+    @Test
+    fun testLoadAndSelectIsPrepared() {
+        val cache = sqlContext.statementCache
+        val numHits = cache.numHits.get()
+        val numFallbacks = cache.numFallbacks.get()
+
+        // the url is bound as a parameter of the template load_and_select(?, ':root')
+        val sql = "select dom_base_uri(dom) as uri from load_and_select('${TestResource.productIndexUrl} -i 1d', ':root')"
+        repeat(sqlContext.connectionPool.maxSize + 1) {
+            val uris = sqlContext.executeQuery(sql) { rs -> ResultRows.rows(rs).map { it.getString(1) }.toList() }
+            assertEquals(listOf(TestResource.productIndexUrl), uris)
+        }
+
+        assertTrue { cache.numHits.get() > numHits }
+        assertEquals(numFallbacks, cache.numFallbacks.get())
+    }
+
+    @Test
+    fun testWithConnectionSuspend() = runBlocking<Unit> {
+        val pool = SQLConnectionPool(maxSize = 1) { sqlContext.randomConnection }
+        val connection = pool.acquire()
+        // the waiter suspends until the connection is returned
+        val waiter = async { pool.withConnectionSuspend { it } }
+        while (pool.numWaiting < 1) delay(10)
+        pool.release(connection)
+        assertSame(connection, waiter.await())
+        assertEquals(0, pool.numActive)
+        pool.close()
+    }
+
+    @Test
+    fun testSessionIsReused() {
+        val pool = SQLConnectionPool(maxSize = 1) { sqlContext.randomConnection }
+        val session = pool.withConnection { sqlContext.getSession(it) }
+        val session2 = pool.withConnection { sqlContext.getSession(it) }
+        assertSame(session, session2)
+        assertEquals(1L, pool.numCreated.get())
+        pool.close()
+    }
+
+    @Test
+    fun testClosedConnectionIsDiscarded() {
+        val pool = SQLConnectionPool(maxSize = 1) { sqlContext.randomConnection }
+        val connection = pool.acquire()
+        connection.close()
+        pool.release(connection)
+
+        val connection2 = pool.acquire()
+        assertNotSame(connection, connection2)
+        assertEquals(1L, pool.numDiscarded.get())
+        pool.release(connection2)
+        pool.close()
+    }
+
+    @Test
+    fun testIdleConnectionIsEvicted() {
+        val pool = SQLConnectionPool(maxSize = 2, idleTimeout = Duration.ofMillis(100)) { sqlContext.randomConnection }
+        val connections = listOf(pool.acquire(), pool.acquire())
+        connections.forEach { pool.release(it) }
+        assertEquals(2, pool.numIdle)
+
+        Thread.sleep(200)
+        assertEquals(2, pool.evictIdleConnections())
+        assertEquals(0, pool.numIdle)
+        assertTrue(connections.all { it.isClosed })
+        pool.close()
+    }
+
+    @Test
+    fun testAcquireTimeout() {
+        val pool = SQLConnectionPool(maxSize = 1, acquireTimeout = Duration.ofMillis(100)) {
+            sqlContext.randomConnection
+        }
+        val connection = pool.acquire()
+        assertFailsWith<SQLTransientConnectionException> { pool.acquire() }
+        assertEquals(1L, pool.numTimeouts.get())
+        pool.release(connection)
+        pool.close()
+    }
+}
@@ -8,7 +8,9 @@ import ai.platon.pulsar.crawl.*
 import ai.platon.pulsar.crawl.common.GlobalCache
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.rest.api.entities.ScrapeRequest
+import ai.platon.pulsar.rest.api.entities.ScrapeStage
 import org.slf4j.LoggerFactory
+import java.time.Instant
 import java.util.*
 
 /**
@@ -39,6 +41,8 @@ open class DegenerateScrapeHyperlink(
             logger.warn("Unexpected exception", t)
         } finally {
             response.isDone = true
+            response.finishTime = Instant.now()
+            complete(response)
         }
     }
 
@@ -46,6 +50,7 @@ open class DegenerateScrapeHyperlink(
         crawlEventHandler.onAfterLoadPipeline.addLast { url, page ->
             try {
                 executeQuery()
+                progress(ScrapeStage.EXTRACTED)
             } catch (t: Throwable) {
                 getLogger(this).warn("Unexpected exception", t)
             } finally {
@@ -4,6 +4,7 @@ import ai.platon.pulsar.PulsarSession
 import ai.platon.pulsar.common.PulsarParams.VAR_IS_SCRAPE
 import ai.platon.pulsar.common.ResourceStatus
 import ai.platon.pulsar.common.Strings
+import ai.platon.pulsar.common.config.CapabilityTypes.SCRAPE_API_MAX_ROWS
 import ai.platon.pulsar.common.getLogger
 import ai.platon.pulsar.common.persist.ext.loadEventHandler
 import ai.platon.pulsar.crawl.DefaultLoadEventHandler
@@ -14,15 +15,14 @@ import ai.platon.pulsar.crawl.common.url.StatefulListenableHyperlink
 import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.persist.WebPage
 import ai.platon.pulsar.ql.context.AbstractSQLContext
-import ai.platon.pulsar.ql.ResultSets
-import ai.platon.pulsar.ql.h2.utils.ResultSetUtils
+import ai.platon.pulsar.ql.ResultRows
 import ai.platon.pulsar.rest.api.entities.ScrapeRequest
 import ai.platon.pulsar.rest.api.entities.ScrapeResponse
+import ai.platon.pulsar.rest.api.entities.ScrapeStage
 import org.h2.jdbc.JdbcSQLException
-import java.sql.Connection
-import java.sql.ResultSet
 import java.time.Instant
 import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
@@ -37,6 +37,9 @@ class ScrapeLoadEventHandler(
         onBeforeLoadPipeline.addLast {
             response.pageStatusCode = ResourceStatus.SC_PROCESSING
         }
+        onAfterFetchPipeline.addLast { page ->
+            hyperlink.progress(ScrapeStage.FETCHED)
+        }
         onBeforeParsePipeline.addLast { page ->
             require(page.loadEventHandler === this)
             page.variables[VAR_IS_SCRAPE] = true
@@ -66,22 +69,47 @@ open class ScrapeHyperlink(
     private val logger = getLogger(ScrapeHyperlink::class)
 
     private val sqlContext get() = session.context as AbstractSQLContext
-    private val connectionPool get() = sqlContext.connectionPool
-    private val randomConnection get() = sqlContext.randomConnection
 
-    val response = ScrapeResponse()
+    /**
+     * The max number of rows in the response, the rows are unlimited by default
+     * */
+    private val maxRows = session.unmodifiedConfig.getInt(SCRAPE_API_MAX_ROWS, Int.MAX_VALUE)
+
+    val response = ScrapeResponse(uuid)
 
     override var args: String? = "-parse ${sql.args}"
     override val loadEventHandler: LoadEventPipelineHandler = ScrapeLoadEventHandler(this, response)
 
-    open fun executeQuery(): ResultSet = executeQuery(request, response)
+    private val progressListeners = CopyOnWriteArrayList<(ScrapeStage, ScrapeResponse) -> Unit>()
+
+    open fun executeQuery(): List<Map<String, Any?>> = executeQuery(request, response)
+
+    /**
+     * Listen to the progress of the task, a listener is called in the crawl loop and should return quickly.
+     * The task completes after [ScrapeStage.EXTRACTED], listen to the completion of this future to get the result.
+     * */
+    fun onProgress(listener: (ScrapeStage, ScrapeResponse) -> Unit) {
+        progressListeners.add(listener)
+    }
+
+    fun progress(stage: ScrapeStage) {
+        progressListeners.forEach {
+            try {
+                it(stage, response)
+            } catch (t: Throwable) {
+                logger.warn("Failed to notify progress #${response.uuid} | {}", t.message)
+            }
+        }
+    }
 
     open fun extract(page: WebPage, document: FeaturedDocument) {
         try {
             response.pageContentBytes = page.contentLength.toInt()
             response.pageStatusCode = page.protocolStatus.minorCode
 
+            progress(ScrapeStage.PARSED)
             doExtract(page, document)
+            progress(ScrapeStage.EXTRACTED)
         } catch (t: Throwable) {
             logger.warn("Unexpected exception", t)
         }
@@ -94,24 +122,22 @@ open class ScrapeHyperlink(
         complete(response)
     }
 
-    protected open fun doExtract(page: WebPage, document: FeaturedDocument): ResultSet {
+    protected open fun doExtract(page: WebPage, document: FeaturedDocument): List<Map<String, Any?>> {
         if (!page.protocolStatus.isSuccess || page.contentLength == 0L || page.content == null) {
             response.statusCode = ResourceStatus.SC_NO_CONTENT
-            return ResultSets.newSimpleResultSet()
+            return listOf()
         }
 
         return executeQuery(request, response)
     }
 
-    protected open fun executeQuery(request: ScrapeRequest, response: ScrapeResponse): ResultSet {
-        var rs: ResultSet = ResultSets.newSimpleResultSet()
+    protected open fun executeQuery(request: ScrapeRequest, response: ScrapeResponse): List<Map<String, Any?>> {
+        var resultSet: List<Map<String, Any?>> = listOf()
 
         try {
             response.statusCode = ResourceStatus.SC_OK
 
-            rs = executeQuery(sql.sql)
-            val resultSet = mutableListOf<Map<String, Any?>>()
-            ResultSetUtils.getEntitiesFromResultSetTo(rs, resultSet)
+            resultSet = executeQuery(sql.sql)
             response.resultSet = resultSet
         } catch (e: JdbcSQLException) {
             response.statusCode = ResourceStatus.SC_EXPECTATION_FAILED
@@ -121,37 +147,37 @@ open class ScrapeHyperlink(
             logger.warn("Failed to execute sql #${response.uuid}\n{}", Strings.stringifyException(e))
         }
 
-        return rs
-    }
-
-    private fun executeQuery(sql: String): ResultSet {
-//        return session.executeQuery(sql)
-        val connection = connectionPool.poll() ?: randomConnection
-        return executeQuery(sql, connection).also { connectionPool.offer(connection) }
+        return resultSet
     }
 
-    private fun executeQuery(sql: String, conn: Connection): ResultSet {
-        var result: ResultSet? = null
+    private fun executeQuery(sql: String): List<Map<String, Any?>> {
+        var result: List<Map<String, Any?>>? = null
         val millis = measureTimeMillis {
-            conn.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY)?.use { st ->
-                try {
-                    st.executeQuery(sql)?.use { rs ->
-                        result = ResultSetUtils.copyResultSet(rs)
-                    }
-                } catch (e: JdbcSQLException) {
-                    val message = e.toString()
-                    if (message.contains("Syntax error in SQL statement")) {
-                        response.statusCode = ResourceStatus.SC_BAD_REQUEST
-                        logger.warn("Syntax error in SQL statement #${response.uuid}>>>\n{}\n<<<", e.sql)
-                    } else {
-                        response.statusCode = ResourceStatus.SC_EXPECTATION_FAILED
-                        logger.warn("Failed to execute scrape task #${response.uuid}\n{}",
-                            Strings.stringifyException(e))
+            try {
+                // The statement is prepared once for a connection with the url bound as a parameter,
+                // every row is converted to a map once, no intermediate result set is copied
+                result = sqlContext.executeQuery(sql) { rs ->
+                    ResultRows.toEntities(rs, maxRows).also {
+                        // the cursor stops at the last taken row, a next row means the result set is truncated
+                        response.isTruncated = it.size == maxRows && rs.next()
                     }
                 }
+                if (response.isTruncated) {
+                    logger.info("Result set is truncated to {} rows #{}", maxRows, response.uuid)
+                }
+            } catch (e: JdbcSQLException) {
+                val message = e.toString()
+                if (message.contains("Syntax error in SQL statement")) {
+                    response.statusCode = ResourceStatus.SC_BAD_REQUEST
+                    logger.warn("Syntax error in SQL statement #${response.uuid}>>>\n{}\n<<<", e.sql)
+                } else {
+                    response.statusCode = ResourceStatus.SC_EXPECTATION_FAILED
+                    logger.warn("Failed to execute scrape task #${response.uuid}\n{}",
+                        Strings.stringifyException(e))
+                }
             }
         }
 
-        return result ?: ResultSets.newResultSet()
+        return result ?: listOf()
     }
 }
@@ -0,0 +1,10 @@
+package ai.platon.pulsar.rest.api.common
+
+import org.springframework.http.HttpStatus
+import org.springframework.web.bind.annotation.ResponseStatus
+
+/**
+ * Thrown if a scrape task is submitted when the crawl queues are full, the client should retry later
+ * */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+class ScrapeQueueFullException(message: String) : RuntimeException(message)
@@ -1,12 +1,20 @@
 package ai.platon.pulsar.rest.api.controller
 
+import ai.platon.pulsar.common.ResourceStatus
 import ai.platon.pulsar.rest.api.entities.ScrapeRequest
 import ai.platon.pulsar.rest.api.entities.ScrapeResponse
+import ai.platon.pulsar.rest.api.entities.ScrapeStage
 import ai.platon.pulsar.rest.api.entities.ScrapeStatusRequest
 import ai.platon.pulsar.rest.api.service.ScrapeService
 import org.springframework.context.ApplicationContext
+import org.springframework.http.HttpStatus
 import org.springframework.http.MediaType
+import org.springframework.http.ResponseEntity
 import org.springframework.web.bind.annotation.*
+import org.springframework.web.context.request.async.DeferredResult
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody
+import java.io.IOException
 import javax.servlet.http.HttpServletRequest
 
 @RestController
@@ -20,6 +28,13 @@ class ScrapeController(
     val applicationContext: ApplicationContext,
     val scrapeService: ScrapeService,
 ) {
+    companion object {
+        /**
+         * The async request outlives the task a little, so a task timeout is reported as a response
+         * */
+        const val ASYNC_TIMEOUT_MARGIN = 5_000L
+    }
+
     /**
      * @param request The extract request
      * @return The uuid of the task
@@ -29,6 +44,65 @@ class ScrapeController(
         return scrapeService.executeQuery(ScrapeRequest(sql))
     }
 
+    /**
+     * Execute a scrape task without holding a servlet thread until the task is done
+     *
+     * @param sql The sql to execute
+     * @return The response, the status code is 408 if the task is not done in time, or 429 if there are too many
+     *         pending tasks
+     * */
+    @PostMapping("e/async")
+    fun executeAsync(@RequestBody sql: String): DeferredResult<ResponseEntity<ScrapeResponse>> {
+        val timeout = scrapeService.jobTimeout.toMillis() + ASYNC_TIMEOUT_MARGIN
+        val timeoutResult = ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build<ScrapeResponse>()
+        val result = DeferredResult<ResponseEntity<ScrapeResponse>>(timeout, timeoutResult)
+        val hyperlink = scrapeService.submitAsync(ScrapeRequest(sql))
+        hyperlink.whenComplete { response, t ->
+            if (t != null) {
+                result.setErrorResult(t)
+            } else {
+                result.setResult(toResponseEntity(response))
+            }
+        }
+        return result
+    }
+
+    /**
+     * Execute a scrape task and send the progress as server-sent events, the events are named queued, fetched,
+     * parsed, extracted and done, the data of every event is the response
+     *
+     * @param sql The sql to execute
+     * @return The event stream, or 429 if there are too many pending tasks
+     * */
+    @PostMapping("e/events", produces = [MediaType.TEXT_EVENT_STREAM_VALUE])
+    fun executeWithEvents(@RequestBody sql: String): SseEmitter {
+        val emitter = SseEmitter(scrapeService.jobTimeout.toMillis() + ASYNC_TIMEOUT_MARGIN)
+        val hyperlink = scrapeService.submitAsync(ScrapeRequest(sql)) { stage, response ->
+            emitter.send(SseEmitter.event().name(stage.eventName).data(response, MediaType.APPLICATION_JSON))
+        }
+        hyperlink.whenComplete { response, _ ->
+            try {
+                val event = SseEmitter.event().name(ScrapeStage.DONE.eventName)
+                emitter.send(event.data(response ?: hyperlink.response, MediaType.APPLICATION_JSON))
+                emitter.complete()
+            } catch (e: IOException) {
+                emitter.completeWithError(e)
+            }
+        }
+        return emitter
+    }
+
+    /**
+     * Execute a sql immediately and stream the result set
+     *
+     * @param sql The sql to execute
+     * @return The rows as a json array
+     * */
+    @PostMapping("q")
+    fun query(@RequestBody sql: String): StreamingResponseBody {
+        return StreamingResponseBody { out -> scrapeService.streamQuery(ScrapeRequest(sql), out) }
+    }
+
     /**
      * @param request The extract request
      * @return The uuid of the task
@@ -50,4 +124,15 @@ class ScrapeController(
         val request = ScrapeStatusRequest(uuid)
         return scrapeService.getStatus(request)
     }
+
+    /**
+     * A task not done in time is responded with 408
+     * */
+    private fun toResponseEntity(response: ScrapeResponse): ResponseEntity<ScrapeResponse> {
+        val status = when (response.statusCode) {
+            ResourceStatus.SC_REQUEST_TIMEOUT -> HttpStatus.REQUEST_TIMEOUT
+            else -> HttpStatus.OK
+        }
+        return ResponseEntity.status(status).body(response)
+    }
 }
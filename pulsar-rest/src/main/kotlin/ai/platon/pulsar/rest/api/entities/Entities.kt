@@ -16,6 +16,10 @@ data class ScrapeResponse(
     var pageContentBytes: Int = 0,
     var isDone: Boolean = false,
     var resultSet: List<Map<String, Any?>>? = null,
+    /**
+     * If the result set is truncated to the max number of rows, see scrape.api.max.rows
+     * */
+    var isTruncated: Boolean = false,
 ) {
     val status: String get() = ResourceStatus.getStatusText(statusCode)
     val pageStatus: String get() = ProtocolStatus.getMinorName(pageStatusCode)
@@ -27,6 +31,15 @@ data class ScrapeStatusRequest(
     val uuid: String,
 )
 
+/**
+ * The stages of a scrape task, a task is extracted without being fetched and parsed if the sql loads no page
+ * */
+enum class ScrapeStage {
+    QUEUED, FETCHED, PARSED, EXTRACTED, DONE;
+
+    val eventName get() = name.toLowerCase()
+}
+
 /**
  * W3 resources
  * */
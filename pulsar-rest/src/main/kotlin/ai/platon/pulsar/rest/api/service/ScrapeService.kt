@@ -2,55 +2,154 @@ package ai.platon.pulsar.rest.api.service
 
 import ai.platon.pulsar.PulsarSession
 import ai.platon.pulsar.common.ResourceStatus
+import ai.platon.pulsar.common.collect.FetchCache
+import ai.platon.pulsar.common.concurrent.ConcurrentExpiringLRUCache
+import ai.platon.pulsar.common.config.CapabilityTypes.*
+import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.crawl.common.GlobalCache
 import ai.platon.pulsar.persist.metadata.ProtocolStatusCodes
+import ai.platon.pulsar.ql.ResultRows
+import ai.platon.pulsar.ql.context.AbstractSQLContext
 import ai.platon.pulsar.rest.api.common.DegenerateScrapeHyperlink
 import ai.platon.pulsar.rest.api.common.ScrapeAPIUtils
 import ai.platon.pulsar.rest.api.common.ScrapeHyperlink
+import ai.platon.pulsar.rest.api.common.ScrapeQueueFullException
 import ai.platon.pulsar.rest.api.entities.ScrapeRequest
 import ai.platon.pulsar.rest.api.entities.ScrapeResponse
+import ai.platon.pulsar.rest.api.entities.ScrapeStage
 import ai.platon.pulsar.rest.api.entities.ScrapeStatusRequest
+import com.codahale.metrics.Gauge
 import org.slf4j.LoggerFactory
 import org.springframework.stereotype.Service
-import java.util.concurrent.ConcurrentSkipListMap
+import java.io.OutputStream
+import java.time.Duration
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 @Service
 class ScrapeService(
     val session: PulsarSession,
     val globalCache: GlobalCache,
 ) {
+    companion object {
+        const val DEFAULT_MAX_PENDING_JOBS = 1000
+        val DEFAULT_JOB_TIMEOUT: Duration = Duration.ofMinutes(2)
+        const val DEFAULT_RESPONSE_CAPACITY = 10_000
+        val DEFAULT_RESPONSE_TTL: Duration = Duration.ofMinutes(30)
+    }
+
     private val logger = LoggerFactory.getLogger(ScrapeService::class.java)
-    private val responseCache = ConcurrentSkipListMap<String, ScrapeResponse>()
+    private val conf get() = session.unmodifiedConfig
     private val fetchCaches get() = globalCache.fetchCaches
+    private val numPendingJobs = AtomicInteger()
+
+    /**
+     * The responses of the submitted tasks, a response is removed if it's expired or the store is full
+     * */
+    private val responseCache = ConcurrentExpiringLRUCache<ScrapeResponse>(
+        conf.getInt(SCRAPE_API_RESPONSE_CAPACITY, DEFAULT_RESPONSE_CAPACITY).toLong(),
+        conf.getDuration(SCRAPE_API_RESPONSE_TTL, DEFAULT_RESPONSE_TTL)
+    )
+
+    /**
+     * The max number of tasks in the crawl queues submitted by this service, a task is rejected if there are more
+     * */
+    var maxPendingJobs = conf.getInt(SCRAPE_API_MAX_PENDING_JOBS, DEFAULT_MAX_PENDING_JOBS)
+
+    /**
+     * A pending task fails if it's not done in time, so it does not hold an admission forever
+     * */
+    var jobTimeout: Duration = conf.getDuration(SCRAPE_API_JOB_TIMEOUT, DEFAULT_JOB_TIMEOUT)
+
+    val numRejected = AtomicLong()
+
+    val pendingJobs get() = numPendingJobs.get()
+
+    init {
+        AppMetrics.reg.registerAll(this, mapOf(
+            "pendingJobs" to Gauge { pendingJobs },
+            "rejectedJobs" to Gauge { numRejected.get() },
+            "storedResponses" to Gauge { responseCache.size }
+        ))
+    }
 
     /**
      * Execute a scrape task and wait until the execution is done,
      * for test purpose only, no customer should access this api
      * */
     fun executeQuery(request: ScrapeRequest): ScrapeResponse {
-        val hyperlink = createScrapeHyperlink(request)
-        fetchCaches.highestCache.reentrantQueue.add(hyperlink)
-        return hyperlink.get(2, TimeUnit.MINUTES)
+        return submitAsync(request).get(jobTimeout.toMillis(), TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * Execute a sql immediately without loading a page in the crawl loop, and write the result set as a json
+     * array, the rows are written one by one as they are read, the result set is never copied
+     * */
+    fun streamQuery(request: ScrapeRequest, out: OutputStream) {
+        val sqlContext = session.context as AbstractSQLContext
+        sqlContext.executeQuery(request.sql) { rs -> ResultRows.writeJson(rs, out.bufferedWriter()) }
     }
 
     /**
      * Submit a scraping task
+     *
+     * @throws ScrapeQueueFullException if there are too many pending tasks
      * */
     fun submitJob(request: ScrapeRequest): String {
-        val hyperlink = createScrapeHyperlink(request)
-        responseCache[hyperlink.uuid] = hyperlink.response
-        fetchCaches.normalCache.reentrantQueue.add(hyperlink)
-        return hyperlink.uuid
+        return submit(request, fetchCaches.normalCache).uuid
+    }
+
+    /**
+     * Submit a scraping task with the highest priority, the returned hyperlink is a future of the response,
+     * it's completed in the crawl loop, so no thread waits for the task
+     *
+     * @param onProgress Listen to the progress of the task, starts from [ScrapeStage.QUEUED]
+     * @throws ScrapeQueueFullException if there are too many pending tasks
+     * */
+    fun submitAsync(
+        request: ScrapeRequest, onProgress: ((ScrapeStage, ScrapeResponse) -> Unit)? = null
+    ): ScrapeHyperlink {
+        return submit(request, fetchCaches.highestCache, onProgress)
     }
 
     /**
      * Get the response
      * */
     fun getStatus(request: ScrapeStatusRequest): ScrapeResponse {
-        return responseCache.computeIfAbsent(request.uuid) {
-            ScrapeResponse(request.uuid, ResourceStatus.SC_NOT_FOUND, ProtocolStatusCodes.NOT_FOUND)
+        return responseCache.getDatum(request.uuid)
+            ?: ScrapeResponse(request.uuid, ResourceStatus.SC_NOT_FOUND, ProtocolStatusCodes.NOT_FOUND)
+    }
+
+    private fun submit(
+        request: ScrapeRequest, fetchCache: FetchCache, onProgress: ((ScrapeStage, ScrapeResponse) -> Unit)? = null
+    ): ScrapeHyperlink {
+        if (numPendingJobs.incrementAndGet() > maxPendingJobs) {
+            numPendingJobs.decrementAndGet()
+            numRejected.incrementAndGet()
+            throw ScrapeQueueFullException("Too many pending scrape tasks, max $maxPendingJobs")
         }
+
+        val hyperlink = createScrapeHyperlink(request)
+        onProgress?.let { hyperlink.onProgress(it) }
+        // a task not done in time is completed with a timeout response, so every listener sees the same result
+        val timeoutResponse = ScrapeResponse(hyperlink.uuid, ResourceStatus.SC_REQUEST_TIMEOUT,
+            ProtocolStatusCodes.REQUEST_TIMEOUT, isDone = true).apply { finishTime = createTime + jobTimeout }
+        hyperlink.completeOnTimeout(timeoutResponse, jobTimeout.toMillis(), TimeUnit.MILLISECONDS)
+        hyperlink.whenComplete { response, _ ->
+            numPendingJobs.decrementAndGet()
+            if (response === timeoutResponse) {
+                // a task still in the queue does not take the crawl loop any more
+                fetchCache.reentrantQueue.removeIf { it === hyperlink }
+                responseCache.putDatum(hyperlink.uuid, timeoutResponse)
+                logger.info("Scrape task is not done in {} #{}", jobTimeout, hyperlink.uuid)
+            }
+        }
+
+        responseCache.putDatum(hyperlink.uuid, hyperlink.response)
+        hyperlink.progress(ScrapeStage.QUEUED)
+        fetchCache.reentrantQueue.add(hyperlink)
+        return hyperlink
     }
 
     private fun createScrapeHyperlink(request: ScrapeRequest): ScrapeHyperlink {
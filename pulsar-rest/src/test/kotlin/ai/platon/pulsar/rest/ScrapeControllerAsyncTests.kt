@@ -0,0 +1,128 @@
+package ai.platon.pulsar.rest
+
+import ai.platon.pulsar.boot.autoconfigure.pulsar.test.PulsarTestContextInitializer
+import ai.platon.pulsar.common.ResourceStatus
+import ai.platon.pulsar.crawl.common.GlobalCache
+import ai.platon.pulsar.rest.api.common.ScrapeHyperlink
+import ai.platon.pulsar.rest.api.entities.ScrapeStatusRequest
+import ai.platon.pulsar.rest.api.service.ScrapeService
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.http.MediaType
+import org.springframework.test.context.ContextConfiguration
+import org.springframework.test.context.junit4.SpringRunner
+import org.springframework.test.web.servlet.MockMvc
+import org.springframework.test.web.servlet.MvcResult
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.*
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+/**
+ * Pages are fetched by the mock browser, see [PulsarTestContextInitializer]
+ * */
+@RunWith(SpringRunner::class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ContextConfiguration(initializers = [PulsarTestContextInitializer::class])
+class ScrapeControllerAsyncTests {
+
+    @Autowired
+    private lateinit var mockMvc: MockMvc
+
+    @Autowired
+    private lateinit var service: ScrapeService
+
+    @Autowired
+    private lateinit var globalCache: GlobalCache
+
+    @Test
+    fun `When execute asynchronously then the response is deferred`() {
+        val result = perform("/x/e/async", "select 1+1 as sum")
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk)
+            .andExpect(jsonPath("$.resultSet[0].sum").value(2))
+    }
+
+    @Test
+    fun `When load and select with events then the progress is sent`() {
+        val sql = "select dom_base_uri(dom) as uri from load_and_select('https://www.amazon.com/ -i 0s', ':root')"
+        val result = perform("/x/e/events", sql)
+
+        val content = result.response.contentAsString
+        val events = Regex("event:(\\w+)").findAll(content).map { it.groupValues[1] }.toList()
+        assertTrue(content) { events == listOf("queued", "fetched", "parsed", "extracted", "done") }
+        assertTrue(content) { "https://www.amazon.com/" in content }
+    }
+
+    @Test
+    fun `When execute with events without loading a page then the task is extracted directly`() {
+        val result = perform("/x/e/events", "select 1+1 as sum")
+
+        val content = result.response.contentAsString
+        val events = Regex("event:(\\w+)").findAll(content).map { it.groupValues[1] }.toList()
+        assertTrue(content) { events == listOf("queued", "extracted", "done") }
+    }
+
+    @Test
+    fun `When too many tasks are pending then the submission is rejected`() {
+        val maxPendingJobs = service.maxPendingJobs
+        try {
+            service.maxPendingJobs = 0
+            mockMvc.perform(post("/x/e/async").contentType(MediaType.TEXT_PLAIN).content("select 1+1 as sum"))
+                .andExpect(status().isTooManyRequests)
+            mockMvc.perform(post("/x/s").contentType(MediaType.TEXT_PLAIN).content("select 1+1 as sum"))
+                .andExpect(status().isTooManyRequests)
+        } finally {
+            service.maxPendingJobs = maxPendingJobs
+        }
+    }
+
+    @Test
+    fun `When a task is not done in time then the response is 408 and the task is removed`() {
+        val jobTimeout = service.jobTimeout
+        val pendingJobs = service.pendingJobs
+        try {
+            service.jobTimeout = Duration.ofMillis(1)
+            val sql = "select dom_base_uri(dom) as uri from load_and_select('https://www.amazon.com/ -i 0s', ':root')"
+            val result = mockMvc.perform(post("/x/e/async").contentType(MediaType.TEXT_PLAIN).content(sql))
+                .andExpect(request().asyncStarted())
+                .andReturn()
+            result.getAsyncResult(jobTimeout.toMillis())
+
+            mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isRequestTimeout)
+                .andExpect(jsonPath("$.statusCode").value(ResourceStatus.SC_REQUEST_TIMEOUT))
+            val uuid = Regex("\"uuid\":\"([^\"]+)\"").find(result.response.contentAsString)!!.groupValues[1]
+
+            // the service cleans up after the controller's callback, wait for it
+            var i = 0
+            while (service.pendingJobs > pendingJobs && i++ < 100) {
+                Thread.sleep(50)
+            }
+            assertEquals(pendingJobs, service.pendingJobs)
+            assertEquals(ResourceStatus.SC_REQUEST_TIMEOUT, service.getStatus(ScrapeStatusRequest(uuid)).statusCode)
+            val queue = globalCache.fetchCaches.highestCache.reentrantQueue
+            assertTrue { queue.none { it is ScrapeHyperlink && it.uuid == uuid } }
+        } finally {
+            service.jobTimeout = jobTimeout
+        }
+    }
+
+    /**
+     * Perform an async request and wait until the task is done
+     * */
+    private fun perform(uri: String, sql: String): MvcResult {
+        val result = mockMvc.perform(post(uri).contentType(MediaType.TEXT_PLAIN).content(sql))
+            .andExpect(request().asyncStarted())
+            .andReturn()
+        result.getAsyncResult(service.jobTimeout.toMillis())
+        return result
+    }
+}
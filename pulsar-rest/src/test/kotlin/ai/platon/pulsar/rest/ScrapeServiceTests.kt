@@ -63,6 +63,21 @@ class ScrapeServiceTests {
         assertTrue { actualUrl == url }
     }
 
+    @Test
+    fun `When select a dom column then the dom is returned as a string`() {
+        val url = "https://www.amazon.com/"
+        val sql = "select dom, dom_base_uri(dom) as uri from load_and_select('$url -i 10s', ':root')"
+        val request = ScrapeRequest(sql)
+
+        val response = service.executeQuery(request)
+        val records = response.resultSet
+        assertNotNull(records)
+
+        assertTrue { records.isNotEmpty() }
+        assertTrue { records[0]["dom"] is String }
+        assertEquals(url, records[0]["uri"])
+    }
+
     @Ignore("Disabled temporary, amazon_suggestions have to use a real browser with js support, not a mock browser")
     @Test
     fun `When call amazon_suggestions then the suggestions are retrieved`() {
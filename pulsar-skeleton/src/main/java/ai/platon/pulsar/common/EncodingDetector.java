@@ -206,7 +206,10 @@ public class EncodingDetector {
         clearClues();
 
         autoDetectClues(page, true);
-        addClue(sniffCharacterEncoding(page.getContentAsBytes()), "sniffed");
+        ByteBuffer content = page.getContent();
+        if (content != null) {
+            addClue(sniffCharacterEncoding(content), "sniffed");
+        }
 
         return guessEncoding(page, defaultCharEncoding);
     }
@@ -225,6 +228,19 @@ public class EncodingDetector {
                 parseCharacterEncoding(contentType), filter);
     }
 
+    /**
+     * Sniff the encoding from the first <code>CHUNK_SIZE</code> bytes of the content, only these bytes are copied,
+     * the position of the buffer is not changed
+     *
+     * @param content the content of an html file
+     * @see #sniffCharacterEncoding(byte[])
+     */
+    public String sniffCharacterEncoding(ByteBuffer content) {
+        byte[] head = new byte[Math.min(content.remaining(), CHUNK_SIZE)];
+        content.duplicate().get(head);
+        return sniffCharacterEncoding(head);
+    }
+
     /**
      * Given a <code>byte[]</code> representing an html file of an
      * <em>unknown</em> encoding, read out 'charset' parameter in the meta tag
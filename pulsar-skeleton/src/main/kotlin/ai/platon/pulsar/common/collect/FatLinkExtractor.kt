@@ -25,7 +25,11 @@ data class PageFatLink(
 
 class FatLinkExtractor(
     val session: PulsarSession,
-    val normalizer: UrlNormalizerPipeline = UrlNormalizerPipeline()
+    val normalizer: UrlNormalizerPipeline = UrlNormalizerPipeline(),
+    /**
+     * If not null, a link seen before is skipped, and a link passes all the filters is put into it
+     * */
+    val seenUrls: ConcurrentBloomFilter? = null
 ) {
     private val log = LoggerFactory.getLogger(FatLinkExtractor::class.java)
 
@@ -38,6 +42,7 @@ class FatLinkExtractor(
             var freshLinks: Int = 0,
             var lastFailedLinks: Int = 0,
             var expiredLinks: Int = 0,
+            var seenLinks: Int = 0,
             var fetchLinks: Int = 0,
             var badSeeds: Int = 0,
             var loadedSeeds: Int = 0
@@ -51,6 +56,7 @@ class FatLinkExtractor(
             "freshLinks" to Gauge { globalCounters.freshLinks },
             "lastFailedLinks" to Gauge { globalCounters.lastFailedLinks },
             "expiredLinks" to Gauge { globalCounters.expiredLinks },
+            "seenLinks" to Gauge { globalCounters.seenLinks },
             "fetchLinks" to Gauge { globalCounters.fetchLinks },
             "loadedSeeds" to Gauge { globalCounters.loadedSeeds }
         )
@@ -181,6 +187,7 @@ class FatLinkExtractor(
             .onEach { ++counters.allowLinks; ++globalCounters.allowLinks }
             .mapNotNull { normalizeOrNull(it) }
             .filter { shouldFetchVividPage(it.url, options.itemExpires, now) }
+            .filter { isUnseen(it.url) }
             .map { StatefulHyperlink(it.url, it.text, it.order, referer = fatLinkSpec) }
             .onEach { it.args = "-i 0s" }
             .toList()
@@ -205,10 +212,25 @@ class FatLinkExtractor(
             .filterNot { it in denyList }
             .filter { it.url.matches(urlRegex) }
             .filter { shouldFetchVividPage(it.url, options.itemExpires, now) }
+            .filter { isUnseen(it.url) }
             .onEach { it.args = "-i 0s" }
             .toList()
     }
 
+    /**
+     * Check the seen urls after all the other filters, so a link dropped by a filter, for example, the url pattern
+     * of a seed, is still collectable for another seed
+     * */
+    private fun isUnseen(url: String): Boolean {
+        if (seenUrls == null || seenUrls.put(url)) {
+            return true
+        }
+
+        ++counters.seenLinks
+        ++globalCounters.seenLinks
+        return false
+    }
+
     /**
      * TODO: the logic is different from the one in LoadComponent
      * */
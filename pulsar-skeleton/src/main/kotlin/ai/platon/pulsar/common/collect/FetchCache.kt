@@ -1,6 +1,8 @@
 package ai.platon.pulsar.common.collect
 
+import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.urls.UrlAware
+import com.codahale.metrics.Gauge
 import java.time.Duration
 import java.time.Instant
 import java.util.*
@@ -23,6 +25,14 @@ interface FetchCache {
 abstract class AbstractFetchCache(
     override val name: String = ""
 ) : FetchCache {
+    companion object {
+        /**
+         * The expected number of urls the history of a standalone fetch cache remembers, the caches of a
+         * fetch cache manager share a larger history
+         * */
+        const val DEFAULT_HISTORY_CAPACITY = 100_000
+    }
+
     override fun removeDeceased() {
         val now = Instant.now()
         queues.forEach { it.removeIf { it.deadTime < now } }
@@ -33,10 +43,36 @@ abstract class AbstractFetchCache(
     }
 }
 
-open class ConcurrentFetchCache(name: String = "") : AbstractFetchCache(name) {
-    override val nonReentrantQueue = ConcurrentNonReentrantQueue<UrlAware>()
-    override val nReentrantQueue = ConcurrentNEntrantQueue<UrlAware>(3)
+open class ConcurrentFetchCache(
+    name: String,
+    /**
+     * The history of the queues, it can be shared with other caches
+     * */
+    history: ConcurrentCountingBloomFilter
+) : AbstractFetchCache(name) {
+
+    constructor(
+        name: String = "",
+        /**
+         * The expected number of urls the history of the queues remembers
+         * */
+        historyCapacity: Int = DEFAULT_HISTORY_CAPACITY,
+        /**
+         * The probability that a new url is rejected as a seen one
+         * */
+        historyFpp: Double = ConcurrentCountingBloomFilter.DEFAULT_FPP
+    ) : this(name, ConcurrentCountingBloomFilter(historyCapacity, historyFpp))
+
+    override val nonReentrantQueue = ConcurrentNonReentrantQueue<UrlAware>(history)
+    override val nReentrantQueue = ConcurrentNEntrantQueue<UrlAware>(3, history)
     override val reentrantQueue = ConcurrentLinkedQueue<UrlAware>()
+
+    init {
+        mapOf(
+            "nonReentrantRejections" to Gauge { nonReentrantQueue.numRejected },
+            "nEntrantRejections" to Gauge { nReentrantQueue.numRejected }
+        ).let { AppMetrics.reg.registerAll(this, name, it) }
+    }
 }
 
 class LoadingFetchCache(
@@ -59,7 +95,11 @@ class LoadingFetchCache(
     /**
      * The transformer
      * */
-    val transformer: (UrlAware) -> UrlAware = { it }
+    val transformer: (UrlAware) -> UrlAware = { it },
+    /**
+     * The history of the queues, it can be shared with other caches
+     * */
+    history: ConcurrentCountingBloomFilter = ConcurrentCountingBloomFilter(DEFAULT_HISTORY_CAPACITY)
 ) : AbstractFetchCache(name), Loadable<UrlAware> {
 
     companion object {
@@ -69,9 +109,9 @@ class LoadingFetchCache(
     }
 
     override val nonReentrantQueue =
-        ConcurrentNonReentrantLoadingQueue(urlLoader, UrlGroup(name, G_NON_REENTRANT, priority, capacity), transformer)
+        ConcurrentNonReentrantLoadingQueue(urlLoader, UrlGroup(name, G_NON_REENTRANT, priority, capacity), transformer, history)
     override val nReentrantQueue =
-        ConcurrentNEntrantLoadingQueue(urlLoader, UrlGroup(name, G_N_ENTRANT, priority, capacity), 3, transformer)
+        ConcurrentNEntrantLoadingQueue(urlLoader, UrlGroup(name, G_N_ENTRANT, priority, capacity), 3, transformer, history)
     override val reentrantQueue = ConcurrentLoadingQueue(urlLoader, UrlGroup(name, G_REENTRANT, priority, capacity), transformer)
     override val queues: List<Queue<UrlAware>>
         get() = listOf(nonReentrantQueue, nReentrantQueue, reentrantQueue)
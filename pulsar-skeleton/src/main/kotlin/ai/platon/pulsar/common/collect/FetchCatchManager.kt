@@ -2,6 +2,8 @@ package ai.platon.pulsar.common.collect
 
 import ai.platon.pulsar.common.Priority13
 import ai.platon.pulsar.common.collect.FetchCacheManager.Companion.REAL_TIME_PRIORITY
+import ai.platon.pulsar.common.config.CapabilityTypes.FETCH_CACHE_HISTORY_CAPACITY
+import ai.platon.pulsar.common.config.CapabilityTypes.FETCH_CACHE_HISTORY_FPP
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.urls.UrlAware
 import com.google.common.primitives.Ints
@@ -104,6 +106,15 @@ abstract class AbstractFetchCacheManager(val conf: ImmutableConfig) : FetchCache
  * The global cache
  * */
 open class ConcurrentFetchCacheManager(conf: ImmutableConfig) : AbstractFetchCacheManager(conf) {
+    /**
+     * The history shared by all the queues of all the caches, the hashes are salted by the queues,
+     * so each queue counts it's own urls
+     * */
+    protected val history = ConcurrentCountingBloomFilter(
+        conf.getInt(FETCH_CACHE_HISTORY_CAPACITY, ConcurrentCountingBloomFilter.DEFAULT_EXPECTED_INSERTIONS),
+        conf.getDouble(FETCH_CACHE_HISTORY_FPP, ConcurrentCountingBloomFilter.DEFAULT_FPP)
+    )
+
     /**
      * The priority fetch caches
      * */
@@ -114,7 +125,7 @@ open class ConcurrentFetchCacheManager(conf: ImmutableConfig) : AbstractFetchCac
     /**
      * The real time fetch cache
      * */
-    override val realTimeCache: FetchCache = ConcurrentFetchCache("realtime")
+    override val realTimeCache: FetchCache = createFetchCache("realtime")
 
     /**
      * The delayed fetch cache
@@ -123,12 +134,14 @@ open class ConcurrentFetchCacheManager(conf: ImmutableConfig) : AbstractFetchCac
 
     override fun initialize() {
         if (initialized.compareAndSet(false, true)) {
-            Priority13.values().forEach { caches[it.value] = ConcurrentFetchCache(it.name) }
+            Priority13.values().forEach { caches[it.value] = createFetchCache(it.name) }
         }
     }
+
+    private fun createFetchCache(name: String): FetchCache = ConcurrentFetchCache(name, history)
 }
 
-class LoadingFetchCacheManager(
+open class LoadingFetchCacheManager(
     val urlLoader: ExternalUrlLoader,
     val capacity: Int = 10_000,
     conf: ImmutableConfig,
@@ -136,12 +149,12 @@ class LoadingFetchCacheManager(
     /**
      * The real time fetch cache
      * */
-    override val realTimeCache: FetchCache = LoadingFetchCache("realtime", urlLoader, REAL_TIME_PRIORITY, capacity)
+    override val realTimeCache: FetchCache = LoadingFetchCache("realtime", urlLoader, REAL_TIME_PRIORITY, capacity, history = history)
 
     override fun initialize() {
         if (initialized.compareAndSet(false, true)) {
             Priority13.values().forEach {
-                caches[it.value] = LoadingFetchCache(it.name, urlLoader, it.value, capacity)
+                caches[it.value] = LoadingFetchCache(it.name, urlLoader, it.value, capacity, history = history)
             }
         }
     }
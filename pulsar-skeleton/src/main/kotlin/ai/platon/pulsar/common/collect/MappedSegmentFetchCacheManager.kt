@@ -0,0 +1,150 @@
+package ai.platon.pulsar.common.collect
+
+import ai.platon.pulsar.common.config.ImmutableConfig
+import java.nio.file.Path
+import java.time.Duration
+import java.util.*
+import java.util.concurrent.DelayQueue
+
+/**
+ * A delay queue whose items are kept in a [UrlSegmentLog] too, the items not polled yet are recovered
+ * from the log after a restart.
+ *
+ * The committed offset of the log is the offset of the oldest item in the queue, so an item can be recovered
+ * more than once if the items are not polled in the order they are added.
+ *
+ * Committing writes a checkpoint file, so the offset is committed after every [commitBatchSize] removals, or
+ * if the last commit is older than [commitInterval], and when the queue is closed. The items removed after
+ * the last commit are recovered again after a crash.
+ * */
+class PersistentDelayQueue(
+    val log: UrlSegmentLog,
+    val commitBatchSize: Int = DEFAULT_COMMIT_BATCH_SIZE,
+    val commitInterval: Duration = DEFAULT_COMMIT_INTERVAL
+) : AbstractQueue<DelayUrl>(), AutoCloseable {
+    companion object {
+        const val DEFAULT_COMMIT_BATCH_SIZE = 100
+        val DEFAULT_COMMIT_INTERVAL: Duration = Duration.ofSeconds(1)
+    }
+
+    private val queue = DelayQueue<DelayUrl>()
+    private val offsets = IdentityHashMap<DelayUrl, Long>()
+    private val pendingOffsets = TreeSet<Long>()
+    private var numUncommitted = 0
+    private var lastCommitTime = System.currentTimeMillis()
+
+    init {
+        val now = System.currentTimeMillis()
+        log.read(Int.MAX_VALUE) {
+            val delayUrl = DelayUrl(it.url, Duration.ofMillis(it.time - now))
+            queue.offer(delayUrl)
+            offsets[delayUrl] = it.offset
+            pendingOffsets.add(it.offset)
+        }
+    }
+
+    override val size: Int
+        @Synchronized get() = queue.size
+
+    @Synchronized
+    override fun offer(e: DelayUrl): Boolean {
+        val offset = log.append(e.url, e.startTime)
+        queue.offer(e)
+        offsets[e] = offset
+        pendingOffsets.add(offset)
+        return true
+    }
+
+    @Synchronized
+    override fun peek(): DelayUrl? = queue.peek()
+
+    @Synchronized
+    override fun poll(): DelayUrl? = queue.poll()?.also { release(it) }
+
+    @Synchronized
+    override fun clear() {
+        queue.clear()
+        offsets.clear()
+        pendingOffsets.clear()
+        commit()
+    }
+
+    /**
+     * Commit the offset of the oldest item in the queue
+     * */
+    @Synchronized
+    fun commit() {
+        log.commit(if (pendingOffsets.isEmpty()) log.writeOffset else pendingOffsets.first())
+        numUncommitted = 0
+        lastCommitTime = System.currentTimeMillis()
+    }
+
+    @Synchronized
+    override fun close() {
+        if (numUncommitted > 0) {
+            commit()
+        }
+    }
+
+    @Synchronized
+    override fun iterator(): MutableIterator<DelayUrl> {
+        val iterator = queue.iterator()
+        return object : MutableIterator<DelayUrl> {
+            private var current: DelayUrl? = null
+
+            override fun hasNext() = iterator.hasNext()
+
+            override fun next() = iterator.next().also { current = it }
+
+            override fun remove() {
+                synchronized(this@PersistentDelayQueue) {
+                    iterator.remove()
+                    current?.let { release(it) }
+                    current = null
+                }
+            }
+        }
+    }
+
+    private fun release(delayUrl: DelayUrl) {
+        offsets.remove(delayUrl)?.let { pendingOffsets.remove(it) }
+        ++numUncommitted
+        if (numUncommitted >= commitBatchSize || System.currentTimeMillis() - lastCommitTime >= commitInterval.toMillis()) {
+            commit()
+        }
+    }
+}
+
+/**
+ * A fetch cache manager which spills the urls to memory mapped segment files under the directory,
+ * the heap holds only a page of urls for each queue, and the pending and delayed urls are recovered
+ * after a restart.
+ * */
+class MappedSegmentFetchCacheManager(
+    val segmentLoader: MappedSegmentUrlLoader,
+    capacity: Int = 10_000,
+    conf: ImmutableConfig,
+) : LoadingFetchCacheManager(segmentLoader, capacity, conf), AutoCloseable {
+
+    constructor(directory: Path, conf: ImmutableConfig) : this(MappedSegmentUrlLoader(directory), conf = conf)
+
+    private val persistentDelayCache = PersistentDelayQueue(segmentLoader.openLog("delay"))
+
+    /**
+     * The delayed fetch cache
+     * */
+    override val delayCache: Queue<DelayUrl> get() = persistentDelayCache
+
+    /**
+     * Commit the delayed urls and force all the urls to the storage device
+     * */
+    fun flush() {
+        persistentDelayCache.commit()
+        segmentLoader.flush()
+    }
+
+    override fun close() {
+        persistentDelayCache.close()
+        segmentLoader.close()
+    }
+}
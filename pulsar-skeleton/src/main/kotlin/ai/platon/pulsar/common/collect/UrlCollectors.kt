@@ -2,6 +2,7 @@ package ai.platon.pulsar.common.collect
 
 import ai.platon.pulsar.PulsarSession
 import ai.platon.pulsar.common.*
+import ai.platon.pulsar.common.config.CapabilityTypes.SEEN_URLS_FILTER_ENABLED
 import ai.platon.pulsar.common.urls.*
 import ai.platon.pulsar.common.urls.preprocess.UrlNormalizerPipeline
 import ai.platon.pulsar.persist.WebDb
@@ -49,6 +50,7 @@ open class QueueCollector(
  * 1. all urls are restricted by css outLinkSelector
  * 2. all urls are restricted by urlPattern
  * 3. all urls have to not be fetched before or expired against the last version
+ * 4. all urls have to not be collected before if [SEEN_URLS_FILTER_ENABLED] is set
  * */
 open class HyperlinkCollector(
     /**
@@ -62,14 +64,19 @@ open class HyperlinkCollector(
     /**
      * The priority of this collector
      * */
-    priority: Priority13 = Priority13.NORMAL
+    priority: Priority13 = Priority13.NORMAL,
+    /**
+     * If true, a link collected before by any collector is skipped, see [ai.platon.pulsar.crawl.common.GlobalCache.seenUrls]
+     * */
+    isSeenUrlsFilterEnabled: Boolean = session.sessionConfig.getBoolean(SEEN_URLS_FILTER_ENABLED, false)
 ) : AbstractPriorityDataCollector<UrlAware>(priority), CrawlableFatLinkCollector {
     private val log = LoggerFactory.getLogger(HyperlinkCollector::class.java)
 
     var urlNormalizer: UrlNormalizerPipeline = UrlNormalizerPipeline()
 
     private val webDb = session.context.getBean<WebDb>()
-    private val fatLinkExtractor = FatLinkExtractor(session, urlNormalizer)
+    private val seenUrls = if (isSeenUrlsFilterEnabled) session.globalCache.seenUrls else null
+    private val fatLinkExtractor = FatLinkExtractor(session, urlNormalizer, seenUrls)
 
     private var parsedSeedCount = 0
     private val averageLinkCount
@@ -157,11 +164,15 @@ open class HyperlinkCollector(
     }
 }
 
+/**
+ * Collect hyper links from the seeds again and again, the links are collected every round, so the seen urls
+ * are not filtered out
+ * */
 open class CircularHyperlinkCollector(
     session: PulsarSession,
     seeds: Queue<NormUrl>,
     priority: Priority13 = Priority13.HIGHER
-) : HyperlinkCollector(session, seeds, priority) {
+) : HyperlinkCollector(session, seeds, priority, isSeenUrlsFilterEnabled = false) {
     private val log = LoggerFactory.getLogger(CircularHyperlinkCollector::class.java)
     protected val iterator = Iterators.cycle(seeds)
 
@@ -1,7 +1,7 @@
 package ai.platon.pulsar.common.collect
 
+import ai.platon.pulsar.common.collect.ConcurrentCountingBloomFilter.Companion.hash
 import ai.platon.pulsar.common.urls.UrlAware
-import com.google.common.collect.HashMultiset
 
 class ConcurrentLoadingQueue(
     loader: ExternalUrlLoader,
@@ -9,23 +9,28 @@ class ConcurrentLoadingQueue(
     transformer: (UrlAware) -> UrlAware = { it }
 ) : AbstractLoadingQueue(loader, group, transformer = transformer)
 
+/**
+ * A loading queue which accepts an url only once, the history can be shared with other queues,
+ * see [ConcurrentNEntrantQueue]
+ * */
 class ConcurrentNonReentrantLoadingQueue(
     loader: ExternalUrlLoader,
     group: UrlGroup,
-    transformer: (UrlAware) -> UrlAware = { it }
+    transformer: (UrlAware) -> UrlAware = { it },
+    private val history: ConcurrentCountingBloomFilter = ConcurrentCountingBloomFilter(AbstractFetchCache.DEFAULT_HISTORY_CAPACITY)
 ) : AbstractLoadingQueue(loader, group, transformer = transformer) {
-    private val historyHash = HashSet<Int>()
+    private val salt = ConcurrentCountingBloomFilter.nextSalt()
 
     @Synchronized
-    fun count(url: UrlAware) = if (historyHash.contains(url.hashCode())) 1 else 0
+    fun count(url: UrlAware) = if (history.count(hash(url) xor salt) > 0) 1 else 0
 
     @Synchronized
     override fun offer(url: UrlAware): Boolean {
-        val hashCode = url.hashCode()
+        val hash = hash(url) xor salt
 
-        if (!historyHash.contains(hashCode)) {
+        if (history.count(hash) == 0) {
             return if (!url.isPersistable || freeSlots > 0) {
-                historyHash.add(hashCode)
+                history.add(hash)
                 urlCache.add(url)
             } else {
                 overflow(url)
@@ -37,25 +42,29 @@ class ConcurrentNonReentrantLoadingQueue(
     }
 }
 
+/**
+ * A loading queue which accepts an url at most n + 1 times, the history can be shared with other queues,
+ * see [ConcurrentNEntrantQueue]
+ * */
 class ConcurrentNEntrantLoadingQueue(
     loader: ExternalUrlLoader,
     group: UrlGroup,
     val n: Int = 3,
-    transformer: (UrlAware) -> UrlAware = { it }
+    transformer: (UrlAware) -> UrlAware = { it },
+    private val history: ConcurrentCountingBloomFilter = ConcurrentCountingBloomFilter(AbstractFetchCache.DEFAULT_HISTORY_CAPACITY)
 ) : AbstractLoadingQueue(loader, group, transformer = transformer) {
-
-    private val historyHash = HashMultiset.create<Int>()
+    private val salt = ConcurrentCountingBloomFilter.nextSalt()
 
     @Synchronized
-    fun count(url: UrlAware) = historyHash.count(url.hashCode())
+    fun count(url: UrlAware) = history.count(hash(url) xor salt)
 
     @Synchronized
     override fun offer(url: UrlAware): Boolean {
-        val hashCode = url.hashCode()
+        val hash = hash(url) xor salt
 
-        if (historyHash.count(hashCode) <= n) {
+        if (history.count(hash) <= n) {
             return if (!url.isPersistable || freeSlots > 0) {
-                historyHash.add(hashCode)
+                history.add(hash)
                 urlCache.add(url)
             } else {
                 overflow(url)
@@ -33,11 +33,10 @@ class CommonUrlNormalizer(private val urlNormalizers: CrawlUrlNormalizers? = nul
     fun normalize(url: UrlAware, options: LoadOptions, toItemOption: Boolean): NormUrl {
         val (spec, args0) = Urls.splitUrlArgs(url.url)
         val args1 = url.args ?: ""
-        val args2 = options.toString()
         // the later on overwriting the ones before
-        val args = "$args2 $args1 $args0".trim()
+        val template = LoadOptionsTemplate.of(options).overlay("$args1 $args0")
 
-        val finalOptions = initOptions(LoadOptions.parse(args, options.conf), toItemOption)
+        val finalOptions = initOptions(template.createOptions(options.conf), toItemOption)
         if (url is ListenableHyperlink) {
             registerEventHandlers(url, finalOptions)
         }
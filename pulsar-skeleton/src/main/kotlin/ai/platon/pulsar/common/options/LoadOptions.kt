@@ -478,7 +478,7 @@ open class LoadOptions(
     /**
      * Create a new LoadOptions
      * */
-    open fun clone() = parse(toString(), conf)
+    open fun clone() = LoadOptionsTemplate.of(this).createOptions(conf)
 
     companion object {
         val default = LoadOptions("", VolatileConfig())
@@ -551,7 +551,13 @@ open class LoadOptions(
 
         fun create(conf: VolatileConfig) = LoadOptions(arrayOf(), conf).apply { parse() }
 
-        fun parse(args: String, conf: VolatileConfig) = LoadOptions(args.trim(), conf).apply { parse() }
+        /**
+         * Parse the arguments, the arguments are parsed by JCommander only once and the result is cached,
+         * see [LoadOptionsTemplate]
+         * */
+        fun parse(args: String, conf: VolatileConfig) = LoadOptionsTemplate.compile(args).createOptions(conf)
+
+        fun parseWithoutCache(args: String, conf: VolatileConfig) = LoadOptions(args.trim(), conf).apply { parse() }
 
         /**
          * Create a new LoadOptions with o1 and o2's items, o2 overrides o1
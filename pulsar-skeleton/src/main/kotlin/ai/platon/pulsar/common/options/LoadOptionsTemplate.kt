@@ -0,0 +1,157 @@
+package ai.platon.pulsar.common.options
+
+import ai.platon.pulsar.common.concurrent.ConcurrentSegmentedCache
+import ai.platon.pulsar.common.config.VolatileConfig
+import com.beust.jcommander.Parameter
+import java.lang.reflect.Field
+
+/**
+ * The immutable, pre-parsed form of load arguments.
+ *
+ * A template holds the values of the load options assigned by the arguments, it's parsed by JCommander only once
+ * and then any number of [LoadOptions] can be created from it, without JCommander and without a round trip
+ * through [LoadOptions.toString].
+ *
+ * [overlay] applies another template on this one, the options assigned by the other template override the ones of
+ * this template, so `compile(args1).overlay(compile(args2))` is the same as `compile("$args1 $args2")`.
+ *
+ * The compiled templates are cached by the argument string, see [compile].
+ * */
+class LoadOptionsTemplate private constructor(
+    /**
+     * The arguments this template is compiled from
+     * */
+    val args: String,
+    /**
+     * The option values indexed by the position in [parameterFields], [UNSET] if the option is not assigned
+     * */
+    private val values: Array<Any?>
+) {
+    companion object {
+        const val DEFAULT_CACHE_CAPACITY = 10_000L
+
+        private val UNSET = Any()
+
+        /**
+         * The fields annotated by [Parameter]
+         * */
+        private val parameterFields: Array<Field> = LoadOptions.declaredFields
+            .filter { field -> field.annotations.any { it is Parameter } }
+            .onEach { it.isAccessible = true }
+            .toTypedArray()
+
+        /**
+         * Option name to the index of the field and the number of the values it takes
+         * */
+        private val optionArities: Map<String, Pair<Int, Int>> = parameterFields.withIndex().flatMap { (i, field) ->
+            val parameter = field.annotations.filterIsInstance<Parameter>().first()
+            val isBoolean = field.type == Boolean::class.javaPrimitiveType || field.type == Boolean::class.javaObjectType
+            val arity = when {
+                parameter.arity >= 0 -> parameter.arity
+                isBoolean -> 0
+                else -> 1
+            }
+            parameter.names.map { it to (i to arity) }
+        }.toMap()
+
+        private val cache = ConcurrentSegmentedCache<String, LoadOptionsTemplate>(DEFAULT_CACHE_CAPACITY)
+
+        /**
+         * A template assigns nothing
+         * */
+        val EMPTY = LoadOptionsTemplate("", arrayOfNulls<Any>(parameterFields.size).also { it.fill(UNSET) })
+
+        /**
+         * Compile the arguments into a template, the compiled templates are cached by the arguments
+         * */
+        fun compile(args: String?): LoadOptionsTemplate {
+            val trimmedArgs = args?.trim() ?: return EMPTY
+            if (trimmedArgs.isEmpty()) {
+                return EMPTY
+            }
+
+            return cache.computeIfAbsent(trimmedArgs) { doCompile(it) }
+        }
+
+        /**
+         * Create a template which assigns all the options, with the values of the given options
+         * */
+        fun of(options: LoadOptions): LoadOptionsTemplate {
+            val values = arrayOfNulls<Any>(parameterFields.size)
+            parameterFields.forEachIndexed { i, field -> values[i] = field.get(options) }
+            return LoadOptionsTemplate("", values)
+        }
+
+        /**
+         * Clear the cached templates
+         * */
+        fun clearCache() = cache.clear()
+
+        private fun doCompile(args: String): LoadOptionsTemplate {
+            val options = LoadOptions.parseWithoutCache(args, VolatileConfig.UNSAFE)
+            val defaults = LoadOptions(arrayOf(), VolatileConfig.UNSAFE)
+
+            val assigned = BooleanArray(parameterFields.size)
+            val argv = options.argv
+            var i = 0
+            while (i < argv.size) {
+                val option = optionArities[argv[i]]
+                if (option != null) {
+                    assigned[option.first] = true
+                    // skip the values, so a value is never taken as an option
+                    i += option.second
+                }
+                ++i
+            }
+
+            val values = arrayOfNulls<Any>(parameterFields.size)
+            parameterFields.forEachIndexed { j, field ->
+                val value = field.get(options)
+                // an option might be changed without an explicit name, for example, by a converter
+                values[j] = if (assigned[j] || value != field.get(defaults)) value else UNSET
+            }
+
+            return LoadOptionsTemplate(args, values)
+        }
+    }
+
+    /**
+     * Create a new template, the options assigned by [other] override the options of this template
+     * */
+    fun overlay(other: LoadOptionsTemplate): LoadOptionsTemplate {
+        if (other === EMPTY) {
+            return this
+        }
+        if (this === EMPTY) {
+            return other
+        }
+
+        val merged = values.copyOf()
+        other.values.forEachIndexed { i, value ->
+            if (value !== UNSET) {
+                merged[i] = value
+            }
+        }
+        return LoadOptionsTemplate("$args ${other.args}".trim(), merged)
+    }
+
+    /**
+     * Create a new template, the options assigned by [args] override the options of this template
+     * */
+    fun overlay(args: String?): LoadOptionsTemplate = overlay(compile(args))
+
+    /**
+     * Create a new [LoadOptions], the options not assigned by this template have the default values
+     * */
+    fun createOptions(conf: VolatileConfig): LoadOptions {
+        val options = LoadOptions(arrayOf(), conf)
+        values.forEachIndexed { i, value ->
+            if (value !== UNSET) {
+                parameterFields[i].set(options, value)
+            }
+        }
+        return options
+    }
+
+    override fun toString() = args
+}
@@ -31,6 +31,10 @@ open class NormUrl constructor(
     val hrefSpec = href?.toString()
     val args = options.toString()
     val configuredUrl = "$spec $args"
+    /**
+     * The reversed url which is used as the key in the storage, it's computed only once
+     * */
+    val reversedUrl by lazy { Urls.reverseUrl(url) }
 
     val isEmpty get() = spec.isEmpty()
     val isNotEmpty get() = !isEmpty
@@ -163,6 +163,15 @@ abstract class AbstractPulsarContext(
         globalCache.documentCache.clear()
     }
 
+    /**
+     * Evict cached pages and documents until the caches hold no more than [ratio] of their capacities
+     * */
+    fun shrinkCaches(ratio: Double = GlobalCache.SHRINK_RATIO) {
+        if (!isActive) return
+
+        globalCache.shrinkCaches(ratio)
+    }
+
     /**
      * Normalize an url, the url can be one of the following:
      * 1. a configured url
@@ -35,7 +35,7 @@ class StaticPulsarContext(
     /**
      * The global cache
      * */
-    override val globalCache = getBeanOrNull() ?: GlobalCache(unmodifiedConfig)
+    override val globalCache = getBeanOrNull() ?: GlobalCache(unmodifiedConfig).also { registerClosable(it) }
     /**
      * The inject component
      * */
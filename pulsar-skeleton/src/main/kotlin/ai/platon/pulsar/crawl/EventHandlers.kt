@@ -446,7 +446,7 @@ abstract class AbstractJsEventHandler: JsEventHandler {
         if (delayMillis > 0) {
             delay(delayMillis)
         }
-        return driver.evaluate(expression)
+        return driver.evaluateDeferred(expression)
     }
 }
 
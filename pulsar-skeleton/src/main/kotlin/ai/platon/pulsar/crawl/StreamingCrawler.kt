@@ -6,10 +6,12 @@ import ai.platon.pulsar.common.collect.ConcurrentLoadingIterable
 import ai.platon.pulsar.common.collect.DelayUrl
 import ai.platon.pulsar.common.config.CapabilityTypes.BROWSER_MAX_ACTIVE_TABS
 import ai.platon.pulsar.common.config.CapabilityTypes.PRIVACY_CONTEXT_NUMBER
+import ai.platon.pulsar.common.config.ConfigKey
 import ai.platon.pulsar.common.measure.ByteUnit
 import ai.platon.pulsar.common.message.LoadedPageFormatter
 import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.options.LoadOptions
+import ai.platon.pulsar.common.options.LoadOptionsTemplate
 import ai.platon.pulsar.common.proxy.ProxyException
 import ai.platon.pulsar.common.proxy.ProxyInsufficientBalanceException
 import ai.platon.pulsar.common.proxy.ProxyPool
@@ -96,6 +98,9 @@ open class StreamingCrawler<T : UrlAware>(
         private val availableMemory get() = AppMetrics.availableMemory
         private val requiredMemory = 500 * 1024 * 1024L // 500 MiB
         private val remainingMemory get() = availableMemory - requiredMemory
+
+        private val PRIVACY_CONTEXT_NUMBER_KEY = ConfigKey.ofInt(PRIVACY_CONTEXT_NUMBER, 2)
+        private val BROWSER_MAX_ACTIVE_TABS_KEY = ConfigKey.ofInt(BROWSER_MAX_ACTIVE_TABS, AppContext.NCPU)
         private var contextLeakWaitingTime = Duration.ZERO
         private var proxyVendorWaitingTime = Duration.ZERO
         private var criticalWarning: CriticalWarning? = null
@@ -125,14 +130,15 @@ open class StreamingCrawler<T : UrlAware>(
     private val logger = getLogger(StreamingCrawler::class)
     private val taskLogger = getLogger(StreamingCrawler::class, ".Task")
     private val conf = session.sessionConfig
-    private val numPrivacyContexts get() = conf.getInt(PRIVACY_CONTEXT_NUMBER, 2)
-    private val numMaxActiveTabs get() = conf.getInt(BROWSER_MAX_ACTIVE_TABS, AppContext.NCPU)
+    private val numPrivacyContexts get() = conf[PRIVACY_CONTEXT_NUMBER_KEY]
+    private val numMaxActiveTabs get() = conf[BROWSER_MAX_ACTIVE_TABS_KEY]
     private val fetchConcurrency get() = numPrivacyContexts * numMaxActiveTabs
     private val idleTimeout = Duration.ofMinutes(20)
     private var lastActiveTime = Instant.now()
     private val idleTime get() = Duration.between(lastActiveTime, Instant.now())
     private val isIdle get() = idleTime > idleTimeout
     private val defaultArgs = defaultOptions.toString()
+    private val defaultOptionsTemplate = LoadOptionsTemplate.compile(defaultArgs)
 
     private var proxyOutOfService = 0
     private var quit = false
@@ -419,7 +425,7 @@ open class StreamingCrawler<T : UrlAware>(
     @Throws(Exception::class)
     private suspend fun loadWithEventHandlers(url: UrlAware): WebPage? {
         // apply the default options, arguments in the url has the highest priority
-        val options = session.options("$defaultArgs ${url.args}")
+        val options = defaultOptionsTemplate.overlay(url.args).createOptions(conf.toVolatileConfig())
         if (options.isDead()) {
             globalKilledTasks.incrementAndGet()
             return null
@@ -512,8 +518,7 @@ open class StreamingCrawler<T : UrlAware>(
             Strings.readableBytes(requiredMemory),
             Strings.readableBytes(abs(remainingMemory))
         )
-        session.context.clearCaches()
-        System.gc()
+        session.context.shrinkCaches()
     }
 
     /**
@@ -1,24 +1,31 @@
 package ai.platon.pulsar.crawl.common
 
+import ai.platon.pulsar.common.collect.ConcurrentBloomFilter
 import ai.platon.pulsar.common.collect.ConcurrentFetchCacheManager
 import ai.platon.pulsar.common.collect.FetchCacheManager
+import ai.platon.pulsar.common.MemoryPressureMonitor
+import ai.platon.pulsar.common.Strings
+import ai.platon.pulsar.common.Systems
 import ai.platon.pulsar.common.concurrent.ConcurrentExpiringLRUCache
-import ai.platon.pulsar.common.concurrent.ConcurrentExpiringLRUCache.Companion.CACHE_CAPACITY
-import ai.platon.pulsar.common.config.CapabilityTypes.GLOBAL_DOCUMENT_CACHE_SIZE
-import ai.platon.pulsar.common.config.CapabilityTypes.GLOBAL_PAGE_CACHE_SIZE
+import ai.platon.pulsar.common.config.CapabilityTypes.*
 import ai.platon.pulsar.common.config.ImmutableConfig
+import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.urls.UrlAware
 import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.persist.WebPage
+import com.codahale.metrics.Gauge
+import org.slf4j.LoggerFactory
+import java.nio.file.Paths
 import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.atomic.AtomicBoolean
 
 /**
- * TODO: WebPage is very large, we need a loading cache
+ * WebPage is very large, the page cache is bounded by the estimated memory size of the pages
  * */
 typealias PageCatch = ConcurrentExpiringLRUCache<WebPage>
 
 /**
- * TODO: FeaturedDocument is very large, we need a loading cache
+ * FeaturedDocument is very large, the document cache is bounded by the estimated memory size of the documents
  * */
 typealias DocumentCatch = ConcurrentExpiringLRUCache<FeaturedDocument>
 
@@ -52,15 +59,25 @@ class FetchingCache {
 /**
  * The global cache
  * */
-open class GlobalCache(val conf: ImmutableConfig) {
+open class GlobalCache(val conf: ImmutableConfig): AutoCloseable {
+    companion object {
+        /**
+         * The ratio of the capacity to keep when the heap is under pressure
+         * */
+        const val SHRINK_RATIO = 0.5
+    }
+
+    private val logger = LoggerFactory.getLogger(GlobalCache::class.java)
+    private val closed = AtomicBoolean()
+    private val memoryPressureListener: () -> Unit = { shrinkCaches(SHRINK_RATIO) }
     /**
-     * The page cache capacity
+     * The page cache capacity in bytes, 10% of the max heap by default
      * */
-    private val pageCacheCapacity = conf.getUint(GLOBAL_PAGE_CACHE_SIZE, CACHE_CAPACITY)
+    private val pageCacheCapacity = conf.getUlong(GLOBAL_PAGE_CACHE_MEMORY, Systems.memoryMax / 10)
     /**
-     * The document cache capacity
+     * The document cache capacity in bytes, 20% of the max heap by default
      * */
-    private val documentCacheCapacity = conf.getUint(GLOBAL_DOCUMENT_CACHE_SIZE, CACHE_CAPACITY)
+    private val documentCacheCapacity = conf.getUlong(GLOBAL_DOCUMENT_CACHE_MEMORY, Systems.memoryMax / 5)
     /**
      * The fetch cache manager, hold on queues of fetch items
      * TODO: fetchCaches should be a val
@@ -69,13 +86,59 @@ open class GlobalCache(val conf: ImmutableConfig) {
     /**
      * The global page cache, a page might be removed if it's expired or the cache is full
      * */
-    open val pageCache = PageCatch(pageCacheCapacity)
+    open val pageCache = PageCatch(pageCacheCapacity) { MemorySizeEstimator.estimate(it) }
     /**
      * The global document cache, a document might be removed if it's expired or the cache is full
      * */
-    open val documentCache = DocumentCatch(documentCacheCapacity)
+    open val documentCache = DocumentCatch(documentCacheCapacity) { MemorySizeEstimator.estimate(it) }
 
+    /**
+     * The urls being fetched, an url is removed when it's fetched
+     * */
     open val fetchingCache = FetchingCache()
+    /**
+     * The urls seen before, it's approximate: an url never seen might be reported as seen with a small
+     * probability, and an url is never removed. If [SEEN_URLS_PATH] is set, the set is mapped to the file
+     * and survives a restart.
+     * */
+    open val seenUrls: ConcurrentBloomFilter by lazy { createSeenUrls() }
+
+    init {
+        mapOf(
+            "pageCacheHits" to Gauge { pageCache.cache.hitCount },
+            "pageCacheMisses" to Gauge { pageCache.cache.missCount },
+            "pageCacheEvictions" to Gauge { pageCache.cache.evictionCount },
+            "pageCacheHitRate" to Gauge { pageCache.cache.hitRate },
+            "pageCacheBytes" to Gauge { pageCache.weight },
+            "documentCacheHits" to Gauge { documentCache.cache.hitCount },
+            "documentCacheMisses" to Gauge { documentCache.cache.missCount },
+            "documentCacheEvictions" to Gauge { documentCache.cache.evictionCount },
+            "documentCacheHitRate" to Gauge { documentCache.cache.hitRate },
+            "documentCacheBytes" to Gauge { documentCache.weight }
+        ).let { AppMetrics.reg.registerAll(this, it) }
+
+        warnDeprecatedConfig(GLOBAL_PAGE_CACHE_SIZE, GLOBAL_PAGE_CACHE_MEMORY)
+        warnDeprecatedConfig(GLOBAL_DOCUMENT_CACHE_SIZE, GLOBAL_DOCUMENT_CACHE_MEMORY)
+
+        MemoryPressureMonitor.addListener(memoryPressureListener)
+    }
+
+    /**
+     * Evict pages and documents until the caches hold no more than [ratio] of their capacities
+     * */
+    fun shrinkCaches(ratio: Double) {
+        val bytes = pageCache.weight + documentCache.weight
+        pageCache.shrink(ratio)
+        documentCache.shrink(ratio)
+        val released = bytes - pageCache.weight - documentCache.weight
+        logger.info("Shrunk page and document caches, released about {}", Strings.readableBytes(released))
+    }
+
+    override fun close() {
+        if (closed.compareAndSet(false, true)) {
+            MemoryPressureMonitor.removeListener(memoryPressureListener)
+        }
+    }
 
     fun resetCaches() {
         fetchingCache.clear()
@@ -84,6 +147,28 @@ open class GlobalCache(val conf: ImmutableConfig) {
         fetchCaches = ConcurrentFetchCacheManager(conf).apply { initialize() }
     }
 
+    /**
+     * The caches were bounded by the number of items, they are bounded by the estimated memory now,
+     * the number can not be converted to bytes since the item sizes vary a lot
+     * */
+    @Suppress("DEPRECATION")
+    private fun warnDeprecatedConfig(name: String, replacement: String) {
+        val value = conf.get(name) ?: return
+        logger.warn("Config {}={} is deprecated and ignored, use {} (in bytes) instead", name, value, replacement)
+    }
+
+    private fun createSeenUrls(): ConcurrentBloomFilter {
+        val expectedInsertions = conf.getLong(SEEN_URLS_EXPECTED_INSERTIONS, ConcurrentBloomFilter.DEFAULT_EXPECTED_INSERTIONS)
+        val fpp = conf.getDouble(SEEN_URLS_FPP, ConcurrentBloomFilter.DEFAULT_FPP)
+        val path = conf.get(SEEN_URLS_PATH)?.takeIf { it.isNotBlank() }
+            ?: return ConcurrentBloomFilter.create(expectedInsertions, fpp)
+
+        val filter = ConcurrentBloomFilter.open(Paths.get(path), expectedInsertions, fpp)
+        logger.info("Seen urls are loaded, {} urls, {} bits | {}", filter.approximateCount, filter.numBits, path)
+        Runtime.getRuntime().addShutdownHook(Thread { filter.close() })
+        return filter
+    }
+
     /**
      * Put page and document to cache
      * */
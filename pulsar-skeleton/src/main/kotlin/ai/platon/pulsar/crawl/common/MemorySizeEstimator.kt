@@ -0,0 +1,53 @@
+package ai.platon.pulsar.crawl.common
+
+import ai.platon.pulsar.dom.FeaturedDocument
+import ai.platon.pulsar.persist.WebPage
+import org.jsoup.nodes.TextNode
+import org.jsoup.select.NodeTraversor
+import org.jsoup.select.NodeVisitor
+import java.nio.ByteBuffer
+
+/**
+ * Estimate the heap memory held by large objects, the estimation is rough but cheap,
+ * it's used to weigh items in memory bounded caches.
+ * */
+object MemorySizeEstimator {
+    /**
+     * The fields, metadata and the underlying avro record of a page, content excluded
+     * */
+    const val PAGE_OVERHEAD = 8 * 1024L
+    /**
+     * The jsoup node object, it's attributes and the child node list
+     * */
+    const val NODE_OVERHEAD = 256L
+
+    /**
+     * The estimated memory size of a page, which is dominated by the content
+     * */
+    fun estimate(page: WebPage): Long {
+        var size = PAGE_OVERHEAD + sizeOf(page.persistContent)
+        val tmpContent = page.tmpContent
+        if (tmpContent != null && tmpContent !== page.persistContent) {
+            size += sizeOf(tmpContent)
+        }
+        return size
+    }
+
+    /**
+     * The estimated memory size of a document, which is dominated by the nodes, the features of the nodes and
+     * the texts, the features are kept in the columns of the document's feature store
+     * */
+    fun estimate(document: FeaturedDocument): Long {
+        val root = document.unbox()
+        var size = root.featureStore?.memorySize() ?: 0L
+        NodeTraversor.traverse(NodeVisitor { node, _ ->
+            size += NODE_OVERHEAD
+            if (node is TextNode) {
+                size += 2L * node.wholeText.length
+            }
+        }, root)
+        return size
+    }
+
+    private fun sizeOf(buffer: ByteBuffer?) = buffer?.capacity()?.toLong() ?: 0L
+}
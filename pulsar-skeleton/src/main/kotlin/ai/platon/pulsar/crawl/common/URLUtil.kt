@@ -18,6 +18,7 @@
  */
 package ai.platon.pulsar.crawl.common
 
+import ai.platon.pulsar.common.urls.UrlView
 import ai.platon.pulsar.common.urls.Urls.getURLOrNull
 import ai.platon.pulsar.common.domain.DomainSuffix
 import ai.platon.pulsar.common.domain.DomainSuffixes
@@ -368,19 +369,11 @@ object URLUtil {
      * @return String The hostname for the url.
      */
     fun getHostName(url: String?): String? {
-        return try {
-            URL(url).host.toLowerCase()
-        } catch (e: MalformedURLException) {
-            null
-        }
+        return UrlView.parseOrNull(url)?.hostName
     }
 
     fun getHostName(url: String?, defaultValue: String): String {
-        return try {
-            URL(url).host.toLowerCase()
-        } catch (e: MalformedURLException) {
-            defaultValue
-        }
+        return UrlView.parseOrNull(url)?.hostName ?: defaultValue
     }
 
     /**
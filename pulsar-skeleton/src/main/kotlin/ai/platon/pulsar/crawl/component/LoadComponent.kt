@@ -219,6 +219,10 @@ class LoadComponent(
 
         afterLoad(page, normUrl)
 
+        if (shouldPersist(page, normUrl.options)) {
+            persist(page, normUrl.options)
+        }
+
         return page
     }
 
@@ -231,6 +235,10 @@ class LoadComponent(
 
         afterLoad(page, normUrl)
 
+        if (shouldPersist(page, normUrl.options)) {
+            persistDeferred(page, normUrl.options)
+        }
+
         return page
     }
 
@@ -350,14 +358,16 @@ class LoadComponent(
         } catch (e: Throwable) {
             logger.warn("Failed to invoke afterLoad | ${page.configuredUrl}", e)
         }
+    }
 
-        // persist if it's not loaded from the cache so it's not updated
+    /**
+     * Persist if it's not loaded from the cache so it's not updated
+     * */
+    private fun shouldPersist(page: WebPage, options: LoadOptions): Boolean {
         // we might persist only when it's fetched
         // TODO: do not persist content if it's not changed, we can add a contentPage inside a WebPage
         // TODO: do not we persist if it's loaded from cache or no fields change
-        if (!page.isCached && !options.readonly && options.persist) {
-            persist(page, options)
-        }
+        return !page.isCached && !options.readonly && options.persist
     }
 
     private fun parse(page: WebPage, options: LoadOptions): ParseResult? {
@@ -538,6 +548,21 @@ class LoadComponent(
     }
 
     private fun persist(page: WebPage, options: LoadOptions) {
+        beforePersist(page, options)
+        webDb.put(page)
+        afterPersist(page, options)
+    }
+
+    /**
+     * Persist the page without blocking the calling thread if the write-behind buffer is full
+     * */
+    private suspend fun persistDeferred(page: WebPage, options: LoadOptions) {
+        beforePersist(page, options)
+        webDb.putDeferred(page)
+        afterPersist(page, options)
+    }
+
+    private fun beforePersist(page: WebPage, options: LoadOptions) {
         // Remove content if storingContent is false. Content is added to page earlier
         // so PageParser is able to parse it, now, we can clear it
         if (!options.storeContent && page.content != null) {
@@ -549,12 +574,18 @@ class LoadComponent(
             page.unbox().clearDirty(GWebPage.Field.CONTENT.index)
             assert(!page.unbox().isContentDirty)
         }
+    }
 
-        webDb.put(page)
+    private fun afterPersist(page: WebPage, options: LoadOptions) {
         ++numWrite
 
         collectPersistMetrics(page)
 
+        // the write-behind buffer writes the pages in batches itself, a flush here would wait for the writing
+        if (webDb.writeBuffer != null) {
+            return
+        }
+
         if (numWrite < 200) {
             flush()
         } else if (!options.lazyFlush || numWrite % 20 == 0) {
@@ -566,7 +597,7 @@ class LoadComponent(
         val metrics = coreMetrics
         if (metrics != null) {
             metrics.persists.mark()
-            val bytes = page.content?.array()?.size ?: 0
+            val bytes = page.content?.remaining() ?: 0
             if (bytes > 0) {
                 metrics.contentPersists.mark()
                 metrics.persistContentMBytes.inc(ByteUnit.convert(bytes, "M").toLong())
@@ -7,6 +7,7 @@ import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.message.LoadedPageFormatter
 import ai.platon.pulsar.common.metrics.AppMetrics
 import ai.platon.pulsar.common.metrics.CommonCounter
+import ai.platon.pulsar.crawl.common.GlobalCache
 import ai.platon.pulsar.crawl.component.FetchComponent
 import ai.platon.pulsar.crawl.component.ParseComponent
 import ai.platon.pulsar.persist.WebPage
@@ -192,6 +193,6 @@ class FetchLoop(
                 Strings.readableBytes(instanceRequiredMemory),
                 Strings.readableBytes(abs(memoryRemaining))
         )
-        System.gc()
+        parseComponent.globalCache.shrinkCaches(GlobalCache.SHRINK_RATIO)
     }
 }
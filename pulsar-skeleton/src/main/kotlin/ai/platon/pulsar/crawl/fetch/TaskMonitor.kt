@@ -12,6 +12,7 @@ import ai.platon.pulsar.crawl.common.JobInitialized
 import ai.platon.pulsar.crawl.common.URLUtil
 import ai.platon.pulsar.crawl.fetch.data.PoolId
 import ai.platon.pulsar.crawl.fetch.data.PoolQueue
+import ai.platon.pulsar.crawl.fetch.data.ReadyPoolQueue
 import ai.platon.pulsar.persist.WebPage
 import com.google.common.collect.TreeMultimap
 import org.apache.commons.collections4.bidimap.DualTreeBidiMap
@@ -23,9 +24,14 @@ import java.time.Duration
 import java.util.*
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * Tasks Monitor
+ *
+ * Produce, consume and finish do not lock the monitor: the pools are found without locking, and the pools ready
+ * to serve are kept in a [ReadyPoolQueue] ordered by the next fetch time and the priority, so consuming a task
+ * does not scan all the pools.
  */
 class TaskMonitor(
     private val coreMetrics: CoreMetrics,
@@ -38,6 +44,8 @@ class TaskMonitor(
     private val id = instanceSequencer.incrementAndGet()
     private val feederCompleted = AtomicBoolean(false)
     private val taskPools = PoolQueue()
+    private val readyPools = ReadyPoolQueue()
+    @Volatile
     private var lastTaskPriority = Integer.MIN_VALUE
 
     /**
@@ -71,6 +79,7 @@ class TaskMonitor(
     val poolPendingTimeout = conf.getDuration(FETCH_PENDING_TIMEOUT, Duration.ofMinutes(5))
 
     private val isMaintaining = AtomicBoolean()
+    private val lastMaintainTime = AtomicLong()
     private val closed = AtomicBoolean()
 
     /**
@@ -103,7 +112,6 @@ class TaskMonitor(
         feederCompleted.set(true)
     }
 
-    @Synchronized
     fun produce(jobID: Int, page: WebPage) {
         page.fetchMode = options.fetchMode
 
@@ -116,12 +124,10 @@ class TaskMonitor(
         }
     }
 
-    @Synchronized
     fun produce(task: JobFetchTask) {
         doProduce(task)
     }
 
-    @Synchronized
     fun consume(poolId: PoolId? = null): JobFetchTask? {
         if (poolId == null) {
             return consumeFromAnyPool()
@@ -129,24 +135,34 @@ class TaskMonitor(
 
         val pool = taskPools.find(poolId) ?: return null
 
-        return takeIf { isConsumable(pool) }?.consumeUnchecked(pool)
+        return takeIf { isConsumable(pool) }?.let { pool.consume() }?.also { onConsumed(it) }
     }
 
-    @Synchronized
     fun finish(item: JobFetchTask) {
         doFinish(PoolId(item.priority, item.protocol, item.host), item.itemId, false)
     }
 
-    @Synchronized
     fun finishAsap(item: JobFetchTask) {
         doFinish(PoolId(item.priority, item.protocol, item.host), item.itemId, true)
     }
 
+    /**
+     * Maintain all the pools, it's called when there is no task to consume, so it runs at most once a second
+     * */
     fun maintain() {
+        val now = System.currentTimeMillis()
+        val lastTime = lastMaintainTime.get()
+        if (now - lastTime < MAINTAIN_INTERVAL.toMillis() || !lastMaintainTime.compareAndSet(lastTime, now)) {
+            return
+        }
+
         if (isMaintaining.compareAndSet(false, true)) {
-            taskPools.forEach { maintain(it) }
+            try {
+                taskPools.snapshot().forEach { maintain(it) }
+            } finally {
+                isMaintaining.set(false)
+            }
         }
-        isMaintaining.set(false)
     }
 
     private fun isConsumable(pool: TaskPool): Boolean {
@@ -183,7 +199,7 @@ class TaskMonitor(
      * wait for all pending tasks with higher priority are finished
      */
     private fun consumeFromAnyPool(): JobFetchTask? {
-        var pool = taskPools.peek() ?: return null
+        val pool = taskPools.peek() ?: return null
 
         val nextPriority = pool.priority
         val priorityChanged = nextPriority < lastTaskPriority
@@ -196,21 +212,13 @@ class TaskMonitor(
             log.info("Fetch priority changed : $lastTaskPriority -> $nextPriority")
         }
 
-        pool = taskPools.find { isConsumable(it) } ?: return null
-
-        return consumeUnchecked(pool)
+        return readyPools.poll { coreMetrics.isReachable(it.host) }?.also { onConsumed(it) }
     }
 
-    private fun consumeUnchecked(pool: TaskPool): JobFetchTask? {
-        val item = pool.consume()
-
-        if (item != null) {
-            numReadyTasks.decrementAndGet()
-            numPendingTasks.incrementAndGet()
-            lastTaskPriority = pool.priority
-        }
-
-        return item
+    private fun onConsumed(item: JobFetchTask) {
+        numReadyTasks.decrementAndGet()
+        numPendingTasks.incrementAndGet()
+        lastTaskPriority = item.priority
     }
 
     private fun doProduce(task: JobFetchTask) {
@@ -221,22 +229,35 @@ class TaskMonitor(
             return
         }
 
-        val poolId = task.poolId
-        var pool = taskPools.find(poolId)
-
-        if (pool == null) {
-            pool = taskPools.findExtend(poolId)
-            if (pool != null) {
-                taskPools.enable(pool)
-            } else {
-                pool = createFetchQueue(poolId)
-                taskPools.add(pool)
-            }
+        val pool = taskPools.find(task.poolId) ?: obtainPool(task.poolId)
+        if (!pool.produce(task)) {
+            log.warn("Failed to produce task to inactive pool {} | {}", pool.id, url)
+            return
         }
-        pool.produce(task)
 
         numReadyTasks.incrementAndGet()
-        poolTimeCosts[pool.id] = 0.0
+        readyPools.schedule(pool)
+    }
+
+    /**
+     * Find or create the pool, a pool is created only once even if it's obtained by many threads
+     * */
+    private fun obtainPool(poolId: PoolId): TaskPool {
+        return synchronized(taskPools) {
+            var pool = taskPools.find(poolId)
+            if (pool == null) {
+                pool = taskPools.findExtend(poolId)
+                if (pool != null) {
+                    taskPools.enable(pool)
+                } else {
+                    pool = createFetchQueue(poolId)
+                    taskPools.add(pool)
+                }
+
+                synchronized(poolTimeCosts) { poolTimeCosts[pool.id] = 0.0 }
+            }
+            pool
+        }
     }
 
     private fun doFinish(poolId: PoolId, itemId: Int, asap: Boolean) {
@@ -256,12 +277,15 @@ class TaskMonitor(
         }
 
         pool.finish(itemId, asap)
+        // a slot is freed and the next fetch time is changed
+        readyPools.schedule(pool)
 
         numPendingTasks.decrementAndGet()
         numFinishedTasks.incrementAndGet()
 
-        poolTimeCosts[poolId] = pool.averageRecentTimeCost
-        poolServedThreads.put(poolId.host, Thread.currentThread().name.substring(THREAD_SEQUENCE_POS))
+        synchronized(poolTimeCosts) { poolTimeCosts[poolId] = pool.averageRecentTimeCost }
+        val threadSequence = Thread.currentThread().name.substring(THREAD_SEQUENCE_POS)
+        synchronized(poolServedThreads) { poolServedThreads.put(poolId.host, threadSequence) }
     }
 
     private fun retire(pool: TaskPool) {
@@ -289,20 +313,18 @@ class TaskMonitor(
      */
     @Synchronized
     internal fun tune(force: Boolean) {
-        taskPools.filter { coreMetrics.isUnreachable(it.host) }.onEach { retire(it) }.takeIf { it.isNotEmpty() }?.let { pool ->
+        taskPools.snapshot().filter { coreMetrics.isUnreachable(it.host) }.onEach { retire(it) }.takeIf { it.isNotEmpty() }?.let { pool ->
             pool.joinToString (", ", "Unavailable pools: ") { it.id.toString() }.let { log.info(it) }
         }
         calculateTaskCounter()
     }
 
-    @Synchronized
     fun findPendingTask(priority: Int, url: URL, itemID: Int): JobFetchTask? {
         val pool = taskPools.findExtend(PoolId(priority, url))
         return pool?.getPendingTask(itemID)
     }
 
     /** Get a pending task, the task can be in working pools or in detached pools  */
-    @Synchronized
     fun findPendingTask(poolId: PoolId, itemID: Int): JobFetchTask? {
         val pool = taskPools.findExtend(poolId)
         return pool?.getPendingTask(itemID)
@@ -362,6 +384,7 @@ class TaskMonitor(
             report()
 
             taskPools.clear()
+            readyPools.clear()
             numReadyTasks.set(0)
         }
     }
@@ -371,7 +394,7 @@ class TaskMonitor(
         var count = 0
 
         val costRecorder = TreeMap<Double, String>(Comparator.reverseOrder())
-        for (pool in taskPools) {
+        for (pool in taskPools.snapshot()) {
             costRecorder[pool.averageRecentTimeCost] = pool.id.host
 
             if (pool.numReadyTasks == 0) {
@@ -406,7 +429,7 @@ class TaskMonitor(
     private fun calculateTaskCounter() {
         var readyCount = 0
         var pendingCount = 0
-        taskPools.forEach {
+        taskPools.snapshot().forEach {
             readyCount += it.numReadyTasks
             pendingCount += it.numPendingTasks
         }
@@ -431,10 +454,11 @@ class TaskMonitor(
         var pool: TaskPool? = null
 
         while (!taskPools.isEmpty() && pool == null) {
-            val maxCost = poolTimeCosts.inverseBidiMap().lastKey()
-            val id = poolTimeCosts.inverseBidiMap()[maxCost]
+            val id = synchronized(poolTimeCosts) {
+                val maxCost = poolTimeCosts.inverseBidiMap().lastKey()
+                poolTimeCosts.inverseBidiMap()[maxCost]?.also { poolTimeCosts.remove(it) }
+            }
             if (id != null) {
-                poolTimeCosts.remove(id)
                 pool = taskPools.find(id)
             }
         }
@@ -444,12 +468,13 @@ class TaskMonitor(
 
     private fun reportServedThreads() {
         val report = StringBuilder()
-        poolServedThreads.keySet()
+        val servedThreads = synchronized(poolServedThreads) { TreeMultimap.create(poolServedThreads) }
+        servedThreads.keySet()
                 .map { Urls.reverseHost(it) }
                 .sorted()
                 .map { Urls.unreverseHost(it) }
                 .forEach { poolId ->
-                    val threads = "#" + StringUtils.join(poolServedThreads.get(poolId), ", #")
+                    val threads = "#" + StringUtils.join(servedThreads.get(poolId), ", #")
                     val line = String.format("%1$40s -> %2\$s\n", poolId, threads)
                     report.append(line)
                 }
@@ -482,5 +507,6 @@ class TaskMonitor(
     companion object {
         private val instanceSequencer = AtomicInteger(0)
         private const val THREAD_SEQUENCE_POS = "FetchThread-".length
+        private val MAINTAIN_INTERVAL = Duration.ofSeconds(1)
     }
 }
@@ -12,6 +12,7 @@ import java.time.Duration
 import java.time.Instant
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
 
 /**
  * This class handles FetchTasks which come from the same host ID (be it
@@ -43,7 +44,9 @@ class TaskPool(val id: PoolId,
     private val slowTasksRecorder = CircularFifoQueue<Duration>(RECENT_TASKS_COUNT_LIMIT)
 
     /** Next fetch time  */
-    private var nextFetchTime = Instant.now()
+    @Volatile
+    var nextFetchTime: Instant = Instant.now()
+        private set
     private var recentFinishedTasks = 1
     private var recentFetchMillis: Long = 1
     private var totalFinishedTasks = 1
@@ -68,6 +71,12 @@ class TaskPool(val id: PoolId,
     val numPendingTasks: Int get() = pendingTasks.size
     val numTotalFinishedTasks: Int get() = totalFinishedTasks
     val numSlowTasks: Int get() = synchronized(slowTasksRecorder) { slowTasksRecorder.size }
+    /** If the pool can hold more pending tasks */
+    val hasFreeSlots: Boolean get() = allowedThreads <= 0 || pendingTasks.size < allowedThreads
+    /** If the pool can serve a task once the next fetch time is reached */
+    val isReady: Boolean get() = isActive && hasReadyTasks() && hasFreeSlots
+    /** If the pool is in the ready pool queue, see [ai.platon.pulsar.crawl.fetch.data.ReadyPoolQueue] */
+    internal val isScheduled = AtomicBoolean()
 
     /**
      * Average cost in seconds
@@ -110,19 +119,20 @@ class TaskPool(val id: PoolId,
     }
 
     /** Produce a task to this queue. Retired queues do not accept any tasks  */
-    fun produce(task: JobFetchTask) {
+    fun produce(task: JobFetchTask): Boolean {
         if (status != Status.ACTIVITY) {
-            return
+            return false
         }
 
         if (task.priority != id.priority || task.host != id.host) {
             log.error("Queue id mismatches with FetchTask #$task")
         }
 
-        readyTasks.add(task)
+        return readyTasks.add(task)
     }
 
     /** Ask a task from this queue. Retired queues do not assign any tasks  */
+    @Synchronized
     fun consume(): JobFetchTask? {
         if (status != Status.ACTIVITY) {
             return null
@@ -157,6 +167,7 @@ class TaskPool(val id: PoolId,
     /**
      * Note : We have set response time for each page, @see {HttpBase#getProtocolOutput}
      */
+    @Synchronized
     fun finish(fetchTask: JobFetchTask, asap: Boolean): Boolean {
         pendingTasks.remove(fetchTask.itemId)
 
@@ -3,6 +3,7 @@ package ai.platon.pulsar.crawl.fetch.data
 import ai.platon.pulsar.crawl.fetch.TaskPool
 import org.slf4j.LoggerFactory
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Created by vincent on 16-9-22.
@@ -13,11 +14,11 @@ class PoolQueue: AbstractQueue<TaskPool>() {
     /** All fetch queues, indexed by priority, item with bigger priority comes first.  */
     private val priorityActiveQueues = PriorityQueue(Comparator.reverseOrder<TaskPool>())
 
-    /** All fetch queues, indexed by queue id.  */
-    private val activeQueues = HashMap<PoolId, TaskPool>()
+    /** All fetch queues, indexed by queue id, the queues can be found without locking.  */
+    private val activeQueues = ConcurrentHashMap<PoolId, TaskPool>()
 
     /** Retired queues do not serve any more, but the tasks can be find out by findExtend.  */
-    private val inactiveQueues = HashMap<PoolId, TaskPool>()
+    private val inactiveQueues = ConcurrentHashMap<PoolId, TaskPool>()
 
     @get:Synchronized
     override val size get() = priorityActiveQueues.size
@@ -108,11 +109,12 @@ class PoolQueue: AbstractQueue<TaskPool>() {
      */
     @Synchronized
     fun disable(pool: TaskPool) {
-        priorityActiveQueues.remove(pool)
-        activeQueues.remove(pool.id)
-
         pool.disable()
+        // put before remove, so findExtend never misses the pool
         inactiveQueues[pool.id] = pool
+
+        priorityActiveQueues.remove(pool)
+        activeQueues.remove(pool.id)
     }
 
     @Synchronized
@@ -129,17 +131,22 @@ class PoolQueue: AbstractQueue<TaskPool>() {
         return hasPrior || inactiveQueues.values.any { it.priority >= priority && it.hasPendingTasks() }
     }
 
-    @Synchronized
     fun find(id: PoolId): TaskPool? {
         return search(id, false)
     }
 
-    @Synchronized
     fun findExtend(id: PoolId): TaskPool? {
         return search(id, true)
     }
 
+    /**
+     * A snapshot of the active queues, it's safe to change this queue while iterating the snapshot
+     * */
     @Synchronized
+    fun snapshot(): List<TaskPool> {
+        return priorityActiveQueues.toList()
+    }
+
     fun search(id: PoolId?, searchInactive: Boolean): TaskPool? {
         var queue: TaskPool? = null
 
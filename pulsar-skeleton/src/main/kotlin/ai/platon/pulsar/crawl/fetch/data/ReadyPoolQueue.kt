@@ -0,0 +1,137 @@
+package ai.platon.pulsar.crawl.fetch.data
+
+import ai.platon.pulsar.crawl.fetch.JobFetchTask
+import ai.platon.pulsar.crawl.fetch.TaskPool
+import java.time.Instant
+import java.util.*
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * The task pools which are ready to serve tasks.
+ *
+ * A pool is scheduled if it's active, has ready tasks and has free slots for more pending tasks. A scheduled pool
+ * is kept in a delay heap keyed by its next fetch time, once the time is reached, the pool is moved to a ready heap
+ * ordered by priority. So taking a task is O(log n) in the number of the scheduled pools, the pools waiting for
+ * the crawl delay, the busy pools and the empty pools are never visited.
+ *
+ * Scheduling a pool is lock free, a pool is put into an inbox only if it changes from unscheduled to scheduled,
+ * and the inbox is drained by [poll] under the lock. The state of a scheduled pool is checked again when it's
+ * polled, a pool which is not ready any more is dropped, and is scheduled again by the next [schedule] call.
+ */
+class ReadyPoolQueue {
+
+    private class Slot(val pool: TaskPool, val time: Long, val sequence: Long)
+
+    private val inbox = ConcurrentLinkedQueue<TaskPool>()
+    private val lock = ReentrantLock()
+    private var sequence = 0L
+    /** The scheduled pools waiting for the next fetch time, the earliest comes first */
+    private val delayedPools = PriorityQueue(compareBy<Slot> { it.time }.thenBy { it.sequence })
+    /** The scheduled pools whose next fetch time is reached, the pool with bigger priority comes first */
+    private val readyPools = PriorityQueue(
+        compareByDescending<Slot> { it.pool.priority }.thenBy { it.time }.thenBy { it.sequence })
+
+    /**
+     * The number of the scheduled pools
+     * */
+    val size get() = lock.withLock { delayedPools.size + readyPools.size } + inbox.size
+
+    /**
+     * Schedule the pool if it's ready and is not scheduled yet, it's safe to schedule a pool any number of times
+     * */
+    fun schedule(pool: TaskPool): Boolean {
+        if (pool.isReady && pool.isScheduled.compareAndSet(false, true)) {
+            inbox.offer(pool)
+            return true
+        }
+
+        return false
+    }
+
+    /**
+     * Take a task from the pool with the top priority among the pools whose next fetch time is reached.
+     * A pool is dropped if it's not accepted, for example, the host is unreachable.
+     * */
+    fun poll(accept: (TaskPool) -> Boolean = { true }): JobFetchTask? {
+        lock.withLock {
+            val now = System.currentTimeMillis()
+            drainInbox(now)
+
+            var head = delayedPools.peek()
+            while (head != null && head.time <= now) {
+                readyPools.add(delayedPools.poll())
+                head = delayedPools.peek()
+            }
+
+            while (true) {
+                val pool = readyPools.poll()?.pool ?: return null
+
+                if (!accept(pool)) {
+                    pool.isScheduled.set(false)
+                    continue
+                }
+
+                val task = pool.consume()
+                if (task != null) {
+                    reschedule(pool, now)
+                    return task
+                }
+
+                if (pool.isReady && pool.nextFetchTime.isAfter(Instant.now())) {
+                    // the next fetch time is put off by a finished task
+                    delay(pool, now)
+                } else {
+                    reschedule(pool, now)
+                }
+            }
+        }
+    }
+
+    fun clear() {
+        lock.withLock {
+            var pool = inbox.poll()
+            while (pool != null) {
+                pool.isScheduled.set(false)
+                pool = inbox.poll()
+            }
+            delayedPools.forEach { it.pool.isScheduled.set(false) }
+            readyPools.forEach { it.pool.isScheduled.set(false) }
+            delayedPools.clear()
+            readyPools.clear()
+        }
+    }
+
+    private fun drainInbox(now: Long) {
+        var pool = inbox.poll()
+        while (pool != null) {
+            delay(pool, now)
+            pool = inbox.poll()
+        }
+    }
+
+    /**
+     * Keep the pool scheduled if it's still ready, or drop it. A pool is never lost, if another thread makes it
+     * ready after the check, either the check here or the [schedule] call of that thread sees it
+     * */
+    private fun reschedule(pool: TaskPool, now: Long) {
+        if (pool.isReady) {
+            delay(pool, now)
+            return
+        }
+
+        pool.isScheduled.set(false)
+        if (pool.isReady && pool.isScheduled.compareAndSet(false, true)) {
+            delay(pool, now)
+        }
+    }
+
+    /**
+     * Wait for the next fetch time, a pool which is ready now is put behind the pools which are ready earlier
+     * */
+    private fun delay(pool: TaskPool, now: Long) {
+        val time = pool.nextFetchTime.toEpochMilli().coerceAtLeast(now)
+        delayedPools.add(Slot(pool, time, sequence++))
+    }
+}
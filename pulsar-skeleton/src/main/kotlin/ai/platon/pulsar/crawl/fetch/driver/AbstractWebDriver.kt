@@ -2,6 +2,7 @@ package ai.platon.pulsar.crawl.fetch.driver
 
 import ai.platon.pulsar.common.proxy.ProxyEntry
 import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
+import org.jsoup.nodes.Document
 import java.util.concurrent.atomic.AtomicReference
 
 abstract class AbstractWebDriver(
@@ -60,6 +61,8 @@ abstract class AbstractWebDriver(
             stopLoading()
         }
     }
+    override suspend fun evaluateDeferred(expression: String): Any? = evaluate(expression)
+    override suspend fun captureDocument(): Document? = null
     override fun evaluateSilently(expression: String): Any? = takeIf { isWorking }?.runCatching { evaluate(expression) }
 
     override fun equals(other: Any?): Boolean = other is AbstractWebDriver && other.id == this.id
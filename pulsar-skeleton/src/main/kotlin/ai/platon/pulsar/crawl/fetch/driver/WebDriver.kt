@@ -3,6 +3,7 @@ package ai.platon.pulsar.crawl.fetch.driver
 import ai.platon.pulsar.browser.driver.BrowserControl
 import ai.platon.pulsar.crawl.fetch.privacy.BrowserInstanceId
 import ai.platon.pulsar.persist.metadata.BrowserType
+import org.jsoup.nodes.Document
 
 interface WebDriver {
     val id: Int
@@ -24,6 +25,11 @@ interface WebDriver {
     fun navigateTo(url: String)
     fun setTimeouts(driverConfig: BrowserControl)
     fun evaluate(expression: String): Any?
+    suspend fun evaluateDeferred(expression: String): Any?
+    /**
+     * Capture the document with the node rectangles from the browser directly, or null if not supported
+     * */
+    suspend fun captureDocument(): Document?
     fun bringToFront()
     fun stopLoading()
     fun evaluateSilently(expression: String): Any?
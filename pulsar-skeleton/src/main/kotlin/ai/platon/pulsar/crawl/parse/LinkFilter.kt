@@ -6,6 +6,7 @@ import ai.platon.pulsar.common.config.Parameterized
 import ai.platon.pulsar.common.config.Params
 import ai.platon.pulsar.common.options.LinkOptions
 import ai.platon.pulsar.common.options.LinkOptions.Companion.parse
+import ai.platon.pulsar.common.urls.UrlView
 import ai.platon.pulsar.crawl.common.URLUtil
 import ai.platon.pulsar.crawl.common.URLUtil.GroupMode
 import ai.platon.pulsar.crawl.filter.CrawlFilters
@@ -30,6 +31,14 @@ class LinkFilter(private val crawlFilters: CrawlFilters, val conf: ImmutableConf
     private var noFilter = false
     private var debugLevel = 0
     private val links: MutableSet<String> = TreeSet()
+    /**
+     * The normalized urls of the links accepted by [acceptOnce] since the last reset
+     * */
+    private val acceptedUrls: MutableSet<String> = HashSet()
+    /**
+     * The normalized url of the last link passed the filters
+     * */
+    private var normalizedUrl = ""
     private val mutableFilterReport: MutableList<String> = mutableListOf()
 
     val filterReport: List<String> get() = mutableFilterReport
@@ -53,21 +62,52 @@ class LinkFilter(private val crawlFilters: CrawlFilters, val conf: ImmutableConf
         debugLevel = page.variables.get(Name.PARSE_LINK_FILTER_DEBUG_LEVEL, 0)
         links.clear()
         page.links.forEach { l: CharSequence -> links.add(l.toString()) }
+        acceptedUrls.clear()
         mutableFilterReport.clear()
     }
 
+    /**
+     * A stateless predicate of [accept], the links with the same normalized url are all accepted
+     * */
     fun asPredicate(page: WebPage): Predicate<HyperlinkPersistable> {
         reset(page)
-        return Predicate { l: HyperlinkPersistable ->
-            val r = this.filter(l)
-            if (debugLevel > 0) {
-                mutableFilterReport.add(r.toString() + " <- " + l.url + "\t" + l.text)
-            }
-            0 == r
+        return Predicate { l: HyperlinkPersistable -> accept(l) }
+    }
+
+    /**
+     * Check if the link is accepted, the [urlView] is the parsed url of the link, or null if the url is malformed
+     * */
+    fun accept(link: HyperlinkPersistable, urlView: UrlView? = parseUrl(link.url)): Boolean {
+        return report(link, filter(link, urlView))
+    }
+
+    /**
+     * Check if the link is accepted like [accept], and a link is not accepted if a link with the same normalized url
+     * is accepted by this method since the last reset
+     * */
+    fun acceptOnce(link: HyperlinkPersistable, urlView: UrlView? = parseUrl(link.url)): Boolean {
+        var r = filter(link, urlView)
+        if (r == 0 && !noFilter && !acceptedUrls.add(normalizedUrl)) {
+            r = 122
         }
+        return report(link, r)
+    }
+
+    /**
+     * Parse the url of a link, or return null if the url is malformed or the link is filtered before it's parsed
+     * */
+    fun parseUrl(url: String): UrlView? {
+        if (url.isEmpty() || url.length > maxUrlLength) {
+            return null
+        }
+        return UrlView.parseOrNull(url)
     }
 
     fun filter(link: HyperlinkPersistable): Int {
+        return filter(link, parseUrl(link.url))
+    }
+
+    fun filter(link: HyperlinkPersistable, urlView: UrlView?): Int {
         if (noFilter) {
             return 0
         }
@@ -78,7 +118,7 @@ class LinkFilter(private val crawlFilters: CrawlFilters, val conf: ImmutableConf
         if (link.url.length > maxUrlLength) {
             return 112
         }
-        val destHost = URLUtil.getHost(url, groupMode)
+        val destHost = urlView?.let { getHost(it) }
         if (destHost == null || destHost.isEmpty()) {
             return 104
         }
@@ -96,9 +136,22 @@ class LinkFilter(private val crawlFilters: CrawlFilters, val conf: ImmutableConf
         if (url.isEmpty()) {
             return 1000
         }
-        return if (!reparseLinks && links.contains(url)) {
-            120
-        } else 0
+        if (!reparseLinks && links.contains(url)) {
+            return 120
+        }
+        normalizedUrl = url
+        return 0
+    }
+
+    private fun report(link: HyperlinkPersistable, r: Int): Boolean {
+        if (debugLevel > 0) {
+            mutableFilterReport.add(r.toString() + " <- " + link.url + "\t" + link.text)
+        }
+        return 0 == r
+    }
+
+    private fun getHost(urlView: UrlView): String? {
+        return if (groupMode == GroupMode.BY_HOST) urlView.host.toString() else URLUtil.getHost(urlView.spec, groupMode)
     }
 
     companion object {
@@ -0,0 +1,102 @@
+package ai.platon.pulsar.crawl.parse
+
+import ai.platon.pulsar.common.config.ImmutableConfig
+import ai.platon.pulsar.common.metrics.AppMetrics
+import ai.platon.pulsar.crawl.filter.CrawlFilters
+import ai.platon.pulsar.persist.HyperlinkPersistable
+import ai.platon.pulsar.persist.WebPage
+import java.lang.management.ManagementFactory
+import java.util.*
+
+/**
+ * Process all the outlinks of a page in one batch:
+ *
+ * 1. every url is parsed only once, and the parsed url is shared by all the checks of [LinkFilter]
+ * 2. the links are filtered and normalized by [LinkFilter], which is reset only once for a page
+ * 3. the links are deduplicated by the normalized urls, against the links of the page and the accepted links
+ * 4. the best [maxLinks] links, the ones with the longest anchors, are selected by a bounded heap, without a full sort
+ *
+ * The result is the same as filtering the links one by one, sorting them by the anchor length, and taking
+ * the first [maxLinks] ones, except that the links with the same normalized url are kept only once.
+ *
+ * The pipeline is thread safe, every thread has its own [LinkFilter].
+ */
+class OutlinkPipeline(
+    val crawlFilters: CrawlFilters,
+    val maxLinks: Int,
+    val conf: ImmutableConfig
+) {
+    private val linkFilters = ThreadLocal.withInitial { LinkFilter(crawlFilters, conf) }
+
+    private val pages = AppMetrics.reg.meter(this, "pages")
+    private val links = AppMetrics.reg.meter(this, "links")
+    private val acceptedLinks = AppMetrics.reg.meter(this, "acceptedLinks")
+    private val linksPerPage = AppMetrics.reg.histogram(this, "linksPerPage")
+    private val nanosPerPage = AppMetrics.reg.histogram(this, "nanosPerPage")
+    private val allocatedBytesPerLink = AppMetrics.reg.histogram(this, "allocatedBytesPerLink")
+
+    /**
+     * The link filter of the current thread, it's reset by the last processed page
+     * */
+    val linkFilter: LinkFilter get() = linkFilters.get()
+
+    /**
+     * Filter, normalize, deduplicate and select the outlinks of a page
+     *
+     * @return The selected links, the links with longer anchors come first
+     * */
+    fun process(page: WebPage, unfilteredLinks: Collection<HyperlinkPersistable>): Set<HyperlinkPersistable> {
+        val startTime = System.nanoTime()
+        val startBytes = allocatedBytes()
+
+        val filter = linkFilters.get()
+        filter.reset(page)
+
+        val selected = PriorityQueue(maxLinks.coerceAtLeast(1), WORST_FIRST)
+        var order = 0
+        for (link in unfilteredLinks) {
+            if (filter.acceptOnce(link)) {
+                selected.add(Candidate(link, link.text.length, order))
+                if (selected.size > maxLinks) {
+                    selected.poll()
+                }
+            }
+            ++order
+        }
+
+        val result = selected.toTypedArray()
+        result.sortWith(WORST_FIRST.reversed())
+        val selectedLinks = result.mapTo(LinkedHashSet(result.size)) { it.link }
+
+        val numLinks = unfilteredLinks.size
+        pages.mark()
+        links.mark(numLinks.toLong())
+        acceptedLinks.mark(selectedLinks.size.toLong())
+        linksPerPage.update(numLinks)
+        nanosPerPage.update(System.nanoTime() - startTime)
+        if (startBytes >= 0 && numLinks > 0) {
+            allocatedBytesPerLink.update((allocatedBytes() - startBytes) / numLinks)
+        }
+
+        return selectedLinks
+    }
+
+    private class Candidate(val link: HyperlinkPersistable, val textLength: Int, val order: Int)
+
+    companion object {
+        /**
+         * A link with a shorter anchor is worse, and a later link is worse if the anchors have the same length
+         * */
+        private val WORST_FIRST = compareBy<Candidate> { it.textLength }.thenByDescending { it.order }
+
+        private val threadMXBean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+
+        /**
+         * The bytes allocated by the current thread, or -1 if it's not supported
+         * */
+        private fun allocatedBytes(): Long {
+            val bean = threadMXBean ?: return -1
+            return if (bean.isThreadAllocatedMemoryEnabled) bean.getThreadAllocatedBytes(Thread.currentThread().id) else -1
+        }
+    }
+}
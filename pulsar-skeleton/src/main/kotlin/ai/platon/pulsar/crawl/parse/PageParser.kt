@@ -61,11 +61,13 @@ class PageParser(
 
     val unparsableTypes = ConcurrentSkipListSet<CharSequence>()
     private val maxParsedLinks = conf.getUint(CapabilityTypes.PARSE_MAX_LINKS_PER_PAGE, 200)
+    private val isLinkFilterEnabled = conf.getBoolean(CapabilityTypes.PARSE_FILTER_LINKS, false)
     /**
      * Parser timeout set to 60 sec by default. Set -1 (or any negative int) to deactivate
      */
     private val maxParseTime = conf.getDuration(CapabilityTypes.PARSE_TIMEOUT, AppConstants.DEFAULT_MAX_PARSE_TIME)
-    val linkFilter = LinkFilter(crawlFilters, conf)
+    val outlinkPipeline = OutlinkPipeline(crawlFilters, maxParsedLinks, conf)
+    val linkFilter: LinkFilter get() = outlinkPipeline.linkFilter
 
     constructor(parserFactory: ParserFactory, conf: ImmutableConfig) : this(
         parserFactory,
@@ -90,7 +92,8 @@ class PageParser(
     override fun getParams(): Params {
         return Params.of(
                 "maxParseTime", maxParseTime,
-                "maxParsedLinks", maxParsedLinks
+                "maxParsedLinks", maxParsedLinks,
+                "isLinkFilterEnabled", isLinkFilterEnabled
         )
     }
 
@@ -129,13 +132,9 @@ class PageParser(
         return ParseResult()
     }
 
-    // TODO: optimization
     private fun filterLinks(page: WebPage, unfilteredLinks: Set<HyperlinkPersistable>): Set<HyperlinkPersistable> {
-        return unfilteredLinks.asSequence()
-                .filter { linkFilter.asPredicate(page).test(it) } // filter out invalid urls
-                .sortedByDescending { it.text.length } // longer anchor comes first
-                .take(maxParsedLinks)
-                .toSet()
+        // filter out invalid urls, longer anchor comes first
+        return outlinkPipeline.process(page, unfilteredLinks)
     }
 
     private fun doParse(page: WebPage): ParseResult {
@@ -264,9 +263,8 @@ class PageParser(
                 || page.metadata.contains(Name.FORCE_FOLLOW)
                 || page.variables.contains(Name.FORCE_FOLLOW.name))
         if (follow) {
-            // val hypeLinks = filterLinks(page, unfilteredLinks)
             // TODO: too many filters, hard to debug, move all filters to a single filter, or just do it in ParserFilter
-            val hypeLinks = unfilteredLinks
+            val hypeLinks = if (isLinkFilterEnabled) filterLinks(page, unfilteredLinks) else unfilteredLinks
             log.takeIf { it.isTraceEnabled }?.trace("Find {}/{} live links", hypeLinks.size, unfilteredLinks.size)
             page.setLiveLinks(hypeLinks)
             page.addHyperlinks(hypeLinks)
@@ -19,6 +19,7 @@
 package ai.platon.pulsar.crawl.parse.html
 
 import ai.platon.pulsar.persist.metadata.MultiMetadata
+import org.jsoup.nodes.Element
 import org.w3c.dom.Node
 import java.net.URL
 import java.util.*
@@ -27,7 +28,21 @@ import java.util.*
  * This class holds the information about HTML "meta" tags extracted from a
  * page. Some special tags have convenience methods for easy checking.
  */
-class HTMLMetaTags(root: Node, private val currURL: URL?) {
+class HTMLMetaTags private constructor(private val currURL: URL?) {
+    /**
+     * Extract the meta tags from a W3C DOM tree
+     */
+    constructor(root: Node, currURL: URL?): this(currURL) {
+        walk(root)
+    }
+
+    /**
+     * Extract the meta tags from a jsoup tree
+     */
+    constructor(root: org.jsoup.nodes.Node, currURL: URL?): this(currURL) {
+        walk(root)
+    }
+
     /**
      * A convenience method. Returns the current value of `noIndex`.
      */
@@ -131,122 +146,26 @@ class HTMLMetaTags(root: Node, private val currURL: URL?) {
             }
             if ("meta".equals(node.nodeName, ignoreCase = true)) {
                 val attrs = node.attributes
-                var nameNode: Node? = null
-                var equivNode: Node? = null
-                var contentNode: Node? = null
+                var name: String? = null
+                var equiv: String? = null
+                var content: String? = null
                 // Retrieves name, http-equiv and content attribues
                 for (i in 0 until attrs.length) {
                     val attr = attrs.item(i)
                     val attrName = attr.nodeName.toLowerCase()
                     if (attrName == "name") {
-                        nameNode = attr
+                        name = attr.nodeValue
                     } else if (attrName == "http-equiv") {
-                        equivNode = attr
+                        equiv = attr.nodeValue
                     } else if (attrName == "content") {
-                        contentNode = attr
-                    }
-                }
-                if (nameNode != null) {
-                    if (contentNode != null) {
-                        val name = nameNode.nodeValue.toLowerCase()
-                        generalTags.put(name, contentNode.nodeValue)
-                        if ("robots" == name) {
-                            if (contentNode != null) {
-                                val directives = contentNode.nodeValue.toLowerCase()
-                                var index = directives.indexOf("none")
-                                if (index >= 0) {
-                                    noIndex = true
-                                    noFollow = true
-                                }
-                                index = directives.indexOf("all")
-                                if (index >= 0) { // do nothing...
-                                }
-                                index = directives.indexOf("noindex")
-                                if (index >= 0) {
-                                    noIndex = true
-                                }
-                                index = directives.indexOf("nofollow")
-                                if (index >= 0) {
-                                    noFollow = true
-                                }
-                                index = directives.indexOf("nocache")
-                                if (index >= 0) {
-                                    noCache = true
-                                }
-                            }
-                        } // end if (name == robots)
-                    }
-                }
-                if (equivNode != null) {
-                    if (contentNode != null) {
-                        val name = equivNode.nodeValue.toLowerCase()
-                        var content = contentNode.nodeValue
-                        httpEquivTags.setProperty(name, content)
-                        if ("pragma" == name) {
-                            content = content.toLowerCase()
-                            val index = content.indexOf("no-cache")
-                            if (index >= 0) noCache = true
-                        } else if ("refresh" == name) {
-                            var idx = content.indexOf(';')
-                            val time = if (idx == -1) { // just the refresh time
-                                content
-                            } else content.substring(0, idx)
-
-                            try {
-                                refreshTime = time.toInt()
-                                // skip this if we couldn't parse the time
-                                refresh = true
-                            } catch (e: Exception) {
-                            }
-
-                            var refreshUrl: URL? = null
-                            if (refresh && idx != -1) { // set the URL
-                                idx = content.toLowerCase().indexOf("url=")
-                                if (idx == -1) {
-                                    // assume a mis-formatted entry with just the url
-                                    idx = content.indexOf(';') + 1
-                                } else idx += 4
-                                if (idx != -1) {
-                                    val url = content.substring(idx)
-                                    refreshUrl = try {
-                                        URL(url)
-                                    } catch (e: Exception) {
-                                        // XXX according to the spec, this has to be an absolute
-                                        // XXX url. However, many websites use relative URLs and
-                                        // XXX expect browsers to handle that.
-                                        // XXX Unfortunately, in some cases this may create a
-                                        // XXX infinitely recursive paths (a crawler trap)...
-                                        // if (!url.startsWith("/")) url = "/" + url;
-                                        try {
-                                            URL(currURL, url)
-                                        } catch (e1: Exception) {
-                                            null
-                                        }
-                                    }
-                                }
-                            }
-                            if (refresh) {
-                                if (refreshUrl == null) {
-                                    // apparently only refresh time was present. set the URL
-                                    // to the same URL.
-                                    refreshUrl = currURL
-                                }
-                                refreshHref = refreshUrl
-                            }
-                        }
+                        content = attr.nodeValue
                     }
                 }
+                processMetaTag(name, equiv, content)
             } else if ("base".equals(node.nodeName, ignoreCase = true)) {
-                val attrs = node.attributes
-                val hrefNode = attrs.getNamedItem("href")
+                val hrefNode = node.attributes.getNamedItem("href")
                 if (hrefNode != null) {
-                    val urlString = hrefNode.nodeValue
-                    var url: URL? = null
-                    try {
-                        url = currURL?.let { URL(it, urlString) } ?: URL(urlString)
-                    } catch (ignored: Exception) {
-                    }
-                    if (url != null) baseHref = url
+                    processBaseTag(hrefNode.nodeValue)
                 }
             }
         }
@@ -259,6 +178,138 @@ class HTMLMetaTags(root: Node, private val currURL: URL?) {
         }
     }
 
+    /**
+     * The same as [walk], but works on the jsoup tree directly, so the document needs no conversion
+     */
+    fun walk(node: org.jsoup.nodes.Node) {
+        if (node is Element) {
+            val tagName = node.normalName()
+            if (tagName == "body") { // META tags should not be under body
+                return
+            }
+            if (tagName == "meta") {
+                val attrs = node.attributes()
+                processMetaTag(attrs.getIgnoreCaseOrNull("name"), attrs.getIgnoreCaseOrNull("http-equiv"),
+                        attrs.getIgnoreCaseOrNull("content"))
+            } else if (tagName == "base") {
+                node.attributes().getIgnoreCaseOrNull("href")?.let { processBaseTag(it) }
+            }
+        }
+        val len = node.childNodeSize()
+        for (i in 0 until len) {
+            val child = node.childNode(i)
+            // only elements can be meta tags or contain meta tags
+            if (child is Element) {
+                walk(child)
+            }
+        }
+    }
+
+    private fun org.jsoup.nodes.Attributes.getIgnoreCaseOrNull(key: String): String? {
+        return if (hasKeyIgnoreCase(key)) getIgnoreCase(key) else null
+    }
+
+    private fun processMetaTag(nameValue: String?, equivValue: String?, contentValue: String?) {
+        if (contentValue == null) {
+            return
+        }
+
+        if (nameValue != null) {
+            val name = nameValue.toLowerCase()
+            generalTags.put(name, contentValue)
+            if ("robots" == name) {
+                val directives = contentValue.toLowerCase()
+                var index = directives.indexOf("none")
+                if (index >= 0) {
+                    noIndex = true
+                    noFollow = true
+                }
+                index = directives.indexOf("all")
+                if (index >= 0) { // do nothing...
+                }
+                index = directives.indexOf("noindex")
+                if (index >= 0) {
+                    noIndex = true
+                }
+                index = directives.indexOf("nofollow")
+                if (index >= 0) {
+                    noFollow = true
+                }
+                index = directives.indexOf("nocache")
+                if (index >= 0) {
+                    noCache = true
+                }
+            } // end if (name == robots)
+        }
+
+        if (equivValue != null) {
+            val name = equivValue.toLowerCase()
+            var content = contentValue
+            httpEquivTags.setProperty(name, content)
+            if ("pragma" == name) {
+                content = content.toLowerCase()
+                val index = content.indexOf("no-cache")
+                if (index >= 0) noCache = true
+            } else if ("refresh" == name) {
+                var idx = content.indexOf(';')
+                val time = if (idx == -1) { // just the refresh time
+                    content
+                } else content.substring(0, idx)
+
+                try {
+                    refreshTime = time.toInt()
+                    // skip this if we couldn't parse the time
+                    refresh = true
+                } catch (e: Exception) {
+                }
+
+                var refreshUrl: URL? = null
+                if (refresh && idx != -1) { // set the URL
+                    idx = content.toLowerCase().indexOf("url=")
+                    if (idx == -1) {
+                        // assume a mis-formatted entry with just the url
+                        idx = content.indexOf(';') + 1
+                    } else idx += 4
+                    if (idx != -1) {
+                        val url = content.substring(idx)
+                        refreshUrl = try {
+                            URL(url)
+                        } catch (e: Exception) {
+                            // XXX according to the spec, this has to be an absolute
+                            // XXX url. However, many websites use relative URLs and
+                            // XXX expect browsers to handle that.
+                            // XXX Unfortunately, in some cases this may create a
+                            // XXX infinitely recursive paths (a crawler trap)...
+                            // if (!url.startsWith("/")) url = "/" + url;
+                            try {
+                                URL(currURL, url)
+                            } catch (e1: Exception) {
+                                null
+                            }
+                        }
+                    }
+                }
+                if (refresh) {
+                    if (refreshUrl == null) {
+                        // apparently only refresh time was present. set the URL
+                        // to the same URL.
+                        refreshUrl = currURL
+                    }
+                    refreshHref = refreshUrl
+                }
+            }
+        }
+    }
+
+    private fun processBaseTag(urlString: String) {
+        var url: URL? = null
+        try {
+            url = currURL?.let { URL(it, urlString) } ?: URL(urlString)
+        } catch (ignored: Exception) {
+        }
+        if (url != null) baseHref = url
+    }
+
     override fun toString(): String {
         val sb = StringBuffer()
         sb.append("base=$baseHref, noCache=$noCache, noFollow=$noFollow, noIndex=$noIndex, refresh=$refresh, refreshHref=$refreshHref")
@@ -273,8 +324,4 @@ class HTMLMetaTags(root: Node, private val currURL: URL?) {
         }
         return sb.toString()
     }
-
-    init {
-        walk(root)
-    }
 }
\ No newline at end of file
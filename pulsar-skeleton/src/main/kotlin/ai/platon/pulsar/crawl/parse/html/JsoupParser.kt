@@ -1,5 +1,6 @@
 package ai.platon.pulsar.crawl.parse.html
 
+import ai.platon.pulsar.common.PulsarParams
 import ai.platon.pulsar.common.config.AppConstants
 import ai.platon.pulsar.common.config.ImmutableConfig
 import ai.platon.pulsar.common.persist.ext.options
@@ -8,6 +9,7 @@ import ai.platon.pulsar.dom.FeaturedDocument
 import ai.platon.pulsar.dom.select.selectFirstOrNull
 import ai.platon.pulsar.persist.WebPage
 import org.jsoup.Jsoup
+import org.jsoup.nodes.Document
 import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.util.concurrent.atomic.AtomicInteger
@@ -39,6 +41,14 @@ class JsoupParser(
             primerParser.detectEncoding(page)
         }
 
+        // the document is built by the browser already, see BrowserEmulator.capturePageSource
+        val capturedDocument = page.removeVar(PulsarParams.VAR_CAPTURED_DOCUMENT) as? Document
+        if (capturedDocument != null) {
+            document = FeaturedDocument(capturedDocument)
+            setMetaInfos(page, document)
+            return document
+        }
+
         try {
             document = FeaturedDocument(Jsoup.parse(page.contentAsInputStream, page.encoding, page.baseUrl))
             setMetaInfos(page, document)
@@ -29,6 +29,11 @@ import ai.platon.pulsar.crawl.parse.Parser
 import ai.platon.pulsar.persist.HyperlinkPersistable
 import ai.platon.pulsar.persist.WebPage
 import com.google.common.collect.Maps
+import org.jsoup.nodes.Comment
+import org.jsoup.nodes.Element
+import org.jsoup.nodes.TextNode
+import org.jsoup.select.NodeFilter
+import org.jsoup.select.NodeTraversor
 import org.slf4j.LoggerFactory
 import org.w3c.dom.Node
 import org.w3c.dom.NodeList
@@ -407,6 +412,183 @@ class PrimerParser(conf: ImmutableConfig) {
         }
     }
 
+    /**
+     * Append all the content text found beneath the jsoup node, the same as [getPageText] for a W3C node
+     *
+     * @return true if nested anchors were found
+     */
+    fun getPageText(sb: StringBuilder, root: org.jsoup.nodes.Node, abortOnNestedAnchors: Boolean): Boolean {
+        var anchorDepth = 0
+        var abort = false
+        NodeTraversor.filter(object : NodeFilter {
+            override fun head(node: org.jsoup.nodes.Node, depth: Int): NodeFilter.FilterResult {
+                when (node) {
+                    is Comment -> return NodeFilter.FilterResult.SKIP_ENTIRELY
+                    is TextNode -> {
+                        val text = node.text().trim { it <= ' ' }
+                        if (text.isNotEmpty()) {
+                            if (sb.isNotEmpty()) {
+                                sb.append(' ')
+                            }
+                            sb.append(text)
+                        }
+                    }
+                    is Element -> {
+                        val nodeName = node.normalName()
+                        if (nodeName == "script" || nodeName == "style") {
+                            return NodeFilter.FilterResult.SKIP_ENTIRELY
+                        }
+                        if (abortOnNestedAnchors && nodeName == "a" && ++anchorDepth > 1) {
+                            abort = true
+                            return NodeFilter.FilterResult.STOP
+                        }
+                    }
+                }
+                return NodeFilter.FilterResult.CONTINUE
+            }
+
+            override fun tail(node: org.jsoup.nodes.Node, depth: Int) = NodeFilter.FilterResult.CONTINUE
+        }, root)
+        return abort
+    }
+
+    fun getPageText(root: org.jsoup.nodes.Node): String {
+        val sb = StringBuilder()
+        getPageText(sb, root, false)
+        return sb.toString()
+    }
+
+    /**
+     * The text of the first `title` element in the head, or an empty string if there is no title
+     */
+    fun getPageTitle(root: org.jsoup.nodes.Element): String {
+        return findInHead(root) { it.normalName() == "title" }?.let { getPageText(it) } ?: ""
+    }
+
+    fun getMetadata(root: org.jsoup.nodes.Element): Map<String, String> {
+        val metadata: MutableMap<String, String> = Maps.newLinkedHashMap()
+        findInHead(root) {
+            when (it.normalName()) {
+                "title" -> metadata["meta-title"] = getPageText(it)
+                "meta" -> {
+                    val name = it.attr("name")
+                    if ("keywords".equals(name, ignoreCase = true) && it.hasAttr("content")) {
+                        metadata["meta-keywords"] = it.attr("content")
+                    } else if ("description".equals(name, ignoreCase = true) && it.hasAttr("content")) {
+                        metadata["meta-description"] = it.attr("content")
+                    }
+                }
+            }
+            false
+        }
+        return metadata
+    }
+
+    /**
+     * If the jsoup tree contains a BASE tag then it's HREF is returned.
+     */
+    fun getBaseURLFromTag(root: org.jsoup.nodes.Element): URL? {
+        val base = findInHead(root) { it.normalName() == "base" && it.hasAttr("href") } ?: return null
+        return try {
+            URL(base.attr("href"))
+        } catch (ignored: MalformedURLException) {
+            null
+        }
+    }
+
+    /**
+     * Visit the elements before `body` in document order, returns the first element accepted by the predicate
+     */
+    private fun findInHead(root: org.jsoup.nodes.Element, predicate: (org.jsoup.nodes.Element) -> Boolean): org.jsoup.nodes.Element? {
+        var found: org.jsoup.nodes.Element? = null
+        NodeTraversor.filter(object : NodeFilter {
+            override fun head(node: org.jsoup.nodes.Node, depth: Int): NodeFilter.FilterResult {
+                if (node !is Element) {
+                    return NodeFilter.FilterResult.SKIP_ENTIRELY
+                }
+                // stop after HEAD
+                if (node.normalName() == "body") {
+                    return NodeFilter.FilterResult.STOP
+                }
+                if (predicate(node)) {
+                    found = node
+                    return NodeFilter.FilterResult.STOP
+                }
+                return NodeFilter.FilterResult.CONTINUE
+            }
+
+            override fun tail(node: org.jsoup.nodes.Node, depth: Int) = NodeFilter.FilterResult.CONTINUE
+        }, root)
+        return found
+    }
+
+    /**
+     * Find all the links below the jsoup element, the same as [collectLinks] for a W3C node,
+     * at most [maxLinks] links are collected
+     */
+    fun collectLinks(base: URL, hyperlinks: MutableSet<HyperlinkPersistable>, root: org.jsoup.nodes.Element,
+                     maxLinks: Int = Int.MAX_VALUE): MutableSet<HyperlinkPersistable> {
+        NodeTraversor.filter(object : NodeFilter {
+            override fun head(node: org.jsoup.nodes.Node, depth: Int): NodeFilter.FilterResult {
+                if (hyperlinks.size >= maxLinks) {
+                    return NodeFilter.FilterResult.STOP
+                }
+                if (node !is Element) {
+                    return NodeFilter.FilterResult.SKIP_ENTIRELY
+                }
+
+                val params = linkParams[node.normalName()]
+                if (params != null && !shouldThrowAwayLink(node, params)) {
+                    collectLink(base, hyperlinks, node, params)
+                }
+                return NodeFilter.FilterResult.CONTINUE
+            }
+
+            override fun tail(node: org.jsoup.nodes.Node, depth: Int) = NodeFilter.FilterResult.CONTINUE
+        }, root)
+
+        return hyperlinks
+    }
+
+    private fun collectLink(base: URL, hyperlinks: MutableSet<HyperlinkPersistable>,
+                            element: org.jsoup.nodes.Element, params: LinkParams) {
+        var target: String? = null
+        for (attr in element.attributes()) {
+            val attrName = attr.key
+            if (params.attrName.equals(attrName, ignoreCase = true)) {
+                target = attr.value
+            } else if ("rel".equals(attrName, ignoreCase = true)
+                    && "nofollow".equals(attr.value, ignoreCase = true)) {
+                return
+            } else if ("method".equals(attrName, ignoreCase = true)
+                    && "post".equals(attr.value, ignoreCase = true)) {
+                return
+            }
+        }
+
+        if (target != null) try {
+            val linkText = StringBuilder()
+            getPageText(linkText, element, true)
+            val url = resolveURL(base, target)
+            hyperlinks.add(HyperlinkPersistable(url.toString(), linkText.toString().trim { it <= ' ' }))
+        } catch (ignored: MalformedURLException) {
+        }
+    }
+
+    private fun shouldThrowAwayLink(element: org.jsoup.nodes.Element, params: LinkParams): Boolean {
+        val children = element.childNodes()
+        return when {
+            // this has no inner structure
+            children.isEmpty() -> params.childLen != 0
+            // a single nested link, optionally surrounded by whitespace nodes
+            children.size <= 3 -> {
+                val significant = children.filterNot { it is TextNode && it.isBlank }
+                significant.size == 1 && (significant[0] as? Element)?.normalName() == params.elName
+            }
+            else -> false
+        }
+    }
+
     private class LinkParams(var elName: String, var attrName: String, var childLen: Int) {
         override fun toString(): String {
             return "LP[el=$elName,attr=$attrName,len=$childLen]"
@@ -1,11 +1,21 @@
 package ai.platon.pulsar.crawl.common.collect
 
+import ai.platon.pulsar.common.collect.ConcurrentCountingBloomFilter
 import ai.platon.pulsar.common.collect.ConcurrentNEntrantQueue
 import ai.platon.pulsar.common.collect.ConcurrentNonReentrantQueue
+import ai.platon.pulsar.common.collect.DelayUrl
+import ai.platon.pulsar.common.collect.PersistentDelayQueue
+import ai.platon.pulsar.common.collect.UrlSegmentLog
 import ai.platon.pulsar.common.urls.ComparableUrlAware
 import ai.platon.pulsar.common.urls.Hyperlink
+import org.apache.commons.io.FileUtils
 import org.junit.Test
+import java.nio.file.Files
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
 import kotlin.test.assertNotNull
+import kotlin.test.assertNull
 import kotlin.test.assertTrue
 
 class TestUrlQueues {
@@ -42,4 +52,91 @@ class TestUrlQueues {
         }
         assertTrue { queue.isEmpty() }
     }
+
+    @Test
+    fun testFIFO() {
+        val queue = ConcurrentNonReentrantQueue<ComparableUrlAware>()
+        queue.addAll(urls.reversed())
+        assertEquals(urls.reversed(), generateSequence { queue.poll() }.toList())
+    }
+
+    @Test
+    fun testRejections() {
+        val url = urls[0]
+        val nonReentrantQueue = ConcurrentNonReentrantQueue<ComparableUrlAware>()
+        assertTrue { nonReentrantQueue.offer(url) }
+        assertFalse { nonReentrantQueue.offer(Hyperlink(url.url)) }
+        assertEquals(1, nonReentrantQueue.count(url))
+        assertEquals(1L, nonReentrantQueue.numAccepted)
+        assertEquals(1L, nonReentrantQueue.numRejected)
+
+        val nEntrantQueue = ConcurrentNEntrantQueue<ComparableUrlAware>(3)
+        // an item is accepted n + 1 times
+        repeat(4) {
+            assertTrue { nEntrantQueue.offer(url) }
+            assertNotNull(nEntrantQueue.poll())
+        }
+        assertFalse { nEntrantQueue.offer(url) }
+        assertEquals(4, nEntrantQueue.count(url))
+        assertEquals(1L, nEntrantQueue.numRejected)
+    }
+
+    @Test
+    fun testQueuedItemIsNotAcceptedAgain() {
+        val url = urls[0]
+        val queue = ConcurrentNEntrantQueue<ComparableUrlAware>(3)
+        assertTrue { queue.offer(url) }
+        assertFalse { queue.offer(Hyperlink(url.url)) }
+        assertEquals(1, queue.size)
+        assertEquals(1, queue.count(url))
+
+        queue.removeIf { it.url == url.url }
+        assertTrue { queue.offer(url) }
+        assertEquals(2, queue.count(url))
+    }
+
+    @Test
+    fun testSharedHistory() {
+        val url = urls[0]
+        val history = ConcurrentCountingBloomFilter(1000, 0.01)
+        val queue = ConcurrentNonReentrantQueue<ComparableUrlAware>(history)
+        val queue2 = ConcurrentNonReentrantQueue<ComparableUrlAware>(history)
+        // each queue counts it's own items
+        assertTrue { queue.offer(url) }
+        assertTrue { queue2.offer(url) }
+        assertFalse { queue.offer(url) }
+        assertEquals(1, queue2.count(url))
+    }
+
+    @Test
+    fun testPersistentDelayQueue() {
+        val directory = Files.createTempDirectory("delay")
+        try {
+            UrlSegmentLog(directory).use { log ->
+                PersistentDelayQueue(log, commitInterval = Duration.ofHours(1)).use { queue ->
+                    queue.add(DelayUrl(urls[0], Duration.ZERO))
+                    queue.add(DelayUrl(urls[1], Duration.ofHours(1)))
+                    assertEquals(urls[0], queue.poll()?.url)
+                    assertNull(queue.poll())
+                    // the commit is delayed until the batch is full or the queue is closed
+                    assertEquals(0L, log.committedOffset)
+                }
+                assertTrue { log.committedOffset > 0 }
+            }
+
+            UrlSegmentLog(directory).use { log ->
+                PersistentDelayQueue(log).use { queue ->
+                    assertEquals(1, queue.size)
+                    assertEquals(urls[1], queue.peek()?.url)
+                    queue.removeIf { true }
+                }
+            }
+
+            UrlSegmentLog(directory).use { log ->
+                assertTrue { PersistentDelayQueue(log).isEmpty() }
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile())
+        }
+    }
 }
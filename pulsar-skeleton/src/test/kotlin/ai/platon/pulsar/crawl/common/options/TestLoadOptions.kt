@@ -4,6 +4,7 @@ import ai.platon.pulsar.common.AppPaths
 import ai.platon.pulsar.common.config.VolatileConfig
 import ai.platon.pulsar.common.options.LoadOptionDefaults
 import ai.platon.pulsar.common.options.LoadOptions
+import ai.platon.pulsar.common.options.LoadOptionsTemplate
 import ai.platon.pulsar.common.urls.Urls
 import ai.platon.pulsar.context.PulsarContexts
 import ai.platon.pulsar.crawl.common.url.StatefulListenableHyperlink
@@ -14,6 +15,7 @@ import java.time.Duration
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertNotEquals
+import kotlin.test.assertSame
 import kotlin.test.assertTrue
 
 class TestLoadOptions {
@@ -211,6 +213,34 @@ class TestLoadOptions {
         assertEquals(clone, clone2)
     }
 
+    @Test
+    fun testTemplateOverlay() {
+        val args1 = "-parse -incognito -expires 1s -retry -storeContent false"
+        val args2 = "-label test -expires 1d -storeContent true -tl 40"
+        val template = LoadOptionsTemplate.compile(args1)
+        assertSame(template, LoadOptionsTemplate.compile(" $args1 "))
+
+        val expected = LoadOptions.parseWithoutCache("$args1 $args2", conf)
+        val options = template.overlay(args2).createOptions(conf)
+        assertEquals(expected, options)
+        assertEquals("test", options.label)
+        assertTrue { options.parse }
+        assertEquals(Duration.ofDays(1), options.expires)
+        assertTrue { options.storeContent }
+
+        assertEquals(LoadOptions.parseWithoutCache(args1, conf), template.overlay("").createOptions(conf))
+        assertEquals(LoadOptions.parseWithoutCache(args2, conf), LoadOptionsTemplate.EMPTY.overlay(args2).createOptions(conf))
+    }
+
+    @Test
+    fun testTemplateCreatesIndependentOptions() {
+        val template = LoadOptionsTemplate.compile("-incognito -expires 1s")
+        val options = template.createOptions(conf)
+        options.expires = Duration.ofDays(1)
+        assertEquals(1, template.createOptions(conf).expires.seconds)
+        assertEquals(Duration.ofDays(1), LoadOptionsTemplate.of(options).createOptions(conf).expires)
+    }
+
     @Test
     fun testEquality() {
         assertOptionEquals("", "")
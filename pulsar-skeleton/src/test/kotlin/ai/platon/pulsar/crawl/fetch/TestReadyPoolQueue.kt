@@ -0,0 +1,77 @@
+package ai.platon.pulsar.crawl.fetch
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.crawl.common.URLUtil
+import ai.platon.pulsar.crawl.fetch.data.PoolId
+import ai.platon.pulsar.crawl.fetch.data.ReadyPoolQueue
+import ai.platon.pulsar.persist.WebPage
+import org.junit.Test
+import java.net.URL
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class TestReadyPoolQueue {
+    private val conf = VolatileConfig()
+    private val queue = ReadyPoolQueue()
+
+    private fun createPool(priority: Int, host: String, crawlDelay: Duration = Duration.ZERO): TaskPool {
+        return TaskPool(PoolId(priority, "https", host), URLUtil.GroupMode.BY_HOST,
+            1, crawlDelay, Duration.ZERO, Duration.ofMinutes(5))
+    }
+
+    private fun produce(pool: TaskPool, path: String): JobFetchTask {
+        val url = "https://${pool.host}/$path"
+        val task = JobFetchTask(0, pool.priority, pool.protocol, pool.host, WebPage.newWebPage(url, conf), URL(url))
+        pool.produce(task)
+        queue.schedule(pool)
+        return task
+    }
+
+    @Test
+    fun testPriority() {
+        val pool1 = createPool(1, "www.example.com")
+        val pool2 = createPool(2, "www.example.org")
+        produce(pool1, "a")
+        produce(pool2, "b")
+
+        assertEquals(pool2.host, queue.poll()?.host)
+        assertEquals(pool1.host, queue.poll()?.host)
+        assertNull(queue.poll())
+    }
+
+    @Test
+    fun testConcurrencyAndCrawlDelay() {
+        val pool = createPool(1, "www.example.com", Duration.ofMillis(300))
+        val other = createPool(1, "www.example.org")
+        produce(pool, "a")
+        produce(pool, "b")
+
+        val task = assertNotNull(queue.poll())
+        // only one task of the pool is allowed to be pending
+        assertNull(queue.poll())
+
+        pool.finish(task, false)
+        queue.schedule(pool)
+        produce(other, "c")
+        // the pool is waiting for the crawl delay, the other pool is served
+        assertEquals(other.host, queue.poll()?.host)
+        assertNull(queue.poll())
+
+        Thread.sleep(400)
+        assertEquals(pool.host, queue.poll()?.host)
+    }
+
+    @Test
+    fun testDropUnacceptedPool() {
+        val pool = createPool(1, "www.example.com")
+        produce(pool, "a")
+
+        assertNull(queue.poll { false })
+        assertEquals(0, queue.size)
+
+        queue.schedule(pool)
+        assertEquals(pool.host, queue.poll()?.host)
+    }
+}
@@ -0,0 +1,78 @@
+package ai.platon.pulsar.crawl.parse
+
+import ai.platon.pulsar.common.config.VolatileConfig
+import ai.platon.pulsar.crawl.filter.CrawlFilters
+import ai.platon.pulsar.persist.HyperlinkPersistable
+import ai.platon.pulsar.persist.WebPage
+import org.junit.Test
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+/**
+ * Check that [OutlinkPipeline] selects the same links as filtering the links one by one, deduplicating them by
+ * the normalized urls, sorting them by the anchor length and taking the first ones
+ * */
+class TestOutlinkPipeline {
+    private val random = Random(20210412)
+    private val conf = VolatileConfig()
+    private val crawlFilters = CrawlFilters(conf)
+
+    @Test
+    fun testSameAsSequentialFilter() {
+        repeat(200) {
+            val page = WebPage.newWebPage("http://www.example.com/", conf)
+            val links = List(random.nextInt(500)) { randomLink(it) }.toSet()
+            val maxLinks = random.nextInt(1, 100)
+
+            val pipeline = OutlinkPipeline(crawlFilters, maxLinks, conf)
+            val expected = sequentialFilter(page, links, maxLinks)
+            val actual = pipeline.process(page, links)
+
+            assertEquals(expected.map { it.url }, actual.map { it.url })
+        }
+    }
+
+    @Test
+    fun testDuplicateLinks() {
+        val page = WebPage.newWebPage("http://www.example.com/", conf)
+        val link = HyperlinkPersistable("http://www.example.com/a/b/c/1.html", "a news title")
+        val links = listOf(link, HyperlinkPersistable(link.url, "another news title"), link)
+
+        val actual = OutlinkPipeline(crawlFilters, 10, conf).process(page, links)
+        assertEquals(1, actual.size)
+    }
+
+    @Test
+    fun testPredicateIsStateless() {
+        val page = WebPage.newWebPage("http://www.example.com/", conf)
+        val link = HyperlinkPersistable("http://www.example.com/a/b/c/1.html", "a news title")
+        val predicate = LinkFilter(crawlFilters, conf).asPredicate(page)
+
+        assertTrue { predicate.test(link) }
+        assertTrue { predicate.test(HyperlinkPersistable(link.url, "another news title")) }
+    }
+
+    private fun sequentialFilter(page: WebPage, links: Set<HyperlinkPersistable>, maxLinks: Int): Set<HyperlinkPersistable> {
+        val predicate = LinkFilter(crawlFilters, conf).asPredicate(page)
+        return links.asSequence()
+            .filter { predicate.test(it) }
+            .distinctBy { crawlFilters.normalizeToEmpty(it.url) }
+            .sortedByDescending { it.text.length }
+            .take(maxLinks)
+            .toSet()
+    }
+
+    private fun randomLink(order: Int): HyperlinkPersistable {
+        val host = listOf("www.example.com", "news.example.com", "a.b.c", "", "[::1]").random(random)
+        val path = List(random.nextInt(6)) { randomString("abc019", 8) }.joinToString("/")
+        val url = listOf("http://", "https://", "htp:/", "").random(random) + host + "/" + path
+        val text = randomString("abc 中文", 40)
+        return HyperlinkPersistable(url, text, order)
+    }
+
+    private fun randomString(chars: String, maxLength: Int): String {
+        val length = random.nextInt(maxLength + 1)
+        return String(CharArray(length) { chars[random.nextInt(chars.length)] })
+    }
+}
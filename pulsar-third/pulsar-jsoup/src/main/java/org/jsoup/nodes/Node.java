@@ -30,6 +30,8 @@ public abstract class Node implements Cloneable {
     Node ownerBody = null;
     String immutableText = null;
     RealVector features = EMPTY_FEATURE;
+    NodeFeatureStore featureStore = null;
+    int featureRow = -1;
     Map<String, Object> variables = null;
     Map<String, List<Object>> tuples = null;
 
@@ -203,15 +205,61 @@ public abstract class Node implements Cloneable {
         this.immutableText = immutableText;
     }
 
+    /**
+     * Get the feature vector of this node. If the node is bound to a feature store, the returned vector is a view
+     * of the store, use {@link #getFeature(int)} and {@link #setFeature(int, double)} to access a single feature
+     * without creating the view.
+     */
     @NotNull
     public RealVector getFeatures() {
+        if (featureStore != null) {
+            return featureStore.row(featureRow);
+        }
         return features;
     }
 
+    /**
+     * Set the feature vector of this node, the node is unbound from the feature store if any.
+     */
     public void setFeatures(@NotNull RealVector features) {
+        this.featureStore = null;
+        this.featureRow = -1;
         this.features = features;
     }
 
+    public double getFeature(int key) {
+        if (featureStore != null) {
+            return featureStore.get(featureRow, key);
+        }
+        return features.getEntry(key);
+    }
+
+    public void setFeature(int key, double value) {
+        if (featureStore != null) {
+            featureStore.set(featureRow, key, value);
+        } else {
+            features.setEntry(key, value);
+        }
+    }
+
+    /**
+     * Bind this node to a row of the feature store, the features of the node are read from and written to the store.
+     */
+    public void bindFeatures(@NotNull NodeFeatureStore store, int row) {
+        this.featureStore = store;
+        this.featureRow = row;
+        this.features = EMPTY_FEATURE;
+    }
+
+    @Nullable
+    public NodeFeatureStore getFeatureStore() {
+        return featureStore;
+    }
+
+    public int getFeatureRow() {
+        return featureRow;
+    }
+
     @NotNull
     public Map<String, Object> getVariables() {
         if (variables == null) {
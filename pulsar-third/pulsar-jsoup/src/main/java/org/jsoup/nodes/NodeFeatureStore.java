@@ -0,0 +1,114 @@
+package org.jsoup.nodes;
+
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.RealVector;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A columnar store of the features of all the nodes in a document.
+ *
+ * Every feature has a primitive column which is indexed by the node's row, a row is allocated for every node
+ * when the node is bound to the store, so the features of a document are kept in a fixed number of arrays,
+ * no matter how many nodes the document has.
+ *
+ * The store is not thread safe, the features are calculated by a single thread and then read only.
+ */
+public final class NodeFeatureStore {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int dimension;
+    private final double[][] columns;
+    private int capacity;
+    private int size = 0;
+
+    public NodeFeatureStore(int dimension) {
+        this(dimension, DEFAULT_CAPACITY);
+    }
+
+    public NodeFeatureStore(int dimension, int capacity) {
+        this.dimension = dimension;
+        this.capacity = Math.max(capacity, 16);
+        this.columns = new double[dimension][this.capacity];
+    }
+
+    /**
+     * The number of features
+     */
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * The number of allocated rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The estimated memory held by the columns
+     */
+    public long memorySize() {
+        return 16L + dimension * (16L + 8L * capacity);
+    }
+
+    /**
+     * Allocate a row with all features set to zero
+     *
+     * @return The index of the row
+     */
+    public int allocate() {
+        if (size == capacity) {
+            capacity = 2 * capacity;
+            for (int i = 0; i < dimension; ++i) {
+                columns[i] = Arrays.copyOf(columns[i], capacity);
+            }
+        }
+        return size++;
+    }
+
+    public double get(int row, int key) {
+        checkIndex(row, key);
+        return columns[key][row];
+    }
+
+    public void set(int row, int key, double value) {
+        checkIndex(row, key);
+        columns[key][row] = value;
+    }
+
+    /**
+     * Get the column of a feature, the length of the column can be larger than {@link #size()},
+     * the column might be replaced when new rows are allocated
+     */
+    @NotNull
+    public double[] column(int key) {
+        if (key < 0 || key >= dimension) {
+            throw new OutOfRangeException(key, 0, dimension - 1);
+        }
+        return columns[key];
+    }
+
+    /**
+     * Get a vector view of a row, the view reads and writes the columns directly
+     */
+    @NotNull
+    public RealVector row(int row) {
+        if (row < 0 || row >= size) {
+            throw new OutOfRangeException(row, 0, size - 1);
+        }
+        return new NodeFeatureVector(this, row);
+    }
+
+    private void checkIndex(int row, int key) {
+        if (key < 0 || key >= dimension) {
+            throw new OutOfRangeException(key, 0, dimension - 1);
+        }
+        if (row < 0 || row >= size) {
+            throw new OutOfRangeException(row, 0, size - 1);
+        }
+    }
+}
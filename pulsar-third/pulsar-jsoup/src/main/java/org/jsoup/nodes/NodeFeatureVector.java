@@ -0,0 +1,128 @@
+package org.jsoup.nodes;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * A vector view of a row in a {@link NodeFeatureStore}, it reads and writes the columns of the store directly.
+ *
+ * The operations which create a new vector return an {@link ArrayRealVector}.
+ */
+final class NodeFeatureVector extends RealVector {
+
+    private final NodeFeatureStore store;
+    private final int row;
+
+    NodeFeatureVector(NodeFeatureStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    @Override
+    public int getDimension() {
+        return store.dimension();
+    }
+
+    @Override
+    public double getEntry(int index) {
+        return store.get(row, index);
+    }
+
+    @Override
+    public void setEntry(int index, double value) {
+        store.set(row, index, value);
+    }
+
+    @Override
+    public RealVector append(RealVector v) {
+        return copy().append(v);
+    }
+
+    @Override
+    public RealVector append(double d) {
+        return copy().append(d);
+    }
+
+    @Override
+    public RealVector getSubVector(int index, int n) {
+        return copy().getSubVector(index, n);
+    }
+
+    @Override
+    public void setSubVector(int index, RealVector v) {
+        checkIndex(index);
+        checkIndex(index + v.getDimension() - 1);
+        for (int i = 0; i < v.getDimension(); ++i) {
+            setEntry(index + i, v.getEntry(i));
+        }
+    }
+
+    @Override
+    public boolean isNaN() {
+        for (int i = 0; i < getDimension(); ++i) {
+            if (Double.isNaN(getEntry(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isInfinite() {
+        if (isNaN()) {
+            return false;
+        }
+        for (int i = 0; i < getDimension(); ++i) {
+            if (Double.isInfinite(getEntry(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ArrayRealVector copy() {
+        return new ArrayRealVector(toArray(), false);
+    }
+
+    @Override
+    public RealVector ebeDivide(RealVector v) {
+        return copy().ebeDivide(v);
+    }
+
+    @Override
+    public RealVector ebeMultiply(RealVector v) {
+        return copy().ebeMultiply(v);
+    }
+
+    @Override
+    public double[] toArray() {
+        int dimension = getDimension();
+        double[] values = new double[dimension];
+        for (int i = 0; i < dimension; ++i) {
+            values[i] = store.get(row, i);
+        }
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RealVector)) {
+            return false;
+        }
+        return copy().equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return copy().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return copy().toString();
+    }
+}
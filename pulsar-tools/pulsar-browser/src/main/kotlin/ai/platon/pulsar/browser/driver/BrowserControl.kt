@@ -34,6 +34,7 @@ open class BrowserControl(
     val jsInvadingEnabled get() = conf.getBoolean(BROWSER_JS_INVADING_ENABLED, true)
     val userDataDir get() = conf.getPathOrNull(BROWSER_DATA_DIR)?:generateUserDataDir()
     val enableUrlBlocking get() = conf.getBoolean(BROWSER_ENABLE_URL_BLOCKING, false)
+    val domSnapshotEnabled get() = conf.getBoolean(BROWSER_DOM_SNAPSHOT_ENABLED, false)
 
     // We will wait for document ready manually using javascript
     var pageLoadStrategy = "none"
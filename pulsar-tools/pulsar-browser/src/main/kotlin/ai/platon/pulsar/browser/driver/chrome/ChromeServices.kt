@@ -5,6 +5,7 @@ import com.github.kklisura.cdt.protocol.ChromeDevTools
 import com.github.kklisura.cdt.protocol.support.types.EventHandler
 import com.github.kklisura.cdt.protocol.support.types.EventListener
 import java.net.URI
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.Future
 import java.util.function.Consumer
 
@@ -45,6 +46,44 @@ interface RemoteDevTools: ChromeDevTools, AutoCloseable {
             method: MethodInvocation
     ): T?
 
+    /**
+     * Send the method invocation without waiting for the response, several invocations can be in flight
+     * at the same time on the same web socket connection
+     * */
+    fun <T> invokeAsync(
+            returnProperty: String?,
+            clazz: Class<T>,
+            returnTypeClasses: Array<Class<out Any>>?,
+            method: MethodInvocation
+    ): CompletableFuture<T?>
+
+    /**
+     * Invoke the method and suspend until the response arrives or the read timeout elapses
+     * */
+    suspend fun <T> invokeDeferred(
+            returnProperty: String?,
+            clazz: Class<T>,
+            returnTypeClasses: Array<Class<out Any>>?,
+            method: MethodInvocation
+    ): T?
+
+    /**
+     * Invoke a method by it's name, for example, Runtime.evaluate, and suspend until the response arrives
+     * */
+    suspend fun <T> invokeDeferred(
+            method: String,
+            params: Map<String, Any>?,
+            clazz: Class<T>,
+            returnProperty: String? = null
+    ): T? = invokeDeferred(returnProperty, clazz, null, MethodInvocation(MethodInvocation.nextId(), method, params))
+
+    /**
+     * Invoke a method by it's name and return the raw response message without parsing it into a json tree,
+     * the caller is responsible to parse the message, it's used for large responses, for example,
+     * DOMSnapshot.captureSnapshot
+     * */
+    suspend fun invokeRawDeferred(method: String, params: Map<String, Any>?): String?
+
     fun waitUntilClosed()
 
     fun addEventListener(domainName: String, eventName: String, eventHandler: EventHandler<Any>, eventType: Class<*>): EventListener
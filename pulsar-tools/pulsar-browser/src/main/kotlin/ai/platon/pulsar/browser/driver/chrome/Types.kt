@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonProperty
 import io.netty.channel.DefaultEventLoopGroup
 import io.netty.channel.EventLoopGroup
 import java.time.Duration
+import java.util.concurrent.atomic.AtomicLong
 
 class ChromeVersion {
     @JsonProperty("Browser")
@@ -43,7 +44,13 @@ class MethodInvocation(
         var id: Long = 0,
         var method: String,
         var params: Map<String, Any>? = null
-)
+) {
+    companion object {
+        private val ID_SUPPLIER = AtomicLong(1L)
+
+        fun nextId() = ID_SUPPLIER.getAndIncrement()
+    }
+}
 
 class DevToolsConfig(
         var workerGroup: EventLoopGroup = DefaultEventLoopGroup(),
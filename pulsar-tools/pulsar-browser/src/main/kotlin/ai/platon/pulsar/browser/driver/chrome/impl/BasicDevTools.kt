@@ -11,45 +11,61 @@ import ai.platon.pulsar.common.readable
 import com.codahale.metrics.Gauge
 import com.codahale.metrics.SharedMetricRegistries
 import com.fasterxml.jackson.annotation.JsonInclude
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
 import com.fasterxml.jackson.databind.DeserializationFeature
 import com.fasterxml.jackson.databind.JavaType
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.TextNode
 import com.fasterxml.jackson.databind.type.TypeFactory
 import com.github.kklisura.cdt.protocol.support.types.EventHandler
 import com.github.kklisura.cdt.protocol.support.types.EventListener
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withTimeoutOrNull
 import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.time.Duration
 import java.time.Instant
 import java.util.*
-import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.ConcurrentSkipListSet
-import java.util.concurrent.CountDownLatch
-import java.util.concurrent.TimeUnit
+import java.util.concurrent.*
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.locks.ReentrantLock
 import java.util.function.Consumer
 import kotlin.concurrent.withLock
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
 
-internal class InvocationFuture(val returnProperty: String? = null) {
-    var result: JsonNode? = null
-    var isSuccess = false
-    private val countDownLatch = CountDownLatch(1)
+/**
+ * A pending invocation, it's completed by the web socket message handler when the response arrives
+ * */
+internal class InvocationFuture(val returnProperty: String? = null, val isRaw: Boolean = false) {
+    val future = CompletableFuture<JsonNode?>()
 
     fun signal(isSuccess: Boolean, result: JsonNode?) {
-        this.isSuccess = isSuccess
-        this.result = result
-        countDownLatch.countDown()
+        if (isSuccess) {
+            future.complete(result)
+        } else {
+            future.completeExceptionally(createInvocationException(result))
+        }
+    }
+
+    private fun createInvocationException(errorNode: JsonNode?): ChromeDevToolsInvocationException {
+        val error = errorNode?.let { ERROR_READER.readValue<ErrorObject>(it) }
+                ?: return ChromeDevToolsInvocationException("Unknown error")
+        val sb = StringBuilder(error.message)
+        if (error.data != null) {
+            sb.append(": ")
+            sb.append(error.data)
+        }
+        return ChromeDevToolsInvocationException(error.code, sb.toString())
     }
 
-    @Throws(InterruptedException::class)
-    fun await(timeout: Long, timeUnit: TimeUnit): Boolean {
-        return if (timeout == 0L) {
-            countDownLatch.await()
-            true
-        } else countDownLatch.await(timeout, timeUnit)
+    companion object {
+        private val ERROR_READER = ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readerFor(ErrorObject::class.java)
     }
 }
 
@@ -107,6 +123,11 @@ abstract class BasicDevTools(
     private val closed = AtomicBoolean()
     override val isOpen get() = !closed.get() && !wsClient.isClosed()
 
+    /**
+     * The number of invocations waiting for responses
+     * */
+    val numPendingInvocations get() = invocationFutures.size
+
     init {
         wsClient.addMessageHandler(this)
     }
@@ -125,55 +146,54 @@ abstract class BasicDevTools(
             return null
         }
 
-        numInvokes.inc()
-        lastActiveTime = Instant.now()
-
-        val future = invocationFutures.computeIfAbsent(method.id) { InvocationFuture(returnProperty) }
-
+        val future = invokeAsync(returnProperty, clazz, returnTypeClasses, method)
         try {
-            // TODO: consider use coroutine or wsClient.asyncSend
-            wsClient.send(OBJECT_MAPPER.writeValueAsString(method))
-            val responded = future.await(devToolsConfig.readTimeout.seconds, TimeUnit.SECONDS)
-            invocationFutures.remove(method.id)
-            lastActiveTime = Instant.now()
+            return future.get(devToolsConfig.readTimeout.seconds, TimeUnit.SECONDS)
+        } catch (e: TimeoutException) {
+            onTimeout(method)
+        } catch (e: ExecutionException) {
+            throw unwrap(e.cause ?: e)
+        } catch (e: InterruptedException) {
+            logger.warn("Interrupted while invoke ${method.method}")
+            Thread.currentThread().interrupt()
+            return null
+        }
+    }
 
-            lock.withLock {
-                if (invocationFutures.isEmpty()) {
-                    notBusy.signalAll()
-                }
-            }
+    override fun <T> invokeAsync(
+            returnProperty: String?,
+            clazz: Class<T>,
+            returnTypeClasses: Array<Class<out Any>>?,
+            method: MethodInvocation
+    ): CompletableFuture<T?> {
+        if (!isOpen) {
+            return CompletableFuture.completedFuture(null)
+        }
 
-            if (!responded) {
-                logger.warn("Timeout to wait for ws response #{}", numInvokes.count)
-                throw ChromeDevToolsInvocationException("Timeout to wait for ws response #${numInvokes.count}")
-            }
+        return send(InvocationFuture(returnProperty), method).thenApply { readResult(clazz, returnTypeClasses, it) }
+    }
 
-            if (future.isSuccess) {
-                return when {
-                    Void.TYPE == clazz -> null
-                    returnTypeClasses != null -> readJsonObject(returnTypeClasses, clazz, future.result)
-                    else -> readJsonObject(clazz, future.result)
-                }
-            }
+    override suspend fun <T> invokeDeferred(
+            returnProperty: String?,
+            clazz: Class<T>,
+            returnTypeClasses: Array<Class<out Any>>?,
+            method: MethodInvocation
+    ): T? {
+        if (!isOpen) {
+            return null
+        }
 
-            // Received a error
-            val error = readJsonObject(ErrorObject::class.java, future.result)
-            val sb = StringBuilder(error.message)
-            if (error.data != null) {
-                sb.append(": ")
-                sb.append(error.data)
-            }
+        return awaitResponse(invokeAsync(returnProperty, clazz, returnTypeClasses, method), method)
+    }
 
-            throw ChromeDevToolsInvocationException(error.code, sb.toString())
-        } catch (e: WebSocketServiceException) {
-            throw ChromeDevToolsInvocationException("Web socket connection lost", e)
-        } catch (e: InterruptedException) {
-            logger.warn("Interrupted while invoke ${method.method}")
-            Thread.currentThread().interrupt()
+    override suspend fun invokeRawDeferred(method: String, params: Map<String, Any>?): String? {
+        if (!isOpen) {
             return null
-        } catch (e: IOException) {
-            throw ChromeDevToolsInvocationException("Failed reading response message", e)
         }
+
+        val methodInvocation = MethodInvocation(MethodInvocation.nextId(), method, params)
+        val future = send(InvocationFuture(isRaw = true), methodInvocation).thenApply { it?.textValue() }
+        return awaitResponse(future, methodInvocation)
     }
 
     override fun addEventListener(domainName: String,
@@ -194,42 +214,100 @@ abstract class BasicDevTools(
 
         numAccepts.inc()
         try {
-            val jsonNode = OBJECT_MAPPER.readTree(message)
-            val idNode = jsonNode.get(ID_PROPERTY)
-            if (idNode != null) {
-                val id = idNode.asLong()
-                val future = invocationFutures[id]
-                if (future != null) {
-                    var resultNode = jsonNode.get(RESULT_PROPERTY)
-                    val errorNode = jsonNode.get(ERROR_PROPERTY)
-                    if (errorNode != null) {
-                        future.signal(false, errorNode)
-                    } else {
-                        if (future.returnProperty != null) {
-                            if (resultNode != null) {
-                                resultNode = resultNode.get(future.returnProperty)
-                            }
-                        }
+            acceptMessage(message)
+        } catch (ex: IOException) {
+            logger.error("Failed reading web socket message", ex)
+        } catch (ex: java.lang.Exception) {
+            logger.error("Failed receiving web socket message", ex)
+        }
+    }
+
+    /**
+     * Parse the message only once by a streaming parser. If it's the response of a raw invocation, the message is
+     * handed over as is, only the leading tokens are parsed and the large message is never built into a json tree,
+     * otherwise, the json tree is built by the same parser.
+     *
+     * Chrome always writes the id as the first property of a response, if it's not the case, the response
+     * is accepted as a json tree.
+     * */
+    @Throws(IOException::class)
+    private fun acceptMessage(message: String) {
+        OBJECT_MAPPER.factory.createParser(message).use { parser ->
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                logger.warn("Unexpected web socket message, object expected | {}", message.take(200))
+                return
+            }
+
+            val jsonNode = OBJECT_MAPPER.createObjectNode()
+            var name = parser.nextFieldName()
+            if (name == ID_PROPERTY) {
+                parser.nextToken()
+                val future = invocationFutures[parser.longValue]
+                if (future != null && future.isRaw) {
+                    acceptRaw(future, message, parser)
+                    return
+                }
+
+                jsonNode.set<JsonNode>(ID_PROPERTY, OBJECT_MAPPER.readTree<JsonNode>(parser))
+                name = parser.nextFieldName()
+            }
+
+            while (name != null) {
+                parser.nextToken()
+                jsonNode.set<JsonNode>(name, OBJECT_MAPPER.readTree<JsonNode>(parser))
+                name = parser.nextFieldName()
+            }
+
+            acceptTree(jsonNode, message)
+        }
+    }
+
+    /**
+     * Accept the response of a raw invocation, the parser is right after the id
+     * */
+    @Throws(IOException::class)
+    private fun acceptRaw(future: InvocationFuture, message: String, parser: JsonParser) {
+        if (parser.nextFieldName() == ERROR_PROPERTY) {
+            parser.nextToken()
+            future.signal(false, OBJECT_MAPPER.readTree<JsonNode>(parser))
+        } else {
+            future.signal(true, TextNode(message))
+        }
+    }
+
+    private fun acceptTree(jsonNode: JsonNode, message: String) {
+        val idNode = jsonNode.get(ID_PROPERTY)
+        if (idNode != null) {
+            val id = idNode.asLong()
+            val future = invocationFutures[id]
+            if (future != null) {
+                var resultNode = jsonNode.get(RESULT_PROPERTY)
+                val errorNode = jsonNode.get(ERROR_PROPERTY)
+                if (errorNode != null) {
+                    future.signal(false, errorNode)
+                } else if (future.isRaw) {
+                    future.signal(true, TextNode(message))
+                } else {
+                    if (future.returnProperty != null) {
                         if (resultNode != null) {
-                            future.signal(true, resultNode)
-                        } else {
-                            future.signal(true, null)
+                            resultNode = resultNode.get(future.returnProperty)
                         }
                     }
-                } else {
-                    logger.warn("Received response with unknown invocation #{} - {}", id, jsonNode.asText())
+                    if (resultNode != null) {
+                        future.signal(true, resultNode)
+                    } else {
+                        future.signal(true, null)
+                    }
                 }
             } else {
-                val methodNode = jsonNode.get(METHOD_PROPERTY)
-                val paramsNode = jsonNode.get(PARAMS_PROPERTY)
-                if (methodNode != null) {
-                    handleEvent(methodNode.asText(), paramsNode)
-                }
+                logger.warn("Received response with unknown invocation #{} - {}", id, jsonNode.asText())
+            }
+        } else {
+            val methodNode = jsonNode.get(METHOD_PROPERTY)
+            val paramsNode = jsonNode.get(PARAMS_PROPERTY)
+            if (methodNode != null) {
+                handleEvent(methodNode.asText(), paramsNode)
             }
-        } catch (ex: IOException) {
-            logger.error("Failed reading web socket message", ex)
-        } catch (ex: java.lang.Exception) {
-            logger.error("Failed receiving web socket message", ex)
         }
     }
 
@@ -265,6 +343,100 @@ abstract class BasicDevTools(
 
         wsClient.close()
         workerGroup.shutdownGracefully()
+
+        // fail the invocations still in flight, so no one waits until timeout
+        invocationFutures.values.toList().forEach {
+            it.future.completeExceptionally(ChromeDevToolsInvocationException("Dev tools is closed"))
+        }
+    }
+
+    private fun send(invocation: InvocationFuture, method: MethodInvocation): CompletableFuture<JsonNode?> {
+        numInvokes.inc()
+        lastActiveTime = Instant.now()
+
+        invocationFutures[method.id] = invocation
+        invocation.future.whenComplete { _, _ -> onInvocationDone(method.id) }
+
+        try {
+            // Do not wait for the response, so several invocations can be in flight on the same connection
+            wsClient.asyncSend(OBJECT_MAPPER.writeValueAsString(method))
+        } catch (e: WebSocketServiceException) {
+            invocation.future.completeExceptionally(ChromeDevToolsInvocationException("Web socket connection lost", e))
+        } catch (e: IOException) {
+            invocation.future.completeExceptionally(ChromeDevToolsInvocationException("Failed writing request message", e))
+        }
+
+        return invocation.future
+    }
+
+    private suspend fun <T> awaitResponse(future: CompletableFuture<T?>, method: MethodInvocation): T? {
+        // the result can be null, so a flag tells whether the response arrives in time
+        var isTimeout = true
+        val result = try {
+            withTimeoutOrNull(devToolsConfig.readTimeout.toMillis()) { await(future).also { isTimeout = false } }
+        } catch (e: CancellationException) {
+            // the coroutine is canceled, the response is no longer needed
+            invocationFutures.remove(method.id)?.future?.cancel(false)
+            throw e
+        }
+
+        return if (isTimeout) onTimeout(method) else result
+    }
+
+    /**
+     * Suspend until the future is completed, the invocation is abandoned if the coroutine is canceled
+     * */
+    private suspend fun <T> await(future: CompletableFuture<T>): T {
+        return suspendCancellableCoroutine { cont ->
+            future.whenComplete { result, throwable ->
+                when {
+                    throwable == null -> cont.resume(result)
+                    // the future is canceled by others, it's an invocation failure, not a coroutine cancellation
+                    throwable is CancellationException && cont.isActive ->
+                        cont.resumeWithException(ChromeDevToolsInvocationException("Invocation is canceled"))
+                    else -> cont.resumeWithException(unwrap(throwable))
+                }
+            }
+            cont.invokeOnCancellation { future.cancel(false) }
+        }
+    }
+
+    private fun onTimeout(method: MethodInvocation): Nothing {
+        invocationFutures.remove(method.id)?.future?.cancel(false)
+        logger.warn("Timeout to wait for ws response #{} | {}", method.id, method.method)
+        throw ChromeDevToolsInvocationException("Timeout to wait for ws response #${method.id}")
+    }
+
+    private fun onInvocationDone(id: Long) {
+        invocationFutures.remove(id)
+        lastActiveTime = Instant.now()
+
+        if (invocationFutures.isEmpty()) {
+            lock.withLock {
+                notBusy.signalAll()
+            }
+        }
+    }
+
+    private fun unwrap(t: Throwable): Throwable {
+        val cause = if (t is CompletionException) t.cause ?: t else t
+        return when (cause) {
+            is ChromeDevToolsInvocationException -> cause
+            is CancellationException -> cause
+            else -> ChromeDevToolsInvocationException("Failed invoking dev tools", cause)
+        }
+    }
+
+    private fun <T> readResult(clazz: Class<T>, returnTypeClasses: Array<Class<out Any>>?, result: JsonNode?): T? {
+        try {
+            return when {
+                Void.TYPE == clazz -> null
+                returnTypeClasses != null -> readJsonObject(returnTypeClasses, clazz, result)
+                else -> readJsonObject(clazz, result)
+            }
+        } catch (e: IOException) {
+            throw ChromeDevToolsInvocationException("Failed reading response message", e)
+        }
     }
 
     private fun handleEvent(name: String, params: JsonNode) {
@@ -30,6 +30,28 @@ class Chrome(
         const val ACTIVATE_TAB = "json/activate"
         const val CLOSE_TAB = "json/close"
         const val VERSION = "json/version"
+
+        /**
+         * Create a dev tools instance which talks to a tab through the connected web socket client
+         * */
+        fun createDevTools(wsClient: WebSocketClient, devToolsConfig: DevToolsConfig): RemoteDevTools {
+            // Create invocation handler
+            val commandInvocationHandler = DevToolsInvocationHandler()
+            val commandsCache: MutableMap<Method, Any> = ConcurrentHashMap()
+            val invocationHandler = InvocationHandler { _, method, _ ->
+                commandsCache.computeIfAbsent(method) {
+                    ProxyClasses.createProxy(method.returnType, commandInvocationHandler)
+                }
+            }
+
+            // Create concrete dev tools instance from interface
+            return ProxyClasses.createProxyFromAbstract(
+                    BasicDevTools::class.java,
+                    arrayOf(WebSocketClient::class.java, DevToolsConfig::class.java),
+                    arrayOf(wsClient, devToolsConfig),
+                    invocationHandler
+            ).also { commandInvocationHandler.devTools = it }
+        }
     }
 
     private val objectMapper = ObjectMapper()
@@ -101,28 +123,13 @@ class Chrome(
 
     @Throws(WebSocketServiceException::class)
     private fun createDevTools0(tab: ChromeTab, devToolsConfig: DevToolsConfig): RemoteDevTools {
-        // Create invocation handler
-        val commandInvocationHandler = DevToolsInvocationHandler()
-        val commandsCache: MutableMap<Method, Any> = ConcurrentHashMap()
-        val invocationHandler = InvocationHandler { _, method, _ ->
-            commandsCache.computeIfAbsent(method) {
-                ProxyClasses.createProxy(method.returnType, commandInvocationHandler)
-            }
-        }
-
         // Connect to a tab via web socket
         val debuggerUrl: String = tab.webSocketDebuggerUrl
                 ?:throw WebSocketServiceException("Invalid web socket debugger url")
 
         val wsClient = wss.createWebSocketService(debuggerUrl)
 
-        // Create concrete dev tools instance from interface
-        return ProxyClasses.createProxyFromAbstract(
-                BasicDevTools::class.java,
-                arrayOf(WebSocketClient::class.java, DevToolsConfig::class.java),
-                arrayOf(wsClient, devToolsConfig),
-                invocationHandler
-        ).also { commandInvocationHandler.devTools = it }
+        return createDevTools(wsClient, devToolsConfig)
     }
 
     /**
@@ -8,61 +8,24 @@ import com.github.kklisura.cdt.protocol.support.annotations.ReturnTypeParameter
 import com.github.kklisura.cdt.protocol.support.annotations.Returns
 import com.github.kklisura.cdt.protocol.support.types.EventHandler
 import com.github.kklisura.cdt.protocol.support.types.EventListener
-import java.lang.Exception
 import java.lang.reflect.InvocationHandler
 import java.lang.reflect.Method
 import java.lang.reflect.ParameterizedType
-import java.util.*
-import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.ConcurrentHashMap
 
-class DevToolsInvocationHandler: InvocationHandler {
-    companion object {
-        private const val EVENT_LISTENER_PREFIX = "on"
-        private val ID_SUPPLIER = AtomicLong(1L)
-    }
-
-    lateinit var devTools: RemoteDevTools
-
-    /**
-     * Notice: args must be nullable, since methods can have no arguments
-     * */
-    @Throws(InterruptedException::class)
-    override fun invoke(unused: Any, method: Method, args: Array<Any>?): Any? {
-        if (isEventSubscription(method)) {
-            val domainName = method.declaringClass.simpleName
-            val eventName: String = getEventName(method)
-            val eventHandlerType: Class<*> = getEventHandlerType(method)
-            return devTools.addEventListener(domainName, eventName, args!![0] as EventHandler<Any>, eventHandlerType)
-        }
-
-        val returnType = method.returnType
-        val returnTypeClasses = method.getAnnotation(ReturnTypeParameter::class.java)
-                ?.value?.map { it.java }?.toTypedArray()
-        val returnProperty = method.getAnnotation(Returns::class.java)?.value
-        val methodInvocation = createMethodInvocation(method, args)
-        return devTools.invoke(returnProperty, returnType, returnTypeClasses, methodInvocation)
-    }
-
-    private fun createMethodInvocation(method: Method, args: Array<Any>? = null): MethodInvocation {
-        val domainName = method.declaringClass.simpleName
-        val methodName = method.name
-        return MethodInvocation(ID_SUPPLIER.getAndIncrement(), "$domainName.$methodName", buildMethodParams(method, args))
-    }
-
-    private fun buildMethodParams(method: Method, args: Array<Any>? = null): Map<String, Any> {
-        val params: MutableMap<String, Any> = HashMap()
-        val parameters = method.parameters
-        if (args != null) {
-            for (i in args.indices) {
-                params[parameters[i].getAnnotation(ParamName::class.java).value] = args[i]
-            }
-        }
-        return params
-    }
-
-    private fun getEventName(method: Method): String {
-        return method.getAnnotation(EventName::class.java).value
-    }
+/**
+ * The metadata of a proxy method, which is resolved by reflection only once
+ * */
+internal class MethodMetadata(method: Method) {
+    val domainName: String = method.declaringClass.simpleName
+    val isEventSubscription = isEventSubscription(method)
+    val eventName: String? = method.getAnnotation(EventName::class.java)?.value
+    val eventHandlerType: Class<*>? = if (isEventSubscription) getEventHandlerType(method) else null
+    val methodName = "$domainName.${method.name}"
+    val returnType: Class<*> = method.returnType
+    val returnTypeClasses = method.getAnnotation(ReturnTypeParameter::class.java)?.value?.map { it.java }?.toTypedArray()
+    val returnProperty = method.getAnnotation(Returns::class.java)?.value
+    val paramNames = method.parameters.map { it.getAnnotation(ParamName::class.java)?.value ?: it.name }.toTypedArray()
 
     private fun getEventHandlerType(method: Method): Class<*> {
         return (method.genericParameterTypes[0] as ParameterizedType).actualTypeArguments[0] as Class<*>
@@ -83,4 +46,50 @@ class DevToolsInvocationHandler: InvocationHandler {
                 && parameters.size == 1
                 && EventHandler::class.java.isAssignableFrom(parameters[0].type))
     }
+
+    companion object {
+        private const val EVENT_LISTENER_PREFIX = "on"
+    }
+}
+
+class DevToolsInvocationHandler: InvocationHandler {
+    companion object {
+        private val METADATA_CACHE = ConcurrentHashMap<Method, MethodMetadata>()
+    }
+
+    lateinit var devTools: RemoteDevTools
+
+    /**
+     * Notice: args must be nullable, since methods can have no arguments
+     * */
+    @Throws(InterruptedException::class)
+    override fun invoke(unused: Any, method: Method, args: Array<Any>?): Any? {
+        val metadata = METADATA_CACHE.computeIfAbsent(method) { MethodMetadata(it) }
+
+        if (metadata.isEventSubscription) {
+            val eventName = metadata.eventName ?: throw IllegalArgumentException("No event name | ${metadata.methodName}")
+            val eventHandlerType = metadata.eventHandlerType!!
+            return devTools.addEventListener(metadata.domainName, eventName, args!![0] as EventHandler<Any>, eventHandlerType)
+        }
+
+        val methodInvocation = createMethodInvocation(metadata, args)
+        return devTools.invoke(metadata.returnProperty, metadata.returnType, metadata.returnTypeClasses, methodInvocation)
+    }
+
+    private fun createMethodInvocation(metadata: MethodMetadata, args: Array<Any>? = null): MethodInvocation {
+        return MethodInvocation(MethodInvocation.nextId(), metadata.methodName, buildMethodParams(metadata, args))
+    }
+
+    private fun buildMethodParams(metadata: MethodMetadata, args: Array<Any>? = null): Map<String, Any> {
+        if (args == null || args.isEmpty()) {
+            return mapOf()
+        }
+
+        val params = HashMap<String, Any>(2 * args.size)
+        val paramNames = metadata.paramNames
+        for (i in args.indices) {
+            params[paramNames[i]] = args[i]
+        }
+        return params
+    }
 }
@@ -75,7 +75,6 @@ class WebSocketClientImpl : WebSocketClient {
         meterRequests.mark()
 
         return try {
-            // TODO: use session.asyncRemote?
             session.asyncRemote.sendText(message)
         } catch (e: IOException) {
             throw WebSocketServiceException("The connection is closed", e)
@@ -0,0 +1,104 @@
+package ai.platon.pulsar.browser.driver.chrome
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.node.ObjectNode
+import io.netty.bootstrap.ServerBootstrap
+import io.netty.channel.Channel
+import io.netty.channel.ChannelHandlerContext
+import io.netty.channel.ChannelInitializer
+import io.netty.channel.SimpleChannelInboundHandler
+import io.netty.channel.nio.NioEventLoopGroup
+import io.netty.channel.socket.SocketChannel
+import io.netty.channel.socket.nio.NioServerSocketChannel
+import io.netty.handler.codec.http.HttpObjectAggregator
+import io.netty.handler.codec.http.HttpServerCodec
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler
+import java.net.InetSocketAddress
+import java.net.URI
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+/**
+ * A local web socket server which speaks a tiny subset of the chrome devtools protocol, it's used to measure
+ * the latency and the throughput of the rpc layer without a real browser.
+ *
+ * Every request is answered after [latency], the requests are not queued, so a client can keep
+ * several requests in flight. Runtime.evaluate echoes the expression, Mock.error responds an error,
+ * Mock.silent is never answered, and all the other methods respond an empty result.
+ * */
+class MockDevToolsServer(val latency: Duration = Duration.ZERO): AutoCloseable {
+    private val objectMapper = ObjectMapper()
+    private val bossGroup = NioEventLoopGroup(1)
+    private val workerGroup = NioEventLoopGroup()
+    private lateinit var channel: Channel
+
+    val port get() = (channel.localAddress() as InetSocketAddress).port
+    val uri get() = URI.create("ws://127.0.0.1:$port$PATH")
+
+    fun start(): MockDevToolsServer {
+        channel = ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel::class.java)
+                .childHandler(object: ChannelInitializer<SocketChannel>() {
+                    override fun initChannel(ch: SocketChannel) {
+                        ch.pipeline().addLast(
+                                HttpServerCodec(),
+                                HttpObjectAggregator(MAX_CONTENT_LENGTH),
+                                WebSocketServerProtocolHandler(PATH, null, false, MAX_CONTENT_LENGTH),
+                                FrameHandler()
+                        )
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel()
+        return this
+    }
+
+    override fun close() {
+        if (::channel.isInitialized) {
+            channel.close().sync()
+        }
+        bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS)
+        workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS)
+    }
+
+    private fun respond(request: String): String {
+        val requestNode = objectMapper.readTree(request)
+        val response = objectMapper.createObjectNode()
+        response.set<ObjectNode>("id", requestNode.get("id"))
+
+        when (requestNode.get("method")?.asText()) {
+            "Runtime.evaluate" -> {
+                val expression = requestNode.get("params")?.get("expression")?.asText()
+                response.putObject("result").putObject("result")
+                        .put("type", "string")
+                        .put("value", expression)
+            }
+            "Mock.error" -> response.putObject("error").put("code", -32000).put("message", "Mock error")
+            else -> response.putObject("result")
+        }
+
+        return objectMapper.writeValueAsString(response)
+    }
+
+    private inner class FrameHandler: SimpleChannelInboundHandler<TextWebSocketFrame>() {
+        override fun channelRead0(ctx: ChannelHandlerContext, frame: TextWebSocketFrame) {
+            if (frame.text().contains("\"$SILENT_METHOD\"")) {
+                return
+            }
+
+            val response = TextWebSocketFrame(respond(frame.text()))
+            if (latency.isZero) {
+                ctx.writeAndFlush(response)
+            } else {
+                ctx.executor().schedule({ ctx.writeAndFlush(response) }, latency.toMillis(), TimeUnit.MILLISECONDS)
+            }
+        }
+    }
+
+    companion object {
+        const val PATH = "/devtools/page/mock"
+        const val SILENT_METHOD = "Mock.silent"
+        const val MAX_CONTENT_LENGTH = 10 * 1024 * 1024
+    }
+}
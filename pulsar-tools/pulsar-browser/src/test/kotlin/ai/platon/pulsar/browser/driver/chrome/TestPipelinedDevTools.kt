@@ -0,0 +1,129 @@
+package ai.platon.pulsar.browser.driver.chrome
+
+import ai.platon.pulsar.browser.driver.chrome.impl.BasicDevTools
+import ai.platon.pulsar.browser.driver.chrome.impl.Chrome
+import ai.platon.pulsar.browser.driver.chrome.impl.WebSocketClientImpl
+import ai.platon.pulsar.browser.driver.chrome.util.ChromeDevToolsInvocationException
+import com.github.kklisura.cdt.protocol.types.runtime.Evaluate
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Ignore
+import org.junit.Test
+import java.time.Duration
+import java.time.Instant
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
+
+class TestPipelinedDevTools {
+
+    private val latency = Duration.ofMillis(100)
+    private lateinit var server: MockDevToolsServer
+    private lateinit var devTools: RemoteDevTools
+
+    @Before
+    fun setup() {
+        server = MockDevToolsServer(latency).start()
+        devTools = Chrome.createDevTools(WebSocketClientImpl.create(server.uri), DevToolsConfig())
+    }
+
+    @After
+    fun tearDown() {
+        devTools.close()
+        server.close()
+    }
+
+    @Test
+    fun testBlockingInvoke() {
+        assertEquals("1 + 1", devTools.runtime.evaluate("1 + 1").result.value)
+    }
+
+    @Test
+    fun testInvokeDeferred() = runBlocking<Unit> {
+        val evaluate = devTools.invokeDeferred("Runtime.evaluate", mapOf("expression" to "2 + 2"), Evaluate::class.java)
+        assertEquals("2 + 2", evaluate?.result?.value)
+
+        assertFailsWith<ChromeDevToolsInvocationException> {
+            devTools.invokeDeferred("Mock.error", null, Void.TYPE)
+        }
+    }
+
+    @Test
+    fun testInvokeRawDeferred() = runBlocking<Unit> {
+        val message = assertNotNull(devTools.invokeRawDeferred("Runtime.evaluate", mapOf("expression" to "3 + 3")))
+        assertTrue(message.startsWith("{\"id\":"), message)
+        assertTrue(message.contains("\"value\":\"3 + 3\""), message)
+
+        val e = assertFailsWith<ChromeDevToolsInvocationException> {
+            devTools.invokeRawDeferred("Mock.error", null)
+        }
+        assertEquals(-32000L, e.code)
+        assertEquals("Mock error", e.message)
+    }
+
+    @Test
+    fun testReadTimeout() = runBlocking<Unit> {
+        devTools.close()
+        val devTools = Chrome.createDevTools(WebSocketClientImpl.create(server.uri),
+                DevToolsConfig(readTimeout = Duration.ofMillis(500)))
+        this@TestPipelinedDevTools.devTools = devTools
+
+        assertFailsWith<ChromeDevToolsInvocationException> {
+            devTools.invokeDeferred(MockDevToolsServer.SILENT_METHOD, null, Void.TYPE)
+        }
+        assertFailsWith<ChromeDevToolsInvocationException> {
+            devTools.invokeRawDeferred(MockDevToolsServer.SILENT_METHOD, null)
+        }
+        assertEquals(0, (devTools as BasicDevTools).numPendingInvocations)
+
+        // the connection is still usable
+        val evaluate = devTools.invokeDeferred("Runtime.evaluate", mapOf("expression" to "4 + 4"), Evaluate::class.java)
+        assertEquals("4 + 4", evaluate?.result?.value)
+    }
+
+    @Test
+    fun testInFlightInvocations() = runBlocking<Unit> {
+        val n = 50
+        val startTime = Instant.now()
+        // all the invocations are issued by a single thread
+        val values = (1..n).map { i ->
+            async { devTools.invokeDeferred("Runtime.evaluate", mapOf("expression" to "$i"), Evaluate::class.java) }
+        }.awaitAll().map { it?.result?.value }
+        val elapsed = Duration.between(startTime, Instant.now())
+
+        assertEquals((1..n).map { "$it" }, values)
+        // they would take n * latency if the invocations were serialized
+        assertTrue(elapsed < latency.multipliedBy(n.toLong() / 2), "Elapsed: $elapsed")
+    }
+
+    @Ignore("Time consuming task, should be run separately")
+    @Test
+    fun testPipelinedThroughput() {
+        val n = 200
+        devTools.close()
+        server.close()
+        server = MockDevToolsServer(Duration.ofMillis(10)).start()
+        devTools = Chrome.createDevTools(WebSocketClientImpl.create(server.uri), DevToolsConfig())
+
+        // warm up
+        repeat(n) { devTools.runtime.evaluate("$it") }
+
+        var startTime = Instant.now()
+        repeat(n) { devTools.runtime.evaluate("$it") }
+        val blocking = Duration.between(startTime, Instant.now())
+
+        startTime = Instant.now()
+        runBlocking {
+            (1..n).map { i ->
+                async { devTools.invokeDeferred("Runtime.evaluate", mapOf("expression" to "$i"), Evaluate::class.java) }
+            }.awaitAll()
+        }
+        val pipelined = Duration.between(startTime, Instant.now())
+
+        assertTrue(pipelined < blocking, "Blocking: $blocking, pipelined: $pipelined")
+    }
+}